@@ -0,0 +1,121 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2013 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ */
+package org.ow2.sirocco.cloudmanager;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ow2.sirocco.cloudmanager.MachineView.MachineBean;
+import org.ow2.sirocco.cloudmanager.NetworkView.NetworkBean;
+import org.ow2.sirocco.cloudmanager.VolumeView.VolumeBean;
+import org.ow2.sirocco.cloudmanager.model.cimi.Machine;
+import org.ow2.sirocco.cloudmanager.model.cimi.Network;
+import org.ow2.sirocco.cloudmanager.model.cimi.Volume;
+
+/**
+ * Per-row cost of mapping model objects to the table beans. Each operation maps the next object of the fixture so
+ * that larger fixtures also exercise cache misses.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BeanMappingBenchmark {
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    private Machine[] machines;
+
+    private Volume[] volumes;
+
+    private Network[] networks;
+
+    private MachineBean machineBean;
+
+    private int cursor;
+
+    @Setup
+    public void setup() {
+        List<Machine> machineList = ModelFixtures.machines(this.size);
+        this.machines = machineList.toArray(new Machine[this.size]);
+        this.volumes = ModelFixtures.volumes(this.size).toArray(new Volume[this.size]);
+        this.networks = ModelFixtures.networks(this.size).toArray(new Network[this.size]);
+        this.machineBean = new MachineBean(this.machines[0]);
+    }
+
+    private int next() {
+        if (++this.cursor == this.size) {
+            this.cursor = 0;
+        }
+        return this.cursor;
+    }
+
+    @Benchmark
+    public MachineBean machineBeanInit() {
+        return new MachineBean(this.machines[this.next()]);
+    }
+
+    @Benchmark
+    public String machineAddresses() {
+        return this.machineBean.addressesFrom(this.machines[this.next()]);
+    }
+
+    @Benchmark
+    public String machineDisks() {
+        return this.machineBean.disksFrom(this.machines[this.next()]);
+    }
+
+    @Benchmark
+    public String machineProvider() {
+        return this.machineBean.providerFrom(this.machines[this.next()]);
+    }
+
+    @Benchmark
+    public String machineLocation() {
+        return this.machineBean.locationFrom(this.machines[this.next()]);
+    }
+
+    @Benchmark
+    public VolumeBean volumeBeanInit() {
+        return new VolumeBean(this.volumes[this.next()]);
+    }
+
+    @Benchmark
+    public NetworkBean networkBeanInit() {
+        return new NetworkBean(this.networks[this.next()]);
+    }
+
+}
@@ -0,0 +1,193 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2013 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ */
+package org.ow2.sirocco.cloudmanager;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ow2.sirocco.cloudmanager.MachineView.MachineBean;
+import org.ow2.sirocco.cloudmanager.model.cimi.Machine;
+import org.ow2.sirocco.cloudmanager.util.BeanContainerReconciler;
+import org.ow2.sirocco.cloudmanager.util.ResourceState;
+
+import com.vaadin.data.Property;
+import com.vaadin.data.util.BeanContainer;
+import com.vaadin.shared.ui.label.ContentMode;
+import com.vaadin.ui.Component;
+import com.vaadin.ui.Label;
+import com.vaadin.ui.Table;
+
+/**
+ * Per-row cost of the state and location column generators of the machine table, as run by each table repaint.
+ * The "changed" variant flips the state of the rendered row first so that the label has to be updated. The uncached
+ * benchmarks keep the former generators, which built a new label and its markup for every cell, as a baseline.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CellRenderingBenchmark {
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    private Table table;
+
+    private BeanContainer<String, MachineBean> container;
+
+    private String[] itemIds;
+
+    private MachineBean[] startedBeans;
+
+    private MachineBean[] stoppedBeans;
+
+    private Util.StateColumnGenerator stateGenerator;
+
+    private Util.LocationColumnGenerator locationGenerator;
+
+    private final Table.ColumnGenerator uncachedStateGenerator = new UncachedStateColumnGenerator();
+
+    private final Table.ColumnGenerator uncachedLocationGenerator = new UncachedLocationColumnGenerator();
+
+    private int cursor;
+
+    @Setup
+    public void setup() {
+        this.container = new BeanContainer<String, MachineBean>(MachineBean.class);
+        this.container.setBeanIdProperty("id");
+        this.itemIds = new String[this.size];
+        this.startedBeans = new MachineBean[this.size];
+        this.stoppedBeans = new MachineBean[this.size];
+        int i = 0;
+        for (Machine machine : ModelFixtures.machines(this.size)) {
+            this.container.addBean(new MachineBean(machine));
+            this.itemIds[i] = machine.getUuid();
+            machine.setState(Machine.State.STARTED);
+            this.startedBeans[i] = new MachineBean(machine);
+            machine.setState(Machine.State.STOPPED);
+            this.stoppedBeans[i] = new MachineBean(machine);
+            i++;
+        }
+        this.table = new Table(null, this.container);
+        this.stateGenerator = new Util.StateColumnGenerator();
+        this.locationGenerator = new Util.LocationColumnGenerator();
+    }
+
+    private String next() {
+        if (++this.cursor == this.size) {
+            this.cursor = 0;
+        }
+        return this.itemIds[this.cursor];
+    }
+
+    @Benchmark
+    public Component stateCell() {
+        return this.stateGenerator.generateCell(this.table, this.next(), "state");
+    }
+
+    @Benchmark
+    public Component stateCellChanged() {
+        return this.stateGenerator.generateCell(this.table, this.flipNext(), "state");
+    }
+
+    @Benchmark
+    public Component locationCell() {
+        return this.locationGenerator.generateCell(this.table, this.next(), "location");
+    }
+
+    @Benchmark
+    public Object stateCellUncached() {
+        return this.uncachedStateGenerator.generateCell(this.table, this.next(), "state");
+    }
+
+    @Benchmark
+    public Object stateCellChangedUncached() {
+        return this.uncachedStateGenerator.generateCell(this.table, this.flipNext(), "state");
+    }
+
+    @Benchmark
+    public Object locationCellUncached() {
+        return this.uncachedLocationGenerator.generateCell(this.table, this.next(), "location");
+    }
+
+    private String flipNext() {
+        String itemId = this.next();
+        boolean started = this.container.getItem(itemId).getBean().getState() == ResourceState.STARTED;
+        // rows are immutable, a state change replaces the item as in the application
+        BeanContainerReconciler.replace(this.table, this.container, itemId,
+            started ? this.stoppedBeans[this.cursor] : this.startedBeans[this.cursor]);
+        return itemId;
+    }
+
+    @SuppressWarnings("serial")
+    private static class UncachedStateColumnGenerator implements Table.ColumnGenerator {
+        @Override
+        public Object generateCell(final Table source, final Object itemId, final Object columnId) {
+            Property<?> prop = source.getItem(itemId).getItemProperty(columnId);
+            String state = (String) prop.getValue();
+            Label label = new Label();
+            String iconFile;
+            if (state.endsWith("ING")) {
+                iconFile = "loading.gif";
+            } else if (state.equals("STARTED") || state.equals("AVAILABLE") || state.equals("IN_USE")) {
+                iconFile = "ball_green.gif";
+            } else {
+                iconFile = "ball_red.gif";
+            }
+            label.setContentMode(ContentMode.HTML);
+            label.setValue("<img src=\"" + "VAADIN/themes/mytheme/img/" + iconFile + "\" /> " + state);
+            return label;
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static class UncachedLocationColumnGenerator implements Table.ColumnGenerator {
+        @Override
+        public Object generateCell(final Table source, final Object itemId, final Object columnId) {
+            Property<?> prop = source.getItem(itemId).getItemProperty(columnId);
+            String location = (String) prop.getValue();
+            String countryAndRegion[] = location.split(" ", 2);
+            String country = countryAndRegion[0];
+            String region = countryAndRegion.length > 1 ? countryAndRegion[1] : "";
+            Label label = new Label();
+            if (country != null && !country.isEmpty()) {
+                String iconFile = country.toLowerCase() + ".gif";
+                label.setContentMode(ContentMode.HTML);
+                label.setValue("<img src=\"" + "VAADIN/themes/mytheme/img/flags/" + iconFile + "\" /> " + region);
+            }
+            return label;
+        }
+    }
+
+}
@@ -0,0 +1,104 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2013 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ */
+package org.ow2.sirocco.cloudmanager;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of the memory and capacity formatting used by every machine and volume row, over values spread across the
+ * KB, MB and GB ranges. The stringFormat benchmarks keep the former String.format implementation as a baseline.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FormattingBenchmark {
+    private static final int VALUE_COUNT = 1024;
+
+    private final int[] values = new int[FormattingBenchmark.VALUE_COUNT];
+
+    private int cursor;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        int[] scales = {1, 1024, 1024 * 1024};
+        for (int i = 0; i < this.values.length; i++) {
+            this.values[i] = random.nextInt(1000) * scales[i % scales.length] + random.nextInt(1000);
+        }
+    }
+
+    private int next() {
+        this.cursor = (this.cursor + 1) & (FormattingBenchmark.VALUE_COUNT - 1);
+        return this.values[this.cursor];
+    }
+
+    @Benchmark
+    public String printKibibytesValue() {
+        return Util.printKibibytesValue(this.next());
+    }
+
+    @Benchmark
+    public String printKilobytesValue() {
+        return Util.printKilobytesValue(this.next());
+    }
+
+    @Benchmark
+    public String printKibibytesValueStringFormat() {
+        int val = this.next();
+        if (val < 1024) {
+            return val + " KB";
+        } else if (val < 1024 * 1024) {
+            return String.format("%.0f MB", val / 1024.0f);
+        } else {
+            return String.format("%.0f GB", ((float) val) / (1024 * 1024));
+        }
+    }
+
+    @Benchmark
+    public String printKilobytesValueStringFormat() {
+        int val = this.next();
+        if (val < 1000) {
+            return val + " KB";
+        } else if (val < 1000 * 1000) {
+            return String.format("%.0f MB", val / 1000.0f);
+        } else {
+            return String.format("%.0f GB", ((float) val) / (1000 * 1000));
+        }
+    }
+
+}
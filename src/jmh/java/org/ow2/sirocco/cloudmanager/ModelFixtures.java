@@ -0,0 +1,168 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2013 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ */
+package org.ow2.sirocco.cloudmanager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.ow2.sirocco.cloudmanager.model.cimi.Address;
+import org.ow2.sirocco.cloudmanager.model.cimi.Machine;
+import org.ow2.sirocco.cloudmanager.model.cimi.MachineDisk;
+import org.ow2.sirocco.cloudmanager.model.cimi.MachineNetworkInterface;
+import org.ow2.sirocco.cloudmanager.model.cimi.MachineNetworkInterfaceAddress;
+import org.ow2.sirocco.cloudmanager.model.cimi.Network;
+import org.ow2.sirocco.cloudmanager.model.cimi.Subnet;
+import org.ow2.sirocco.cloudmanager.model.cimi.Volume;
+import org.ow2.sirocco.cloudmanager.model.cimi.extension.CloudProvider;
+import org.ow2.sirocco.cloudmanager.model.cimi.extension.CloudProviderAccount;
+import org.ow2.sirocco.cloudmanager.model.cimi.extension.CloudProviderLocation;
+
+/**
+ * Synthetic Sirocco model objects for the benchmarks, spread over a few provider accounts and locations like a
+ * multi-cloud tenant.
+ */
+final class ModelFixtures {
+    private static final String[][] LOCATIONS = { {"FR", "France", "Ile-de-France"}, {"US", "United States", "Virginia"},
+        {"DE", "Germany", "Hessen"}, {"JP", "Japan", "Tokyo"}};
+
+    private static final String[] PROVIDERS = {"OpenStack", "Amazon EC2", "CloudStack", "VMware vCloud", "Azure"};
+
+    private static final Machine.State[] MACHINE_STATES = {Machine.State.STARTED, Machine.State.STOPPED,
+        Machine.State.STARTING, Machine.State.ERROR};
+
+    private static final Volume.State[] VOLUME_STATES = {Volume.State.AVAILABLE, Volume.State.CREATING,
+        Volume.State.ERROR};
+
+    private static final Network.State[] NETWORK_STATES = {Network.State.STARTED, Network.State.STOPPED,
+        Network.State.CREATING};
+
+    private ModelFixtures() {
+    }
+
+    static List<CloudProviderAccount> accounts() {
+        List<CloudProviderAccount> accounts = new ArrayList<>();
+        for (int i = 0; i < ModelFixtures.PROVIDERS.length; i++) {
+            CloudProvider provider = new CloudProvider();
+            provider.setUuid("provider-" + i);
+            provider.setDescription(ModelFixtures.PROVIDERS[i]);
+            CloudProviderAccount account = new CloudProviderAccount();
+            account.setUuid("account-" + i);
+            account.setCloudProvider(provider);
+            accounts.add(account);
+        }
+        return accounts;
+    }
+
+    static List<CloudProviderLocation> locations() {
+        List<CloudProviderLocation> locations = new ArrayList<>();
+        for (int i = 0; i < ModelFixtures.LOCATIONS.length; i++) {
+            CloudProviderLocation location = new CloudProviderLocation();
+            location.setUuid("location-" + i);
+            location.setIso3166_1(ModelFixtures.LOCATIONS[i][0]);
+            location.setCountryName(ModelFixtures.LOCATIONS[i][1]);
+            location.setStateName(ModelFixtures.LOCATIONS[i][2]);
+            locations.add(location);
+        }
+        return locations;
+    }
+
+    static List<Machine> machines(final int count) {
+        List<CloudProviderAccount> accounts = ModelFixtures.accounts();
+        List<CloudProviderLocation> locations = ModelFixtures.locations();
+        List<Network> networks = ModelFixtures.networks(16);
+        List<Machine> machines = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Machine machine = new Machine();
+            machine.setUuid("machine-" + i);
+            machine.setName("vm-" + i);
+            machine.setDescription("synthetic machine " + i);
+            machine.setState(ModelFixtures.MACHINE_STATES[i % ModelFixtures.MACHINE_STATES.length]);
+            machine.setCpu(1 << (i % 4));
+            machine.setMemory((512 << (i % 6)) * 1024);
+            machine.setCloudProviderAccount(accounts.get(i % accounts.size()));
+            machine.setLocation(locations.get(i % locations.size()));
+
+            List<MachineDisk> disks = new ArrayList<>();
+            for (int d = 0; d < 1 + i % 3; d++) {
+                MachineDisk disk = new MachineDisk();
+                disk.setCapacity((10 + d * 40) * 1000 * 1000);
+                disks.add(disk);
+            }
+            machine.setDisks(disks);
+
+            List<MachineNetworkInterface> nics = new ArrayList<>();
+            for (int n = 0; n < 1 + i % 2; n++) {
+                Address address = new Address();
+                address.setIp("10." + n + "." + (i >> 8 & 0xff) + "." + (i & 0xff));
+                MachineNetworkInterfaceAddress nicAddress = new MachineNetworkInterfaceAddress();
+                nicAddress.setAddress(address);
+                MachineNetworkInterface nic = new MachineNetworkInterface();
+                nic.setNetwork(networks.get((i + n) % networks.size()));
+                nic.setAddresses(Collections.singletonList(nicAddress));
+                nics.add(nic);
+            }
+            machine.setNetworkInterfaces(nics);
+            machines.add(machine);
+        }
+        return machines;
+    }
+
+    static List<Volume> volumes(final int count) {
+        List<CloudProviderAccount> accounts = ModelFixtures.accounts();
+        List<CloudProviderLocation> locations = ModelFixtures.locations();
+        List<Volume> volumes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Volume volume = new Volume();
+            volume.setUuid("volume-" + i);
+            volume.setName("vol-" + i);
+            volume.setState(ModelFixtures.VOLUME_STATES[i % ModelFixtures.VOLUME_STATES.length]);
+            volume.setCapacity((1 + i % 500) * 1000 * 1000);
+            volume.setCloudProviderAccount(accounts.get(i % accounts.size()));
+            volume.setLocation(locations.get(i % locations.size()));
+            volumes.add(volume);
+        }
+        return volumes;
+    }
+
+    static List<Network> networks(final int count) {
+        List<CloudProviderAccount> accounts = ModelFixtures.accounts();
+        List<CloudProviderLocation> locations = ModelFixtures.locations();
+        List<Network> networks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Network network = new Network();
+            network.setUuid("network-" + i);
+            network.setName("net-" + i);
+            network.setState(ModelFixtures.NETWORK_STATES[i % ModelFixtures.NETWORK_STATES.length]);
+            network.setCloudProviderAccount(accounts.get(i % accounts.size()));
+            network.setLocation(locations.get(i % locations.size()));
+            Subnet subnet = new Subnet();
+            subnet.setName("subnet-" + i);
+            subnet.setCidr("10." + (i >> 8 & 0xff) + "." + (i & 0xff) + ".0/24");
+            network.setSubnets(Collections.singletonList(subnet));
+            networks.add(network);
+        }
+        return networks;
+    }
+
+}
@@ -0,0 +1,109 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2013 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ */
+package org.ow2.sirocco.cloudmanager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.ow2.sirocco.cloudmanager.VolumeView.VolumeBean;
+import org.ow2.sirocco.cloudmanager.model.cimi.Volume;
+import org.ow2.sirocco.cloudmanager.util.BeanContainerReconciler;
+import org.ow2.sirocco.cloudmanager.util.ResourceState;
+
+import com.vaadin.data.util.BeanContainer;
+import com.vaadin.ui.Table;
+
+/**
+ * Cost of a view refresh through {@link BeanContainerReconciler} when 1% of the rows changed state, compared with
+ * the former remove-all and re-add of every bean.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ReconcileBenchmark {
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    private Table table;
+
+    private BeanContainer<String, VolumeBean> container;
+
+    private List<Volume> volumes;
+
+    private int round;
+
+    @Setup
+    public void setup() {
+        this.container = new BeanContainer<String, VolumeBean>(VolumeBean.class);
+        this.container.setBeanIdProperty("id");
+        this.volumes = ModelFixtures.volumes(this.size);
+        for (Volume volume : this.volumes) {
+            this.container.addBean(new VolumeBean(volume));
+        }
+        this.table = new Table(null, this.container);
+    }
+
+    private List<VolumeBean> freshBeans() {
+        this.round++;
+        List<VolumeBean> beans = new ArrayList<>(this.size);
+        for (int i = 0; i < this.size; i++) {
+            VolumeBean bean = new VolumeBean(this.volumes.get(i));
+            if (i % 100 == this.round % 100) {
+                bean.state = (this.round & 1) == 0 ? ResourceState.AVAILABLE : ResourceState.ERROR;
+            }
+            beans.add(bean);
+        }
+        return beans;
+    }
+
+    @Benchmark
+    public BeanContainerReconciler.Result reconcile() {
+        return BeanContainerReconciler.reconcile(this.table, this.container, this.freshBeans(), "id");
+    }
+
+    @Benchmark
+    public int rebuild() {
+        List<VolumeBean> beans = this.freshBeans();
+        this.container.removeAllItems();
+        for (VolumeBean bean : beans) {
+            this.container.addBean(bean);
+        }
+        return this.container.size();
+    }
+
+}
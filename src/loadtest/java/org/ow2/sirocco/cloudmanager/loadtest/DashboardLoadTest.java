@@ -0,0 +1,232 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2013 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ */
+package org.ow2.sirocco.cloudmanager.loadtest;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.ow2.sirocco.cloudmanager.BackendCommandExecutor;
+import org.ow2.sirocco.cloudmanager.CloudProviderCache;
+import org.ow2.sirocco.cloudmanager.ResourceEventDispatcher;
+import org.ow2.sirocco.cloudmanager.ResourceRefetchPolicy;
+import org.ow2.sirocco.cloudmanager.ResourceSnapshotStore;
+
+import com.vaadin.server.VaadinService;
+
+/**
+ * Opens many concurrent headless dashboard UIs against an in-memory backend, drives them with scripted navigation,
+ * refresh and scroll actions while resource state change events are published, and reports action latency
+ * percentiles, push volume, retained heap per UI and backend call counts. Tuned with system properties:
+ * <ul>
+ * <li>loadtest.sessions: number of concurrent UIs (default 200)</li>
+ * <li>loadtest.tenants: number of tenants the UIs are spread over (default 10)</li>
+ * <li>loadtest.machines: machines per tenant, volumes and addresses are derived from it (default 500)</li>
+ * <li>loadtest.duration: length of the measured run in seconds (default 60)</li>
+ * <li>loadtest.thinkTime: mean pause between two actions of a UI in milliseconds (default 2000)</li>
+ * <li>loadtest.eventRate: resource state change events published per second (default 50)</li>
+ * <li>loadtest.latency: simulated latency of each backend query in milliseconds (default 5)</li>
+ * <li>loadtest.threads: worker threads driving the UIs and running the dashboard executors (default 32)</li>
+ * </ul>
+ */
+public class DashboardLoadTest {
+    private static final int SESSIONS = Integer.getInteger("loadtest.sessions", 200);
+
+    private static final int TENANTS = Integer.getInteger("loadtest.tenants", 10);
+
+    private static final int MACHINES = Integer.getInteger("loadtest.machines", 500);
+
+    private static final int DURATION_SECONDS = Integer.getInteger("loadtest.duration", 60);
+
+    private static final int THINK_TIME_MILLIS = Integer.getInteger("loadtest.thinkTime", 2000);
+
+    private static final int EVENT_RATE = Integer.getInteger("loadtest.eventRate", 50);
+
+    private static final int BACKEND_LATENCY_MILLIS = Integer.getInteger("loadtest.latency", 5);
+
+    private static final int THREADS = Integer.getInteger("loadtest.threads", 32);
+
+    public static void main(final String[] args) throws Exception {
+        FakeBackend backend = new FakeBackend(DashboardLoadTest.TENANTS, DashboardLoadTest.MACHINES,
+            DashboardLoadTest.BACKEND_LATENCY_MILLIS);
+        FakeJms jms = new FakeJms();
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(DashboardLoadTest.THREADS);
+        ScheduledExecutorService driver = new ScheduledThreadPoolExecutor(DashboardLoadTest.THREADS);
+        Injector injector = new Injector(backend, jms, executor);
+        VaadinService service = HeadlessSession.createService();
+
+        System.out.println("Opening " + DashboardLoadTest.SESSIONS + " UIs over " + DashboardLoadTest.TENANTS
+            + " tenants, " + DashboardLoadTest.MACHINES + " machines per tenant");
+        long heapBefore = DashboardLoadTest.usedHeap();
+        LatencyRecorder openLatency = new LatencyRecorder();
+        List<HeadlessSession> sessions = new ArrayList<>();
+        for (int i = 0; i < DashboardLoadTest.SESSIONS; i++) {
+            HeadlessSession session = new HeadlessSession(service, injector, "user-" + i, backend.tenantOfUser(i));
+            long start = System.nanoTime();
+            session.open();
+            openLatency.record(System.nanoTime() - start);
+            sessions.add(session);
+        }
+        long heapAfter = DashboardLoadTest.usedHeap();
+        System.out.println("UI open latency: " + openLatency.summary());
+        System.out.println("Retained heap per UI: " + (heapAfter - heapBefore) / DashboardLoadTest.SESSIONS / 1024
+            + " KB");
+        Map<String, Long> openCalls = DashboardLoadTest.snapshot(backend);
+
+        final LatencyRecorder navigateLatency = new LatencyRecorder();
+        final LatencyRecorder refreshLatency = new LatencyRecorder();
+        final LatencyRecorder scrollLatency = new LatencyRecorder();
+        final AtomicLong failures = new AtomicLong();
+        final long end = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(DashboardLoadTest.DURATION_SECONDS);
+        int seed = 0;
+        for (final HeadlessSession session : sessions) {
+            final Random random = new Random(seed++);
+            DashboardLoadTest.scheduleAction(driver, session, random, end, navigateLatency, refreshLatency,
+                scrollLatency, failures);
+        }
+        if (DashboardLoadTest.EVENT_RATE > 0) {
+            final FakeBackend eventSource = backend;
+            final FakeJms topic = jms;
+            final Random random = new Random(-1);
+            driver.scheduleAtFixedRate(new Runnable() {
+                @Override
+                public void run() {
+                    String tenantId = eventSource.getTenantIds().get(random.nextInt(eventSource.getTenantIds().size()));
+                    topic.publish(tenantId, eventSource.randomStateChange(tenantId, random));
+                }
+            }, 0, TimeUnit.SECONDS.toMicros(1) / DashboardLoadTest.EVENT_RATE, TimeUnit.MICROSECONDS);
+        }
+
+        Thread.sleep(TimeUnit.SECONDS.toMillis(DashboardLoadTest.DURATION_SECONDS));
+        driver.shutdown();
+        driver.awaitTermination(30, TimeUnit.SECONDS);
+        // let the last event batches flush and push
+        Thread.sleep(1000);
+
+        long requests = 0, responseBytes = 0, initialBytes = 0, pushes = 0, pushBytes = 0;
+        for (HeadlessSession session : sessions) {
+            requests += session.requests.get();
+            responseBytes += session.responseBytes.get();
+            initialBytes += session.initialBytes.get();
+            pushes += session.pushes.get();
+            pushBytes += session.pushBytes.get();
+        }
+        System.out.println("Navigate latency: " + navigateLatency.summary());
+        System.out.println("Refresh latency:  " + refreshLatency.summary());
+        System.out.println("Scroll latency:   " + scrollLatency.summary());
+        System.out.println("Failed actions: " + failures.get());
+        System.out.println("Requests: " + requests + ", avg response " + (responseBytes / Math.max(1, requests))
+            + " bytes, avg initial render " + initialBytes / DashboardLoadTest.SESSIONS + " bytes");
+        System.out.println("Events published: " + jms.getPublished() + ", delivered to tenants: " + jms.getDelivered());
+        System.out.println("Pushes: " + pushes + " (" + pushes / DashboardLoadTest.DURATION_SECONDS + "/s), avg "
+            + pushBytes / Math.max(1, pushes) + " bytes");
+        ResourceEventDispatcher dispatcher = injector.get(ResourceEventDispatcher.class, null);
+        System.out.println("Event subscriptions: " + dispatcher.getSubscriptionCount() + ", listeners: "
+            + dispatcher.getListenerCount());
+        CloudProviderCache providerCache = injector.get(CloudProviderCache.class, null);
+        System.out.println("Provider cache: " + providerCache.getAccountsByTenantStats());
+        ResourceRefetchPolicy refetchPolicy = injector.get(ResourceRefetchPolicy.class, null);
+        System.out.println("Event refetch: " + refetchPolicy.getRefetchQueries() + " queries, "
+            + refetchPolicy.getRefetchedResources() + " resources");
+        BackendCommandExecutor commandExecutor = injector.get(BackendCommandExecutor.class, null);
+        System.out.println("Backend commands: " + commandExecutor.getSubmittedCount() + " submitted, "
+            + commandExecutor.getFailedCount() + " failed, " + commandExecutor.getRejectedCount() + " rejected, avg call "
+            + commandExecutor.getAverageCallMillis() + "ms, avg wait " + commandExecutor.getAverageWaitMillis() + "ms");
+        ResourceSnapshotStore snapshotStore = injector.get(ResourceSnapshotStore.class, null);
+        int snapshotRows = 0;
+        for (String tenantId : backend.getTenantIds()) {
+            snapshotRows += snapshotStore.getRowCount(tenantId);
+        }
+        System.out.println("Resource snapshots: " + snapshotStore.getTenantCount() + " tenants, " + snapshotRows
+            + " shared rows");
+        System.out.println("Backend calls while opening UIs / during run:");
+        Map<String, Long> runCalls = DashboardLoadTest.snapshot(backend);
+        for (Map.Entry<String, Long> entry : runCalls.entrySet()) {
+            Long opened = openCalls.get(entry.getKey());
+            long atOpen = opened != null ? opened : 0;
+            System.out.println("  " + entry.getKey() + ": " + atOpen + " / " + (entry.getValue() - atOpen));
+        }
+
+        for (HeadlessSession session : sessions) {
+            session.close();
+        }
+        injector.shutdown();
+        executor.shutdownNow();
+    }
+
+    private static void scheduleAction(final ScheduledExecutorService driver, final HeadlessSession session,
+        final Random random, final long end, final LatencyRecorder navigateLatency,
+        final LatencyRecorder refreshLatency, final LatencyRecorder scrollLatency, final AtomicLong failures) {
+        long delay = (long) (-Math.log(1 - random.nextDouble()) * DashboardLoadTest.THINK_TIME_MILLIS);
+        driver.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (System.currentTimeMillis() >= end) {
+                    return;
+                }
+                try {
+                    int action = random.nextInt(10);
+                    if (action < 3) {
+                        navigateLatency.record(session.navigate(random));
+                    } else if (action < 6) {
+                        refreshLatency.record(session.refresh());
+                    } else {
+                        scrollLatency.record(session.scroll(random));
+                    }
+                } catch (RuntimeException e) {
+                    if (failures.getAndIncrement() == 0) {
+                        e.printStackTrace();
+                    }
+                }
+                DashboardLoadTest.scheduleAction(driver, session, random, end, navigateLatency, refreshLatency,
+                    scrollLatency, failures);
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private static Map<String, Long> snapshot(final FakeBackend backend) {
+        Map<String, Long> calls = new TreeMap<>();
+        for (Map.Entry<String, AtomicLong> entry : backend.getCallCounts().entrySet()) {
+            calls.put(entry.getKey(), entry.getValue().get());
+        }
+        return calls;
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            memory.gc();
+            Thread.sleep(100);
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+}
@@ -0,0 +1,109 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2013 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ */
+package org.ow2.sirocco.cloudmanager.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.ow2.sirocco.cloudmanager.ResourceEventDispatcher;
+
+import com.vaadin.server.VaadinService;
+
+/**
+ * Checks that the dashboard holds one JMS connection whatever the number of UIs and tenants, none once the last UI
+ * is closed, and that a failed subscription leaves no connection behind and is retried. Exits with a non-zero status
+ * if a check fails. Tuned with system properties:
+ * <ul>
+ * <li>loadtest.sessions: UIs opened (default 50)</li>
+ * <li>loadtest.tenants: tenants the UIs are spread over (default 10)</li>
+ * </ul>
+ */
+public class EventConnectionCheck {
+    private static final int SESSIONS = Integer.getInteger("loadtest.sessions", 50);
+
+    private static final int TENANTS = Integer.getInteger("loadtest.tenants", 10);
+
+    private static int failures;
+
+    public static void main(final String[] args) throws Exception {
+        // before MyUI is loaded, so that the failed subscription is retried within the check
+        System.setProperty("sirocco.dashboard.event.listenRetrySeconds", "1");
+        FakeBackend backend = new FakeBackend(EventConnectionCheck.TENANTS, 10, 0);
+        FakeJms jms = new FakeJms();
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(4);
+        Injector injector = new Injector(backend, jms, executor);
+        ResourceEventDispatcher dispatcher = injector.get(ResourceEventDispatcher.class, null);
+        VaadinService service = HeadlessSession.createService();
+
+        List<HeadlessSession> sessions = new ArrayList<>();
+        for (int i = 0; i < EventConnectionCheck.SESSIONS; i++) {
+            HeadlessSession session = new HeadlessSession(service, injector, "user-" + i, backend.tenantOfUser(i));
+            session.open();
+            sessions.add(session);
+            EventConnectionCheck.check(jms.getConnectionsOpen() == 1, "open connections after " + (i + 1) + " UIs",
+                jms.getConnectionsOpen());
+        }
+        EventConnectionCheck.check(jms.getConnectionsCreated() == 1, "connections created for "
+            + EventConnectionCheck.SESSIONS + " UIs", jms.getConnectionsCreated());
+        EventConnectionCheck.check(dispatcher.getSubscriptionCount() == Math.min(EventConnectionCheck.SESSIONS,
+            EventConnectionCheck.TENANTS), "subscriptions", dispatcher.getSubscriptionCount());
+        for (HeadlessSession session : sessions) {
+            session.close();
+        }
+        EventConnectionCheck.check(jms.getConnectionsOpen() == 0, "open connections after closing the UIs",
+            jms.getConnectionsOpen());
+
+        jms.setFailing(true);
+        HeadlessSession session = new HeadlessSession(service, injector, "user-0", backend.tenantOfUser(0));
+        session.open();
+        EventConnectionCheck.check(jms.getConnectionsOpen() == 0, "open connections after a failed subscription",
+            jms.getConnectionsOpen());
+        EventConnectionCheck.check(dispatcher.getSubscriptionCount() == 0, "subscriptions after a failed subscription",
+            dispatcher.getSubscriptionCount());
+        jms.setFailing(false);
+        Thread.sleep(TimeUnit.SECONDS.toMillis(3));
+        EventConnectionCheck.check(dispatcher.getListenerCount() == 1, "listeners after the retry",
+            dispatcher.getListenerCount());
+        EventConnectionCheck.check(jms.getConnectionsOpen() == 1, "open connections after the retry",
+            jms.getConnectionsOpen());
+        session.close();
+        EventConnectionCheck.check(jms.getConnectionsOpen() == 0, "open connections at the end",
+            jms.getConnectionsOpen());
+
+        injector.shutdown();
+        executor.shutdownNow();
+        System.out.println(EventConnectionCheck.failures == 0 ? "All checks passed" : EventConnectionCheck.failures
+            + " checks failed");
+        System.exit(EventConnectionCheck.failures == 0 ? 0 : 1);
+    }
+
+    private static void check(final boolean condition, final String what, final int actual) {
+        if (!condition) {
+            EventConnectionCheck.failures++;
+            System.out.println("FAILED: " + what + ": " + actual);
+        }
+    }
+
+}
@@ -0,0 +1,414 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2013 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ */
+package org.ow2.sirocco.cloudmanager.loadtest;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.ow2.sirocco.cloudmanager.core.api.IdentityContext;
+import org.ow2.sirocco.cloudmanager.core.api.QueryParams;
+import org.ow2.sirocco.cloudmanager.core.api.QueryResult;
+import org.ow2.sirocco.cloudmanager.model.cimi.Address;
+import org.ow2.sirocco.cloudmanager.model.cimi.Credentials;
+import org.ow2.sirocco.cloudmanager.model.cimi.Machine;
+import org.ow2.sirocco.cloudmanager.model.cimi.MachineConfiguration;
+import org.ow2.sirocco.cloudmanager.model.cimi.MachineDisk;
+import org.ow2.sirocco.cloudmanager.model.cimi.MachineImage;
+import org.ow2.sirocco.cloudmanager.model.cimi.MachineNetworkInterface;
+import org.ow2.sirocco.cloudmanager.model.cimi.MachineNetworkInterfaceAddress;
+import org.ow2.sirocco.cloudmanager.model.cimi.Network;
+import org.ow2.sirocco.cloudmanager.model.cimi.Volume;
+import org.ow2.sirocco.cloudmanager.model.cimi.extension.CloudProvider;
+import org.ow2.sirocco.cloudmanager.model.cimi.extension.CloudProviderAccount;
+import org.ow2.sirocco.cloudmanager.model.cimi.extension.CloudProviderLocation;
+import org.ow2.sirocco.cloudmanager.model.cimi.extension.CloudProviderProfile;
+import org.ow2.sirocco.cloudmanager.model.cimi.extension.ProviderMapping;
+import org.ow2.sirocco.cloudmanager.model.cimi.extension.SecurityGroup;
+import org.ow2.sirocco.cloudmanager.model.cimi.extension.Tenant;
+import org.ow2.sirocco.cloudmanager.model.cimi.extension.User;
+
+/**
+ * In-memory stand-in for the Sirocco core managers. Any manager interface is served by one dynamic proxy which
+ * answers list, lookup and user queries from synthetic per-tenant data, optionally after a simulated backend
+ * latency, and counts calls per method. Mutations are accepted and ignored.
+ */
+class FakeBackend {
+    static class TenantData {
+        final Tenant tenant;
+
+        final List<CloudProviderAccount> accounts = new ArrayList<>();
+
+        final List<CloudProviderLocation> locations = new ArrayList<>();
+
+        final List<Machine> machines = new ArrayList<>();
+
+        final List<MachineImage> images = new ArrayList<>();
+
+        final List<MachineConfiguration> configs = new ArrayList<>();
+
+        final List<Volume> volumes = new ArrayList<>();
+
+        final List<Network> networks = new ArrayList<>();
+
+        final List<Address> addresses = new ArrayList<>();
+
+        final List<SecurityGroup> securityGroups = new ArrayList<>();
+
+        final List<Credentials> credentials = new ArrayList<>();
+
+        TenantData(final Tenant tenant) {
+            this.tenant = tenant;
+        }
+    }
+
+    private static final ThreadLocal<String> CURRENT_TENANT = new ThreadLocal<>();
+
+    private final Map<String, TenantData> tenants = new ConcurrentHashMap<>();
+
+    private final List<String> tenantIds = new ArrayList<>();
+
+    private final Map<String, Object> byUuid = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, AtomicLong> calls = new ConcurrentHashMap<>();
+
+    private final long latencyMillis;
+
+    FakeBackend(final int tenantCount, final int machinesPerTenant, final long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+        for (int t = 0; t < tenantCount; t++) {
+            Tenant tenant = new Tenant();
+            tenant.setUuid("tenant-" + t);
+            tenant.setName("Tenant " + t);
+            TenantData data = new TenantData(tenant);
+            this.populate(data, t, machinesPerTenant);
+            this.tenants.put(tenant.getUuid(), data);
+            this.tenantIds.add(tenant.getUuid());
+        }
+    }
+
+    static String getCurrentTenant() {
+        return FakeBackend.CURRENT_TENANT.get();
+    }
+
+    static void setCurrentTenant(final String tenantId) {
+        FakeBackend.CURRENT_TENANT.set(tenantId);
+    }
+
+    List<String> getTenantIds() {
+        return this.tenantIds;
+    }
+
+    String tenantOfUser(final int userIndex) {
+        return this.tenantIds.get(userIndex % this.tenantIds.size());
+    }
+
+    Map<String, AtomicLong> getCallCounts() {
+        return this.calls;
+    }
+
+    <T> T proxy(final Class<T> managerType) {
+        return managerType.cast(Proxy.newProxyInstance(managerType.getClassLoader(), new Class<?>[] {managerType},
+            new InvocationHandler() {
+                @Override
+                public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                    return FakeBackend.this.handle(managerType, method, args != null ? args : new Object[0]);
+                }
+            }));
+    }
+
+    /**
+     * Flips the state of a random machine or volume of the tenant and returns it, as the backend would before
+     * publishing a state change event.
+     */
+    synchronized Object randomStateChange(final String tenantId, final Random random) {
+        TenantData data = this.tenants.get(tenantId);
+        if (random.nextInt(4) == 0 && !data.volumes.isEmpty()) {
+            Volume volume = data.volumes.get(random.nextInt(data.volumes.size()));
+            Reflection.setState(volume, volume.getState().toString().equals("AVAILABLE") ? "CREATING" : "AVAILABLE");
+            return volume;
+        }
+        Machine machine = data.machines.get(random.nextInt(data.machines.size()));
+        Reflection.setState(machine, machine.getState().toString().equals("STARTED") ? "STOPPED" : "STARTED");
+        return machine;
+    }
+
+    private Object handle(final Class<?> managerType, final Method method, final Object[] args) {
+        String name = method.getName();
+        if (method.getDeclaringClass() == Object.class) {
+            switch (name) {
+            case "equals":
+                return args[0] == this;
+            case "hashCode":
+                return System.identityHashCode(this);
+            default:
+                return managerType.getSimpleName() + "@fake";
+            }
+        }
+        if (managerType == IdentityContext.class && name.equals("getTenantId")) {
+            return FakeBackend.getCurrentTenant();
+        }
+        AtomicLong counter = this.calls.get(managerType.getSimpleName() + "." + name);
+        if (counter == null) {
+            this.calls.putIfAbsent(managerType.getSimpleName() + "." + name, new AtomicLong());
+            counter = this.calls.get(managerType.getSimpleName() + "." + name);
+        }
+        counter.incrementAndGet();
+        if (this.latencyMillis > 0 && name.startsWith("get")) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(this.latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        switch (name) {
+        case "getMachines":
+            return this.result(method, this.currentTenantData().machines, args);
+        case "getMachineImages":
+            return this.result(method, this.currentTenantData().images, args);
+        case "getMachineConfigurations":
+            return this.result(method, this.currentTenantData().configs, args);
+        case "getVolumes":
+            return this.result(method, this.currentTenantData().volumes, args);
+        case "getNetworks":
+            return this.result(method, this.currentTenantData().networks, args);
+        case "getAddresses":
+            return this.result(method, this.currentTenantData().addresses, args);
+        case "getSecurityGroups":
+            return this.result(method, this.currentTenantData().securityGroups, args);
+        case "getCredentials":
+            return this.result(method, this.currentTenantData().credentials, args);
+        case "getCloudProviderAccountsByTenant":
+            return this.result(method, this.tenants.get(args[0]).accounts, new Object[0]);
+        case "getCloudProviderProfiles":
+            return this.result(method, Collections.singletonList(this.profile("openstack")), new Object[0]);
+        case "getCloudProviderProfileByType":
+            return this.profile((String) args[0]);
+        case "getUserByUsername":
+            return this.user((String) args[0]);
+        default:
+            break;
+        }
+        if ((name.endsWith("ByUuid") || name.endsWith("ById")) && args.length == 1) {
+            return this.byUuid.get(String.valueOf(args[0]));
+        }
+        if (name.startsWith("setTenantId") && args.length == 1) {
+            FakeBackend.setCurrentTenant((String) args[0]);
+        }
+        return Reflection.defaultValue(method.getReturnType());
+    }
+
+    /**
+     * Returns the data of the tenant set on the identity context of the calling thread. Like the real managers, tenant
+     * scoped queries fail on a thread without one instead of answering for an arbitrary tenant.
+     */
+    private TenantData currentTenantData() {
+        String tenantId = FakeBackend.CURRENT_TENANT.get();
+        if (tenantId == null) {
+            throw new IllegalStateException("No tenant in the identity context of " + Thread.currentThread().getName());
+        }
+        return this.tenants.get(tenantId);
+    }
+
+    private Object result(final Method method, final List<?> items, final Object[] args) {
+        List<?> selected = items;
+        int count = items.size();
+        for (Object arg : args) {
+            if (arg instanceof QueryParams) {
+                Object first = Reflection.get(arg, "first");
+                Object last = Reflection.get(arg, "last");
+                int from = first instanceof Integer ? Math.max(0, (Integer) first - 1) : 0;
+                int to = last instanceof Integer ? Math.min(count, (Integer) last) : count;
+                selected = from < to ? items.subList(from, to) : Collections.emptyList();
+            }
+        }
+        if (List.class.isAssignableFrom(method.getReturnType())) {
+            return new ArrayList<Object>(selected);
+        }
+        QueryResult<?> result = Reflection.newInstance(QueryResult.class, count, new ArrayList<Object>(selected));
+        if (result == null) {
+            result = Reflection.newInstance(QueryResult.class);
+            Reflection.set(result, "count", count);
+            Reflection.set(result, "items", new ArrayList<Object>(selected));
+        }
+        return result;
+    }
+
+    private User user(final String userName) {
+        int index = Math.abs(userName.hashCode());
+        int separator = userName.lastIndexOf('-');
+        if (separator >= 0) {
+            try {
+                index = Integer.parseInt(userName.substring(separator + 1));
+            } catch (NumberFormatException e) {
+                // keep hash based tenant
+            }
+        }
+        User user = new User();
+        Reflection.set(user, "username", userName);
+        Reflection.set(user, "tenants", Collections.singletonList(this.tenants.get(this.tenantOfUser(index)).tenant));
+        return user;
+    }
+
+    private CloudProviderProfile profile(final String type) {
+        CloudProviderProfile profile = new CloudProviderProfile();
+        Reflection.trySet(profile, "type", type);
+        Reflection.trySet(profile, "description", type);
+        return profile;
+    }
+
+    private void populate(final TenantData data, final int t, final int machineCount) {
+        String[][] places = { {"FR", "France", "Ile-de-France"}, {"US", "United States", "Virginia"}};
+        for (int l = 0; l < places.length; l++) {
+            CloudProviderLocation location = new CloudProviderLocation();
+            location.setUuid("t" + t + "-location-" + l);
+            location.setIso3166_1(places[l][0]);
+            location.setCountryName(places[l][1]);
+            location.setStateName(places[l][2]);
+            data.locations.add(location);
+        }
+        for (int a = 0; a < 3; a++) {
+            CloudProvider provider = new CloudProvider();
+            provider.setUuid("t" + t + "-provider-" + a);
+            provider.setDescription("Provider " + a);
+            Reflection.trySet(provider, "cloudProviderType", "openstack");
+            Reflection.trySet(provider, "endpoint", "http://provider" + a + ".example.org");
+            Reflection.set(provider, "cloudProviderLocations", data.locations);
+            CloudProviderAccount account = new CloudProviderAccount();
+            account.setUuid("t" + t + "-account-" + a);
+            Reflection.trySet(account, "login", "operator");
+            account.setCloudProvider(provider);
+            this.register(data.accounts, account.getUuid(), account);
+        }
+
+        for (int i = 0; i < 100; i++) {
+            MachineImage image = new MachineImage();
+            image.setUuid("t" + t + "-image-" + i);
+            image.setName("image-" + i);
+            Reflection.setState(image, "AVAILABLE");
+            Reflection.set(image, "providerMappings", this.mappings(data, i));
+            this.register(data.images, image.getUuid(), image);
+        }
+        for (int i = 0; i < 20; i++) {
+            MachineConfiguration config = new MachineConfiguration();
+            config.setUuid("t" + t + "-config-" + i);
+            config.setName("config-" + i);
+            Reflection.trySet(config, "cpu", 1 + i % 8);
+            Reflection.trySet(config, "memory", (1 + i % 16) * 1024 * 1024);
+            Reflection.set(config, "providerMappings", this.mappings(data, i));
+            this.register(data.configs, config.getUuid(), config);
+        }
+        for (int i = 0; i < 50; i++) {
+            Network network = new Network();
+            network.setUuid("t" + t + "-network-" + i);
+            network.setName("net-" + i);
+            Reflection.setState(network, "STARTED");
+            network.setCloudProviderAccount(data.accounts.get(i % data.accounts.size()));
+            network.setLocation(data.locations.get(i % data.locations.size()));
+            this.register(data.networks, network.getUuid(), network);
+        }
+        for (int i = 0; i < machineCount; i++) {
+            Machine machine = new Machine();
+            machine.setUuid("t" + t + "-machine-" + i);
+            machine.setName("vm-" + i);
+            Reflection.setState(machine, i % 3 == 0 ? "STOPPED" : "STARTED");
+            machine.setCpu(1 << (i % 4));
+            machine.setMemory((512 << (i % 6)) * 1024);
+            machine.setCloudProviderAccount(data.accounts.get(i % data.accounts.size()));
+            machine.setLocation(data.locations.get(i % data.locations.size()));
+            MachineDisk disk = new MachineDisk();
+            disk.setCapacity((10 + i % 90) * 1000 * 1000);
+            machine.setDisks(Collections.singletonList(disk));
+            Address ip = new Address();
+            ip.setIp("10." + t + "." + (i >> 8 & 0xff) + "." + (i & 0xff));
+            MachineNetworkInterfaceAddress nicAddress = new MachineNetworkInterfaceAddress();
+            nicAddress.setAddress(ip);
+            MachineNetworkInterface nic = new MachineNetworkInterface();
+            nic.setNetwork(data.networks.get(i % data.networks.size()));
+            nic.setAddresses(Collections.singletonList(nicAddress));
+            machine.setNetworkInterfaces(Collections.singletonList(nic));
+            this.register(data.machines, machine.getUuid(), machine);
+        }
+        for (int i = 0; i < machineCount / 2; i++) {
+            Volume volume = new Volume();
+            volume.setUuid("t" + t + "-volume-" + i);
+            volume.setName("vol-" + i);
+            Reflection.setState(volume, "AVAILABLE");
+            volume.setCapacity((1 + i % 500) * 1000 * 1000);
+            volume.setCloudProviderAccount(data.accounts.get(i % data.accounts.size()));
+            volume.setLocation(data.locations.get(i % data.locations.size()));
+            this.register(data.volumes, volume.getUuid(), volume);
+        }
+        for (int i = 0; i < machineCount / 4; i++) {
+            Address address = new Address();
+            address.setUuid("t" + t + "-address-" + i);
+            address.setIp("192.0." + (i >> 8 & 0xff) + "." + (i & 0xff));
+            Reflection.setState(address, "ALLOCATED");
+            address.setCloudProviderAccount(data.accounts.get(i % data.accounts.size()));
+            address.setLocation(data.locations.get(i % data.locations.size()));
+            this.register(data.addresses, address.getUuid(), address);
+        }
+        for (int i = 0; i < 50; i++) {
+            SecurityGroup group = new SecurityGroup();
+            group.setUuid("t" + t + "-secgroup-" + i);
+            group.setName("secgroup-" + i);
+            Reflection.setState(group, "AVAILABLE");
+            group.setCloudProviderAccount(data.accounts.get(i % data.accounts.size()));
+            group.setLocation(data.locations.get(i % data.locations.size()));
+            this.register(data.securityGroups, group.getUuid(), group);
+        }
+        for (int i = 0; i < 10; i++) {
+            Credentials credentials = new Credentials();
+            credentials.setUuid("t" + t + "-keypair-" + i);
+            credentials.setName("keypair-" + i);
+            Reflection.trySet(credentials, "created", new Date());
+            this.register(data.credentials, credentials.getUuid(), credentials);
+        }
+    }
+
+    private List<ProviderMapping> mappings(final TenantData data, final int i) {
+        ProviderMapping mapping = new ProviderMapping();
+        Reflection.set(mapping, "providerAccount", data.accounts.get(i % data.accounts.size()));
+        Reflection.set(mapping, "providerLocation", data.locations.get(i % data.locations.size()));
+        List<ProviderMapping> mappings = new ArrayList<>();
+        mappings.add(mapping);
+        return mappings;
+    }
+
+    private <T> void register(final List<T> list, final String uuid, final T resource) {
+        list.add(resource);
+        this.byUuid.put(uuid, resource);
+    }
+
+}
@@ -0,0 +1,230 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2013 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ */
+package org.ow2.sirocco.cloudmanager.loadtest;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageListener;
+import javax.jms.Session;
+import javax.jms.Topic;
+
+import org.ow2.sirocco.cloudmanager.core.api.ResourceStateChangeEvent;
+
+/**
+ * Minimal in-process JMS topic: consumers created with a "tenantId = '...'" selector receive the events published
+ * for that tenant, synchronously on the publishing thread. Connections are counted, and session creation can be made
+ * to fail to exercise the clean-up of half-initialized subscriptions.
+ */
+class FakeJms {
+    private final Map<String, List<MessageListener>> listenersByTenant = new ConcurrentHashMap<>();
+
+    private final AtomicLong published = new AtomicLong();
+
+    private final AtomicLong delivered = new AtomicLong();
+
+    private final AtomicInteger connectionsCreated = new AtomicInteger();
+
+    private final AtomicInteger connectionsOpen = new AtomicInteger();
+
+    private volatile boolean failing;
+
+    final Topic topic = FakeJms.proxy(Topic.class, new InvocationHandler() {
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args) {
+            return method.getName().equals("getTopicName") ? "ResourceStateChangeTopic" : FakeJms.objectMethod(proxy,
+                method, args);
+        }
+    });
+
+    final ConnectionFactory connectionFactory = FakeJms.proxy(ConnectionFactory.class, new InvocationHandler() {
+        @Override
+        public Object invoke(final Object proxy, final Method method, final Object[] args) {
+            if (method.getName().equals("createConnection")) {
+                return FakeJms.this.newConnection();
+            }
+            return FakeJms.objectMethod(proxy, method, args);
+        }
+    });
+
+    void publish(final String tenantId, final Object resource) {
+        this.published.incrementAndGet();
+        List<MessageListener> listeners = this.listenersByTenant.get(tenantId);
+        if (listeners == null) {
+            return;
+        }
+        Message message = this.newMessage(FakeJms.newEvent(resource));
+        for (MessageListener listener : listeners) {
+            this.delivered.incrementAndGet();
+            listener.onMessage(message);
+        }
+    }
+
+    long getPublished() {
+        return this.published.get();
+    }
+
+    long getDelivered() {
+        return this.delivered.get();
+    }
+
+    int getConnectionsCreated() {
+        return this.connectionsCreated.get();
+    }
+
+    int getConnectionsOpen() {
+        return this.connectionsOpen.get();
+    }
+
+    /**
+     * While failing, createSession throws as a broker which accepted the connection but then went away would.
+     */
+    void setFailing(final boolean failing) {
+        this.failing = failing;
+    }
+
+    private Connection newConnection() {
+        this.connectionsCreated.incrementAndGet();
+        this.connectionsOpen.incrementAndGet();
+        return FakeJms.proxy(Connection.class, new InvocationHandler() {
+            private boolean closed;
+
+            @Override
+            public Object invoke(final Object proxy, final Method method, final Object[] args) throws JMSException {
+                switch (method.getName()) {
+                case "createSession":
+                    if (FakeJms.this.failing) {
+                        throw new JMSException("Broker unavailable");
+                    }
+                    return FakeJms.this.newSession();
+                case "close":
+                    synchronized (this) {
+                        if (!this.closed) {
+                            this.closed = true;
+                            FakeJms.this.connectionsOpen.decrementAndGet();
+                        }
+                    }
+                    return null;
+                default:
+                    return FakeJms.objectMethod(proxy, method, args);
+                }
+            }
+        });
+    }
+
+    private Session newSession() {
+        return FakeJms.proxy(Session.class, new InvocationHandler() {
+            @Override
+            public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                if (method.getName().equals("createConsumer")) {
+                    String selector = args.length > 1 ? (String) args[1] : "";
+                    return FakeJms.this.newConsumer(selector.substring(selector.indexOf('\'') + 1,
+                        selector.lastIndexOf('\'')));
+                }
+                return FakeJms.objectMethod(proxy, method, args);
+            }
+        });
+    }
+
+    private MessageConsumer newConsumer(final String tenantId) {
+        return FakeJms.proxy(MessageConsumer.class, new InvocationHandler() {
+            private MessageListener listener;
+
+            @Override
+            public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                switch (method.getName()) {
+                case "setMessageListener":
+                    this.listener = (MessageListener) args[0];
+                    List<MessageListener> listeners = FakeJms.this.listenersByTenant.get(tenantId);
+                    if (listeners == null) {
+                        listeners = new CopyOnWriteArrayList<>();
+                        FakeJms.this.listenersByTenant.put(tenantId, listeners);
+                    }
+                    listeners.add(this.listener);
+                    return null;
+                case "getMessageListener":
+                    return this.listener;
+                case "close":
+                    List<MessageListener> registered = FakeJms.this.listenersByTenant.get(tenantId);
+                    if (registered != null) {
+                        registered.remove(this.listener);
+                    }
+                    return null;
+                default:
+                    return FakeJms.objectMethod(proxy, method, args);
+                }
+            }
+        });
+    }
+
+    private Message newMessage(final ResourceStateChangeEvent event) {
+        return FakeJms.proxy(Message.class, new InvocationHandler() {
+            @Override
+            public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                if (method.getName().equals("getBody")) {
+                    return event;
+                }
+                return FakeJms.objectMethod(proxy, method, args);
+            }
+        });
+    }
+
+    private static ResourceStateChangeEvent newEvent(final Object resource) {
+        ResourceStateChangeEvent event = Reflection.newInstance(ResourceStateChangeEvent.class, resource);
+        if (event == null) {
+            event = Reflection.newInstance(ResourceStateChangeEvent.class);
+            Reflection.set(event, "resource", resource);
+        }
+        return event;
+    }
+
+    static Object objectMethod(final Object proxy, final Method method, final Object[] args) {
+        switch (method.getName()) {
+        case "equals":
+            return proxy == args[0];
+        case "hashCode":
+            return System.identityHashCode(proxy);
+        case "toString":
+            return proxy.getClass().getInterfaces()[0].getSimpleName() + "@fake";
+        default:
+            return Reflection.defaultValue(method.getReturnType());
+        }
+    }
+
+    static <T> T proxy(final Class<T> type, final InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, handler));
+    }
+
+}
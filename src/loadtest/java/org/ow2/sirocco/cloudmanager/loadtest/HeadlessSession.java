@@ -0,0 +1,411 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2013 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ */
+package org.ow2.sirocco.cloudmanager.loadtest;
+
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.security.Principal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.ow2.sirocco.cloudmanager.MyUI;
+
+import com.vaadin.server.DefaultDeploymentConfiguration;
+import com.vaadin.server.ServiceException;
+import com.vaadin.server.VaadinRequest;
+import com.vaadin.server.VaadinService;
+import com.vaadin.server.VaadinServlet;
+import com.vaadin.server.VaadinServletService;
+import com.vaadin.server.VaadinSession;
+import com.vaadin.shared.communication.PushMode;
+import com.vaadin.ui.Button;
+import com.vaadin.ui.Component;
+import com.vaadin.ui.HasComponents;
+import com.vaadin.ui.Table;
+import com.vaadin.ui.Tree;
+import com.vaadin.ui.UI;
+import com.vaadin.util.CurrentInstance;
+
+/**
+ * One simulated browser tab: a {@link MyUI} initialized in its own {@link VaadinSession} without a servlet container.
+ * User actions run the way a request would, under the session lock, and are followed by the serialization of the
+ * UIDL response; server pushes go through a counting push connection which serializes the same way. The UIDL
+ * writer is located reflectively since it is not a stable Vaadin API; if it cannot be used the connectors are only
+ * marked clean and byte counts stay at zero.
+ */
+class HeadlessSession {
+    private static class LocalSession extends VaadinSession {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Lock lock = new ReentrantLock();
+
+        LocalSession(final VaadinService service) {
+            super(service);
+        }
+
+        @Override
+        public Lock getLockInstance() {
+            return this.lock;
+        }
+    }
+
+    private static final Method UIDL_WRITE = HeadlessSession.findUidlWrite();
+
+    private static int nextUIId;
+
+    private final Injector injector;
+
+    private final String userName;
+
+    private final String tenantId;
+
+    private final VaadinService service;
+
+    private final VaadinSession session;
+
+    private final Map<Class<?>, Object> uiScope = new HashMap<>();
+
+    private MyUI ui;
+
+    final AtomicLong requests = new AtomicLong();
+
+    final AtomicLong responseBytes = new AtomicLong();
+
+    final AtomicLong pushes = new AtomicLong();
+
+    final AtomicLong pushBytes = new AtomicLong();
+
+    final AtomicLong initialBytes = new AtomicLong();
+
+    HeadlessSession(final VaadinService service, final Injector injector, final String userName, final String tenantId) {
+        this.service = service;
+        this.injector = injector;
+        this.userName = userName;
+        this.tenantId = tenantId;
+        this.session = new LocalSession(service);
+        this.session.setConfiguration(service.getDeploymentConfiguration());
+        try {
+            Class<?> managerType = Class.forName("com.vaadin.server.LegacyCommunicationManager");
+            Reflection.set(this.session, "communicationManager", Reflection.newInstance(managerType, this.session));
+        } catch (ClassNotFoundException e) {
+            // Vaadin version without a legacy communication manager
+        }
+    }
+
+    static VaadinService createService() throws ServiceException {
+        Properties initParameters = new Properties();
+        initParameters.setProperty("productionMode", "true");
+        return new VaadinServletService(new VaadinServlet(), new DefaultDeploymentConfiguration(HeadlessSession.class,
+            initParameters));
+    }
+
+    String getTenantId() {
+        return this.tenantId;
+    }
+
+    /**
+     * Creates and initializes the UI as the first request of a browser tab would, including the initial full
+     * repaint.
+     */
+    void open() {
+        final int uiId;
+        synchronized (HeadlessSession.class) {
+            uiId = HeadlessSession.nextUIId++;
+        }
+        this.request(new Runnable() {
+            @Override
+            public void run() {
+                HeadlessSession.this.ui = HeadlessSession.this.injector.get(MyUI.class, HeadlessSession.this.uiScope);
+                UI ui = HeadlessSession.this.ui;
+                ui.setSession(HeadlessSession.this.session);
+                CurrentInstance.set(UI.class, ui);
+                try {
+                    ui.getPushConfiguration().setPushMode(PushMode.MANUAL);
+                    HeadlessSession.this.installPushConnection();
+                } catch (IllegalStateException e) {
+                    // push support not on the classpath, UI access still works without it
+                }
+                ui.doInit(HeadlessSession.this.newRequest(), uiId);
+                HeadlessSession.this.session.addUI(ui);
+            }
+        }, true);
+    }
+
+    void close() {
+        this.request(new Runnable() {
+            @Override
+            public void run() {
+                HeadlessSession.this.ui.close();
+                HeadlessSession.this.session.removeUI(HeadlessSession.this.ui);
+                HeadlessSession.this.injector.destroy(HeadlessSession.this.uiScope);
+            }
+        }, false);
+    }
+
+    /**
+     * Selects a random leaf of the left menu.
+     */
+    long navigate(final Random random) {
+        return this.request(new Runnable() {
+            @Override
+            public void run() {
+                Tree tree = HeadlessSession.this.find(Tree.class, null);
+                if (tree == null) {
+                    return;
+                }
+                List<Object> leaves = new ArrayList<>();
+                for (Object itemId : tree.getItemIds()) {
+                    if (!tree.hasChildren(itemId)) {
+                        leaves.add(itemId);
+                    }
+                }
+                tree.setValue(leaves.get(random.nextInt(leaves.size())));
+            }
+        }, false);
+    }
+
+    /**
+     * Selects the given item of the left menu and returns the size in bytes of the response.
+     */
+    long show(final Object menuItemId) {
+        long before = this.responseBytes.get();
+        this.request(new Runnable() {
+            @Override
+            public void run() {
+                Tree tree = HeadlessSession.this.find(Tree.class, null);
+                if (tree != null) {
+                    tree.setValue(menuItemId);
+                }
+            }
+        }, false);
+        return this.responseBytes.get() - before;
+    }
+
+    /**
+     * Makes the table of the current view render all its rows, as setPageLength(0) does, and returns the size in
+     * bytes of the response.
+     */
+    long renderAllRows() {
+        long before = this.responseBytes.get();
+        this.request(new Runnable() {
+            @Override
+            public void run() {
+                Table table = HeadlessSession.this.find(Table.class, null);
+                if (table != null) {
+                    table.setPageLength(0);
+                }
+            }
+        }, false);
+        return this.responseBytes.get() - before;
+    }
+
+    /**
+     * Clicks the Refresh button of the current view.
+     */
+    long refresh() {
+        return this.request(new Runnable() {
+            @Override
+            public void run() {
+                Button button = HeadlessSession.this.find(Button.class, "Refresh");
+                if (button != null) {
+                    button.click();
+                }
+            }
+        }, false);
+    }
+
+    /**
+     * Scrolls the table of the current view to a random row.
+     */
+    long scroll(final Random random) {
+        return this.request(new Runnable() {
+            @Override
+            public void run() {
+                Table table = HeadlessSession.this.find(Table.class, null);
+                if (table != null && table.size() > 0) {
+                    table.setCurrentPageFirstItemIndex(random.nextInt(table.size()));
+                }
+            }
+        }, false);
+    }
+
+    /**
+     * Runs the action as a request of this session and returns its latency in nanoseconds, including the time
+     * waiting for the session lock and writing the response.
+     */
+    private long request(final Runnable action, final boolean repaintAll) {
+        long start = System.nanoTime();
+        FakeBackend.setCurrentTenant(this.tenantId);
+        this.session.lock();
+        try {
+            CurrentInstance.set(VaadinService.class, this.service);
+            CurrentInstance.set(VaadinSession.class, this.session);
+            CurrentInstance.set(VaadinRequest.class, this.newRequest());
+            if (this.ui != null) {
+                CurrentInstance.set(UI.class, this.ui);
+            }
+            action.run();
+            if (this.ui != null && this.ui.getSession() != null) {
+                long bytes = this.writeUidl(repaintAll, false);
+                (repaintAll ? this.initialBytes : this.responseBytes).addAndGet(bytes);
+            }
+            this.requests.incrementAndGet();
+        } finally {
+            this.session.unlock();
+            CurrentInstance.clearAll();
+            FakeBackend.setCurrentTenant(null);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private long writeUidl(final boolean repaintAll, final boolean async) {
+        if (HeadlessSession.UIDL_WRITE != null) {
+            try {
+                Writer writer = new StringWriter();
+                Object[] args = new Object[HeadlessSession.UIDL_WRITE.getParameterTypes().length];
+                args[0] = this.ui;
+                args[1] = writer;
+                for (int i = 2; i < args.length; i++) {
+                    args[i] = i == 2 ? repaintAll : async;
+                }
+                Reflection.invoke(HeadlessSession.UIDL_WRITE, Reflection.newInstance(HeadlessSession.UIDL_WRITE
+                    .getDeclaringClass()), args);
+                return writer.toString().length();
+            } catch (IllegalStateException e) {
+                e.printStackTrace();
+            } finally {
+                this.ui.getConnectorTracker().markAllConnectorsClean();
+            }
+        } else {
+            this.ui.getConnectorTracker().markAllConnectorsClean();
+        }
+        return 0;
+    }
+
+    private void installPushConnection() {
+        for (Method method : UI.class.getMethods()) {
+            if (method.getName().equals("setPushConnection") && method.getParameterTypes().length == 1) {
+                Class<?> connectionType = method.getParameterTypes()[0];
+                Object connection = Proxy.newProxyInstance(connectionType.getClassLoader(),
+                    new Class<?>[] {connectionType}, new InvocationHandler() {
+                        @Override
+                        public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                            switch (method.getName()) {
+                            case "push":
+                                HeadlessSession.this.pushes.incrementAndGet();
+                                HeadlessSession.this.pushBytes.addAndGet(HeadlessSession.this.writeUidl(false, true));
+                                return null;
+                            case "isConnected":
+                                return true;
+                            default:
+                                return FakeJms.objectMethod(proxy, method, args);
+                            }
+                        }
+                    });
+                Reflection.invoke(method, this.ui, connection);
+            }
+        }
+    }
+
+    private VaadinRequest newRequest() {
+        final Map<String, String> parameters = new HashMap<>();
+        parameters.put("v-loc", "http://localhost:8080/sirocco-dashboard/");
+        parameters.put("v-cw", "1280");
+        parameters.put("v-ch", "800");
+        final Principal principal = new Principal() {
+            @Override
+            public String getName() {
+                return HeadlessSession.this.userName;
+            }
+        };
+        return FakeJms.proxy(VaadinRequest.class, new InvocationHandler() {
+            @Override
+            public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                switch (method.getName()) {
+                case "getUserPrincipal":
+                    return principal;
+                case "getRemoteUser":
+                    return HeadlessSession.this.userName;
+                case "getParameter":
+                    return parameters.get(args[0]);
+                case "getService":
+                    return HeadlessSession.this.service;
+                case "getContextPath":
+                    return "/sirocco-dashboard";
+                default:
+                    return FakeJms.objectMethod(proxy, method, args);
+                }
+            }
+        });
+    }
+
+    /**
+     * Breadth-first search of the UI (windows included) for an attached, enabled component of the given type and
+     * optional caption.
+     */
+    private <T extends Component> T find(final Class<T> type, final String caption) {
+        Deque<Component> queue = new ArrayDeque<>();
+        queue.add(this.ui);
+        while (!queue.isEmpty()) {
+            Component component = queue.poll();
+            if (type.isInstance(component) && component.isEnabled()
+                && (caption == null || caption.equals(component.getCaption()))) {
+                return type.cast(component);
+            }
+            if (component instanceof HasComponents) {
+                for (Component child : (HasComponents) component) {
+                    queue.add(child);
+                }
+            }
+        }
+        return null;
+    }
+
+    private static Method findUidlWrite() {
+        try {
+            for (Method method : Class.forName("com.vaadin.server.communication.UidlWriter").getMethods()) {
+                Class<?>[] params = method.getParameterTypes();
+                if (method.getName().equals("write") && params.length >= 2 && params[0] == UI.class
+                    && params[1] == Writer.class) {
+                    return method;
+                }
+            }
+        } catch (ClassNotFoundException e) {
+            // fall through
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,216 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2013 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ */
+package org.ow2.sirocco.cloudmanager.loadtest;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Proxy;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.enterprise.concurrent.ManagedExecutorService;
+import javax.enterprise.concurrent.ManagedScheduledExecutorService;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.inject.Instance;
+import javax.inject.Inject;
+import javax.jms.ConnectionFactory;
+import javax.jms.Topic;
+
+import com.vaadin.cdi.CDIUI;
+import com.vaadin.cdi.UIScoped;
+
+/**
+ * Just enough of CDI to wire the dashboard outside a container: fields annotated with {@link Inject} or
+ * {@link Resource} are resolved by type, manager interfaces are served by the {@link FakeBackend},
+ * {@link ApplicationScoped} beans are singletons, {@link UIScoped} beans are shared within one UI scope map and
+ * other classes are instantiated per injection point or {@link Instance#get()} call. {@link PostConstruct} and
+ * {@link PreDestroy} methods are honoured.
+ */
+class Injector {
+    private final FakeBackend backend;
+
+    private final Map<Class<?>, Object> singletons = new ConcurrentHashMap<>();
+
+    Injector(final FakeBackend backend, final FakeJms jms, final ScheduledExecutorService executor) {
+        this.backend = backend;
+        this.singletons.put(Topic.class, jms.topic);
+        this.singletons.put(ConnectionFactory.class, jms.connectionFactory);
+        Object managedExecutor = Injector.managedExecutor(executor);
+        this.singletons.put(ManagedExecutorService.class, managedExecutor);
+        this.singletons.put(ManagedScheduledExecutorService.class, managedExecutor);
+    }
+
+    /**
+     * Returns the bean of the given type, creating it in the given UI scope if it is UI scoped.
+     */
+    synchronized <T> T get(final Class<T> type, final Map<Class<?>, Object> uiScope) {
+        Object bean = this.singletons.get(type);
+        if (bean == null && uiScope != null) {
+            bean = uiScope.get(type);
+        }
+        if (bean == null) {
+            if (type.isInterface()) {
+                bean = this.backend.proxy(type);
+                this.singletons.put(type, bean);
+            } else if (type.isAnnotationPresent(ApplicationScoped.class)) {
+                bean = this.create(type, this.singletons, uiScope);
+            } else if (type.isAnnotationPresent(UIScoped.class) || type.isAnnotationPresent(CDIUI.class)) {
+                bean = this.create(type, uiScope, uiScope);
+            } else {
+                bean = this.create(type, null, uiScope);
+            }
+        }
+        return type.cast(bean);
+    }
+
+    /**
+     * Calls the {@link PreDestroy} methods of the beans of a UI scope.
+     */
+    void destroy(final Map<Class<?>, Object> uiScope) {
+        for (Object bean : new ArrayList<>(uiScope.values())) {
+            Injector.callAnnotated(bean, PreDestroy.class);
+        }
+        uiScope.clear();
+    }
+
+    /**
+     * Calls the {@link PreDestroy} methods of the application scoped beans.
+     */
+    void shutdown() {
+        for (Map.Entry<Class<?>, Object> entry : this.singletons.entrySet()) {
+            if (entry.getKey().isAnnotationPresent(ApplicationScoped.class)) {
+                Injector.callAnnotated(entry.getValue(), PreDestroy.class);
+            }
+        }
+    }
+
+    private Object create(final Class<?> type, final Map<Class<?>, Object> scope, final Map<Class<?>, Object> uiScope) {
+        Object bean = Reflection.newInstance(type);
+        if (bean == null) {
+            throw new IllegalStateException("No default constructor for " + type.getName());
+        }
+        // registered before injection so that circular references resolve to the same instance
+        if (scope != null) {
+            scope.put(type, bean);
+        }
+        for (Class<?> c = type; c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers())
+                    && (field.isAnnotationPresent(Inject.class) || field.isAnnotationPresent(Resource.class))) {
+                    Object value;
+                    if (field.getType() == Instance.class) {
+                        Type beanType = ((ParameterizedType) field.getGenericType()).getActualTypeArguments()[0];
+                        value = this.instance((Class<?>) beanType, uiScope);
+                    } else {
+                        value = this.get(field.getType(), uiScope);
+                    }
+                    Reflection.setField(field, bean, value);
+                }
+            }
+        }
+        Injector.callAnnotated(bean, PostConstruct.class);
+        return bean;
+    }
+
+    /**
+     * Programmatic lookup: get() resolves like an injection point of the bean type, destroy() calls the
+     * {@link PreDestroy} methods of the bean.
+     */
+    private Instance<?> instance(final Class<?> beanType, final Map<Class<?>, Object> uiScope) {
+        return FakeJms.proxy(Instance.class, new InvocationHandler() {
+            @Override
+            public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                switch (method.getName()) {
+                case "get":
+                    return Injector.this.get(beanType, uiScope);
+                case "destroy":
+                    Injector.callAnnotated(args[0], PreDestroy.class);
+                    return null;
+                case "isUnsatisfied":
+                case "isAmbiguous":
+                    return false;
+                default:
+                    return FakeJms.objectMethod(proxy, method, args);
+                }
+            }
+        });
+    }
+
+    private static void callAnnotated(final Object bean, final Class<? extends Annotation> annotation) {
+        List<Method> methods = new ArrayList<>();
+        for (Class<?> c = bean.getClass(); c != Object.class; c = c.getSuperclass()) {
+            for (Method method : c.getDeclaredMethods()) {
+                if (method.isAnnotationPresent(annotation) && method.getParameterTypes().length == 0) {
+                    methods.add(0, method);
+                }
+            }
+        }
+        for (Method method : methods) {
+            try {
+                Reflection.invoke(method, bean);
+            } catch (IllegalStateException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Wraps a plain scheduled executor as a Java EE managed (scheduled) executor service. As in the container, tasks
+     * do not inherit the identity context of the submitting thread: they have to set it themselves.
+     */
+    private static Object managedExecutor(final ScheduledExecutorService executor) {
+        return Proxy.newProxyInstance(Injector.class.getClassLoader(), new Class<?>[] {
+            ManagedScheduledExecutorService.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+                if (method.getDeclaringClass() == Object.class) {
+                    return FakeJms.objectMethod(proxy, method, args);
+                }
+                Method target;
+                try {
+                    target = ScheduledExecutorService.class.getMethod(method.getName(), method.getParameterTypes());
+                } catch (NoSuchMethodException e) {
+                    throw new UnsupportedOperationException(method.getName() + " is not supported by the harness");
+                }
+                try {
+                    return target.invoke(executor, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+        });
+    }
+
+}
@@ -0,0 +1,69 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2013 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ */
+package org.ow2.sirocco.cloudmanager.loadtest;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects latency samples (in nanoseconds) into a growable array and reports percentiles.
+ */
+class LatencyRecorder {
+    private long[] samples = new long[4096];
+
+    private int count;
+
+    synchronized void record(final long nanos) {
+        if (this.count == this.samples.length) {
+            this.samples = Arrays.copyOf(this.samples, this.count * 2);
+        }
+        this.samples[this.count++] = nanos;
+    }
+
+    synchronized int getCount() {
+        return this.count;
+    }
+
+    synchronized String summary() {
+        if (this.count == 0) {
+            return "no samples";
+        }
+        long[] sorted = Arrays.copyOf(this.samples, this.count);
+        Arrays.sort(sorted);
+        return "n=" + this.count + " p50=" + LatencyRecorder.millis(LatencyRecorder.percentile(sorted, 50)) + " p90="
+            + LatencyRecorder.millis(LatencyRecorder.percentile(sorted, 90)) + " p99="
+            + LatencyRecorder.millis(LatencyRecorder.percentile(sorted, 99)) + " max="
+            + LatencyRecorder.millis(sorted[sorted.length - 1]);
+    }
+
+    private static long percentile(final long[] sorted, final int percent) {
+        int index = (int) Math.ceil(percent / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    private static String millis(final long nanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        return micros / 1000 + "." + (micros % 1000) / 100 + "ms";
+    }
+
+}
@@ -0,0 +1,196 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2013 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ */
+package org.ow2.sirocco.cloudmanager.loadtest;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reflection helpers used by the harness to build model objects and framework plumbing without depending on the
+ * exact collection types or constructors of a given Sirocco/Vaadin version.
+ */
+final class Reflection {
+    private Reflection() {
+    }
+
+    /**
+     * Calls the one-argument setter of the property, converting a collection value to the List or Set the setter
+     * expects.
+     */
+    static void set(final Object target, final String property, final Object value) {
+        String setterName = "set" + Character.toUpperCase(property.charAt(0)) + property.substring(1);
+        for (Method method : target.getClass().getMethods()) {
+            if (method.getName().equals(setterName) && method.getParameterTypes().length == 1) {
+                Class<?> type = method.getParameterTypes()[0];
+                Object arg = value;
+                if (value instanceof Collection && !type.isInstance(value)) {
+                    if (List.class.isAssignableFrom(type)) {
+                        arg = new ArrayList<Object>((Collection<?>) value);
+                    } else if (Set.class.isAssignableFrom(type)) {
+                        arg = new LinkedHashSet<Object>((Collection<?>) value);
+                    }
+                }
+                if (arg == null || Reflection.wrap(type).isInstance(arg)) {
+                    Reflection.invoke(method, target, arg);
+                    return;
+                }
+            }
+        }
+        throw new IllegalArgumentException("No setter " + setterName + " on " + target.getClass().getName());
+    }
+
+    /**
+     * Like {@link #set(Object, String, Object)} but ignores properties the model class does not have.
+     */
+    static void trySet(final Object target, final String property, final Object value) {
+        try {
+            Reflection.set(target, property, value);
+        } catch (IllegalArgumentException e) {
+            // property not present in this model version
+        }
+    }
+
+    /**
+     * Sets the state property of a model object to the named constant of its State enum, or to the first constant if
+     * the enum has no such name.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static void setState(final Object target, final String stateName) {
+        try {
+            Class<?> stateType = target.getClass().getMethod("getState").getReturnType();
+            Object[] constants = stateType.getEnumConstants();
+            Object state = constants[0];
+            for (Object constant : constants) {
+                if (((Enum) constant).name().equals(stateName)) {
+                    state = constant;
+                }
+            }
+            Reflection.set(target, "state", state);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException("No state on " + target.getClass().getName(), e);
+        }
+    }
+
+    static Object get(final Object target, final String property) {
+        String getterName = "get" + Character.toUpperCase(property.charAt(0)) + property.substring(1);
+        try {
+            return Reflection.invoke(target.getClass().getMethod(getterName), target);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Instantiates the type with the first public constructor whose parameters accept the arguments.
+     */
+    static <T> T newInstance(final Class<T> type, final Object... args) {
+        for (Constructor<?> constructor : type.getConstructors()) {
+            Class<?>[] params = constructor.getParameterTypes();
+            if (params.length != args.length) {
+                continue;
+            }
+            boolean matches = true;
+            for (int i = 0; i < params.length; i++) {
+                if (args[i] != null && !Reflection.wrap(params[i]).isInstance(args[i])) {
+                    matches = false;
+                    break;
+                }
+            }
+            if (matches) {
+                try {
+                    return type.cast(constructor.newInstance(args));
+                } catch (ReflectiveOperationException e) {
+                    throw new IllegalStateException("Cannot instantiate " + type.getName(), e);
+                }
+            }
+        }
+        return null;
+    }
+
+    static void setField(final Field field, final Object target, final Object value) {
+        try {
+            field.setAccessible(true);
+            field.set(target, value);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot set " + field, e);
+        }
+    }
+
+    static Object invoke(final Method method, final Object target, final Object... args) {
+        try {
+            method.setAccessible(true);
+            return method.invoke(target, args);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot invoke " + method, e);
+        }
+    }
+
+    static Object defaultValue(final Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        } else if (type == int.class) {
+            return 0;
+        } else if (type == long.class) {
+            return 0L;
+        } else if (type == double.class) {
+            return 0d;
+        } else if (type == float.class) {
+            return 0f;
+        } else if (type == short.class) {
+            return (short) 0;
+        } else if (type == byte.class) {
+            return (byte) 0;
+        } else if (type == char.class) {
+            return (char) 0;
+        }
+        return null;
+    }
+
+    static Class<?> wrap(final Class<?> type) {
+        if (!type.isPrimitive()) {
+            return type;
+        } else if (type == boolean.class) {
+            return Boolean.class;
+        } else if (type == int.class) {
+            return Integer.class;
+        } else if (type == long.class) {
+            return Long.class;
+        } else if (type == double.class) {
+            return Double.class;
+        } else if (type == float.class) {
+            return Float.class;
+        } else if (type == short.class) {
+            return Short.class;
+        } else if (type == byte.class) {
+            return Byte.class;
+        }
+        return Character.class;
+    }
+
+}
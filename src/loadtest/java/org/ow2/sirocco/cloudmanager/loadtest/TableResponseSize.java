@@ -0,0 +1,66 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2013 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ */
+package org.ow2.sirocco.cloudmanager.loadtest;
+
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+import com.google.common.base.Splitter;
+import com.vaadin.server.VaadinService;
+
+/**
+ * Measures the size of the UIDL response which opens each inventory view for a single UI, with the viewport-aware
+ * rendering of the tables, then the size of the response which renders all the rows of the same table as
+ * setPageLength(0) did. Tuned with system properties:
+ * <ul>
+ * <li>loadtest.tableSizes: machines of the tenant for each measurement, volumes and addresses are derived from it
+ * (default 1000,10000)</li>
+ * <li>sirocco.dashboard.table.cacheRate: rows rendered around the viewport, as a multiple of the viewport
+ * (default 1)</li>
+ * </ul>
+ */
+public class TableResponseSize {
+    private static final String TABLE_SIZES = System.getProperty("loadtest.tableSizes", "1000,10000");
+
+    private static final String[] MENU_ITEM_IDS = {"Instances", "Volumes", "External IP Addresses"};
+
+    public static void main(final String[] args) throws Exception {
+        VaadinService service = HeadlessSession.createService();
+        for (String size : Splitter.on(',').trimResults().omitEmptyStrings().split(TableResponseSize.TABLE_SIZES)) {
+            FakeBackend backend = new FakeBackend(1, Integer.parseInt(size), 0);
+            ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(2);
+            Injector injector = new Injector(backend, new FakeJms(), executor);
+            HeadlessSession session = new HeadlessSession(service, injector, "user-0", backend.tenantOfUser(0));
+            session.open();
+            System.out.println(size + " machines:");
+            for (String menuItemId : TableResponseSize.MENU_ITEM_IDS) {
+                long viewport = session.show(menuItemId);
+                long allRows = session.renderAllRows();
+                System.out.println("  " + menuItemId + ": " + viewport + " bytes, all rows " + allRows + " bytes");
+            }
+            session.close();
+            injector.shutdown();
+            executor.shutdownNow();
+        }
+    }
+
+}
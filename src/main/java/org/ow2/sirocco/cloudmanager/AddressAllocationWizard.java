@@ -25,7 +25,6 @@ package org.ow2.sirocco.cloudmanager;
 import javax.inject.Inject;
 
 import org.ow2.sirocco.cloudmanager.AddressView.AddressBean;
-import org.ow2.sirocco.cloudmanager.core.api.ICloudProviderManager;
 import org.ow2.sirocco.cloudmanager.core.api.INetworkManager;
 import org.ow2.sirocco.cloudmanager.core.api.exception.CloudProviderException;
 import org.ow2.sirocco.cloudmanager.model.cimi.Address;
@@ -59,7 +58,7 @@ public class AddressAllocationWizard extends Window implements WizardProgressLis
     private Util.PlacementStep placementStep;
 
     @Inject
-    private ICloudProviderManager providerManager;
+    private CloudProviderCache providerCache;
 
     @Inject
     private INetworkManager networkManager;
@@ -92,8 +91,8 @@ public class AddressAllocationWizard extends Window implements WizardProgressLis
 
         this.placementStep.providerBox.removeAllItems();
         try {
-            this.placementStep.setProviderManager(this.providerManager);
-            for (CloudProviderAccount providerAccount : this.providerManager.getCloudProviderAccountsByTenant(tenantId)) {
+            this.placementStep.setProviderCache(this.providerCache);
+            for (CloudProviderAccount providerAccount : this.providerCache.getCloudProviderAccountsByTenant(tenantId)) {
                 this.placementStep.providerBox.addItem(providerAccount.getUuid());
                 this.placementStep.providerBox.setItemCaption(providerAccount.getUuid(), providerAccount.getCloudProvider()
                     .getDescription());
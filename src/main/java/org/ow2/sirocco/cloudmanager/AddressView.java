@@ -26,24 +26,22 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 
+import javax.enterprise.context.Dependent;
+import javax.enterprise.inject.Instance;
 import javax.inject.Inject;
 
 import org.ow2.sirocco.cloudmanager.AddressAssociateDialog.MachineChoice;
-import org.ow2.sirocco.cloudmanager.core.api.IMachineManager;
+import org.ow2.sirocco.cloudmanager.MachineView.MachineBean;
 import org.ow2.sirocco.cloudmanager.core.api.INetworkManager;
-import org.ow2.sirocco.cloudmanager.core.api.QueryParams;
 import org.ow2.sirocco.cloudmanager.core.api.exception.CloudProviderException;
 import org.ow2.sirocco.cloudmanager.model.cimi.Address;
-import org.ow2.sirocco.cloudmanager.model.cimi.Address.State;
-import org.ow2.sirocco.cloudmanager.model.cimi.Machine;
+import org.ow2.sirocco.cloudmanager.util.BeanContainerReconciler;
 
 import com.google.common.collect.Iterables;
-import com.vaadin.cdi.UIScoped;
 import com.vaadin.data.Item;
 import com.vaadin.data.Property.ValueChangeEvent;
 import com.vaadin.data.Property.ValueChangeListener;
 import com.vaadin.data.util.BeanContainer;
-import com.vaadin.data.util.BeanItem;
 import com.vaadin.server.ThemeResource;
 import com.vaadin.ui.Button;
 import com.vaadin.ui.Button.ClickEvent;
@@ -54,8 +52,8 @@ import com.vaadin.ui.Table;
 import com.vaadin.ui.UI;
 import com.vaadin.ui.VerticalLayout;
 
-@UIScoped
-public class AddressView extends VerticalLayout implements ValueChangeListener {
+@Dependent
+public class AddressView extends VerticalLayout implements ResourceEventView, ValueChangeListener {
     private static final long serialVersionUID = 1L;
 
     private Button associateAddressButton;
@@ -69,13 +67,18 @@ public class AddressView extends VerticalLayout implements ValueChangeListener {
     BeanContainer<String, AddressBean> addresses;
 
     @Inject
-    private AddressAllocationWizard addressAllocationWizard;
+    private Instance<AddressAllocationWizard> addressAllocationWizard;
 
     @Inject
     private INetworkManager networkManager;
 
     @Inject
-    private IMachineManager machineManager;
+    private BackendCommandExecutor commandExecutor;
+
+    @Inject
+    private ResourceSnapshotStore snapshotStore;
+
+    private boolean loaded;
 
     public AddressView() {
         this.setSizeFull();
@@ -92,8 +95,9 @@ public class AddressView extends VerticalLayout implements ValueChangeListener {
 
             @Override
             public void buttonClick(final ClickEvent event) {
-                if (AddressView.this.addressAllocationWizard.init(AddressView.this)) {
-                    UI.getCurrent().addWindow(AddressView.this.addressAllocationWizard);
+                AddressAllocationWizard wizard = AddressView.this.addressAllocationWizard.get();
+                if (wizard.init(AddressView.this)) {
+                    UI.getCurrent().addWindow(wizard);
                 }
             }
         });
@@ -107,25 +111,21 @@ public class AddressView extends VerticalLayout implements ValueChangeListener {
             public void buttonClick(final ClickEvent event) {
                 Set<?> selectedAddressIds = (Set<?>) AddressView.this.addressTable.getValue();
                 final String addressId = (String) Iterables.getOnlyElement(selectedAddressIds);
+                AddressBean addressBean = AddressView.this.addresses.getItem(addressId).getBean();
                 List<AddressAssociateDialog.MachineChoice> choices = new ArrayList<>();
-                Address address = null;
                 try {
-                    address = AddressView.this.networkManager.getAddressByUuid(addressId);
-                    List<Machine> machines = AddressView.this.machineManager.getMachines(
-                        new QueryParams.Builder().filterByProvider(address.getCloudProviderAccount().getUuid())
-                            .filterByLocation(address.getLocation().getUuid()).build()).getItems();
-                    for (Machine machine : machines) {
+                    for (MachineBean machine : AddressView.this.snapshotStore.getMachines(
+                        ((MyUI) UI.getCurrent()).getTenantId(), addressBean.accountId, addressBean.locationId)) {
                         MachineChoice machineChoice = new MachineChoice();
-                        machineChoice.id = machine.getUuid();
+                        machineChoice.id = machine.getId();
                         machineChoice.name = machine.getName();
                         choices.add(machineChoice);
                     }
-
                 } catch (CloudProviderException e) {
                     Util.diplayErrorMessageBox("Internal error", e);
                 }
 
-                final String ipAddress = address.getIp();
+                final String ipAddress = addressBean.getIp();
                 AddressAssociateDialog addressAssociateDialog = new AddressAssociateDialog(choices,
                     new AddressAssociateDialog.DialogCallback() {
 
@@ -176,14 +176,23 @@ public class AddressView extends VerticalLayout implements ValueChangeListener {
                         @Override
                         public void response(final boolean ok, final boolean ignored) {
                             if (ok) {
-                                for (Object id : selectedAddressIds) {
-                                    try {
-                                        AddressView.this.networkManager.deleteAddress(id.toString());
-                                    } catch (CloudProviderException e) {
-                                        Util.diplayErrorMessageBox("Address delete failure", e);
+                                BulkProgressWindow.start(new BulkOperation(AddressView.this.commandExecutor,
+                                    "Releasing addresses", BulkOperation.items(AddressView.this.addresses,
+                                        selectedAddressIds, "ip"), new BulkOperation.Action() {
+                                        @Override
+                                        public void execute(final String id) throws CloudProviderException {
+                                            AddressView.this.networkManager.deleteAddress(id);
+                                        }
+                                    }, BulkOperation.parallelism("address")), new BulkOperation.Listener() {
+                                    @Override
+                                    public void progress(final BulkOperation operation) {
+                                    }
+
+                                    @Override
+                                    public void completed(final BulkOperation operation) {
+                                        AddressView.this.refresh();
                                     }
-                                }
-                                AddressView.this.refresh();
+                                });
                             }
                         }
                     });
@@ -201,6 +210,7 @@ public class AddressView extends VerticalLayout implements ValueChangeListener {
 
             @Override
             public void buttonClick(final ClickEvent event) {
+                AddressView.this.snapshotStore.invalidate(((MyUI) UI.getCurrent()).getTenantId(), Address.class);
                 AddressView.this.refresh();
             }
         });
@@ -212,19 +222,21 @@ public class AddressView extends VerticalLayout implements ValueChangeListener {
         this.setExpandRatio(this.addressTable, 1.0f);
     }
 
-    void refresh() {
-        this.addressTable.setValue(null);
-        this.addressTable.getContainerDataSource().removeAllItems();
+    @Override
+    public void refresh() {
         try {
-            for (Address address : this.networkManager.getAddresses().getItems()) {
-                this.addresses.addBean(new AddressBean(address));
-            }
+            BeanContainerReconciler.reconcile(this.addressTable, this.addresses,
+                this.snapshotStore.getAddresses(((MyUI) UI.getCurrent()).getTenantId()), "id");
         } catch (CloudProviderException e) {
             Util.diplayErrorMessageBox("Address list error", e);
         }
         this.valueChange(null);
     }
 
+    @Override
+    public void updatesApplied() {
+    }
+
     Table createAddressTable() {
         this.addresses = new BeanContainer<String, AddressBean>(AddressBean.class);
         this.addresses.setBeanIdProperty("id");
@@ -232,7 +244,7 @@ public class AddressView extends VerticalLayout implements ValueChangeListener {
         table.setContainerDataSource(this.addresses);
 
         table.setSizeFull();
-        table.setPageLength(0);
+        Util.setViewportRendering(table);
 
         table.setSelectable(true);
         table.setMultiSelect(true);
@@ -274,22 +286,16 @@ public class AddressView extends VerticalLayout implements ValueChangeListener {
     @Override
     public void attach() {
         super.attach();
-        this.refresh();
+        // once loaded, MyUI resyncs the view from the events received while it was not attached
+        if (!this.loaded) {
+            this.loaded = true;
+            this.refresh();
+        }
     }
 
-    public void updateAddress(Address address) {
-        BeanItem<AddressBean> item = this.addresses.getItem(address.getUuid());
-        if (item != null) {
-            if (address.getState() != State.DELETED) {
-                try {
-                    address = this.networkManager.getAddressByUuid(address.getUuid());
-                } catch (CloudProviderException e) {
-                    return;
-                }
-            }
-            AddressBean addressBean = item.getBean();
-            addressBean.init(address);
-            item.getItemProperty("instance").setValue(addressBean.getInstance());
+    public void updateAddress(final Address address) {
+        AddressBean addressBean = this.snapshotStore.getAddress(((MyUI) UI.getCurrent()).getTenantId(), address);
+        if (BeanContainerReconciler.replace(this.addressTable, this.addresses, address.getUuid(), addressBean)) {
             this.valueChange(null);
         }
     }
@@ -307,10 +313,32 @@ public class AddressView extends VerticalLayout implements ValueChangeListener {
 
         String location;
 
+        String accountId;
+
+        String locationId;
+
         AddressBean(final Address address) {
             this.init(address);
         }
 
+        /**
+         * Row of an updated address, keeping the placement of the previous row if the address, e.g. the payload of an
+         * event, lacks it.
+         */
+        AddressBean(final Address address, final AddressBean previous) {
+            this.init(address);
+            if (previous != null) {
+                if (address.getCloudProviderAccount() == null) {
+                    this.provider = previous.provider;
+                    this.accountId = previous.accountId;
+                }
+                if (address.getLocation() == null) {
+                    this.location = previous.location;
+                    this.locationId = previous.locationId;
+                }
+            }
+        }
+
         void init(final Address address) {
             this.id = address.getUuid();
             this.ip = address.getIp();
@@ -322,56 +350,38 @@ public class AddressView extends VerticalLayout implements ValueChangeListener {
             this.privateIp = address.getInternalIp();
             this.provider = this.providerFrom(address);
             this.location = this.locationFrom(address);
+            if (address.getCloudProviderAccount() != null) {
+                this.accountId = address.getCloudProviderAccount().getUuid();
+            }
+            if (address.getLocation() != null) {
+                this.locationId = address.getLocation().getUuid();
+            }
         }
 
         public String getId() {
             return this.id;
         }
 
-        public void setId(final String id) {
-            this.id = id;
-        }
-
         public String getProvider() {
             return this.provider;
         }
 
-        public void setProvider(final String provider) {
-            this.provider = provider;
-        }
-
         public String getLocation() {
             return this.location;
         }
 
-        public void setLocation(final String location) {
-            this.location = location;
-        }
-
         public String getIp() {
             return this.ip;
         }
 
-        public void setIp(final String ip) {
-            this.ip = ip;
-        }
-
         public String getPrivateIp() {
             return this.privateIp;
         }
 
-        public void setPrivateIp(final String privateIp) {
-            this.privateIp = privateIp;
-        }
-
         public String getInstance() {
             return this.instance;
         }
 
-        public void setInstance(final String instance) {
-            this.instance = instance;
-        }
-
         public String providerFrom(final Address address) {
             if (address.getCloudProviderAccount() != null) {
                 return address.getCloudProviderAccount().getCloudProvider().getDescription();
@@ -0,0 +1,300 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2013 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ */
+package org.ow2.sirocco.cloudmanager;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Resource;
+import javax.enterprise.concurrent.ManagedExecutorService;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.ow2.sirocco.cloudmanager.core.api.IdentityContext;
+import org.ow2.sirocco.cloudmanager.core.api.exception.CloudProviderException;
+
+import com.vaadin.ui.UI;
+import com.vaadin.ui.UIDetachedException;
+
+/**
+ * Runs backend manager calls issued by UI handlers on the managed executor instead of the request thread, and hands
+ * the outcome back to the issuing UI under its lock, followed by a push. At most MAX_CONCURRENT_PER_TENANT commands
+ * of a tenant run at a time; further commands wait in a per-tenant FIFO queue of at most MAX_QUEUED_PER_TENANT
+ * entries, beyond which they are rejected. Commands and their callbacks run with the user and tenant of the
+ * submitting UI set on the identity context of their thread. Queue depth, call latency and outcome counters are
+ * exposed for monitoring.
+ */
+@ApplicationScoped
+public class BackendCommandExecutor {
+    static final int MAX_CONCURRENT_PER_TENANT = Integer.getInteger("sirocco.dashboard.backend.maxConcurrentPerTenant",
+        8);
+
+    static final int MAX_QUEUED_PER_TENANT = Integer.getInteger("sirocco.dashboard.backend.maxQueuedPerTenant", 1000);
+
+    public interface Command<T> {
+        T execute() throws CloudProviderException;
+    }
+
+    /**
+     * Receives the outcome of a command under the lock of the UI which submitted it. By default failures are shown in
+     * an error box with the given title.
+     */
+    public static class Callback<T> {
+        private final String errorTitle;
+
+        public Callback(final String errorTitle) {
+            this.errorTitle = errorTitle;
+        }
+
+        public void onSuccess(final T result) {
+        }
+
+        public void onFailure(final Exception e) {
+            Util.diplayErrorMessageBox(this.errorTitle, e);
+        }
+    }
+
+    @Resource
+    private ManagedExecutorService executor;
+
+    @Inject
+    private IdentityContext identityContext;
+
+    private final Map<String, TenantQueue> tenants = new HashMap<>();
+
+    private final AtomicLong submitted = new AtomicLong();
+
+    private final AtomicLong succeeded = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    private final AtomicLong totalCallNanos = new AtomicLong();
+
+    private final AtomicLong maxCallNanos = new AtomicLong();
+
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+
+    /**
+     * Submits a command on behalf of the current UI and its tenant. Must be called with the UI lock held.
+     */
+    public <T> void submit(final Command<T> command, final Callback<T> callback) {
+        UI ui = UI.getCurrent();
+        String tenantId = ((MyUI) ui).getTenantId();
+        Task<T> task = new Task<>(ui, tenantId, command, callback);
+        this.submitted.incrementAndGet();
+        boolean run;
+        synchronized (this.tenants) {
+            TenantQueue queue = this.tenants.get(tenantId);
+            if (queue == null) {
+                queue = new TenantQueue();
+                this.tenants.put(tenantId, queue);
+            }
+            if (queue.running < BackendCommandExecutor.MAX_CONCURRENT_PER_TENANT) {
+                queue.running++;
+                run = true;
+            } else if (queue.pending.size() < BackendCommandExecutor.MAX_QUEUED_PER_TENANT) {
+                queue.pending.add(task);
+                run = false;
+            } else {
+                this.rejected.incrementAndGet();
+                callback.onFailure(new RejectedExecutionException("Too many pending operations, please retry later"));
+                return;
+            }
+        }
+        if (run) {
+            this.execute(task);
+        }
+    }
+
+    private void execute(final Task<?> task) {
+        try {
+            this.executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            this.rejected.incrementAndGet();
+            task.deliver(null, e);
+            this.next(task.tenantId);
+        }
+    }
+
+    /**
+     * Starts the next queued command of the tenant in place of one which completed.
+     */
+    private void next(final String tenantId) {
+        Task<?> next;
+        synchronized (this.tenants) {
+            TenantQueue queue = this.tenants.get(tenantId);
+            next = queue.pending.poll();
+            if (next == null) {
+                queue.running--;
+                if (queue.running == 0) {
+                    this.tenants.remove(tenantId);
+                }
+            }
+        }
+        if (next != null) {
+            this.execute(next);
+        }
+    }
+
+    public int getQueueDepth() {
+        int depth = 0;
+        synchronized (this.tenants) {
+            for (TenantQueue queue : this.tenants.values()) {
+                depth += queue.pending.size();
+            }
+        }
+        return depth;
+    }
+
+    public int getQueueDepth(final String tenantId) {
+        synchronized (this.tenants) {
+            TenantQueue queue = this.tenants.get(tenantId);
+            return queue != null ? queue.pending.size() : 0;
+        }
+    }
+
+    public int getRunningCount() {
+        int running = 0;
+        synchronized (this.tenants) {
+            for (TenantQueue queue : this.tenants.values()) {
+                running += queue.running;
+            }
+        }
+        return running;
+    }
+
+    public long getSubmittedCount() {
+        return this.submitted.get();
+    }
+
+    public long getSucceededCount() {
+        return this.succeeded.get();
+    }
+
+    public long getFailedCount() {
+        return this.failed.get();
+    }
+
+    public long getRejectedCount() {
+        return this.rejected.get();
+    }
+
+    public double getAverageCallMillis() {
+        long completed = this.succeeded.get() + this.failed.get();
+        return completed == 0 ? 0 : this.totalCallNanos.get() / 1e6 / completed;
+    }
+
+    public double getMaxCallMillis() {
+        return this.maxCallNanos.get() / 1e6;
+    }
+
+    public double getAverageWaitMillis() {
+        long completed = this.succeeded.get() + this.failed.get();
+        return completed == 0 ? 0 : this.totalWaitNanos.get() / 1e6 / completed;
+    }
+
+    private static class TenantQueue {
+        int running;
+
+        final Deque<Task<?>> pending = new ArrayDeque<>();
+    }
+
+    private class Task<T> implements Runnable {
+        final UI ui;
+
+        final String tenantId;
+
+        final Command<T> command;
+
+        final Callback<T> callback;
+
+        final CallerIdentity identity;
+
+        final long submitTime = System.nanoTime();
+
+        Task(final UI ui, final String tenantId, final Command<T> command, final Callback<T> callback) {
+            this.ui = ui;
+            this.tenantId = tenantId;
+            this.command = command;
+            this.callback = callback;
+            this.identity = CallerIdentity.of((MyUI) ui);
+        }
+
+        @Override
+        public void run() {
+            long start = System.nanoTime();
+            BackendCommandExecutor.this.totalWaitNanos.addAndGet(start - this.submitTime);
+            T result = null;
+            Exception error = null;
+            CallerIdentity previous = this.identity.swap(BackendCommandExecutor.this.identityContext);
+            try {
+                result = this.command.execute();
+            } catch (CloudProviderException | RuntimeException e) {
+                error = e;
+            } finally {
+                previous.apply(BackendCommandExecutor.this.identityContext);
+            }
+            long callNanos = System.nanoTime() - start;
+            BackendCommandExecutor.this.totalCallNanos.addAndGet(callNanos);
+            long max;
+            do {
+                max = BackendCommandExecutor.this.maxCallNanos.get();
+            } while (callNanos > max && !BackendCommandExecutor.this.maxCallNanos.compareAndSet(max, callNanos));
+            (error == null ? BackendCommandExecutor.this.succeeded : BackendCommandExecutor.this.failed)
+                .incrementAndGet();
+            BackendCommandExecutor.this.next(this.tenantId);
+            this.deliver(result, error);
+        }
+
+        void deliver(final T result, final Exception error) {
+            try {
+                this.ui.access(new Runnable() {
+                    @Override
+                    public void run() {
+                        // the lock may be taken by any thread, and callbacks may call the managers
+                        CallerIdentity previous = Task.this.identity.swap(BackendCommandExecutor.this.identityContext);
+                        try {
+                            if (error != null) {
+                                Task.this.callback.onFailure(error);
+                            } else {
+                                Task.this.callback.onSuccess(result);
+                            }
+                        } finally {
+                            previous.apply(BackendCommandExecutor.this.identityContext);
+                        }
+                        Task.this.ui.push();
+                    }
+                });
+            } catch (UIDetachedException e) {
+                // UI closed while the command was running
+            }
+        }
+    }
+
+}
@@ -0,0 +1,254 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2013 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ */
+package org.ow2.sirocco.cloudmanager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.ow2.sirocco.cloudmanager.core.api.exception.CloudProviderException;
+
+import com.vaadin.data.Container;
+import com.vaadin.data.Item;
+
+/**
+ * Applies one backend action to a set of resources through the {@link BackendCommandExecutor}, keeping at most a
+ * given number of items in flight. Progress and per-item failures are collected and reported to a listener under
+ * the lock of the UI which started the operation, so that the outcome can be shown as a single summary. Must only be
+ * used with the UI lock held. The parallelism of each kind of resource can be set with the
+ * sirocco.dashboard.bulk.&lt;kind&gt;.parallelism system property.
+ */
+public class BulkOperation {
+    static final int DEFAULT_PARALLELISM = Integer.getInteger("sirocco.dashboard.bulk.parallelism", 8);
+
+    public static int parallelism(final String kind) {
+        return Integer.getInteger("sirocco.dashboard.bulk." + kind + ".parallelism", BulkOperation.DEFAULT_PARALLELISM);
+    }
+
+    /**
+     * Returns the given items of a container keyed by id, with the value of their name property.
+     */
+    public static Map<String, String> items(final Container container, final Collection<?> ids,
+        final String nameProperty) {
+        Map<String, String> items = new LinkedHashMap<>();
+        for (Object id : ids) {
+            Item item = container.getItem(id);
+            if (item != null) {
+                Object name = item.getItemProperty(nameProperty).getValue();
+                items.put(id.toString(), name != null ? name.toString() : null);
+            }
+        }
+        return items;
+    }
+
+    public interface Action {
+        void execute(String id) throws CloudProviderException;
+    }
+
+    public interface Listener {
+        void progress(BulkOperation operation);
+
+        void completed(BulkOperation operation);
+    }
+
+    public static class Failure {
+        private final String id;
+
+        private final String name;
+
+        private final Exception error;
+
+        Failure(final String id, final String name, final Exception error) {
+            this.id = id;
+            this.name = name;
+            this.error = error;
+        }
+
+        public String getId() {
+            return this.id;
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        public Exception getError() {
+            return this.error;
+        }
+
+        public String getMessage() {
+            String message = this.error.getMessage();
+            return message != null ? message : this.error.getClass().getSimpleName();
+        }
+    }
+
+    private final BackendCommandExecutor executor;
+
+    private final String title;
+
+    private final Map<String, String> items;
+
+    private final Action action;
+
+    private final int parallelism;
+
+    private Iterator<Map.Entry<String, String>> remaining;
+
+    private Listener listener;
+
+    private int running;
+
+    private final List<String> succeeded = new ArrayList<>();
+
+    private final List<Failure> failures = new ArrayList<>();
+
+    private boolean cancelled;
+
+    private boolean dispatching;
+
+    private boolean finished;
+
+    /**
+     * @param items names of the resources to process keyed by uuid
+     */
+    public BulkOperation(final BackendCommandExecutor executor, final String title, final Map<String, String> items,
+        final Action action) {
+        this(executor, title, items, action, BulkOperation.DEFAULT_PARALLELISM);
+    }
+
+    public BulkOperation(final BackendCommandExecutor executor, final String title, final Map<String, String> items,
+        final Action action, final int parallelism) {
+        this.executor = executor;
+        this.title = title;
+        this.items = items;
+        this.action = action;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    public void start(final Listener listener) {
+        this.listener = listener;
+        this.remaining = this.items.entrySet().iterator();
+        this.dispatch();
+        this.notifyListener();
+    }
+
+    /**
+     * Stops dispatching the remaining items; the items in flight still complete.
+     */
+    public void cancel() {
+        this.cancelled = true;
+        this.notifyListener();
+    }
+
+    private void dispatch() {
+        // commands rejected by the executor complete synchronously from submit()
+        this.dispatching = true;
+        try {
+            while (this.running < this.parallelism && this.dispatchNext()) {
+            }
+        } finally {
+            this.dispatching = false;
+        }
+    }
+
+    private boolean dispatchNext() {
+        if (this.cancelled || !this.remaining.hasNext()) {
+            return false;
+        }
+        final Map.Entry<String, String> item = this.remaining.next();
+        this.running++;
+        this.executor.submit(new BackendCommandExecutor.Command<Void>() {
+            @Override
+            public Void execute() throws CloudProviderException {
+                BulkOperation.this.action.execute(item.getKey());
+                return null;
+            }
+        }, new BackendCommandExecutor.Callback<Void>(this.title) {
+            @Override
+            public void onSuccess(final Void result) {
+                BulkOperation.this.succeeded.add(item.getKey());
+                BulkOperation.this.done();
+            }
+
+            @Override
+            public void onFailure(final Exception e) {
+                BulkOperation.this.failures.add(new Failure(item.getKey(), item.getValue(), e));
+                BulkOperation.this.done();
+            }
+        });
+        return true;
+    }
+
+    private void done() {
+        this.running--;
+        if (!this.dispatching) {
+            this.dispatch();
+            this.notifyListener();
+        }
+    }
+
+    private void notifyListener() {
+        if (this.finished) {
+            return;
+        }
+        if (this.running == 0) {
+            this.finished = true;
+            this.listener.completed(this);
+        } else {
+            this.listener.progress(this);
+        }
+    }
+
+    public String getTitle() {
+        return this.title;
+    }
+
+    public int getTotal() {
+        return this.items.size();
+    }
+
+    public List<String> getSucceeded() {
+        return Collections.unmodifiableList(this.succeeded);
+    }
+
+    public int getCompleted() {
+        return this.succeeded.size() + this.failures.size();
+    }
+
+    public List<Failure> getFailures() {
+        return Collections.unmodifiableList(this.failures);
+    }
+
+    public boolean isCancelled() {
+        return this.cancelled;
+    }
+
+    public boolean isFinished() {
+        return this.finished;
+    }
+
+}
@@ -0,0 +1,147 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2013 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ */
+package org.ow2.sirocco.cloudmanager;
+
+import com.vaadin.shared.ui.label.ContentMode;
+import com.vaadin.ui.Alignment;
+import com.vaadin.ui.Button;
+import com.vaadin.ui.Button.ClickEvent;
+import com.vaadin.ui.Label;
+import com.vaadin.ui.Panel;
+import com.vaadin.ui.ProgressBar;
+import com.vaadin.ui.UI;
+import com.vaadin.ui.VerticalLayout;
+import com.vaadin.ui.Window;
+
+/**
+ * Shows the progress of a {@link BulkOperation} and, once it has completed, a single summary of the items which
+ * failed. Progress is also forwarded to an optional listener, e.g. to update the view which started the operation.
+ */
+public final class BulkProgressWindow extends Window implements BulkOperation.Listener, Button.ClickListener {
+    private static final long serialVersionUID = 1L;
+
+    private final BulkOperation operation;
+
+    private final ProgressBar progressBar;
+
+    private final Label statusLabel;
+
+    private final VerticalLayout content;
+
+    private final Button button;
+
+    private final BulkOperation.Listener listener;
+
+    public static void start(final BulkOperation operation) {
+        BulkProgressWindow.start(operation, null);
+    }
+
+    public static void start(final BulkOperation operation, final BulkOperation.Listener listener) {
+        BulkProgressWindow window = new BulkProgressWindow(operation, listener);
+        UI.getCurrent().addWindow(window);
+        operation.start(window);
+    }
+
+    private BulkProgressWindow(final BulkOperation operation, final BulkOperation.Listener listener) {
+        super(operation.getTitle());
+        this.operation = operation;
+        this.listener = listener;
+        this.center();
+        this.setClosable(false);
+        this.setResizable(false);
+
+        this.content = new VerticalLayout();
+        this.content.setMargin(true);
+        this.content.setSpacing(true);
+        this.content.setWidth("450px");
+
+        this.progressBar = new ProgressBar(0.0f);
+        this.progressBar.setWidth("100%");
+        this.content.addComponent(this.progressBar);
+        this.statusLabel = new Label();
+        this.content.addComponent(this.statusLabel);
+        this.button = new Button("Cancel", this);
+        this.content.addComponent(this.button);
+        this.content.setComponentAlignment(this.button, Alignment.BOTTOM_RIGHT);
+
+        this.setContent(this.content);
+        this.updateStatus(operation);
+    }
+
+    @Override
+    public void progress(final BulkOperation operation) {
+        this.updateStatus(operation);
+        if (this.listener != null) {
+            this.listener.progress(operation);
+        }
+    }
+
+    private void updateStatus(final BulkOperation operation) {
+        int total = operation.getTotal();
+        this.progressBar.setValue(total == 0 ? 1.0f : (float) operation.getCompleted() / total);
+        StringBuilder sb = new StringBuilder();
+        sb.append(operation.getCompleted()).append(" / ").append(total).append(" done");
+        if (!operation.getFailures().isEmpty()) {
+            sb.append(", ").append(operation.getFailures().size()).append(" failed");
+        }
+        if (operation.isCancelled()) {
+            sb.append(" (cancelled)");
+        }
+        this.statusLabel.setValue(sb.toString());
+    }
+
+    @Override
+    public void completed(final BulkOperation operation) {
+        this.updateStatus(operation);
+        if (this.listener != null) {
+            this.listener.completed(operation);
+        }
+        if (!operation.getFailures().isEmpty()) {
+            StringBuilder sb = new StringBuilder();
+            for (BulkOperation.Failure failure : operation.getFailures()) {
+                sb.append(failure.getName() != null ? failure.getName() : failure.getId()).append(": ")
+                    .append(failure.getMessage()).append('\n');
+            }
+            Panel panel = new Panel();
+            panel.setHeight("200px");
+            panel.setContent(new Label(sb.toString(), ContentMode.PREFORMATTED));
+            this.content.addComponent(panel, this.content.getComponentIndex(this.button));
+        } else if (!operation.isCancelled()) {
+            this.close();
+            return;
+        }
+        this.button.setCaption("Close");
+        this.button.setEnabled(true);
+    }
+
+    @Override
+    public void buttonClick(final ClickEvent event) {
+        if (this.operation.isFinished()) {
+            this.close();
+        } else {
+            this.button.setEnabled(false);
+            this.operation.cancel();
+        }
+    }
+
+}
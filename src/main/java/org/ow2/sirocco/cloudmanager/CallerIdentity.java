@@ -0,0 +1,66 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2013 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ */
+package org.ow2.sirocco.cloudmanager;
+
+import org.ow2.sirocco.cloudmanager.core.api.IdentityContext;
+
+/**
+ * User and tenant of a dashboard UI, captured on the request thread when backend work is handed to another thread.
+ * Managed executor and scheduler threads do not carry the identity context of the submitting request, so the work
+ * applies the captured identity to the context of its own thread before calling the managers, and applies the
+ * identity the thread had before once done, so that pooled threads do not leak it to their next task.
+ */
+final class CallerIdentity {
+    private final String userName;
+
+    private final String tenantId;
+
+    private CallerIdentity(final String userName, final String tenantId) {
+        this.userName = userName;
+        this.tenantId = tenantId;
+    }
+
+    static CallerIdentity of(final MyUI ui) {
+        return new CallerIdentity(ui.getUserName(), ui.getTenantId());
+    }
+
+    static CallerIdentity of(final String userName, final String tenantId) {
+        return new CallerIdentity(userName, tenantId);
+    }
+
+    /**
+     * Applies this identity to the context of the current thread and returns the identity it replaced, to be applied
+     * back once done.
+     */
+    CallerIdentity swap(final IdentityContext identityContext) {
+        CallerIdentity previous = new CallerIdentity(identityContext.getUserName(), identityContext.getTenantId());
+        this.apply(identityContext);
+        return previous;
+    }
+
+    void apply(final IdentityContext identityContext) {
+        identityContext.setUserName(this.userName);
+        identityContext.setTenantId(this.tenantId);
+    }
+
+}
@@ -0,0 +1,227 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2013 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ */
+package org.ow2.sirocco.cloudmanager;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.ow2.sirocco.cloudmanager.core.api.ICloudProviderManager;
+import org.ow2.sirocco.cloudmanager.core.api.ResourceStateChangeEvent;
+import org.ow2.sirocco.cloudmanager.core.api.exception.CloudProviderException;
+import org.ow2.sirocco.cloudmanager.model.cimi.extension.CloudProvider;
+import org.ow2.sirocco.cloudmanager.model.cimi.extension.CloudProviderAccount;
+import org.ow2.sirocco.cloudmanager.model.cimi.extension.CloudProviderProfile;
+
+import com.google.common.base.Optional;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Read-through cache in front of {@link ICloudProviderManager} for the provider accounts of a tenant (including
+ * their locations), accounts by tenant and uuid and provider profiles by type. Missing accounts and profiles are
+ * cached as absent. Entries expire after a TTL and are invalidated when a provider account or provider state change
+ * event is received for the tenant.
+ */
+@ApplicationScoped
+public class CloudProviderCache {
+    static final long TTL_SECONDS = Long.getLong("sirocco.dashboard.providerCache.ttl", 300);
+
+    static final long MAX_SIZE = Long.getLong("sirocco.dashboard.providerCache.maxSize", 1000);
+
+    @Inject
+    private ICloudProviderManager providerManager;
+
+    private LoadingCache<String, List<CloudProviderAccount>> accountsByTenant;
+
+    private LoadingCache<AccountKey, Optional<CloudProviderAccount>> accountsByUuid;
+
+    private LoadingCache<String, Optional<CloudProviderProfile>> profilesByType;
+
+    @PostConstruct
+    void init() {
+        this.accountsByTenant = this.newCacheBuilder().build(new CacheLoader<String, List<CloudProviderAccount>>() {
+            @Override
+            public List<CloudProviderAccount> load(final String tenantId) throws CloudProviderException {
+                List<CloudProviderAccount> loaded = CloudProviderCache.this.providerManager
+                    .getCloudProviderAccountsByTenant(tenantId);
+                List<CloudProviderAccount> accounts = loaded != null ? ImmutableList.copyOf(loaded) : ImmutableList
+                    .<CloudProviderAccount> of();
+                for (CloudProviderAccount account : accounts) {
+                    CloudProviderCache.this.accountsByUuid.put(new AccountKey(tenantId, account.getUuid()),
+                        Optional.of(account));
+                }
+                return accounts;
+            }
+        });
+        // an account is only visible to the tenants whose account list contains it
+        this.accountsByUuid = this.newCacheBuilder().build(
+            new CacheLoader<AccountKey, Optional<CloudProviderAccount>>() {
+                @Override
+                public Optional<CloudProviderAccount> load(final AccountKey key) throws CloudProviderException {
+                    for (CloudProviderAccount account : CloudProviderCache.this
+                        .getCloudProviderAccountsByTenant(key.tenantId)) {
+                        if (key.uuid.equals(account.getUuid())) {
+                            return Optional.of(account);
+                        }
+                    }
+                    return Optional.absent();
+                }
+            });
+        this.profilesByType = this.newCacheBuilder().build(new CacheLoader<String, Optional<CloudProviderProfile>>() {
+            @Override
+            public Optional<CloudProviderProfile> load(final String type) throws CloudProviderException {
+                return Optional.fromNullable(CloudProviderCache.this.providerManager
+                    .getCloudProviderProfileByType(type));
+            }
+        });
+    }
+
+    private CacheBuilder<Object, Object> newCacheBuilder() {
+        return CacheBuilder.newBuilder().expireAfterWrite(CloudProviderCache.TTL_SECONDS, TimeUnit.SECONDS)
+            .maximumSize(CloudProviderCache.MAX_SIZE).recordStats();
+    }
+
+    public List<CloudProviderAccount> getCloudProviderAccountsByTenant(final String tenantId) throws CloudProviderException {
+        return CloudProviderCache.get(this.accountsByTenant, tenantId);
+    }
+
+    /**
+     * Returns the account if it is one of the accounts of the tenant, null otherwise.
+     */
+    public CloudProviderAccount getCloudProviderAccountByUuid(final String tenantId, final String uuid)
+        throws CloudProviderException {
+        return CloudProviderCache.get(this.accountsByUuid, new AccountKey(tenantId, uuid)).orNull();
+    }
+
+    /**
+     * Returns the profile of the given provider type, or null if there is none.
+     */
+    public CloudProviderProfile getCloudProviderProfileByType(final String type) throws CloudProviderException {
+        return CloudProviderCache.get(this.profilesByType, type).orNull();
+    }
+
+    public void invalidateTenant(final String tenantId) {
+        for (AccountKey key : this.accountsByUuid.asMap().keySet()) {
+            if (key.tenantId.equals(tenantId)) {
+                this.accountsByUuid.invalidate(key);
+            }
+        }
+        this.accountsByTenant.invalidate(tenantId);
+    }
+
+    /**
+     * Invalidates the account for every tenant which sees it, along with the account lists which contain it, as well
+     * as the account list of the given tenant in case the account was just added to it.
+     */
+    public void invalidateAccount(final String tenantId, final String accountUuid) {
+        for (AccountKey key : this.accountsByUuid.asMap().keySet()) {
+            if (key.uuid.equals(accountUuid)) {
+                this.accountsByUuid.invalidate(key);
+            }
+        }
+        for (Map.Entry<String, List<CloudProviderAccount>> entry : this.accountsByTenant.asMap().entrySet()) {
+            for (CloudProviderAccount account : entry.getValue()) {
+                if (accountUuid.equals(account.getUuid())) {
+                    this.accountsByTenant.invalidate(entry.getKey());
+                    break;
+                }
+            }
+        }
+        this.accountsByTenant.invalidate(tenantId);
+    }
+
+    public void invalidateAll() {
+        this.accountsByTenant.invalidateAll();
+        this.accountsByUuid.invalidateAll();
+        this.profilesByType.invalidateAll();
+    }
+
+    void onResourceStateChange(final String tenantId, final ResourceStateChangeEvent event) {
+        Object resource = event.getResource();
+        if (resource instanceof CloudProviderAccount) {
+            this.invalidateAccount(tenantId, ((CloudProviderAccount) resource).getUuid());
+        } else if (resource instanceof CloudProvider) {
+            this.invalidateTenant(tenantId);
+        }
+    }
+
+    public CacheStats getAccountsByTenantStats() {
+        return this.accountsByTenant.stats();
+    }
+
+    public CacheStats getAccountsByUuidStats() {
+        return this.accountsByUuid.stats();
+    }
+
+    public CacheStats getProfilesByTypeStats() {
+        return this.profilesByType.stats();
+    }
+
+    private static <K, V> V get(final LoadingCache<K, V> cache, final K key) throws CloudProviderException {
+        try {
+            return cache.get(key);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof CloudProviderException) {
+                throw (CloudProviderException) e.getCause();
+            }
+            CloudProviderException wrapped = new CloudProviderException(String.valueOf(e.getCause().getMessage()));
+            wrapped.initCause(e.getCause());
+            throw wrapped;
+        }
+    }
+
+    private static final class AccountKey {
+        final String tenantId;
+
+        final String uuid;
+
+        AccountKey(final String tenantId, final String uuid) {
+            this.tenantId = tenantId;
+            this.uuid = uuid;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof AccountKey)) {
+                return false;
+            }
+            AccountKey other = (AccountKey) obj;
+            return this.tenantId.equals(other.tenantId) && this.uuid.equals(other.uuid);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * this.tenantId.hashCode() + this.uuid.hashCode();
+        }
+    }
+
+}
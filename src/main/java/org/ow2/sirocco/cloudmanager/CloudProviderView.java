@@ -22,6 +22,11 @@
  */
 package org.ow2.sirocco.cloudmanager;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.enterprise.context.Dependent;
+import javax.enterprise.inject.Instance;
 import javax.inject.Inject;
 
 import org.ow2.sirocco.cloudmanager.core.api.ICloudProviderManager;
@@ -29,8 +34,8 @@ import org.ow2.sirocco.cloudmanager.core.api.exception.CloudProviderException;
 import org.ow2.sirocco.cloudmanager.model.cimi.extension.CloudProviderAccount;
 import org.ow2.sirocco.cloudmanager.model.cimi.extension.CloudProviderLocation;
 import org.ow2.sirocco.cloudmanager.model.cimi.extension.CloudProviderProfile;
+import org.ow2.sirocco.cloudmanager.util.BeanContainerReconciler;
 
-import com.vaadin.cdi.UIScoped;
 import com.vaadin.data.Property;
 import com.vaadin.data.Property.ValueChangeEvent;
 import com.vaadin.data.Property.ValueChangeListener;
@@ -47,7 +52,7 @@ import com.vaadin.ui.UI;
 import com.vaadin.ui.VerticalLayout;
 import com.vaadin.ui.VerticalSplitPanel;
 
-@UIScoped
+@Dependent
 public class CloudProviderView extends VerticalSplitPanel implements ValueChangeListener {
     private static final long serialVersionUID = 1L;
 
@@ -61,7 +66,10 @@ public class CloudProviderView extends VerticalSplitPanel implements ValueChange
     ICloudProviderManager cloudProviderManager;
 
     @Inject
-    private ProviderAccountCreationWizard providerAccountCreationWizard;
+    CloudProviderCache providerCache;
+
+    @Inject
+    private Instance<ProviderAccountCreationWizard> providerAccountCreationWizard;
 
     public CloudProviderView() {
         this.setSizeFull();
@@ -81,8 +89,9 @@ public class CloudProviderView extends VerticalSplitPanel implements ValueChange
 
             @Override
             public void buttonClick(final ClickEvent event) {
-                CloudProviderView.this.providerAccountCreationWizard.init(CloudProviderView.this);
-                UI.getCurrent().addWindow(CloudProviderView.this.providerAccountCreationWizard);
+                ProviderAccountCreationWizard wizard = CloudProviderView.this.providerAccountCreationWizard.get();
+                wizard.init(CloudProviderView.this);
+                UI.getCurrent().addWindow(wizard);
             }
         });
         actionButtonHeader.addComponent(button);
@@ -96,6 +105,7 @@ public class CloudProviderView extends VerticalSplitPanel implements ValueChange
 
             @Override
             public void buttonClick(final ClickEvent event) {
+                CloudProviderView.this.providerCache.invalidateTenant(((MyUI) UI.getCurrent()).getTenantId());
                 CloudProviderView.this.refresh();
             }
         });
@@ -112,14 +122,23 @@ public class CloudProviderView extends VerticalSplitPanel implements ValueChange
     }
 
     void refresh() {
-        this.providerAccountTable.getContainerDataSource().removeAllItems();
         try {
-            for (CloudProviderAccount providerAccount : this.cloudProviderManager.getCloudProviderAccountsByTenant(((MyUI) UI
+            List<CloudProviderAccountBean> accountBeans = new ArrayList<>();
+            for (CloudProviderAccount providerAccount : this.providerCache.getCloudProviderAccountsByTenant(((MyUI) UI
                 .getCurrent()).getTenantId())) {
-                CloudProviderProfile profile = this.cloudProviderManager.getCloudProviderProfileByType(providerAccount
+                CloudProviderProfile profile = this.providerCache.getCloudProviderProfileByType(providerAccount
                     .getCloudProvider().getCloudProviderType());
-                this.providerAccounts.addBean(new CloudProviderAccountBean(providerAccount, profile));
+                accountBeans.add(new CloudProviderAccountBean(providerAccount, profile));
             }
+            BeanContainerReconciler.reconcile(this.providerAccountTable, this.providerAccounts, accountBeans, "id",
+                new BeanContainerReconciler.BeanMerger<CloudProviderAccountBean>() {
+
+                    @Override
+                    public void merge(final CloudProviderAccountBean current, final CloudProviderAccountBean fresh) {
+                        current.account = fresh.account;
+                        current.profile = fresh.profile;
+                    }
+                });
         } catch (CloudProviderException e) {
             e.printStackTrace();
         }
@@ -140,7 +159,7 @@ public class CloudProviderView extends VerticalSplitPanel implements ValueChange
 
         table.setContainerDataSource(this.providerAccounts);
         table.setSizeFull();
-        table.setPageLength(0);
+        Util.setViewportRendering(table);
 
         table.addGeneratedColumn("locations", new LocationsColumnGenerator());
 
@@ -0,0 +1,135 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2013 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ */
+package org.ow2.sirocco.cloudmanager;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.ow2.sirocco.cloudmanager.core.api.exception.CloudProviderException;
+import org.ow2.sirocco.cloudmanager.util.FacetIndex.Facet;
+import org.ow2.sirocco.cloudmanager.util.FacetIndex.Selection;
+import org.ow2.sirocco.cloudmanager.util.ResourceState;
+
+import com.vaadin.data.Property.ValueChangeEvent;
+import com.vaadin.data.Property.ValueChangeListener;
+import com.vaadin.ui.HorizontalLayout;
+import com.vaadin.ui.OptionGroup;
+
+/**
+ * Facet filter shown above a resource table: one multi-select option group per facet, whose captions give the number
+ * of rows with each value among the rows matching the selection of the other facets. Counts are read from the facet
+ * index of the tenant's snapshot and updated by the view as events are applied.
+ */
+public class FacetPanel extends HorizontalLayout implements ValueChangeListener {
+    private static final long serialVersionUID = 1L;
+
+    public interface Listener {
+        Map<Object, Integer> getFacetCounts(Facet facet, Selection selection) throws CloudProviderException;
+
+        void facetSelectionChange();
+    }
+
+    private final Listener listener;
+
+    private final Map<Facet, OptionGroup> groups = new EnumMap<>(Facet.class);
+
+    private Selection selection = new Selection();
+
+    private boolean updating;
+
+    public FacetPanel(final Listener listener) {
+        this.listener = listener;
+        this.setMargin(true);
+        this.setSpacing(true);
+        this.addStyleName("facets");
+        this.addFacet(Facet.STATE, "State");
+        this.addFacet(Facet.PROVIDER, "Provider");
+        this.addFacet(Facet.LOCATION, "Location");
+    }
+
+    private void addFacet(final Facet facet, final String caption) {
+        OptionGroup group = new OptionGroup(caption);
+        group.setMultiSelect(true);
+        group.setImmediate(true);
+        group.addValueChangeListener(this);
+        this.groups.put(facet, group);
+        this.addComponent(group);
+    }
+
+    public Selection getSelection() {
+        return this.selection;
+    }
+
+    /**
+     * True if a row with these values passes the current selection.
+     */
+    public boolean matches(final ResourceState state, final String provider, final String location) {
+        return this.selection.matches(Facet.STATE, state) && this.selection.matches(Facet.PROVIDER, provider)
+            && this.selection.matches(Facet.LOCATION, location);
+    }
+
+    public void updateCounts() {
+        this.updating = true;
+        try {
+            for (Map.Entry<Facet, OptionGroup> facet : this.groups.entrySet()) {
+                Map<Object, Integer> counts = this.listener.getFacetCounts(facet.getKey(), this.selection);
+                Set<Object> selected = this.selection.get(facet.getKey());
+                OptionGroup group = facet.getValue();
+                group.removeAllItems();
+                for (Map.Entry<Object, Integer> count : counts.entrySet()) {
+                    if (count.getValue() > 0 || selected.contains(count.getKey())) {
+                        group.addItem(count.getKey());
+                        group.setItemCaption(count.getKey(), count.getKey() + " (" + count.getValue() + ")");
+                    }
+                }
+                // a selected value may have no row left
+                for (Object value : selected) {
+                    if (!counts.containsKey(value)) {
+                        group.addItem(value);
+                        group.setItemCaption(value, value + " (0)");
+                    }
+                }
+                group.setValue(selected);
+            }
+        } catch (CloudProviderException e) {
+            Util.diplayErrorMessageBox("Facet count error", e);
+        } finally {
+            this.updating = false;
+        }
+    }
+
+    @Override
+    public void valueChange(final ValueChangeEvent event) {
+        if (this.updating) {
+            return;
+        }
+        Selection newSelection = new Selection();
+        for (Map.Entry<Facet, OptionGroup> facet : this.groups.entrySet()) {
+            newSelection.select(facet.getKey(), (Set<?>) facet.getValue().getValue());
+        }
+        this.selection = newSelection;
+        this.listener.facetSelectionChange();
+    }
+
+}
@@ -0,0 +1,218 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2013 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ */
+package org.ow2.sirocco.cloudmanager;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.enterprise.context.Dependent;
+import javax.inject.Inject;
+
+import org.ow2.sirocco.cloudmanager.ResourceSnapshotStore.Aggregate;
+import org.ow2.sirocco.cloudmanager.core.api.exception.CloudProviderException;
+import org.ow2.sirocco.cloudmanager.model.cimi.Machine;
+import org.ow2.sirocco.cloudmanager.model.cimi.Volume;
+import org.ow2.sirocco.cloudmanager.util.FacetIndex.Facet;
+import org.ow2.sirocco.cloudmanager.util.FastFormat;
+
+import com.vaadin.data.Item;
+import com.vaadin.server.ThemeResource;
+import com.vaadin.ui.Button;
+import com.vaadin.ui.Button.ClickEvent;
+import com.vaadin.ui.Button.ClickListener;
+import com.vaadin.ui.FormLayout;
+import com.vaadin.ui.HorizontalLayout;
+import com.vaadin.ui.Label;
+import com.vaadin.ui.Table;
+import com.vaadin.ui.UI;
+import com.vaadin.ui.VerticalLayout;
+
+/**
+ * Overview of the machines and volumes of the tenant: counts by state, provider and location and the total vCPUs,
+ * memory and disk capacity of the machines and capacity of the volumes. The figures are the running aggregates of
+ * the tenant's {@link ResourceSnapshotStore}, so reading them does not scan the resources; the view is refreshed once
+ * per batch of resource state change events.
+ */
+@Dependent
+public class FleetSummaryView extends VerticalLayout implements ResourceEventView {
+    private static final long serialVersionUID = 1L;
+
+    private final Label machineCount = new Label();
+
+    private final Label cpuTotal = new Label();
+
+    private final Label memoryTotal = new Label();
+
+    private final Label diskTotal = new Label();
+
+    private final Label volumeCount = new Label();
+
+    private final Label volumeCapacityTotal = new Label();
+
+    private final Table stateTable;
+
+    private final Table providerTable;
+
+    private final Table locationTable;
+
+    @Inject
+    private ResourceSnapshotStore snapshotStore;
+
+    public FleetSummaryView() {
+        this.setSizeFull();
+
+        HorizontalLayout actionButtonHeader = new HorizontalLayout();
+        actionButtonHeader.setMargin(true);
+        actionButtonHeader.setSpacing(true);
+        actionButtonHeader.setWidth("100%");
+        actionButtonHeader.setHeight("50px");
+
+        Label spacer = new Label();
+        spacer.setWidth("100%");
+        actionButtonHeader.addComponent(spacer);
+        actionButtonHeader.setExpandRatio(spacer, 1.0f);
+
+        Button button = new Button("Refresh", new ClickListener() {
+
+            @Override
+            public void buttonClick(final ClickEvent event) {
+                String tenantId = ((MyUI) UI.getCurrent()).getTenantId();
+                FleetSummaryView.this.snapshotStore.invalidate(tenantId, Machine.class);
+                FleetSummaryView.this.snapshotStore.invalidate(tenantId, Volume.class);
+                FleetSummaryView.this.refresh();
+            }
+        });
+        button.setIcon(new ThemeResource("img/refresh.png"));
+        actionButtonHeader.addComponent(button);
+        this.addComponent(actionButtonHeader);
+
+        HorizontalLayout totals = new HorizontalLayout();
+        totals.setMargin(true);
+        totals.setSpacing(true);
+        FormLayout machineTotals = new FormLayout();
+        this.machineCount.setCaption("Instances");
+        machineTotals.addComponent(this.machineCount);
+        this.cpuTotal.setCaption("vCPUs");
+        machineTotals.addComponent(this.cpuTotal);
+        this.memoryTotal.setCaption("Memory");
+        machineTotals.addComponent(this.memoryTotal);
+        this.diskTotal.setCaption("Instance disks");
+        machineTotals.addComponent(this.diskTotal);
+        totals.addComponent(machineTotals);
+        FormLayout volumeTotals = new FormLayout();
+        this.volumeCount.setCaption("Volumes");
+        volumeTotals.addComponent(this.volumeCount);
+        this.volumeCapacityTotal.setCaption("Volume capacity");
+        volumeTotals.addComponent(this.volumeCapacityTotal);
+        totals.addComponent(volumeTotals);
+        this.addComponent(totals);
+
+        HorizontalLayout counts = new HorizontalLayout();
+        counts.setSizeFull();
+        counts.setMargin(true);
+        counts.setSpacing(true);
+        counts.addComponent(this.stateTable = FleetSummaryView.createCountTable("State"));
+        counts.addComponent(this.providerTable = FleetSummaryView.createCountTable("Provider"));
+        counts.addComponent(this.locationTable = FleetSummaryView.createCountTable("Location"));
+        this.addComponent(counts);
+        this.setExpandRatio(counts, 1.0f);
+    }
+
+    private static Table createCountTable(final String caption) {
+        Table table = new Table();
+        table.setSizeFull();
+        table.addContainerProperty("value", String.class, null);
+        table.addContainerProperty("instances", Integer.class, null);
+        table.addContainerProperty("volumes", Integer.class, null);
+        table.setColumnHeaders(caption, "Instances", "Volumes");
+        return table;
+    }
+
+    @Override
+    public void refresh() {
+        String tenantId = ((MyUI) UI.getCurrent()).getTenantId();
+        Aggregate machines;
+        Aggregate volumes;
+        try {
+            machines = this.snapshotStore.getMachineAggregate(tenantId);
+            volumes = this.snapshotStore.getVolumeAggregate(tenantId);
+        } catch (CloudProviderException e) {
+            Util.diplayErrorMessageBox("Summary error", e);
+            return;
+        }
+        this.machineCount.setValue(String.valueOf(machines.getCount()));
+        this.cpuTotal.setValue(String.valueOf(machines.getTotal(ResourceSnapshotStore.MACHINE_CPU)));
+        this.memoryTotal.setValue(FleetSummaryView.kibibytes(machines.getTotal(ResourceSnapshotStore.MACHINE_MEMORY)));
+        this.diskTotal.setValue(FleetSummaryView.kilobytes(machines
+            .getTotal(ResourceSnapshotStore.MACHINE_DISK_CAPACITY)));
+        this.volumeCount.setValue(String.valueOf(volumes.getCount()));
+        this.volumeCapacityTotal.setValue(FleetSummaryView.kilobytes(volumes
+            .getTotal(ResourceSnapshotStore.VOLUME_CAPACITY)));
+        FleetSummaryView.fillCountTable(this.stateTable, machines.getCounts(Facet.STATE), volumes
+            .getCounts(Facet.STATE));
+        FleetSummaryView.fillCountTable(this.providerTable, machines.getCounts(Facet.PROVIDER), volumes
+            .getCounts(Facet.PROVIDER));
+        FleetSummaryView.fillCountTable(this.locationTable, machines.getCounts(Facet.LOCATION), volumes
+            .getCounts(Facet.LOCATION));
+    }
+
+    @Override
+    public void updatesApplied() {
+        this.refresh();
+    }
+
+    private static void fillCountTable(final Table table, final Map<Object, Integer> machineCounts,
+        final Map<Object, Integer> volumeCounts) {
+        // values of a facet have the same type for machines and volumes
+        Set<Object> values = new TreeSet<>(machineCounts.keySet());
+        values.addAll(volumeCounts.keySet());
+        table.removeAllItems();
+        for (Object value : values) {
+            Item item = table.addItem(value);
+            item.getItemProperty("value").setValue(value.toString());
+            item.getItemProperty("instances").setValue(FleetSummaryView.zeroIfNull(machineCounts.get(value)));
+            item.getItemProperty("volumes").setValue(FleetSummaryView.zeroIfNull(volumeCounts.get(value)));
+        }
+    }
+
+    private static Integer zeroIfNull(final Integer count) {
+        return count != null ? count : 0;
+    }
+
+    private static String kibibytes(final long value) {
+        return value <= Integer.MAX_VALUE ? FastFormat.kibibytes((int) value) : (value >> 20) + " GB";
+    }
+
+    private static String kilobytes(final long value) {
+        return value <= Integer.MAX_VALUE ? FastFormat.kilobytes((int) value) : value / (1000 * 1000) + " GB";
+    }
+
+    @Override
+    public void attach() {
+        super.attach();
+        // the aggregates are cheap to read: always show the current figures
+        this.refresh();
+    }
+
+}
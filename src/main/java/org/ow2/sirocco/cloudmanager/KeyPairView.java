@@ -22,9 +22,12 @@
  */
 package org.ow2.sirocco.cloudmanager;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.Set;
 
+import javax.enterprise.context.Dependent;
 import javax.inject.Inject;
 
 import org.ow2.sirocco.cloudmanager.core.api.ICredentialsManager;
@@ -32,8 +35,8 @@ import org.ow2.sirocco.cloudmanager.core.api.exception.CloudProviderException;
 import org.ow2.sirocco.cloudmanager.model.cimi.Credentials;
 import org.ow2.sirocco.cloudmanager.model.cimi.CredentialsCreate;
 import org.ow2.sirocco.cloudmanager.model.cimi.CredentialsTemplate;
+import org.ow2.sirocco.cloudmanager.util.BeanContainerReconciler;
 
-import com.vaadin.cdi.UIScoped;
 import com.vaadin.data.Property.ValueChangeEvent;
 import com.vaadin.data.Property.ValueChangeListener;
 import com.vaadin.data.util.BeanContainer;
@@ -48,7 +51,7 @@ import com.vaadin.ui.Table;
 import com.vaadin.ui.UI;
 import com.vaadin.ui.VerticalLayout;
 
-@UIScoped
+@Dependent
 public class KeyPairView extends VerticalLayout implements ValueChangeListener {
     private static final long serialVersionUID = 1L;
 
@@ -61,6 +64,12 @@ public class KeyPairView extends VerticalLayout implements ValueChangeListener {
     @Inject
     private ICredentialsManager credentialManager;
 
+    @Inject
+    private BackendCommandExecutor commandExecutor;
+
+    @Inject
+    private ResourceSearchIndex searchIndex;
+
     public KeyPairView() {
         this.setSizeFull();
 
@@ -114,16 +123,30 @@ public class KeyPairView extends VerticalLayout implements ValueChangeListener {
                         @Override
                         public void response(final boolean ok, final boolean ignored) {
                             if (ok) {
-                                for (Object id : selectedKeyPairIds) {
-                                    try {
-                                        KeyPairView.this.credentialManager.deleteCredentials(id.toString());
-                                        KeyPairView.this.keyPairs.removeItem(id);
-                                    } catch (CloudProviderException e) {
-                                        e.printStackTrace();
+                                BulkProgressWindow.start(new BulkOperation(KeyPairView.this.commandExecutor,
+                                    "Deleting key pairs", BulkOperation.items(KeyPairView.this.keyPairs,
+                                        selectedKeyPairIds, "name"), new BulkOperation.Action() {
+                                        @Override
+                                        public void execute(final String id) throws CloudProviderException {
+                                            KeyPairView.this.credentialManager.deleteCredentials(id);
+                                        }
+                                    }, BulkOperation.parallelism("keyPair")), new BulkOperation.Listener() {
+                                    @Override
+                                    public void progress(final BulkOperation operation) {
+                                    }
+
+                                    @Override
+                                    public void completed(final BulkOperation operation) {
+                                        String tenantId = ((MyUI) UI.getCurrent()).getTenantId();
+                                        for (String id : operation.getSucceeded()) {
+                                            KeyPairView.this.keyPairs.removeItem(id);
+                                            KeyPairView.this.searchIndex.remove(tenantId,
+                                                ResourceSearchIndex.Type.KEY_PAIR, id);
+                                        }
+                                        KeyPairView.this.keyPairTable.setValue(null);
+                                        KeyPairView.this.valueChange(null);
                                     }
-                                }
-                                KeyPairView.this.keyPairTable.setValue(null);
-                                KeyPairView.this.valueChange(null);
+                                });
                             }
                         }
                     });
@@ -154,11 +177,16 @@ public class KeyPairView extends VerticalLayout implements ValueChangeListener {
     }
 
     void refresh() {
-        this.keyPairTable.getContainerDataSource().removeAllItems();
         try {
-            for (Credentials cred : this.credentialManager.getCredentials()) {
-                this.keyPairs.addBean(new KeyPairBean(cred));
+            List<KeyPairBean> keyPairBeans = new ArrayList<>();
+            List<Credentials> credentials = this.credentialManager.getCredentials();
+            for (Credentials cred : credentials) {
+                keyPairBeans.add(new KeyPairBean(cred));
             }
+            BeanContainerReconciler.reconcile(this.keyPairTable, this.keyPairs, keyPairBeans, "id");
+            // key pairs have no state change events
+            this.searchIndex.reindex(((MyUI) UI.getCurrent()).getTenantId(), ResourceSearchIndex.Type.KEY_PAIR,
+                credentials);
         } catch (CloudProviderException e) {
             e.printStackTrace();
         }
@@ -172,7 +200,7 @@ public class KeyPairView extends VerticalLayout implements ValueChangeListener {
         table.setContainerDataSource(this.keyPairs);
 
         table.setSizeFull();
-        table.setPageLength(0);
+        Util.setViewportRendering(table);
 
         table.setSelectable(true);
         table.setMultiSelect(true);
@@ -28,17 +28,18 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Set;
 
+import javax.annotation.Resource;
+import javax.enterprise.concurrent.ManagedExecutorService;
 import javax.inject.Inject;
 
-import org.ow2.sirocco.cloudmanager.MachineView.MachineBean;
-import org.ow2.sirocco.cloudmanager.core.api.ICloudProviderManager;
 import org.ow2.sirocco.cloudmanager.core.api.ICredentialsManager;
 import org.ow2.sirocco.cloudmanager.core.api.IMachineImageManager;
 import org.ow2.sirocco.cloudmanager.core.api.IMachineManager;
 import org.ow2.sirocco.cloudmanager.core.api.INetworkManager;
+import org.ow2.sirocco.cloudmanager.core.api.IdentityContext;
+import org.ow2.sirocco.cloudmanager.core.api.QueryParams;
 import org.ow2.sirocco.cloudmanager.core.api.exception.CloudProviderException;
 import org.ow2.sirocco.cloudmanager.model.cimi.Credentials;
-import org.ow2.sirocco.cloudmanager.model.cimi.Job;
 import org.ow2.sirocco.cloudmanager.model.cimi.Machine;
 import org.ow2.sirocco.cloudmanager.model.cimi.MachineConfiguration;
 import org.ow2.sirocco.cloudmanager.model.cimi.MachineCreate;
@@ -47,8 +48,10 @@ import org.ow2.sirocco.cloudmanager.model.cimi.MachineTemplate;
 import org.ow2.sirocco.cloudmanager.model.cimi.MachineTemplateNetworkInterface;
 import org.ow2.sirocco.cloudmanager.model.cimi.Network;
 import org.ow2.sirocco.cloudmanager.model.cimi.extension.CloudProviderAccount;
+import org.ow2.sirocco.cloudmanager.model.cimi.extension.CloudProviderLocation;
 import org.ow2.sirocco.cloudmanager.model.cimi.extension.PlacementHint;
 import org.ow2.sirocco.cloudmanager.model.cimi.extension.ProviderMapping;
+import org.ow2.sirocco.cloudmanager.util.ProviderMappingIndex;
 import org.vaadin.teemu.wizards.Wizard;
 import org.vaadin.teemu.wizards.WizardStep;
 import org.vaadin.teemu.wizards.event.WizardCancelledEvent;
@@ -78,6 +81,7 @@ import com.vaadin.ui.Table.TableTransferable;
 import com.vaadin.ui.TextArea;
 import com.vaadin.ui.TwinColSelect;
 import com.vaadin.ui.UI;
+import com.vaadin.ui.UIDetachedException;
 import com.vaadin.ui.VerticalLayout;
 import com.vaadin.ui.Window;
 
@@ -109,7 +113,7 @@ public class MachineCreationWizard extends Window implements WizardProgressListe
     private HostPlacementStep hostPlacementStep;
 
     @Inject
-    private ICloudProviderManager providerManager;
+    private CloudProviderCache providerCache;
 
     @Inject
     private IMachineManager machineManager;
@@ -123,6 +127,29 @@ public class MachineCreationWizard extends Window implements WizardProgressListe
     @Inject
     private INetworkManager networkManager;
 
+    @Inject
+    private IdentityContext identityContext;
+
+    @Resource
+    private ManagedExecutorService executor;
+
+    private volatile int initGeneration;
+
+    /**
+     * Each index is loaded under its own lock, so that the image and config listings run concurrently and a second
+     * fetch waits for the listing in progress instead of repeating it. The indexes are published through volatile
+     * fields, which init resets without taking the locks, so that it never waits for a listing.
+     */
+    private final Object imageIndexLock = new Object();
+
+    private final Object configIndexLock = new Object();
+
+    private volatile ProviderMappingIndex<MachineImage> imageIndex;
+
+    private volatile ProviderMappingIndex<MachineConfiguration> configIndex;
+
+    private volatile int providerGeneration;
+
     public MachineCreationWizard() {
         super("Machine Creation");
         this.center();
@@ -165,8 +192,8 @@ public class MachineCreationWizard extends Window implements WizardProgressListe
 
         this.placementStep.providerBox.removeAllItems();
         try {
-            this.placementStep.setProviderManager(this.providerManager);
-            for (CloudProviderAccount providerAccount : this.providerManager.getCloudProviderAccountsByTenant(tenantId)) {
+            this.placementStep.setProviderCache(this.providerCache);
+            for (CloudProviderAccount providerAccount : this.providerCache.getCloudProviderAccountsByTenant(tenantId)) {
                 this.placementStep.providerBox.addItem(providerAccount.getUuid());
                 this.placementStep.providerBox.setItemCaption(providerAccount.getUuid(), providerAccount.getCloudProvider()
                     .getDescription());
@@ -182,78 +209,286 @@ public class MachineCreationWizard extends Window implements WizardProgressListe
         this.metadataStep.nameField.setValue("");
         this.metadataStep.descriptionField.setValue("");
 
+        this.imageIndex = null;
+        this.configIndex = null;
         this.keyPairStep.keyPairBox.removeAllItems();
-        try {
-            for (Credentials cred : this.credentialsManager.getCredentials()) {
-                this.keyPairStep.keyPairBox.addItem(cred.getUuid());
-                this.keyPairStep.keyPairBox.setItemCaption(cred.getUuid(), cred.getName());
+        this.initGeneration++;
+        this.loading(this.keyPairStep.keyPairBox);
+        this.executor.execute(new AsyncFetch<List<Credentials>>(false, this.keyPairStep.keyPairBox, "select key pair") {
+            @Override
+            List<Credentials> fetch() throws CloudProviderException {
+                return MachineCreationWizard.this.credentialsManager.getCredentials();
             }
-        } catch (CloudProviderException e) {
-            Util.diplayErrorMessageBox("Internal error", e);
-        }
+
+            @Override
+            void apply(final List<Credentials> credentials) {
+                ComboBox keyPairBox = MachineCreationWizard.this.keyPairStep.keyPairBox;
+                for (Credentials cred : credentials) {
+                    keyPairBox.addItem(cred.getUuid());
+                    keyPairBox.setItemCaption(cred.getUuid(), cred.getName());
+                }
+            }
+        });
         this.updateProviderSpecificResources();
         return true;
     }
 
+    /**
+     * Fetches images, machine configs, networks and machines of the selected provider account and location
+     * concurrently; each step is filled in as soon as its own data arrives. Results of a fetch started before the
+     * latest provider or location change are discarded. Networks and machines are filtered by the backend, images
+     * and configs are listed once per wizard session and looked up through a per-account index.
+     */
     private void updateProviderSpecificResources() {
+        final String accountId = this.getSelectedProviderAccountId();
+        final String locationConstraint = this.getLocationConstraint();
+        CloudProviderLocation location = this.placementStep.getSelectedLocation();
+        final String locationId = location != null ? location.getUuid() : null;
+        this.providerGeneration++;
+
         this.imageStep.imageBox.removeAllItems();
-        try {
-            for (MachineImage image : this.machineImageManager.getMachineImages()) {
-                ProviderMapping mapping = ProviderMapping.find(image, this.getSelectedProviderAccountId(),
-                    this.getLocationConstraint());
-                if (mapping == null) {
-                    continue;
+        this.configStep.configBox.removeAllItems();
+        this.networkStep.nics.removeAllItems();
+        this.networkStep.nets.removeAllItems();
+        this.hostPlacementStep.machineSelect.removeAllItems();
+        if (accountId == null) {
+            // the fetches in flight for the previous provider are discarded and no longer restore the steps
+            this.loaded(this.imageStep.imageBox, "select image");
+            this.loaded(this.configStep.configBox, "select config");
+            this.networkStep.netTable.setCaption("Networks");
+            this.hostPlacementStep.machineSelect.setLeftColumnCaption("Available machines");
+            return;
+        }
+
+        this.loading(this.imageStep.imageBox);
+        this.executor.execute(new AsyncFetch<List<MachineImage>>(true, this.imageStep.imageBox, "select image") {
+            @Override
+            List<MachineImage> fetch() throws CloudProviderException {
+                return MachineCreationWizard.this.getImageIndex().find(accountId, locationConstraint);
+            }
+
+            @Override
+            void apply(final List<MachineImage> images) {
+                ComboBox imageBox = MachineCreationWizard.this.imageStep.imageBox;
+                for (MachineImage image : images) {
+                    imageBox.addItem(image.getUuid());
+                    imageBox.setItemCaption(image.getUuid(), image.getName());
                 }
-                this.imageStep.imageBox.addItem(image.getUuid());
-                this.imageStep.imageBox.setItemCaption(image.getUuid(), image.getName());
             }
-        } catch (CloudProviderException e) {
-            Util.diplayErrorMessageBox("Internal error", e);
-        }
-        this.configStep.configBox.removeAllItems();
-        List<MachineConfiguration> configs = new ArrayList<>();
-        try {
-            for (MachineConfiguration config : this.machineManager.getMachineConfigurations().getItems()) {
-                ProviderMapping mapping = ProviderMapping.find(config, this.getSelectedProviderAccountId(),
-                    this.getLocationConstraint());
-                if (mapping == null) {
-                    continue;
+        });
+
+        this.loading(this.configStep.configBox);
+        this.executor.execute(new AsyncFetch<List<MachineConfiguration>>(true, this.configStep.configBox,
+            "select config") {
+            @Override
+            List<MachineConfiguration> fetch() throws CloudProviderException {
+                List<MachineConfiguration> configs = new ArrayList<>(MachineCreationWizard.this.getConfigIndex().find(
+                    accountId, locationConstraint));
+                Collections.sort(configs);
+                return configs;
+            }
+
+            @Override
+            void apply(final List<MachineConfiguration> configs) {
+                ComboBox configBox = MachineCreationWizard.this.configStep.configBox;
+                for (MachineConfiguration config : configs) {
+                    configBox.addItem(config.getUuid());
+                    configBox.setItemCaption(config.getUuid(), config.getName());
                 }
-                configs.add(config);
             }
-        } catch (CloudProviderException e) {
-            Util.diplayErrorMessageBox("Internal error", e);
+        });
+
+        this.networkStep.netTable.setCaption("Networks (loading...)");
+        this.executor.execute(new AsyncFetch<List<Network>>(true, null, null) {
+            @Override
+            List<Network> fetch() throws CloudProviderException {
+                return MachineCreationWizard.this.networkManager.getNetworks(
+                    MachineCreationWizard.this.placementFilter(accountId, locationId)).getItems();
+            }
+
+            @Override
+            void apply(final List<Network> nets) {
+                for (Network net : nets) {
+                    MachineCreationWizard.this.networkStep.nets.addBean(new NetBean(net));
+                }
+            }
+
+            @Override
+            void done() {
+                MachineCreationWizard.this.networkStep.netTable.setCaption("Networks");
+            }
+        });
+
+        this.hostPlacementStep.machineSelect.setLeftColumnCaption("Loading machines...");
+        this.executor.execute(new AsyncFetch<List<Machine>>(true, null, null) {
+            @Override
+            List<Machine> fetch() throws CloudProviderException {
+                return MachineCreationWizard.this.machineManager.getMachines(
+                    MachineCreationWizard.this.placementFilter(accountId, locationId)).getItems();
+            }
+
+            @Override
+            void apply(final List<Machine> machines) {
+                TwinColSelect machineSelect = MachineCreationWizard.this.hostPlacementStep.machineSelect;
+                for (Machine machine : machines) {
+                    machineSelect.addItem(machine.getUuid());
+                    machineSelect.setItemCaption(machine.getUuid(), machine.getName());
+                }
+            }
+
+            @Override
+            void done() {
+                MachineCreationWizard.this.hostPlacementStep.machineSelect.setLeftColumnCaption("Available machines");
+            }
+        });
+    }
+
+    private QueryParams placementFilter(final String accountId, final String locationId) {
+        QueryParams.Builder builder = new QueryParams.Builder().filterByProvider(accountId);
+        if (locationId != null) {
+            builder.filterByLocation(locationId);
         }
-        Collections.sort(configs);
-        for (MachineConfiguration config : configs) {
-            this.configStep.configBox.addItem(config.getUuid());
-            this.configStep.configBox.setItemCaption(config.getUuid(), config.getName());
+        return builder.build();
+    }
+
+    private ProviderMappingIndex<MachineImage> getImageIndex() throws CloudProviderException {
+        ProviderMappingIndex<MachineImage> index = this.imageIndex;
+        if (index != null) {
+            return index;
+        }
+        synchronized (this.imageIndexLock) {
+            index = this.imageIndex;
+            if (index == null) {
+                index = new ProviderMappingIndex<MachineImage>() {
+                    @Override
+                    protected List<ProviderMapping> getProviderMappings(final MachineImage image) {
+                        return image.getProviderMappings();
+                    }
+
+                    @Override
+                    protected ProviderMapping find(final MachineImage image, final String accountId,
+                        final String locationConstraint) {
+                        return ProviderMapping.find(image, accountId, locationConstraint);
+                    }
+                }.index(this.machineImageManager.getMachineImages());
+                this.imageIndex = index;
+            }
+            return index;
         }
+    }
 
-        this.networkStep.nics.removeAllItems();
-        this.networkStep.nets.removeAllItems();
-        try {
-            for (Network net : this.networkManager.getNetworks().getItems()) {
-                if (net.getCloudProviderAccount().getUuid().equals(this.getSelectedProviderAccountId())
-                    && net.getLocation().matchLocationConstraint(this.getLocationConstraint())) {
-                    this.networkStep.nets.addBean(new NetBean(net));
-                }
+    private ProviderMappingIndex<MachineConfiguration> getConfigIndex() throws CloudProviderException {
+        ProviderMappingIndex<MachineConfiguration> index = this.configIndex;
+        if (index != null) {
+            return index;
+        }
+        synchronized (this.configIndexLock) {
+            index = this.configIndex;
+            if (index == null) {
+                index = new ProviderMappingIndex<MachineConfiguration>() {
+                    @Override
+                    protected List<ProviderMapping> getProviderMappings(final MachineConfiguration config) {
+                        return config.getProviderMappings();
+                    }
+
+                    @Override
+                    protected ProviderMapping find(final MachineConfiguration config, final String accountId,
+                        final String locationConstraint) {
+                        return ProviderMapping.find(config, accountId, locationConstraint);
+                    }
+                }.index(this.machineManager.getMachineConfigurations().getItems());
+                this.configIndex = index;
             }
-        } catch (CloudProviderException e) {
-            Util.diplayErrorMessageBox("Internal error", e);
+            return index;
         }
+    }
 
-        this.hostPlacementStep.machineSelect.removeAllItems();
-        try {
-            for (Machine machine : this.machineManager.getMachines().getItems()) {
-                if (machine.getCloudProviderAccount().getUuid().equals(this.getSelectedProviderAccountId())
-                    && machine.getLocation().matchLocationConstraint(this.getLocationConstraint())) {
-                    this.hostPlacementStep.machineSelect.addItem(machine.getUuid());
-                    this.hostPlacementStep.machineSelect.setItemCaption(machine.getUuid(), machine.getName());
-                }
+    private void loading(final ComboBox box) {
+        box.setInputPrompt("loading...");
+        box.setEnabled(false);
+    }
+
+    private void loaded(final ComboBox box, final String inputPrompt) {
+        box.setInputPrompt(inputPrompt);
+        box.setEnabled(true);
+    }
+
+    /**
+     * Runs a backend fetch on the managed executor, with the user and tenant of the UI set on the identity context of
+     * the executor thread, and applies its result to the wizard under the UI lock, then pushes the change to the
+     * browser. The step is restored whether the fetch succeeded or failed, the combo box of the step being enabled
+     * again with its prompt. Results are dropped if the wizard was re-initialized (or, for provider specific data, the
+     * placement changed) in the meantime, the newer fetch restoring the step.
+     */
+    private abstract class AsyncFetch<T> implements Runnable {
+        private final UI ui = UI.getCurrent();
+
+        private final CallerIdentity identity = CallerIdentity.of((MyUI) this.ui);
+
+        private final boolean providerSpecific;
+
+        private final int generation;
+
+        private final ComboBox box;
+
+        private final String inputPrompt;
+
+        AsyncFetch(final boolean providerSpecific, final ComboBox box, final String inputPrompt) {
+            this.providerSpecific = providerSpecific;
+            this.generation = this.currentGeneration();
+            this.box = box;
+            this.inputPrompt = inputPrompt;
+        }
+
+        private int currentGeneration() {
+            return this.providerSpecific ? MachineCreationWizard.this.providerGeneration
+                : MachineCreationWizard.this.initGeneration;
+        }
+
+        abstract T fetch() throws CloudProviderException;
+
+        abstract void apply(T result);
+
+        void done() {
+            if (this.box != null) {
+                MachineCreationWizard.this.loaded(this.box, this.inputPrompt);
+            }
+        }
+
+        @Override
+        public void run() {
+            T result = null;
+            CloudProviderException error = null;
+            CallerIdentity previous = this.identity.swap(MachineCreationWizard.this.identityContext);
+            try {
+                result = this.fetch();
+            } catch (CloudProviderException e) {
+                error = e;
+            } finally {
+                previous.apply(MachineCreationWizard.this.identityContext);
+            }
+            final T fetched = result;
+            final CloudProviderException fetchError = error;
+            try {
+                this.ui.access(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (AsyncFetch.this.generation != AsyncFetch.this.currentGeneration()) {
+                            return;
+                        }
+                        if (fetchError != null) {
+                            Util.diplayErrorMessageBox("Internal error", fetchError);
+                        } else {
+                            AsyncFetch.this.apply(fetched);
+                        }
+                        AsyncFetch.this.done();
+                        MachineCreationWizard.this.wizard.updateButtons();
+                        AsyncFetch.this.ui.push();
+                    }
+                });
+            } catch (UIDetachedException e) {
+                // UI closed while fetching
             }
-        } catch (CloudProviderException e) {
-            Util.diplayErrorMessageBox("Internal error", e);
         }
     }
 
@@ -340,10 +575,9 @@ public class MachineCreationWizard extends Window implements WizardProgressListe
 
             machineCreate.setMachineTemplate(machineTemplate);
 
-            Job job = MachineCreationWizard.this.machineManager.createMachine(machineCreate);
-            Machine newMachine = (Machine) job.getAffectedResources().get(0);
+            MachineCreationWizard.this.machineManager.createMachine(machineCreate);
 
-            MachineCreationWizard.this.machineView.machines.addBeanAt(0, new MachineBean(newMachine));
+            MachineCreationWizard.this.machineView.refresh();
 
             UI.getCurrent().push();
         } catch (CloudProviderException e) {
@@ -574,7 +808,7 @@ public class MachineCreationWizard extends Window implements WizardProgressListe
             this.keyPairBox = new ComboBox("Key pair");
             this.keyPairBox.setTextInputAllowed(false);
             this.keyPairBox.setNullSelectionAllowed(false);
-            this.keyPairBox.setInputPrompt("select config");
+            this.keyPairBox.setInputPrompt("select key pair");
             this.keyPairBox.setImmediate(true);
             this.content.addComponent(this.keyPairBox);
         }
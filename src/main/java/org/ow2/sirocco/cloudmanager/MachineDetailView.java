@@ -92,8 +92,9 @@ public class MachineDetailView extends VerticalLayout implements MetadataView.Ca
         Map<String, Object> updatedAttributes = new HashMap<>();
         updatedAttributes.put("properties", metadata);
         try {
-            this.machineBean.machine = (Machine) MachineDetailView.this.machineView.machineManager.updateMachineAttributes(
-                MachineDetailView.this.machineBean.getId(), updatedAttributes).getTargetResource();
+            Machine machine = (Machine) this.machineView.machineManager.updateMachineAttributes(
+                this.machineBean.getId(), updatedAttributes).getTargetResource();
+            this.machineBean = this.machineView.replaceMachine(machine);
         } catch (CloudProviderException e) {
             // TODO
             e.printStackTrace();
@@ -117,16 +118,16 @@ public class MachineDetailView extends VerticalLayout implements MetadataView.Ca
                             public void response(final String value) {
                                 Map<String, Object> updatedAttributes = new HashMap<>();
                                 updatedAttributes.put(attributeName, value);
+                                MachineView view = MachineDetailView.this.machineView;
                                 try {
-                                    MachineDetailView.this.machineBean.machine = (Machine) MachineDetailView.this.machineView.machineManager
-                                        .updateMachineAttributes(MachineDetailView.this.machineBean.getId(), updatedAttributes)
+                                    Machine machine = (Machine) view.machineManager.updateMachineAttributes(
+                                        MachineDetailView.this.machineBean.getId(), updatedAttributes)
                                         .getTargetResource();
+                                    MachineDetailView.this.machineBean = view.replaceMachine(machine);
                                 } catch (CloudProviderException e) {
                                     // TODO
                                     e.printStackTrace();
                                 }
-                                MachineDetailView.this.machineBean = MachineDetailView.this.machineView.updateMachineAttribute(
-                                    MachineDetailView.this.machineBean, attributeName, value);
                                 MachineDetailView.this.update(MachineDetailView.this.machineBean);
                             }
                         });
@@ -146,18 +147,25 @@ public class MachineDetailView extends VerticalLayout implements MetadataView.Ca
         this.setVisible(false);
     }
 
-    public Machine getMachine() {
-        return this.machineBean.machine;
-    }
-
     public boolean focusOnMachine(final String machineUuid) {
-        return this.machineBean != null && this.machineBean.machine.getUuid().equals(machineUuid);
+        return this.machineBean != null && this.machineBean.getId().equals(machineUuid);
     }
 
     public void update(final MachineBean machineBean) {
+        Machine machine;
+        try {
+            machine = this.machineView.detailCache.getMachine(((MyUI) UI.getCurrent()).getTenantId(),
+                machineBean.getId());
+        } catch (CloudProviderException e) {
+            Util.diplayErrorMessageBox("Cannot get machine " + machineBean.getName(), e);
+            return;
+        }
+        if (machine == null) {
+            this.hide();
+            return;
+        }
         this.setVisible(true);
         this.machineBean = machineBean;
-        Machine machine = machineBean.machine;
         this.title.setValue("Machine " + machine.getName());
         this.attributeTable.getContainerDataSource().removeAllItems();
         this.index = 1;
@@ -90,8 +90,9 @@ public class MachineImageDetailView extends VerticalLayout implements MetadataVi
         Map<String, Object> updatedAttributes = new HashMap<>();
         updatedAttributes.put("properties", metadata);
         try {
-            this.machineImageBean.machineImage = this.machineImageView.machineImageManager.updateMachineImageAttributes(
+            MachineImage machineImage = this.machineImageView.machineImageManager.updateMachineImageAttributes(
                 this.machineImageBean.getId(), updatedAttributes);
+            this.machineImageBean = this.machineImageView.replaceMachineImage(machineImage);
         } catch (CloudProviderException e) {
             // TODO
             e.printStackTrace();
@@ -115,17 +116,16 @@ public class MachineImageDetailView extends VerticalLayout implements MetadataVi
                             public void response(final String value) {
                                 Map<String, Object> updatedAttributes = new HashMap<>();
                                 updatedAttributes.put(attributeName, value);
+                                MachineImageView view = MachineImageDetailView.this.machineImageView;
                                 try {
-                                    MachineImageDetailView.this.machineImageBean.machineImage = MachineImageDetailView.this.machineImageView.machineImageManager
-                                        .updateMachineImageAttributes(MachineImageDetailView.this.machineImageBean.getId(),
-                                            updatedAttributes);
+                                    MachineImage machineImage = view.machineImageManager.updateMachineImageAttributes(
+                                        MachineImageDetailView.this.machineImageBean.getId(), updatedAttributes);
+                                    MachineImageDetailView.this.machineImageBean = view
+                                        .replaceMachineImage(machineImage);
                                 } catch (CloudProviderException e) {
                                     // TODO
                                     e.printStackTrace();
                                 }
-                                MachineImageDetailView.this.machineImageBean = MachineImageDetailView.this.machineImageView
-                                    .updateMachineImageAttribute(MachineImageDetailView.this.machineImageBean, attributeName,
-                                        value);
                                 MachineImageDetailView.this.update(MachineImageDetailView.this.machineImageBean);
                             }
                         });
@@ -145,18 +145,25 @@ public class MachineImageDetailView extends VerticalLayout implements MetadataVi
         this.setVisible(false);
     }
 
-    public MachineImage getMachineImage() {
-        return this.machineImageBean.machineImage;
-    }
-
     public boolean focusOnMachineImage(final String machineImageUuid) {
-        return this.machineImageBean != null && this.machineImageBean.machineImage.getUuid().equals(machineImageUuid);
+        return this.machineImageBean != null && this.machineImageBean.getId().equals(machineImageUuid);
     }
 
     public void update(final MachineImageBean machineImageBean) {
+        MachineImage machineImage;
+        try {
+            machineImage = this.machineImageView.detailCache.getMachineImage(
+                ((MyUI) UI.getCurrent()).getTenantId(), machineImageBean.getId());
+        } catch (CloudProviderException e) {
+            Util.diplayErrorMessageBox("Cannot get image " + machineImageBean.getName(), e);
+            return;
+        }
+        if (machineImage == null) {
+            this.hide();
+            return;
+        }
         this.setVisible(true);
         this.machineImageBean = machineImageBean;
-        MachineImage machineImage = machineImageBean.machineImage;
         this.title.setValue("Image " + machineImage.getName());
         this.attributeTable.getContainerDataSource().removeAllItems();
         this.index = 1;
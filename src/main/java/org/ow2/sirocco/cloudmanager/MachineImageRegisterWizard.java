@@ -27,10 +27,10 @@ import java.util.HashMap;
 import javax.inject.Inject;
 
 import org.ow2.sirocco.cloudmanager.MachineImageView.MachineImageBean;
-import org.ow2.sirocco.cloudmanager.core.api.ICloudProviderManager;
 import org.ow2.sirocco.cloudmanager.core.api.IMachineImageManager;
 import org.ow2.sirocco.cloudmanager.core.api.IMachineManager;
 import org.ow2.sirocco.cloudmanager.core.api.exception.CloudProviderException;
+import org.ow2.sirocco.cloudmanager.core.api.exception.ResourceNotFoundException;
 import org.ow2.sirocco.cloudmanager.model.cimi.MachineImage;
 import org.ow2.sirocco.cloudmanager.model.cimi.extension.CloudProviderAccount;
 import org.ow2.sirocco.cloudmanager.model.cimi.extension.CloudProviderLocation;
@@ -70,7 +70,7 @@ public class MachineImageRegisterWizard extends Window implements WizardProgress
     private ImageStep imageStep;
 
     @Inject
-    private ICloudProviderManager providerManager;
+    private CloudProviderCache providerCache;
 
     @Inject
     private IMachineManager machineManager;
@@ -107,8 +107,8 @@ public class MachineImageRegisterWizard extends Window implements WizardProgress
 
         this.placementStep.providerBox.removeAllItems();
         try {
-            this.placementStep.setProviderManager(this.providerManager);
-            for (CloudProviderAccount providerAccount : this.providerManager.getCloudProviderAccountsByTenant(tenantId)) {
+            this.placementStep.setProviderCache(this.providerCache);
+            for (CloudProviderAccount providerAccount : this.providerCache.getCloudProviderAccountsByTenant(tenantId)) {
                 this.placementStep.providerBox.addItem(providerAccount.getUuid());
                 this.placementStep.providerBox.setItemCaption(providerAccount.getUuid(), providerAccount.getCloudProvider()
                     .getDescription());
@@ -134,7 +134,12 @@ public class MachineImageRegisterWizard extends Window implements WizardProgress
 
     private CloudProviderAccount getSelectedProviderAccount() throws CloudProviderException {
         String accountUuid = (String) MachineImageRegisterWizard.this.placementStep.providerBox.getValue();
-        return this.providerManager.getCloudProviderAccountByUuid(accountUuid);
+        CloudProviderAccount account = this.providerCache.getCloudProviderAccountByUuid(
+            ((MyUI) UI.getCurrent()).getTenantId(), accountUuid);
+        if (account == null) {
+            throw new ResourceNotFoundException("Provider account " + accountUuid + " no longer exists");
+        }
+        return account;
     }
 
     private CloudProviderLocation getSelectedLocation(final CloudProviderAccount account) {
@@ -22,16 +22,22 @@
  */
 package org.ow2.sirocco.cloudmanager;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 
+import javax.enterprise.context.Dependent;
+import javax.enterprise.inject.Instance;
 import javax.inject.Inject;
 
 import org.ow2.sirocco.cloudmanager.core.api.IMachineImageManager;
 import org.ow2.sirocco.cloudmanager.core.api.exception.CloudProviderException;
 import org.ow2.sirocco.cloudmanager.model.cimi.MachineImage;
 import org.ow2.sirocco.cloudmanager.model.cimi.extension.ProviderMapping;
+import org.ow2.sirocco.cloudmanager.util.BeanContainerReconciler;
+import org.ow2.sirocco.cloudmanager.util.ResourceState;
+import org.ow2.sirocco.cloudmanager.util.SelectionStateCounts;
 
-import com.vaadin.cdi.UIScoped;
 import com.vaadin.data.Property.ValueChangeEvent;
 import com.vaadin.data.Property.ValueChangeListener;
 import com.vaadin.data.util.BeanContainer;
@@ -47,8 +53,8 @@ import com.vaadin.ui.UI;
 import com.vaadin.ui.VerticalLayout;
 import com.vaadin.ui.VerticalSplitPanel;
 
-@UIScoped
-public class MachineImageView extends VerticalSplitPanel implements ValueChangeListener {
+@Dependent
+public class MachineImageView extends VerticalSplitPanel implements ResourceEventView, ValueChangeListener {
     private static final long serialVersionUID = 1L;
 
     private Button registerMachineImageButton;
@@ -61,12 +67,22 @@ public class MachineImageView extends VerticalSplitPanel implements ValueChangeL
 
     BeanContainer<String, MachineImageBean> images;
 
+    private SelectionStateCounts selectionStates;
+
     @Inject
-    private MachineImageRegisterWizard machineImageRegisterWizard;
+    private Instance<MachineImageRegisterWizard> machineImageRegisterWizard;
 
     @Inject
     IMachineImageManager machineImageManager;
 
+    @Inject
+    private BackendCommandExecutor commandExecutor;
+
+    @Inject
+    ResourceDetailCache detailCache;
+
+    private boolean loaded;
+
     public MachineImageView() {
         this.setSizeFull();
 
@@ -85,8 +101,9 @@ public class MachineImageView extends VerticalSplitPanel implements ValueChangeL
 
             @Override
             public void buttonClick(final ClickEvent event) {
-                if (MachineImageView.this.machineImageRegisterWizard.init(MachineImageView.this)) {
-                    UI.getCurrent().addWindow(MachineImageView.this.machineImageRegisterWizard);
+                MachineImageRegisterWizard wizard = MachineImageView.this.machineImageRegisterWizard.get();
+                if (wizard.init(MachineImageView.this)) {
+                    UI.getCurrent().addWindow(wizard);
                 }
             }
         });
@@ -108,24 +125,24 @@ public class MachineImageView extends VerticalSplitPanel implements ValueChangeL
                 } else {
                     sb.append(" these " + selectedImageIds.size() + " images ?");
                 }
-                String name = MachineImageView.this.images.getItem(selectedImageIds.iterator().next()).getBean().getName();
                 ConfirmDialog confirmDialog = ConfirmDialog.newConfirmDialogWithOption("Delete Image", sb.toString(),
                     "delete image on provider", new ConfirmDialog.ConfirmationDialogCallback() {
 
                         @Override
                         public void response(final boolean ok, final boolean deleteOnProvider) {
                             if (ok) {
-                                for (Object id : selectedImageIds) {
-                                    try {
-                                        if (deleteOnProvider) {
-                                            MachineImageView.this.machineImageManager.deleteMachineImage(id.toString());
-                                        } else {
-                                            MachineImageView.this.machineImageManager.unregisterMachineImage(id.toString());
+                                BulkProgressWindow.start(new BulkOperation(MachineImageView.this.commandExecutor,
+                                    "Deleting images", BulkOperation.items(MachineImageView.this.images,
+                                        selectedImageIds, "name"), new BulkOperation.Action() {
+                                        @Override
+                                        public void execute(final String id) throws CloudProviderException {
+                                            if (deleteOnProvider) {
+                                                MachineImageView.this.machineImageManager.deleteMachineImage(id);
+                                            } else {
+                                                MachineImageView.this.machineImageManager.unregisterMachineImage(id);
+                                            }
                                         }
-                                    } catch (CloudProviderException e) {
-                                        Util.diplayErrorMessageBox("Image delete failure", e);
-                                    }
-                                }
+                                    }, BulkOperation.parallelism("image")));
                                 MachineImageView.this.valueChange(null);
                             }
                         }
@@ -160,26 +177,32 @@ public class MachineImageView extends VerticalSplitPanel implements ValueChangeL
 
     }
 
-    void refresh() {
-        this.machineImageTable.setValue(null);
-        this.machineImageTable.getContainerDataSource().removeAllItems();
+    @Override
+    public void refresh() {
         try {
+            List<MachineImageBean> imageBeans = new ArrayList<>();
             for (MachineImage machineImage : this.machineImageManager.getMachineImages()) {
-                this.images.addBean(new MachineImageBean(machineImage));
+                imageBeans.add(new MachineImageBean(machineImage));
             }
+            BeanContainerReconciler.reconcile(this.machineImageTable, this.images, imageBeans, "id");
         } catch (CloudProviderException e) {
             Util.diplayErrorMessageBox("Internal error", e);
         }
+        // reconciled rows may have changed state
+        this.selectionStates.clear();
         this.valueChange(null);
     }
 
+    @Override
+    public void updatesApplied() {
+    }
+
     void updateMachineImage(final MachineImage machineImage) {
-        BeanItem<MachineImageBean> item = this.images.getItem(machineImage.getUuid());
-        if (item != null) {
-            MachineImageBean machineImageBean = item.getBean();
-            machineImageBean.init(machineImage);
-            item.getItemProperty("state").setValue(machineImageBean.getState());
-            item.getItemProperty("name").setValue(machineImageBean.getName());
+        if (this.images.getItem(machineImage.getUuid()) != null) {
+            MachineImageBean machineImageBean = new MachineImageBean(machineImage);
+            BeanContainerReconciler.replace(this.machineImageTable, this.images, machineImage.getUuid(),
+                machineImageBean);
+            this.selectionStates.stateChanged(machineImage.getUuid(), machineImageBean.getState());
             if (this.detailView.focusOnMachineImage(machineImage.getUuid())) {
                 this.detailView.update(machineImageBean);
             }
@@ -190,11 +213,12 @@ public class MachineImageView extends VerticalSplitPanel implements ValueChangeL
     Table createMachineImageTable() {
         this.images = new BeanContainer<String, MachineImageBean>(MachineImageBean.class);
         this.images.setBeanIdProperty("id");
+        this.selectionStates = new SelectionStateCounts(this.images, "state");
         Table table = new Table();
         table.setContainerDataSource(this.images);
 
         table.setSizeFull();
-        table.setPageLength(0);
+        Util.setViewportRendering(table);
 
         table.setSelectable(true);
         table.setMultiSelect(true);
@@ -213,67 +237,59 @@ public class MachineImageView extends VerticalSplitPanel implements ValueChangeL
     @Override
     public void valueChange(final ValueChangeEvent event) {
         Set<?> selectedMachineImageIds = (Set<?>) this.machineImageTable.getValue();
-        if (selectedMachineImageIds != null && selectedMachineImageIds.size() > 0) {
-            if (selectedMachineImageIds.size() == 1) {
-                Object id = selectedMachineImageIds.iterator().next();
-                String state = (String) this.machineImageTable.getItem(id).getItemProperty("state").getValue();
-                this.deleteMachineImageButton.setEnabled(!state.endsWith("DELETING"));
-                this.detailView.update(this.images.getItem(id).getBean());
-            } else {
-                this.detailView.hide();
-                boolean allowMultiDelete = true;
-                for (Object machineId : selectedMachineImageIds) {
-                    String state = (String) this.machineImageTable.getItem(machineId).getItemProperty("state").getValue();
-                    if (state.endsWith("DELETING")) {
-                        allowMultiDelete = false;
-                        break;
-                    }
-                }
-                this.deleteMachineImageButton.setEnabled(allowMultiDelete);
-            }
+        this.selectionStates.select(selectedMachineImageIds);
+        if (this.selectionStates.size() == 1) {
+            this.detailView.update(this.images.getItem(this.selectionStates.singleId()).getBean());
         } else {
             this.detailView.hide();
-            this.deleteMachineImageButton.setEnabled(false);
         }
+        this.deleteMachineImageButton.setEnabled(this.selectionStates.size() > 0
+            && this.selectionStates.count(ResourceState.DELETING) == 0);
     }
 
     @Override
     public void attach() {
         super.attach();
-        this.refresh();
+        // once loaded, MyUI resyncs the view from the events received while it was not attached
+        if (!this.loaded) {
+            this.loaded = true;
+            this.refresh();
+        }
     }
 
-    MachineImageBean updateMachineImageAttribute(final MachineImageBean machineImageBean, final String attribute,
-        final String value) {
-        this.machineImageTable.getItem(machineImageBean.getId()).getItemProperty(attribute).setValue(value);
-        return this.images.getItem(machineImageBean.getId()).getBean();
+    /**
+     * Applies an image returned by an update call and returns its row.
+     */
+    MachineImageBean replaceMachineImage(final MachineImage machineImage) {
+        this.detailCache.update(((MyUI) UI.getCurrent()).getTenantId(), machineImage);
+        this.updateMachineImage(machineImage);
+        this.updatesApplied();
+        BeanItem<MachineImageBean> item = this.images.getItem(machineImage.getUuid());
+        return item != null ? item.getBean() : new MachineImageBean(machineImage);
     }
 
+    /**
+     * Row of the image table, holding only the displayed columns. The image itself is loaded through the
+     * {@link ResourceDetailCache} when the row is selected.
+     */
     public static class MachineImageBean {
-        MachineImage machineImage;
+        final String id;
 
-        String id;
+        final String name;
 
-        String name;
+        final String description;
 
-        String description;
+        final ResourceState state;
 
-        String state;
+        final String provider;
 
-        String provider;
-
-        String location;
+        final String location;
 
         MachineImageBean(final MachineImage machineImage) {
-            this.init(machineImage);
-        }
-
-        void init(final MachineImage machineImage) {
-            this.machineImage = machineImage;
             this.id = machineImage.getUuid();
             this.name = machineImage.getName();
             this.description = machineImage.getDescription();
-            this.state = machineImage.getState().toString();
+            this.state = ResourceState.of(machineImage.getState());
             this.provider = this.providerFrom(machineImage);
             this.location = this.locationFrom(machineImage);
         }
@@ -282,50 +298,26 @@ public class MachineImageView extends VerticalSplitPanel implements ValueChangeL
             return this.id;
         }
 
-        public void setId(final String id) {
-            this.id = id;
-        }
-
         public String getName() {
             return this.name;
         }
 
-        public void setName(final String name) {
-            this.name = name;
-        }
-
         public String getDescription() {
             return this.description;
         }
 
-        public void setDescription(final String description) {
-            this.description = description;
-        }
-
-        public String getState() {
+        public ResourceState getState() {
             return this.state;
         }
 
-        public void setState(final String state) {
-            this.state = state;
-        }
-
         public String getProvider() {
             return this.provider;
         }
 
-        public void setProvider(final String provider) {
-            this.provider = provider;
-        }
-
         public String getLocation() {
             return this.location;
         }
 
-        public void setLocation(final String location) {
-            this.location = location;
-        }
-
         public String providerFrom(final MachineImage machineImage) {
             if (machineImage.getProviderMappings() != null && !machineImage.getProviderMappings().isEmpty()) {
                 ProviderMapping mapping = machineImage.getProviderMappings().get(0);
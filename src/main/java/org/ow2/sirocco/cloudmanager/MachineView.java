@@ -22,8 +22,15 @@
  */
 package org.ow2.sirocco.cloudmanager;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+import javax.enterprise.context.Dependent;
+import javax.enterprise.inject.Instance;
 import javax.inject.Inject;
 
 import org.ow2.sirocco.cloudmanager.core.api.IMachineManager;
@@ -33,12 +40,16 @@ import org.ow2.sirocco.cloudmanager.model.cimi.Machine;
 import org.ow2.sirocco.cloudmanager.model.cimi.MachineDisk;
 import org.ow2.sirocco.cloudmanager.model.cimi.MachineNetworkInterface;
 import org.ow2.sirocco.cloudmanager.model.cimi.MachineNetworkInterfaceAddress;
+import org.ow2.sirocco.cloudmanager.util.FacetIndex.Facet;
+import org.ow2.sirocco.cloudmanager.util.FacetIndex.Selection;
+import org.ow2.sirocco.cloudmanager.util.FastFormat;
+import org.ow2.sirocco.cloudmanager.util.PagedBeanContainer;
+import org.ow2.sirocco.cloudmanager.util.ResourceState;
+import org.ow2.sirocco.cloudmanager.util.SelectionStateCounts;
 
-import com.vaadin.cdi.UIScoped;
 import com.vaadin.data.Property;
 import com.vaadin.data.Property.ValueChangeEvent;
 import com.vaadin.data.Property.ValueChangeListener;
-import com.vaadin.data.util.BeanContainer;
 import com.vaadin.data.util.BeanItem;
 import com.vaadin.server.ThemeResource;
 import com.vaadin.shared.ui.label.ContentMode;
@@ -52,10 +63,16 @@ import com.vaadin.ui.UI;
 import com.vaadin.ui.VerticalLayout;
 import com.vaadin.ui.VerticalSplitPanel;
 
-@UIScoped
-public class MachineView extends VerticalSplitPanel implements ValueChangeListener {
+@Dependent
+public class MachineView extends VerticalSplitPanel implements ResourceEventView, ValueChangeListener {
     private static final long serialVersionUID = 1L;
 
+    private static final long STARTABLE = ResourceState.mask(ResourceState.STOPPED);
+
+    private static final long STOPPABLE = ResourceState.mask(ResourceState.STARTED);
+
+    private static final long GONE = ResourceState.mask(ResourceState.DELETING, ResourceState.DELETED);
+
     private Button startMachineButton;
 
     private Button stopMachineButton;
@@ -66,19 +83,34 @@ public class MachineView extends VerticalSplitPanel implements ValueChangeListen
 
     private Table machineTable;
 
-    BeanContainer<String, MachineBean> machines;
+    PagedBeanContainer<MachineBean> machines;
+
+    private SelectionStateCounts selectionStates;
+
+    private FacetPanel facetPanel;
 
     @Inject
-    private MachineCreationWizard machineCreationWizard;
+    private Instance<MachineCreationWizard> machineCreationWizard;
 
     private MachineDetailView detailView;
 
     @Inject
     IMachineManager machineManager;
 
+    @Inject
+    private BackendCommandExecutor commandExecutor;
+
+    @Inject
+    private ResourceSnapshotStore snapshotStore;
+
+    @Inject
+    ResourceDetailCache detailCache;
+
     @Inject
     IdentityContext identityContext;
 
+    private boolean loaded;
+
     public MachineView() {
         this.setSizeFull();
 
@@ -97,8 +129,9 @@ public class MachineView extends VerticalSplitPanel implements ValueChangeListen
 
             @Override
             public void buttonClick(final ClickEvent event) {
-                if (MachineView.this.machineCreationWizard.init(MachineView.this)) {
-                    UI.getCurrent().addWindow(MachineView.this.machineCreationWizard);
+                MachineCreationWizard wizard = MachineView.this.machineCreationWizard.get();
+                if (wizard.init(MachineView.this)) {
+                    UI.getCurrent().addWindow(wizard);
                 }
             }
         });
@@ -111,13 +144,13 @@ public class MachineView extends VerticalSplitPanel implements ValueChangeListen
 
             @Override
             public void buttonClick(final ClickEvent event) {
-                Set<?> selectedMachineIds = (Set<?>) MachineView.this.machineTable.getValue();
-                String id = (String) selectedMachineIds.iterator().next();
-                try {
-                    MachineView.this.machineManager.startMachine(id);
-                } catch (CloudProviderException e) {
-                    Util.diplayErrorMessageBox("Cannot start instance", e);
-                }
+                MachineView.this.startBulkOperation("Starting instances", MachineView.STARTABLE,
+                    new BulkOperation.Action() {
+                        @Override
+                        public void execute(final String id) throws CloudProviderException {
+                            MachineView.this.machineManager.startMachine(id);
+                        }
+                    });
             }
         });
         actionButtonHeader.addComponent(this.startMachineButton);
@@ -129,13 +162,13 @@ public class MachineView extends VerticalSplitPanel implements ValueChangeListen
 
             @Override
             public void buttonClick(final ClickEvent event) {
-                Set<?> selectedMachineIds = (Set<?>) MachineView.this.machineTable.getValue();
-                String id = (String) selectedMachineIds.iterator().next();
-                try {
-                    MachineView.this.machineManager.stopMachine(id);
-                } catch (CloudProviderException e) {
-                    Util.diplayErrorMessageBox("Cannot stop instance", e);
-                }
+                MachineView.this.startBulkOperation("Stopping instances", MachineView.STOPPABLE,
+                    new BulkOperation.Action() {
+                        @Override
+                        public void execute(final String id) throws CloudProviderException {
+                            MachineView.this.machineManager.stopMachine(id);
+                        }
+                    });
             }
         });
         actionButtonHeader.addComponent(this.stopMachineButton);
@@ -147,13 +180,13 @@ public class MachineView extends VerticalSplitPanel implements ValueChangeListen
 
             @Override
             public void buttonClick(final ClickEvent event) {
-                Set<?> selectedMachineIds = (Set<?>) MachineView.this.machineTable.getValue();
-                String id = (String) selectedMachineIds.iterator().next();
-                try {
-                    MachineView.this.machineManager.restartMachine(id, false);
-                } catch (CloudProviderException e) {
-                    Util.diplayErrorMessageBox("Cannot reboot instance", e);
-                }
+                MachineView.this.startBulkOperation("Rebooting instances", MachineView.STOPPABLE,
+                    new BulkOperation.Action() {
+                        @Override
+                        public void execute(final String id) throws CloudProviderException {
+                            MachineView.this.machineManager.restartMachine(id, false);
+                        }
+                    });
             }
         });
         actionButtonHeader.addComponent(this.restartMachineButton);
@@ -180,14 +213,13 @@ public class MachineView extends VerticalSplitPanel implements ValueChangeListen
                         @Override
                         public void response(final boolean ok, final boolean ignored) {
                             if (ok) {
-                                for (Object id : selectedMachineIds) {
-                                    try {
-                                        MachineView.this.machineManager.deleteMachine(id.toString());
-                                    } catch (CloudProviderException e) {
-                                        Util.diplayErrorMessageBox("Cannot delete instance", e);
-                                    }
-                                }
-                                MachineView.this.valueChange(null);
+                                MachineView.this.startBulkOperation("Deleting instances", ~MachineView.GONE,
+                                    new BulkOperation.Action() {
+                                        @Override
+                                        public void execute(final String id) throws CloudProviderException {
+                                            MachineView.this.machineManager.deleteMachine(id);
+                                        }
+                                    });
                             }
                         }
                     });
@@ -205,6 +237,7 @@ public class MachineView extends VerticalSplitPanel implements ValueChangeListen
 
             @Override
             public void buttonClick(final ClickEvent event) {
+                MachineView.this.snapshotStore.invalidate(((MyUI) UI.getCurrent()).getTenantId(), Machine.class);
                 MachineView.this.refresh();
             }
         });
@@ -212,6 +245,7 @@ public class MachineView extends VerticalSplitPanel implements ValueChangeListen
         actionButtonHeader.addComponent(button);
 
         verticalLayout.addComponent(actionButtonHeader);
+        verticalLayout.addComponent(this.facetPanel = this.createFacetPanel());
         verticalLayout.addComponent(this.machineTable = this.createMachineTable());
         verticalLayout.setExpandRatio(this.machineTable, 1.0f);
 
@@ -221,28 +255,99 @@ public class MachineView extends VerticalSplitPanel implements ValueChangeListen
 
     }
 
-    void refresh() {
-        this.machineTable.setValue(null);
-        this.machineTable.getContainerDataSource().removeAllItems();
-        try {
-            for (Machine machine : this.machineManager.getMachines().getItems()) {
-                this.machines.addBean(new MachineBean(machine));
+    /**
+     * Applies an action to the selected machines whose state is in the given mask.
+     */
+    void startBulkOperation(final String title, final long states, final BulkOperation.Action action) {
+        Set<?> selectedMachineIds = (Set<?>) this.machineTable.getValue();
+        Map<String, String> items = new LinkedHashMap<>();
+        for (Object id : selectedMachineIds) {
+            BeanItem<MachineBean> item = this.machines.getItem(id);
+            if (item == null) {
+                continue;
+            }
+            if (item.getBean().getState().in(states)) {
+                items.put(id.toString(), item.getBean().getName());
             }
-        } catch (CloudProviderException e) {
-            Util.diplayErrorMessageBox("Internal error", e);
         }
+        BulkProgressWindow.start(new BulkOperation(this.commandExecutor, title, items, action,
+            BulkOperation.parallelism("machine")));
         this.valueChange(null);
     }
 
+    @Override
+    public void refresh() {
+        this.machineTable.setValue(null);
+        this.machines.refresh();
+        this.facetPanel.updateCounts();
+        this.valueChange(null);
+    }
+
+    @Override
+    public void updatesApplied() {
+        this.machines.commitChanges();
+        this.facetPanel.updateCounts();
+    }
+
+    @SuppressWarnings("serial")
+    FacetPanel createFacetPanel() {
+        return new FacetPanel(new FacetPanel.Listener() {
+            @Override
+            public Map<Object, Integer> getFacetCounts(final Facet facet, final Selection selection)
+                throws CloudProviderException {
+                return MachineView.this.snapshotStore.getFacetCounts(((MyUI) UI.getCurrent()).getTenantId(),
+                    Machine.class, facet, selection);
+            }
+
+            @Override
+            public void facetSelectionChange() {
+                MachineView.this.refresh();
+            }
+        });
+    }
+
     @SuppressWarnings("serial")
     Table createMachineTable() {
-        this.machines = new BeanContainer<String, MachineBean>(MachineBean.class);
-        this.machines.setBeanIdProperty("id");
+        this.machines = new PagedBeanContainer<MachineBean>(MachineBean.class, "id",
+            new PagedBeanContainer.PageQuery<MachineBean>() {
+
+                @Override
+                public PagedBeanContainer.Page<MachineBean> fetch(final int first, final int count) {
+                    try {
+                        // pages are views of the tenant's shared snapshot
+                        List<MachineBean> beans = MachineView.this.snapshotStore.getMachines(((MyUI) UI.getCurrent())
+                            .getTenantId(), MachineView.this.facetPanel.getSelection());
+                        int from = Math.min(first, beans.size());
+                        return new PagedBeanContainer.Page<MachineBean>(beans.size(), beans.subList(from,
+                            Math.min(from + count, beans.size())));
+                    } catch (CloudProviderException e) {
+                        Util.diplayErrorMessageBox("Internal error", e);
+                        return PagedBeanContainer.Page.empty();
+                    }
+                }
+
+                @Override
+                public List<?> fetchIds() {
+                    try {
+                        List<MachineBean> beans = MachineView.this.snapshotStore.getMachines(((MyUI) UI.getCurrent())
+                            .getTenantId(), MachineView.this.facetPanel.getSelection());
+                        List<String> ids = new ArrayList<>(beans.size());
+                        for (MachineBean bean : beans) {
+                            ids.add(bean.getId());
+                        }
+                        return ids;
+                    } catch (CloudProviderException e) {
+                        Util.diplayErrorMessageBox("Internal error", e);
+                        return Collections.emptyList();
+                    }
+                }
+            });
+        this.selectionStates = new SelectionStateCounts(this.machines, "state");
         Table table = new Table();
         table.setContainerDataSource(this.machines);
 
         table.setSizeFull();
-        table.setPageLength(0);
+        Util.setViewportRendering(table);
 
         table.setSelectable(true);
         table.setMultiSelect(true);
@@ -264,43 +369,28 @@ public class MachineView extends VerticalSplitPanel implements ValueChangeListen
     @Override
     public void valueChange(final ValueChangeEvent event) {
         Set<?> selectedMachineIds = (Set<?>) this.machineTable.getValue();
-        if (selectedMachineIds != null && selectedMachineIds.size() > 0) {
-            if (selectedMachineIds.size() == 1) {
-                Object id = selectedMachineIds.iterator().next();
-                String state = (String) this.machineTable.getItem(id).getItemProperty("state").getValue();
-                this.startMachineButton.setEnabled(state.endsWith("STOPPED"));
-                this.stopMachineButton.setEnabled(state.endsWith("STARTED"));
-                this.restartMachineButton.setEnabled(state.endsWith("STARTED"));
-                this.deleteMachineButton.setEnabled(!state.endsWith("DELETING") && !state.endsWith("DELETED"));
-                this.detailView.update(this.machines.getItem(id).getBean());
-            } else {
-                this.detailView.hide();
-                this.startMachineButton.setEnabled(false);
-                this.stopMachineButton.setEnabled(false);
-                this.restartMachineButton.setEnabled(false);
-                boolean allowMultiDelete = true;
-                for (Object machineId : selectedMachineIds) {
-                    String state = (String) this.machineTable.getItem(machineId).getItemProperty("state").getValue();
-                    if (state.endsWith("DELETING") || state.endsWith("DELETED")) {
-                        allowMultiDelete = false;
-                        break;
-                    }
-                }
-                this.deleteMachineButton.setEnabled(allowMultiDelete);
-            }
+        this.selectionStates.select(selectedMachineIds);
+        if (this.selectionStates.size() == 1) {
+            this.detailView.update(this.machines.getItem(this.selectionStates.singleId()).getBean());
         } else {
             this.detailView.hide();
-            this.startMachineButton.setEnabled(false);
-            this.stopMachineButton.setEnabled(false);
-            this.restartMachineButton.setEnabled(false);
-            this.deleteMachineButton.setEnabled(false);
         }
+        // bulk actions only apply to the selected machines in a suitable state
+        this.startMachineButton.setEnabled(this.selectionStates.any(MachineView.STARTABLE));
+        this.stopMachineButton.setEnabled(this.selectionStates.any(MachineView.STOPPABLE));
+        this.restartMachineButton.setEnabled(this.selectionStates.any(MachineView.STOPPABLE));
+        this.deleteMachineButton.setEnabled(this.selectionStates.size() > 0
+            && this.selectionStates.none(MachineView.GONE));
     }
 
     @Override
     public void attach() {
         super.attach();
-        this.refresh();
+        // once loaded, MyUI resyncs the view from the events received while it was not attached
+        if (!this.loaded) {
+            this.loaded = true;
+            this.refresh();
+        }
     }
 
     @SuppressWarnings("serial")
@@ -315,159 +405,152 @@ public class MachineView extends VerticalSplitPanel implements ValueChangeListen
     }
 
     void updateMachine(final Machine machine) {
-        BeanItem<MachineBean> item = this.machines.getItem(machine.getUuid());
-        if (item != null) {
-            MachineBean machineBean = item.getBean();
-            machineBean.init(machine);
-            item.getItemProperty("state").setValue(machineBean.getState());
-            item.getItemProperty("addresses").setValue(machineBean.getAddresses());
-            item.getItemProperty("name").setValue(machineBean.getName());
-            if (this.detailView.focusOnMachine(machine.getUuid())) {
-                this.detailView.update(machineBean);
-            }
-            this.valueChange(null);
+        if (this.machines.getItem(machine.getUuid()) == null) {
+            return;
+        }
+        MachineBean machineBean = this.snapshotStore.getMachine(((MyUI) UI.getCurrent()).getTenantId(), machine);
+        if (machineBean != null
+            && !this.facetPanel.matches(machineBean.getState(), machineBean.getProvider(), machineBean.getLocation())) {
+            // no longer part of the filtered rows
+            machineBean = null;
         }
+        this.machines.replaceBean(machine.getUuid(), machineBean);
+        this.selectionStates.stateChanged(machine.getUuid(), machineBean != null ? machineBean.getState() : null);
+        if (machineBean != null && this.detailView.focusOnMachine(machine.getUuid())) {
+            this.detailView.update(machineBean);
+        }
+        this.valueChange(null);
     }
 
-    MachineBean updateMachineAttribute(final MachineBean machineBean, final String attribute, final String value) {
-        this.machineTable.getItem(machineBean.getId()).getItemProperty(attribute).setValue(value);
-        return this.machines.getItem(machineBean.getId()).getBean();
+    /**
+     * Applies a machine returned by an update call and returns its row.
+     */
+    MachineBean replaceMachine(final Machine machine) {
+        String tenantId = ((MyUI) UI.getCurrent()).getTenantId();
+        this.snapshotStore.update(tenantId, machine);
+        this.detailCache.update(tenantId, machine);
+        this.updateMachine(machine);
+        this.updatesApplied();
+        BeanItem<MachineBean> item = this.machines.getItem(machine.getUuid());
+        return item != null ? item.getBean() : new MachineBean(machine);
     }
 
+    /**
+     * Row of the machine table, holding only the displayed columns. The machine itself is loaded through the
+     * {@link ResourceDetailCache} when the row is selected.
+     */
     public static class MachineBean {
-        Machine machine;
+        final String id;
 
-        String id;
+        final String name;
 
-        String name;
+        final String description;
 
-        String description;
+        final ResourceState state;
 
-        String state;
+        final String addresses;
 
-        String addresses;
+        final Integer cpu;
 
-        Integer cpu;
+        final String memory;
 
-        String memory;
+        final String disks;
 
-        String disks;
+        final String provider;
 
-        String provider;
+        final String location;
 
-        String location;
+        final String accountId;
+
+        final String locationId;
 
         MachineBean(final Machine machine) {
-            this.init(machine);
+            this(machine, null);
         }
 
-        void init(final Machine machine) {
-            this.machine = machine;
+        /**
+         * Row of an updated machine, keeping the sizing and placement of the previous row if the machine, e.g. the
+         * payload of an event, lacks them.
+         */
+        MachineBean(final Machine machine, final MachineBean previous) {
             this.id = machine.getUuid();
             this.name = machine.getName();
             this.description = machine.getDescription();
-            this.state = machine.getState().toString();
+            this.state = ResourceState.of(machine.getState());
             this.addresses = this.addressesFrom(machine);
-            this.cpu = machine.getCpu();
-            this.memory = Util.printKibibytesValue(machine.getMemory());
-            this.disks = this.disksFrom(machine);
-            this.provider = this.providerFrom(machine);
-            this.location = this.locationFrom(machine);
+            boolean sized = previous == null || machine.getCpu() != null;
+            this.cpu = sized ? machine.getCpu() : previous.cpu;
+            this.memory = sized ? Util.printKibibytesValue(machine.getMemory()) : previous.memory;
+            this.disks = previous == null || machine.getDisks() != null ? this.disksFrom(machine) : previous.disks;
+            this.provider = previous == null || machine.getCloudProviderAccount() != null ? this.providerFrom(machine)
+                : previous.provider;
+            this.location = previous == null || machine.getLocation() != null ? this.locationFrom(machine)
+                : previous.location;
+            if (machine.getCloudProviderAccount() != null) {
+                this.accountId = machine.getCloudProviderAccount().getUuid();
+            } else {
+                this.accountId = previous != null ? previous.accountId : null;
+            }
+            if (machine.getLocation() != null) {
+                this.locationId = machine.getLocation().getUuid();
+            } else {
+                this.locationId = previous != null ? previous.locationId : null;
+            }
         }
 
         public String getId() {
             return this.id;
         }
 
-        public void setId(final String id) {
-            this.id = id;
-        }
-
         public String getName() {
             return this.name;
         }
 
-        public void setName(final String name) {
-            this.name = name;
-        }
-
         public String getDescription() {
             return this.description;
         }
 
-        public void setDescription(final String description) {
-            this.description = description;
-        }
-
-        public String getState() {
+        public ResourceState getState() {
             return this.state;
         }
 
-        public void setState(final String state) {
-            this.state = state;
-        }
-
         public String getAddresses() {
             return this.addresses;
         }
 
-        public void setAddresses(final String addresses) {
-            this.addresses = addresses;
-        }
-
         public Integer getCpu() {
             return this.cpu;
         }
 
-        public void setCpu(final Integer cpu) {
-            this.cpu = cpu;
-        }
-
         public String getMemory() {
             return this.memory;
         }
 
-        public void setMemory(final String memory) {
-            this.memory = memory;
-        }
-
         public String getDisks() {
             return this.disks;
         }
 
-        public void setDisks(final String disks) {
-            this.disks = disks;
-        }
-
         public String getProvider() {
             return this.provider;
         }
 
-        public void setProvider(final String provider) {
-            this.provider = provider;
-        }
-
         public String getLocation() {
             return this.location;
         }
 
-        public void setLocation(final String location) {
-            this.location = location;
-        }
-
         public String addressesFrom(final Machine machine) {
-            StringBuilder sb = new StringBuilder();
+            StringBuilder sb = FastFormat.buffer();
             if (machine.getNetworkInterfaces() != null) {
                 int nicIndex = 0;
                 for (MachineNetworkInterface nic : machine.getNetworkInterfaces()) {
                     if (nic.getAddresses() != null && !nic.getAddresses().isEmpty()) {
                         String networkName = nic.getNetwork() != null ? nic.getNetwork().getName() : "";
                         if (nicIndex > 0) {
-                            sb.append("\n");
+                            sb.append('\n');
                         }
-                        sb.append(networkName + " ");
+                        sb.append(networkName).append(' ');
                         for (MachineNetworkInterfaceAddress addr : nic.getAddresses()) {
-                            sb.append(addr.getAddress().getIp() + " ");
+                            sb.append(addr.getAddress().getIp()).append(' ');
                         }
                     }
                     nicIndex++;
@@ -477,10 +560,10 @@ public class MachineView extends VerticalSplitPanel implements ValueChangeListen
         }
 
         public String disksFrom(final Machine machine) {
-            StringBuffer sb = new StringBuffer();
+            StringBuilder sb = FastFormat.buffer();
             if (machine.getDisks() != null) {
                 for (MachineDisk disk : machine.getDisks()) {
-                    sb.append(Util.printKilobytesValue(disk.getCapacity()) + " ");
+                    sb.append(FastFormat.kilobytes(disk.getCapacity())).append(' ');
                 }
             }
             return sb.toString();
@@ -22,17 +22,23 @@
  */
 package org.ow2.sirocco.cloudmanager;
 
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
 import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
+import javax.enterprise.concurrent.ManagedScheduledExecutorService;
+import javax.enterprise.inject.Instance;
 import javax.inject.Inject;
-import javax.jms.Connection;
-import javax.jms.ConnectionFactory;
 import javax.jms.JMSException;
-import javax.jms.Message;
-import javax.jms.MessageConsumer;
-import javax.jms.MessageListener;
-import javax.jms.Session;
-import javax.jms.Topic;
 
 import org.ow2.sirocco.cloudmanager.core.api.IUserManager;
 import org.ow2.sirocco.cloudmanager.core.api.IdentityContext;
@@ -48,6 +54,8 @@ import org.ow2.sirocco.cloudmanager.model.cimi.Volume;
 import org.ow2.sirocco.cloudmanager.model.cimi.extension.SecurityGroup;
 import org.ow2.sirocco.cloudmanager.model.cimi.extension.Tenant;
 import org.ow2.sirocco.cloudmanager.model.cimi.extension.User;
+import org.ow2.sirocco.cloudmanager.util.PendingDeltaLog;
+import org.ow2.sirocco.cloudmanager.util.ResourceState;
 
 import com.vaadin.annotations.Push;
 import com.vaadin.annotations.Theme;
@@ -55,6 +63,8 @@ import com.vaadin.cdi.CDIUI;
 import com.vaadin.data.Property;
 import com.vaadin.data.Property.ValueChangeEvent;
 import com.vaadin.data.Property.ValueChangeListener;
+import com.vaadin.event.ShortcutAction.KeyCode;
+import com.vaadin.event.ShortcutListener;
 import com.vaadin.server.ThemeResource;
 import com.vaadin.server.VaadinRequest;
 import com.vaadin.server.VaadinService;
@@ -63,11 +73,13 @@ import com.vaadin.shared.communication.PushMode;
 import com.vaadin.ui.Button;
 import com.vaadin.ui.Button.ClickEvent;
 import com.vaadin.ui.ComboBox;
+import com.vaadin.ui.Component;
 import com.vaadin.ui.HorizontalLayout;
 import com.vaadin.ui.HorizontalSplitPanel;
 import com.vaadin.ui.Image;
 import com.vaadin.ui.Label;
 import com.vaadin.ui.Notification;
+import com.vaadin.ui.TextField;
 import com.vaadin.ui.Tree;
 import com.vaadin.ui.UI;
 import com.vaadin.ui.UIDetachedException;
@@ -77,32 +89,65 @@ import com.vaadin.ui.VerticalLayout;
 @Theme("mytheme")
 @Push(PushMode.MANUAL)
 @SuppressWarnings("serial")
-public class MyUI extends UI implements MessageListener {
+public class MyUI extends UI implements ResourceEventDispatcher.Listener {
     private VerticalLayout inventoryContainer;
 
     @Inject
-    private MachineView machineView;
+    private Instance<MachineView> machineViews;
+
+    @Inject
+    private Instance<MachineImageView> machineImageViews;
 
     @Inject
-    private MachineImageView machineImageView;
+    private Instance<VolumeView> volumeViews;
 
     @Inject
-    private VolumeView volumeView;
+    private Instance<NetworkView> networkViews;
 
     @Inject
-    private NetworkView networkView;
+    private Instance<AddressView> addressViews;
 
     @Inject
-    private AddressView addressView;
+    private Instance<SecurityGroupView> secGroupViews;
 
     @Inject
-    private SecurityGroupView secGroupView;
+    private Instance<CloudProviderView> providerViews;
 
     @Inject
-    private CloudProviderView providerView;
+    private Instance<KeyPairView> keyPairViews;
 
     @Inject
-    private KeyPairView keyPairView;
+    private Instance<FleetSummaryView> fleetSummaryViews;
+
+    /**
+     * Views are created on first navigation and the least recently shown ones are released once more than
+     * MAX_LIVE_VIEWS exist; a released view is recreated (and refreshed) when navigated to again.
+     */
+    private static final int MAX_LIVE_VIEWS = Integer.getInteger("sirocco.dashboard.maxLiveViews", 3);
+
+    private final Map<String, Instance<? extends Component>> viewProviders = new HashMap<>();
+
+    private final Map<String, Component> views = new LinkedHashMap<String, Component>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, Component> eldest) {
+            if (this.size() > MyUI.MAX_LIVE_VIEWS) {
+                MyUI.this.releaseView(eldest.getKey(), eldest.getValue());
+                return true;
+            }
+            return false;
+        }
+    };
+
+    /**
+     * Updates for views which are alive but not attached are logged and replayed when the view is shown again, unless
+     * more than MAX_PENDING_UPDATES resources changed or the oldest update is older than MAX_STALE_MILLIS, in which
+     * case the view is refreshed.
+     */
+    private static final int MAX_PENDING_UPDATES = Integer.getInteger("sirocco.dashboard.view.maxPendingUpdates", 200);
+
+    private static final long MAX_STALE_MILLIS = Long.getLong("sirocco.dashboard.view.maxStaleMillis", 600000);
+
+    private final Map<Component, PendingDeltaLog<String, Object>> pendingUpdates = new IdentityHashMap<>();
 
     @Inject
     private IUserManager userManager;
@@ -110,22 +155,30 @@ public class MyUI extends UI implements MessageListener {
     @Inject
     private IdentityContext identityContext;
 
-    @Resource(lookup = "jms/ResourceStateChangeTopic")
-    private Topic resourceStateChangeTopic;
+    @Inject
+    private ResourceEventDispatcher eventDispatcher;
+
+    @Inject
+    private ResourceRefetchPolicy refetchPolicy;
+
+    @Inject
+    private ResourceSearchIndex searchIndex;
 
     @Resource
-    private ConnectionFactory connectionFactory;
+    private ManagedScheduledExecutorService scheduler;
 
-    private Session messagingSession;
+    private ResourceEventBuffer eventBuffer;
 
-    private MessageConsumer consumer;
+    private static final long LISTEN_RETRY_SECONDS = Long.getLong("sirocco.dashboard.event.listenRetrySeconds", 30);
 
-    private Connection connection;
+    private ScheduledFuture<?> listenRetry;
 
     private String userName;
 
     private String tenantId;
 
+    private Tree menu;
+
     @Override
     protected void init(final VaadinRequest request) {
         this.userName = request.getUserPrincipal().getName();
@@ -165,6 +218,19 @@ public class MyUI extends UI implements MessageListener {
             e.printStackTrace();
         }
 
+        // resource search
+        final TextField searchField = new TextField();
+        searchField.setInputPrompt("Search");
+        searchField.addShortcutListener(new ShortcutListener("Search", KeyCode.ENTER, null) {
+            @Override
+            public void handleAction(final Object sender, final Object target) {
+                if (target == searchField) {
+                    MyUI.this.search(searchField.getValue());
+                }
+            }
+        });
+        rightButtons.addComponent(searchField);
+
         Label label = new Label("Tenant:");
         label.setStyleName("topHeaderLabel");
         rightButtons.addComponent(label);
@@ -211,12 +277,32 @@ public class MyUI extends UI implements MessageListener {
         // Split view
         HorizontalSplitPanel splitPanel = new HorizontalSplitPanel();
         splitPanel.setSizeFull();
-        splitPanel.setFirstComponent(this.createLeftMenu());
+        splitPanel.setFirstComponent(this.menu = this.createLeftMenu());
 
         this.inventoryContainer = new VerticalLayout();
         this.inventoryContainer.setSizeFull();
 
-        this.inventoryContainer.addComponent(this.machineView);
+        this.viewProviders.put(MyUI.PROVIDERS_MENU_ITEM_ID, this.providerViews);
+        this.viewProviders.put(MyUI.INSTANCES_MENU_ITEM_ID, this.machineViews);
+        this.viewProviders.put(MyUI.IMAGES_MENU_ITEM_ID, this.machineImageViews);
+        this.viewProviders.put(MyUI.VOLUMES_MENU_ITEM_ID, this.volumeViews);
+        this.viewProviders.put(MyUI.NETWORKS_MENU_ITEM_ID, this.networkViews);
+        this.viewProviders.put(MyUI.ADDRESSES_MENU_ITEM_ID, this.addressViews);
+        this.viewProviders.put(MyUI.SECURITY_GROUP_MENU_ITEM_ID, this.secGroupViews);
+        this.viewProviders.put(MyUI.KEYPAIRS_MENU_ITEM_ID, this.keyPairViews);
+        this.viewProviders.put(MyUI.SUMMARY_MENU_ITEM_ID, this.fleetSummaryViews);
+
+        // subscribe before the first view reads the shared snapshot of the tenant, so that no event is missed
+        this.eventBuffer = new ResourceEventBuffer(this.scheduler, ResourceEventBuffer.FLUSH_INTERVAL_MILLIS,
+            new ResourceEventBuffer.Sink() {
+
+                @Override
+                public void flush(final List<ResourceStateChangeEvent> events) {
+                    MyUI.this.processResourceStateChanges(events);
+                }
+            });
+        this.listenToNotifications();
+        this.showView(MyUI.INSTANCES_MENU_ITEM_ID);
 
         splitPanel.setSecondComponent(this.inventoryContainer);
         splitPanel.setSplitPosition(15);
@@ -224,41 +310,87 @@ public class MyUI extends UI implements MessageListener {
         layout.addComponent(splitPanel);
         layout.setExpandRatio(splitPanel, 1.0f);
 
-        this.listenToNotifications();
 
     }
 
     void listenToNotifications() {
-        String selector = "tenantId = " + "'" + this.tenantId + "'";
         try {
-            if (this.consumer != null) {
-                this.consumer.close();
+            this.eventDispatcher.register(this.tenantId, this);
+        } catch (JMSException e) {
+            Util.diplayErrorMessageBox("Cannot subscribe to resource events, retrying", e);
+            this.scheduleListenRetry();
+        }
+    }
+
+    /**
+     * Retries the subscription under the UI lock, so that it cannot race with detach, until it succeeds or the UI is
+     * detached. Events published meanwhile were missed: the dispatcher drops the cached state of the tenant when it
+     * subscribes, and the views are resynced from the reloaded snapshot, with the identity of the UI since the
+     * scheduler thread does not carry it.
+     */
+    private void scheduleListenRetry() {
+        this.listenRetry = this.scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    MyUI.this.accessAsUser(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                MyUI.this.eventDispatcher.register(MyUI.this.tenantId, MyUI.this);
+                            } catch (JMSException e) {
+                                e.printStackTrace();
+                                MyUI.this.scheduleListenRetry();
+                                return;
+                            }
+                            MyUI.this.resyncViews();
+                            MyUI.this.push();
+                        }
+                    });
+                } catch (UIDetachedException e) {
+                }
             }
-            this.connection = this.connectionFactory.createConnection();
-            this.messagingSession = this.connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
-            this.consumer = this.messagingSession.createConsumer(this.resourceStateChangeTopic, selector);
+        }, MyUI.LISTEN_RETRY_SECONDS, TimeUnit.SECONDS);
+    }
 
-            this.connection.start();
+    /**
+     * Refreshes the view on screen and marks the other alive views for a refresh when shown again.
+     */
+    private void resyncViews() {
+        for (Component view : this.views.values()) {
+            if (view instanceof ResourceEventView) {
+                this.resyncView(view);
+            }
+        }
+    }
 
-            this.consumer.setMessageListener(this);
-        } catch (JMSException e) {
-            e.printStackTrace();
+    /**
+     * Returns the alive view showing a resource which the refetch policy reloads, if any.
+     */
+    private Component findRefetchedView(final Object resource) {
+        if (resource instanceof Volume || resource instanceof MachineVolume) {
+            return this.findView(VolumeView.class);
+        } else if (resource instanceof Address) {
+            return this.findView(AddressView.class);
+        }
+        return null;
+    }
+
+    private void resyncView(final Component view) {
+        if (view.isAttached()) {
+            ((ResourceEventView) view).refresh();
+        } else {
+            this.pendingLog(view).invalidate();
         }
     }
 
     @PreDestroy
     private void destroy() {
-        if (this.consumer != null) {
-            try {
-                this.consumer.close();
-                this.messagingSession.close();
-                this.connection.close();
-            } catch (JMSException e) {
-                e.printStackTrace();
-            }
-        }
+        this.eventDispatcher.unregister(this.tenantId, this);
     }
 
+    private static final String SUMMARY_MENU_ITEM_ID = "Summary";
+
     private static final String PROVIDERS_MENU_ITEM_ID = "Providers";
 
     private static final String COMPUTE_MENU_ITEM_ID = "Compute";
@@ -283,11 +415,28 @@ public class MyUI extends UI implements MessageListener {
 
     private static final String KEYPAIRS_MENU_ITEM_ID = "KeyPairs";
 
+    private static final Map<ResourceSearchIndex.Type, String> SEARCH_MENU_ITEM_IDS = new EnumMap<>(
+        ResourceSearchIndex.Type.class);
+
+    static {
+        MyUI.SEARCH_MENU_ITEM_IDS.put(ResourceSearchIndex.Type.MACHINE, MyUI.INSTANCES_MENU_ITEM_ID);
+        MyUI.SEARCH_MENU_ITEM_IDS.put(ResourceSearchIndex.Type.VOLUME, MyUI.VOLUMES_MENU_ITEM_ID);
+        MyUI.SEARCH_MENU_ITEM_IDS.put(ResourceSearchIndex.Type.NETWORK, MyUI.NETWORKS_MENU_ITEM_ID);
+        MyUI.SEARCH_MENU_ITEM_IDS.put(ResourceSearchIndex.Type.ADDRESS, MyUI.ADDRESSES_MENU_ITEM_ID);
+        MyUI.SEARCH_MENU_ITEM_IDS.put(ResourceSearchIndex.Type.SECURITY_GROUP, MyUI.SECURITY_GROUP_MENU_ITEM_ID);
+        MyUI.SEARCH_MENU_ITEM_IDS.put(ResourceSearchIndex.Type.IMAGE, MyUI.IMAGES_MENU_ITEM_ID);
+        MyUI.SEARCH_MENU_ITEM_IDS.put(ResourceSearchIndex.Type.KEY_PAIR, MyUI.KEYPAIRS_MENU_ITEM_ID);
+    }
+
     Tree createLeftMenu() {
         final Tree resourceTree = new Tree("Root");
         resourceTree.setStyleName("myTree");
         resourceTree.setImmediate(true);
         resourceTree.setSizeFull();
+        resourceTree.addItem(MyUI.SUMMARY_MENU_ITEM_ID);
+        resourceTree.setItemIcon(MyUI.SUMMARY_MENU_ITEM_ID, new ThemeResource("img/ball_green.gif"));
+        resourceTree.setChildrenAllowed(MyUI.SUMMARY_MENU_ITEM_ID, false);
+
         resourceTree.addItem(MyUI.PROVIDERS_MENU_ITEM_ID);
         resourceTree.setItemIcon(MyUI.PROVIDERS_MENU_ITEM_ID, new ThemeResource("img/cloud.png"));
         resourceTree.setChildrenAllowed(MyUI.PROVIDERS_MENU_ITEM_ID, false);
@@ -352,40 +501,7 @@ public class MyUI extends UI implements MessageListener {
                         resourceTree.setValue(this.previous);
                     } else {
                         this.previous = resourceTree.getValue();
-                        switch ((String) resourceTree.getValue()) {
-                        case PROVIDERS_MENU_ITEM_ID:
-                            MyUI.this.inventoryContainer.replaceComponent(MyUI.this.inventoryContainer.getComponent(0),
-                                MyUI.this.providerView);
-                            break;
-                        case INSTANCES_MENU_ITEM_ID:
-                            MyUI.this.inventoryContainer.replaceComponent(MyUI.this.inventoryContainer.getComponent(0),
-                                MyUI.this.machineView);
-                            break;
-                        case IMAGES_MENU_ITEM_ID:
-                            MyUI.this.inventoryContainer.replaceComponent(MyUI.this.inventoryContainer.getComponent(0),
-                                MyUI.this.machineImageView);
-                            break;
-                        case VOLUMES_MENU_ITEM_ID:
-                            MyUI.this.inventoryContainer.replaceComponent(MyUI.this.inventoryContainer.getComponent(0),
-                                MyUI.this.volumeView);
-                            break;
-                        case NETWORKS_MENU_ITEM_ID:
-                            MyUI.this.inventoryContainer.replaceComponent(MyUI.this.inventoryContainer.getComponent(0),
-                                MyUI.this.networkView);
-                            break;
-                        case ADDRESSES_MENU_ITEM_ID:
-                            MyUI.this.inventoryContainer.replaceComponent(MyUI.this.inventoryContainer.getComponent(0),
-                                MyUI.this.addressView);
-                            break;
-                        case SECURITY_GROUP_MENU_ITEM_ID:
-                            MyUI.this.inventoryContainer.replaceComponent(MyUI.this.inventoryContainer.getComponent(0),
-                                MyUI.this.secGroupView);
-                            break;
-                        case KEYPAIRS_MENU_ITEM_ID:
-                            MyUI.this.inventoryContainer.replaceComponent(MyUI.this.inventoryContainer.getComponent(0),
-                                MyUI.this.keyPairView);
-                            break;
-                        }
+                        MyUI.this.showView((String) resourceTree.getValue());
                     }
                 }
             }
@@ -393,6 +509,67 @@ public class MyUI extends UI implements MessageListener {
         return resourceTree;
     }
 
+    private void search(final String query) {
+        if (query == null || query.trim().isEmpty()) {
+            return;
+        }
+        List<ResourceSearchIndex.Hit> hits;
+        try {
+            hits = this.searchIndex.search(this.tenantId, query);
+        } catch (CloudProviderException e) {
+            Util.diplayErrorMessageBox("Cannot search resources", e);
+            return;
+        }
+        this.addWindow(new SearchResultWindow(query.trim(), hits, new SearchResultWindow.DialogCallback() {
+            @Override
+            public void response(final ResourceSearchIndex.Hit hit) {
+                MyUI.this.menu.setValue(MyUI.SEARCH_MENU_ITEM_IDS.get(hit.getType()));
+            }
+        }));
+    }
+
+    private void showView(final String menuItemId) {
+        Component view = this.views.get(menuItemId);
+        if (view == null) {
+            view = this.viewProviders.get(menuItemId).get();
+            this.views.put(menuItemId, view);
+        }
+        if (this.inventoryContainer.getComponentCount() == 0) {
+            this.inventoryContainer.addComponent(view);
+        } else {
+            this.inventoryContainer.replaceComponent(this.inventoryContainer.getComponent(0), view);
+        }
+        PendingDeltaLog<String, Object> pendingUpdates = this.pendingUpdates.remove(view);
+        if (pendingUpdates != null) {
+            if (pendingUpdates.needsResync(MyUI.MAX_STALE_MILLIS)) {
+                ((ResourceEventView) view).refresh();
+            } else {
+                for (Object resource : pendingUpdates.drain()) {
+                    this.applyUpdate(view, resource);
+                }
+                ((ResourceEventView) view).updatesApplied();
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void releaseView(final String menuItemId, final Component view) {
+        this.pendingUpdates.remove(view);
+        ((Instance<Component>) this.viewProviders.get(menuItemId)).destroy(view);
+    }
+
+    /**
+     * Returns the view of the given type if it is currently alive, without affecting its recency.
+     */
+    private <T extends Component> T findView(final Class<T> viewType) {
+        for (Component view : this.views.values()) {
+            if (viewType.isInstance(view)) {
+                return viewType.cast(view);
+            }
+        }
+        return null;
+    }
+
     public String getUserName() {
         return this.userName;
     }
@@ -403,6 +580,10 @@ public class MyUI extends UI implements MessageListener {
 
     @Override
     public void detach() {
+        if (this.listenRetry != null) {
+            this.listenRetry.cancel(false);
+        }
+        this.eventDispatcher.unregister(this.tenantId, this);
         super.detach();
     }
 
@@ -417,76 +598,210 @@ public class MyUI extends UI implements MessageListener {
         this.getUI().getPage().setLocation(VaadinServletService.getCurrentServletRequest().getContextPath() + "/logout.jsp");
     }
 
+    public ResourceEventBuffer getEventBuffer() {
+        return this.eventBuffer;
+    }
+
     @Override
-    public void onMessage(final Message message) {
+    public void onResourceStateChange(final ResourceStateChangeEvent event) {
+        this.eventBuffer.add(event);
+    }
+
+    /**
+     * Applies and pushes what the payloads allow; the incomplete events only notify, their resources being applied
+     * once the dispatcher has reloaded them for the tenant.
+     */
+    private void processResourceStateChanges(final List<ResourceStateChangeEvent> events) {
         try {
-            final ResourceStateChangeEvent event = message.getBody(ResourceStateChangeEvent.class);
-            try {
-                this.access(new Runnable() {
-                    @Override
-                    public void run() {
-
-                        if (event.getResource() instanceof Machine) {
-                            Machine machine = (Machine) event.getResource();
-                            if (!machine.getState().toString().endsWith("ING")) {
-                                Notification.show("Instance " + machine.getName() + " "
-                                    + machine.getState().toString().toLowerCase(), Notification.Type.TRAY_NOTIFICATION);
-                            }
-                            MyUI.this.machineView.updateMachine(machine);
-                        } else if (event.getResource() instanceof MachineImage) {
-                            MachineImage image = (MachineImage) event.getResource();
-                            if (!image.getState().toString().endsWith("ING")) {
-                                Notification.show("Image " + image.getName() + " " + image.getState().toString().toLowerCase(),
-                                    Notification.Type.TRAY_NOTIFICATION);
-                            }
-                            MyUI.this.machineImageView.updateMachineImage(image);
-                        } else if (event.getResource() instanceof Volume) {
-                            Volume volume = (Volume) event.getResource();
-                            if (!volume.getState().toString().endsWith("ING")) {
-                                Notification.show("Volume " + volume.getName() + " "
-                                    + volume.getState().toString().toLowerCase(), Notification.Type.TRAY_NOTIFICATION);
-                            }
-                            MyUI.this.volumeView.updateVolume(volume);
-                        } else if (event.getResource() instanceof MachineVolume) {
-                            MachineVolume machineVolume = (MachineVolume) event.getResource();
-                            if (!machineVolume.getState().toString().endsWith("ING")) {
-                                String message;
-                                if (machineVolume.getState() == State.DELETED) {
-                                    message = "detached";
-                                } else if (machineVolume.getState() == State.ATTACHED) {
-                                    message = "attached";
-                                } else {
-                                    message = "error";
-                                }
-                                Notification.show("Volume " + machineVolume.getVolume().getName() + " " + message,
-                                    Notification.Type.TRAY_NOTIFICATION);
-                            }
-                            MyUI.this.volumeView.updateVolume(machineVolume.getVolume());
-                        } else if (event.getResource() instanceof Network) {
-                            Network network = (Network) event.getResource();
-                            if (!network.getState().toString().endsWith("ING")) {
-                                Notification.show("Network " + network.getName() + " "
-                                    + network.getState().toString().toLowerCase(), Notification.Type.TRAY_NOTIFICATION);
-                            }
-                            MyUI.this.networkView.updateNetwork(network);
-                        } else if (event.getResource() instanceof Address) {
-                            Address address = (Address) event.getResource();
-                            MyUI.this.addressView.updateAddress(address);
-                        } else if (event.getResource() instanceof SecurityGroup) {
-                            SecurityGroup secGroup = (SecurityGroup) event.getResource();
-                            MyUI.this.secGroupView.updateSecurityGroup(secGroup);
+            this.accessAsUser(new Runnable() {
+                @Override
+                public void run() {
+                    for (ResourceStateChangeEvent event : events) {
+                        MyUI.this.processResourceStateChange(event, !MyUI.this.refetchPolicy.needsRefetch(event));
+                    }
+                    MyUI.this.updatesApplied();
+                    MyUI.this.push();
+                }
+            });
+        } catch (UIDetachedException e) {
+        }
+    }
+
+    @Override
+    public void onResourcesRefetched(final List<Object> resources) {
+        try {
+            this.accessAsUser(new Runnable() {
+                @Override
+                public void run() {
+                    for (Object resource : resources) {
+                        MyUI.this.updateView(resource);
+                    }
+                    MyUI.this.updatesApplied();
+                    MyUI.this.push();
+                }
+            });
+        } catch (UIDetachedException e) {
+        }
+    }
+
+    /**
+     * The resources of the incomplete events are unknown: the views showing them are resynced instead.
+     */
+    @Override
+    public void onRefetchFailed(final List<ResourceStateChangeEvent> events) {
+        try {
+            this.accessAsUser(new Runnable() {
+                @Override
+                public void run() {
+                    Set<Component> staleViews = new LinkedHashSet<>();
+                    for (ResourceStateChangeEvent event : events) {
+                        Component view = MyUI.this.findRefetchedView(event.getResource());
+                        if (view != null) {
+                            staleViews.add(view);
                         }
-                        MyUI.this.push();
                     }
-                });
-            } catch (UIDetachedException e) {
+                    for (Component view : staleViews) {
+                        MyUI.this.resyncView(view);
+                    }
+                    MyUI.this.push();
+                }
+            });
+        } catch (UIDetachedException e) {
+        }
+    }
+
+    /**
+     * Runs the action under the UI lock with the identity of the UI set on the identity context, for work started on
+     * a thread which does not carry it. The action may run on any thread which takes the lock.
+     */
+    private void accessAsUser(final Runnable action) {
+        this.access(new Runnable() {
+            @Override
+            public void run() {
+                CallerIdentity previous = CallerIdentity.of(MyUI.this).swap(MyUI.this.identityContext);
+                try {
+                    action.run();
+                } finally {
+                    previous.apply(MyUI.this.identityContext);
+                }
             }
+        });
+    }
 
-        } catch (JMSException e) {
-            Notification.show("Unable to retrieve message. See server log");
-            this.push();
-            // TODO Auto-generated catch block
-            e.printStackTrace();
+    private void processResourceStateChange(final ResourceStateChangeEvent event, final boolean updateView) {
+        if (event.getResource() instanceof Machine) {
+            Machine machine = (Machine) event.getResource();
+            if (!ResourceState.of(machine.getState()).isTransitional()) {
+                Notification.show("Instance " + machine.getName() + " " + machine.getState().toString().toLowerCase(),
+                    Notification.Type.TRAY_NOTIFICATION);
+            }
+        } else if (event.getResource() instanceof MachineImage) {
+            MachineImage image = (MachineImage) event.getResource();
+            if (!ResourceState.of(image.getState()).isTransitional()) {
+                Notification.show("Image " + image.getName() + " " + image.getState().toString().toLowerCase(),
+                    Notification.Type.TRAY_NOTIFICATION);
+            }
+        } else if (event.getResource() instanceof Volume) {
+            Volume volume = (Volume) event.getResource();
+            if (!ResourceState.of(volume.getState()).isTransitional()) {
+                Notification.show("Volume " + volume.getName() + " " + volume.getState().toString().toLowerCase(),
+                    Notification.Type.TRAY_NOTIFICATION);
+            }
+        } else if (event.getResource() instanceof MachineVolume) {
+            MachineVolume machineVolume = (MachineVolume) event.getResource();
+            if (!ResourceState.of(machineVolume.getState()).isTransitional()) {
+                String message;
+                if (machineVolume.getState() == State.DELETED) {
+                    message = "detached";
+                } else if (machineVolume.getState() == State.ATTACHED) {
+                    message = "attached";
+                } else {
+                    message = "error";
+                }
+                Notification.show("Volume " + machineVolume.getVolume().getName() + " " + message,
+                    Notification.Type.TRAY_NOTIFICATION);
+            }
+        } else if (event.getResource() instanceof Network) {
+            Network network = (Network) event.getResource();
+            if (!ResourceState.of(network.getState()).isTransitional()) {
+                Notification.show("Network " + network.getName() + " " + network.getState().toString().toLowerCase(),
+                    Notification.Type.TRAY_NOTIFICATION);
+            }
+        }
+        if (updateView) {
+            this.updateView(event.getResource());
+        }
+    }
+
+    private void updateView(final Object resource) {
+        if (resource instanceof Machine) {
+            this.updateView(MachineView.class, ((Machine) resource).getUuid(), resource);
+        } else if (resource instanceof MachineImage) {
+            this.updateView(MachineImageView.class, ((MachineImage) resource).getUuid(), resource);
+        } else if (resource instanceof Volume) {
+            this.updateView(VolumeView.class, ((Volume) resource).getUuid(), resource);
+        } else if (resource instanceof MachineVolume) {
+            this.updateView(VolumeView.class, ((MachineVolume) resource).getVolume().getUuid(), resource);
+        } else if (resource instanceof Network) {
+            this.updateView(NetworkView.class, ((Network) resource).getUuid(), resource);
+        } else if (resource instanceof Address) {
+            this.updateView(AddressView.class, ((Address) resource).getUuid(), resource);
+        } else if (resource instanceof SecurityGroup) {
+            this.updateView(SecurityGroupView.class, ((SecurityGroup) resource).getUuid(), resource);
+        }
+    }
+
+    /**
+     * Ends a batch of updates for the view on screen; the other views catch up when attached again.
+     */
+    private void updatesApplied() {
+        for (Component view : this.views.values()) {
+            if (view instanceof ResourceEventView && view.isAttached()) {
+                ((ResourceEventView) view).updatesApplied();
+            }
+        }
+    }
+
+    /**
+     * Applies the update if the view is on screen, logs it if the view is alive but detached and drops it if the view
+     * does not exist, since a new view loads fresh data.
+     */
+    private void updateView(final Class<? extends Component> viewType, final String uuid, final Object resource) {
+        Component view = this.findView(viewType);
+        if (view == null) {
+            return;
+        }
+        if (view.isAttached()) {
+            this.applyUpdate(view, resource);
+        } else {
+            this.pendingLog(view).add(uuid, resource);
+        }
+    }
+
+    private PendingDeltaLog<String, Object> pendingLog(final Component view) {
+        PendingDeltaLog<String, Object> pendingUpdates = this.pendingUpdates.get(view);
+        if (pendingUpdates == null) {
+            pendingUpdates = new PendingDeltaLog<>(MyUI.MAX_PENDING_UPDATES);
+            this.pendingUpdates.put(view, pendingUpdates);
+        }
+        return pendingUpdates;
+    }
+
+    private void applyUpdate(final Component view, final Object resource) {
+        if (resource instanceof Machine) {
+            ((MachineView) view).updateMachine((Machine) resource);
+        } else if (resource instanceof MachineImage) {
+            ((MachineImageView) view).updateMachineImage((MachineImage) resource);
+        } else if (resource instanceof Volume) {
+            ((VolumeView) view).updateVolume((Volume) resource);
+        } else if (resource instanceof MachineVolume) {
+            ((VolumeView) view).updateVolume(((MachineVolume) resource).getVolume());
+        } else if (resource instanceof Network) {
+            ((NetworkView) view).updateNetwork((Network) resource);
+        } else if (resource instanceof Address) {
+            ((AddressView) view).updateAddress((Address) resource);
+        } else if (resource instanceof SecurityGroup) {
+            ((SecurityGroupView) view).updateSecurityGroup((SecurityGroup) resource);
         }
     }
 
@@ -29,7 +29,6 @@ import java.util.List;
 import javax.inject.Inject;
 
 import org.ow2.sirocco.cloudmanager.NetworkView.NetworkBean;
-import org.ow2.sirocco.cloudmanager.core.api.ICloudProviderManager;
 import org.ow2.sirocco.cloudmanager.core.api.INetworkManager;
 import org.ow2.sirocco.cloudmanager.core.api.exception.CloudProviderException;
 import org.ow2.sirocco.cloudmanager.model.cimi.Job;
@@ -78,7 +77,7 @@ public class NetworkCreationWizard extends Window implements WizardProgressListe
     private SubnetStep subnetStep;
 
     @Inject
-    private ICloudProviderManager providerManager;
+    private CloudProviderCache providerCache;
 
     @Inject
     private INetworkManager networkManager;
@@ -113,8 +112,8 @@ public class NetworkCreationWizard extends Window implements WizardProgressListe
 
         this.placementStep.providerBox.removeAllItems();
         try {
-            this.placementStep.setProviderManager(this.providerManager);
-            for (CloudProviderAccount providerAccount : this.providerManager.getCloudProviderAccountsByTenant(tenantId)) {
+            this.placementStep.setProviderCache(this.providerCache);
+            for (CloudProviderAccount providerAccount : this.providerCache.getCloudProviderAccountsByTenant(tenantId)) {
                 this.placementStep.providerBox.addItem(providerAccount.getUuid());
                 this.placementStep.providerBox.setItemCaption(providerAccount.getUuid(), providerAccount.getCloudProvider()
                     .getDescription());
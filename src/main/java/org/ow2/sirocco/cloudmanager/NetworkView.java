@@ -22,20 +22,27 @@
  */
 package org.ow2.sirocco.cloudmanager;
 
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+import javax.enterprise.context.Dependent;
+import javax.enterprise.inject.Instance;
 import javax.inject.Inject;
 
 import org.ow2.sirocco.cloudmanager.core.api.INetworkManager;
 import org.ow2.sirocco.cloudmanager.core.api.exception.CloudProviderException;
 import org.ow2.sirocco.cloudmanager.model.cimi.Network;
 import org.ow2.sirocco.cloudmanager.model.cimi.Subnet;
+import org.ow2.sirocco.cloudmanager.util.BeanContainerReconciler;
+import org.ow2.sirocco.cloudmanager.util.FacetIndex.Facet;
+import org.ow2.sirocco.cloudmanager.util.FacetIndex.Selection;
+import org.ow2.sirocco.cloudmanager.util.ResourceState;
+import org.ow2.sirocco.cloudmanager.util.SelectionStateCounts;
 
-import com.vaadin.cdi.UIScoped;
 import com.vaadin.data.Property.ValueChangeEvent;
 import com.vaadin.data.Property.ValueChangeListener;
 import com.vaadin.data.util.BeanContainer;
-import com.vaadin.data.util.BeanItem;
 import com.vaadin.server.ThemeResource;
 import com.vaadin.ui.Button;
 import com.vaadin.ui.Button.ClickEvent;
@@ -46,8 +53,8 @@ import com.vaadin.ui.Table;
 import com.vaadin.ui.UI;
 import com.vaadin.ui.VerticalLayout;
 
-@UIScoped
-public class NetworkView extends VerticalLayout implements ValueChangeListener {
+@Dependent
+public class NetworkView extends VerticalLayout implements ResourceEventView, ValueChangeListener {
     private static final long serialVersionUID = 1L;
 
     private Button deleteNetworkButton;
@@ -56,12 +63,24 @@ public class NetworkView extends VerticalLayout implements ValueChangeListener {
 
     BeanContainer<String, NetworkBean> networks;
 
+    private SelectionStateCounts selectionStates;
+
+    private FacetPanel facetPanel;
+
     @Inject
-    private NetworkCreationWizard networkCreationWizard;
+    private Instance<NetworkCreationWizard> networkCreationWizard;
 
     @Inject
     private INetworkManager networkManager;
 
+    @Inject
+    private BackendCommandExecutor commandExecutor;
+
+    @Inject
+    private ResourceSnapshotStore snapshotStore;
+
+    private boolean loaded;
+
     public NetworkView() {
         this.setSizeFull();
 
@@ -77,8 +96,9 @@ public class NetworkView extends VerticalLayout implements ValueChangeListener {
 
             @Override
             public void buttonClick(final ClickEvent event) {
-                if (NetworkView.this.networkCreationWizard.init(NetworkView.this)) {
-                    UI.getCurrent().addWindow(NetworkView.this.networkCreationWizard);
+                NetworkCreationWizard wizard = NetworkView.this.networkCreationWizard.get();
+                if (wizard.init(NetworkView.this)) {
+                    UI.getCurrent().addWindow(wizard);
                 }
             }
         });
@@ -99,13 +119,14 @@ public class NetworkView extends VerticalLayout implements ValueChangeListener {
                         @Override
                         public void response(final boolean ok, final boolean ignored) {
                             if (ok) {
-                                for (Object id : selectedNetworkIds) {
-                                    try {
-                                        NetworkView.this.networkManager.deleteNetwork(id.toString());
-                                    } catch (CloudProviderException e) {
-                                        e.printStackTrace();
-                                    }
-                                }
+                                BulkProgressWindow.start(new BulkOperation(NetworkView.this.commandExecutor,
+                                    "Deleting networks", BulkOperation.items(NetworkView.this.networks,
+                                        selectedNetworkIds, "name"), new BulkOperation.Action() {
+                                        @Override
+                                        public void execute(final String id) throws CloudProviderException {
+                                            NetworkView.this.networkManager.deleteNetwork(id);
+                                        }
+                                    }, BulkOperation.parallelism("network")));
                                 NetworkView.this.valueChange(null);
                             }
                         }
@@ -124,6 +145,7 @@ public class NetworkView extends VerticalLayout implements ValueChangeListener {
 
             @Override
             public void buttonClick(final ClickEvent event) {
+                NetworkView.this.snapshotStore.invalidate(((MyUI) UI.getCurrent()).getTenantId(), Network.class);
                 NetworkView.this.refresh();
             }
         });
@@ -131,32 +153,58 @@ public class NetworkView extends VerticalLayout implements ValueChangeListener {
         actionButtonHeader.addComponent(button);
 
         this.addComponent(actionButtonHeader);
+        this.addComponent(this.facetPanel = this.createFacetPanel());
         this.addComponent(this.networkTable = this.createNetworkTable());
         this.setExpandRatio(this.networkTable, 1.0f);
 
     }
 
-    void refresh() {
-        this.networkTable.setValue(null);
-        this.networkTable.getContainerDataSource().removeAllItems();
+    @Override
+    public void refresh() {
         try {
-            for (Network network : this.networkManager.getNetworks().getItems()) {
-                this.networks.addBean(new NetworkBean(network));
-            }
+            List<NetworkBean> beans = this.snapshotStore.getNetworks(((MyUI) UI.getCurrent()).getTenantId(),
+                this.facetPanel.getSelection());
+            BeanContainerReconciler.reconcile(this.networkTable, this.networks, beans, "id");
         } catch (CloudProviderException e) {
             e.printStackTrace();
         }
+        // reconciled rows may have changed state
+        this.selectionStates.clear();
+        this.facetPanel.updateCounts();
         this.valueChange(null);
     }
 
+    @Override
+    public void updatesApplied() {
+        this.facetPanel.updateCounts();
+    }
+
+    @SuppressWarnings("serial")
+    FacetPanel createFacetPanel() {
+        return new FacetPanel(new FacetPanel.Listener() {
+            @Override
+            public Map<Object, Integer> getFacetCounts(final Facet facet, final Selection selection)
+                throws CloudProviderException {
+                return NetworkView.this.snapshotStore.getFacetCounts(((MyUI) UI.getCurrent()).getTenantId(),
+                    Network.class, facet, selection);
+            }
+
+            @Override
+            public void facetSelectionChange() {
+                NetworkView.this.refresh();
+            }
+        });
+    }
+
     Table createNetworkTable() {
         this.networks = new BeanContainer<String, NetworkBean>(NetworkBean.class);
         this.networks.setBeanIdProperty("id");
+        this.selectionStates = new SelectionStateCounts(this.networks, "state");
         Table table = new Table();
         table.setContainerDataSource(this.networks);
 
         table.setSizeFull();
-        table.setPageLength(0);
+        Util.setViewportRendering(table);
 
         table.setSelectable(true);
         table.setMultiSelect(true);
@@ -174,41 +222,30 @@ public class NetworkView extends VerticalLayout implements ValueChangeListener {
 
     @Override
     public void valueChange(final ValueChangeEvent event) {
-        Set<?> selectedNetworkIds = (Set<?>) this.networkTable.getValue();
-        if (selectedNetworkIds != null && selectedNetworkIds.size() > 0) {
-            if (selectedNetworkIds.size() == 1) {
-                String state = (String) this.networkTable.getItem(selectedNetworkIds.iterator().next())
-                    .getItemProperty("state").getValue();
-                this.deleteNetworkButton.setEnabled(!state.endsWith("DELETING"));
-            } else {
-                boolean allowMultiDelete = true;
-                for (Object machineId : selectedNetworkIds) {
-                    String state = (String) this.networkTable.getItem(machineId).getItemProperty("state").getValue();
-                    if (state.endsWith("DELETING")) {
-                        allowMultiDelete = false;
-                        break;
-                    }
-                }
-                this.deleteNetworkButton.setEnabled(allowMultiDelete);
-            }
-        } else {
-            this.deleteNetworkButton.setEnabled(false);
-        }
+        this.selectionStates.select((Set<?>) this.networkTable.getValue());
+        this.deleteNetworkButton.setEnabled(this.selectionStates.size() > 0
+            && this.selectionStates.count(ResourceState.DELETING) == 0);
     }
 
     @Override
     public void attach() {
         super.attach();
-        this.refresh();
+        // once loaded, MyUI resyncs the view from the events received while it was not attached
+        if (!this.loaded) {
+            this.loaded = true;
+            this.refresh();
+        }
     }
 
     public void updateNetwork(final Network network) {
-        BeanItem<NetworkBean> item = this.networks.getItem(network.getUuid());
-        if (item != null) {
-            NetworkBean networkBean = item.getBean();
-            networkBean.init(network);
-            item.getItemProperty("state").setValue(networkBean.getState());
-            item.getItemProperty("name").setValue(networkBean.getName());
+        NetworkBean networkBean = this.snapshotStore.getNetwork(((MyUI) UI.getCurrent()).getTenantId(), network);
+        if (networkBean != null
+            && !this.facetPanel.matches(networkBean.getState(), networkBean.getProvider(), networkBean.getLocation())) {
+            // no longer part of the filtered rows
+            networkBean = null;
+        }
+        if (BeanContainerReconciler.replace(this.networkTable, this.networks, network.getUuid(), networkBean)) {
+            this.selectionStates.stateChanged(network.getUuid(), networkBean != null ? networkBean.getState() : null);
             this.valueChange(null);
         }
     }
@@ -220,7 +257,7 @@ public class NetworkView extends VerticalLayout implements ValueChangeListener {
 
         String description;
 
-        String state;
+        ResourceState state;
 
         String subnets;
 
@@ -232,11 +269,27 @@ public class NetworkView extends VerticalLayout implements ValueChangeListener {
             this.init(network);
         }
 
+        /**
+         * Row of an updated network, keeping the placement of the previous row if the network, e.g. the payload of an
+         * event, lacks it.
+         */
+        NetworkBean(final Network network, final NetworkBean previous) {
+            this.init(network);
+            if (previous != null) {
+                if (network.getCloudProviderAccount() == null) {
+                    this.provider = previous.provider;
+                }
+                if (network.getLocation() == null) {
+                    this.location = previous.location;
+                }
+            }
+        }
+
         void init(final Network network) {
             this.id = network.getUuid();
             this.name = network.getName();
             this.description = network.getDescription();
-            this.state = network.getState().toString();
+            this.state = ResourceState.of(network.getState());
             this.provider = this.providerFrom(network);
             this.location = this.locationFrom(network);
             this.subnets = this.subnetsFrom(network);
@@ -246,58 +299,30 @@ public class NetworkView extends VerticalLayout implements ValueChangeListener {
             return this.id;
         }
 
-        public void setId(final String id) {
-            this.id = id;
-        }
-
         public String getName() {
             return this.name;
         }
 
-        public void setName(final String name) {
-            this.name = name;
-        }
-
         public String getDescription() {
             return this.description;
         }
 
-        public void setDescription(final String description) {
-            this.description = description;
-        }
-
-        public String getState() {
+        public ResourceState getState() {
             return this.state;
         }
 
-        public void setState(final String state) {
-            this.state = state;
-        }
-
         public String getProvider() {
             return this.provider;
         }
 
-        public void setProvider(final String provider) {
-            this.provider = provider;
-        }
-
         public String getLocation() {
             return this.location;
         }
 
-        public void setLocation(final String location) {
-            this.location = location;
-        }
-
         public String getSubnets() {
             return this.subnets;
         }
 
-        public void setSubnets(final String subnets) {
-            this.subnets = subnets;
-        }
-
         private String subnetsFrom(final Network network) {
             StringBuilder sb = new StringBuilder();
             if (network.getSubnets() != null) {
@@ -83,6 +83,12 @@ public class ProviderAccountCreationWizard extends Window implements WizardProgr
     @Inject
     private ICloudProviderManager providerManager;
 
+    @Inject
+    private CloudProviderCache providerCache;
+
+    @Inject
+    private BackendCommandExecutor commandExecutor;
+
     public ProviderAccountCreationWizard() {
         super("New Cloud Provider Account");
         this.center();
@@ -133,10 +139,10 @@ public class ProviderAccountCreationWizard extends Window implements WizardProgr
     public void wizardCompleted(final WizardCompletedEvent event) {
         CloudProviderProfile selectedProfile = (CloudProviderProfile) this.providerTypeStep.optionGroup.getValue();
 
-        CloudProvider provider = new CloudProvider();
-        CloudProviderLocation location = new CloudProviderLocation();
-        CloudProviderAccount account = new CloudProviderAccount();
-        CreateCloudProviderAccountOptions options = new CreateCloudProviderAccountOptions();
+        final CloudProvider provider = new CloudProvider();
+        final CloudProviderLocation location = new CloudProviderLocation();
+        final CloudProviderAccount account = new CloudProviderAccount();
+        final CreateCloudProviderAccountOptions options = new CreateCloudProviderAccountOptions();
 
         provider.setCloudProviderType(selectedProfile.getType());
 
@@ -169,23 +175,36 @@ public class ProviderAccountCreationWizard extends Window implements WizardProgr
 
         ProviderAccountCreationWizard.this.wizard.disableButtons();
 
-        try {
-            CloudProviderAccount newAccount = null;
-            List<CloudProvider> providers = this.providerManager.getCloudProviderByType(provider.getCloudProviderType());
-            if (provider.getEndpoint() == null && !providers.isEmpty()) {
-                newAccount = this.providerManager.createCloudProviderAccount(providers.get(0).getUuid(), account, options);
-            } else {
-                newAccount = this.providerManager.createCloudProviderAccount(provider, location, account, options);
+        final String tenantId = ((MyUI) UI.getCurrent()).getTenantId();
+        this.commandExecutor.submit(new BackendCommandExecutor.Command<CloudProviderAccount>() {
+            @Override
+            public CloudProviderAccount execute() throws CloudProviderException {
+                ICloudProviderManager providerManager = ProviderAccountCreationWizard.this.providerManager;
+                CloudProviderAccount newAccount = null;
+                List<CloudProvider> providers = providerManager.getCloudProviderByType(provider.getCloudProviderType());
+                if (provider.getEndpoint() == null && !providers.isEmpty()) {
+                    newAccount = providerManager.createCloudProviderAccount(providers.get(0).getUuid(), account,
+                        options);
+                } else {
+                    newAccount = providerManager.createCloudProviderAccount(provider, location, account, options);
+                }
+                providerManager.addCloudProviderAccountToTenant(tenantId, newAccount.getUuid());
+                return newAccount;
+            }
+        }, new BackendCommandExecutor.Callback<CloudProviderAccount>("Cannot create account") {
+            @Override
+            public void onSuccess(final CloudProviderAccount newAccount) {
+                ProviderAccountCreationWizard.this.providerCache.invalidateTenant(tenantId);
+                ProviderAccountCreationWizard.this.close();
+                ProviderAccountCreationWizard.this.view.refresh();
             }
-            this.providerManager.addCloudProviderAccountToTenant(((MyUI) UI.getCurrent()).getTenantId(), newAccount.getUuid());
-        } catch (CloudProviderException e) {
-            this.wizard.updateButtons();
-            Util.diplayErrorMessageBox("Cannot create account", e);
-            return;
-        }
 
-        this.close();
-        this.view.refresh();
+            @Override
+            public void onFailure(final Exception e) {
+                ProviderAccountCreationWizard.this.wizard.updateButtons();
+                super.onFailure(e);
+            }
+        });
     }
 
     @Override
@@ -94,6 +94,8 @@ public class ProviderAccountDetailView extends VerticalLayout implements Metadat
         try {
             this.providerBean.account = this.providerView.cloudProviderManager.updateCloudProviderAccountAttributes(
                 this.providerBean.getId(), updatedAttributes);
+            this.providerView.providerCache.invalidateAccount(((MyUI) UI.getCurrent()).getTenantId(),
+                this.providerBean.getId());
         } catch (CloudProviderException e) {
             // TODO
             e.printStackTrace();
@@ -109,6 +111,8 @@ public class ProviderAccountDetailView extends VerticalLayout implements Metadat
         try {
             ProviderAccountDetailView.this.providerBean.account = ProviderAccountDetailView.this.providerView.cloudProviderManager
                 .updateCloudProviderAccountAttributes(ProviderAccountDetailView.this.providerBean.getId(), updatedAttributes);
+            ProviderAccountDetailView.this.providerView.providerCache.invalidateAccount(((MyUI) UI.getCurrent()).getTenantId(),
+                ProviderAccountDetailView.this.providerBean.getId());
         } catch (CloudProviderException e) {
             // TODO
             e.printStackTrace();
@@ -177,17 +181,20 @@ public class ProviderAccountDetailView extends VerticalLayout implements Metadat
         if (account.getCreated() != null) {
             this.addAttribute("created", "created", account.getCreated().toString(), null, false);
         }
-        AccountParameter param = providerBean.profile.findAccountParameter(CloudProviderProfile.PROVIDER_ENDPOINT);
-        if (param != null) {
-            this.addAttribute(param.getDescription(), "endpoint", providerBean.getEndpoint(), null, true);
-        }
-        param = providerBean.profile.findAccountParameter(CloudProviderProfile.PROVIDER_ACCOUNT_LOGIN);
-        if (param != null) {
-            this.addAttribute(param.getDescription(), "login", providerBean.getLogin(), null, true);
-        }
-        param = providerBean.profile.findAccountParameter(CloudProviderProfile.PROVIDER_ACCOUNT_PASSWORD);
-        if (param != null) {
-            this.addAttribute(param.getDescription(), "password", account.getPassword(), "****", true);
+        // null when no profile is registered for the provider type
+        if (providerBean.profile != null) {
+            AccountParameter param = providerBean.profile.findAccountParameter(CloudProviderProfile.PROVIDER_ENDPOINT);
+            if (param != null) {
+                this.addAttribute(param.getDescription(), "endpoint", providerBean.getEndpoint(), null, true);
+            }
+            param = providerBean.profile.findAccountParameter(CloudProviderProfile.PROVIDER_ACCOUNT_LOGIN);
+            if (param != null) {
+                this.addAttribute(param.getDescription(), "login", providerBean.getLogin(), null, true);
+            }
+            param = providerBean.profile.findAccountParameter(CloudProviderProfile.PROVIDER_ACCOUNT_PASSWORD);
+            if (param != null) {
+                this.addAttribute(param.getDescription(), "password", account.getPassword(), "****", true);
+            }
         }
 
         this.metadataView.init(account.getProperties());
@@ -0,0 +1,217 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2013 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ */
+package org.ow2.sirocco.cloudmanager;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.ow2.sirocco.cloudmanager.core.api.IMachineImageManager;
+import org.ow2.sirocco.cloudmanager.core.api.IMachineManager;
+import org.ow2.sirocco.cloudmanager.core.api.INetworkManager;
+import org.ow2.sirocco.cloudmanager.core.api.ResourceStateChangeEvent;
+import org.ow2.sirocco.cloudmanager.core.api.exception.CloudProviderException;
+import org.ow2.sirocco.cloudmanager.model.cimi.Machine;
+import org.ow2.sirocco.cloudmanager.model.cimi.MachineImage;
+import org.ow2.sirocco.cloudmanager.model.cimi.extension.SecurityGroup;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+
+/**
+ * Small LRU cache of the full entities shown by the detail views (machines, security groups and images), loaded by
+ * uuid when a row is selected. The table rows only retain the displayed columns. Entities are cached per tenant, as
+ * the managers check the tenant of the caller when loading them, so that an entity is only served to the tenant
+ * which loaded it. Cached entities are replaced by the payload of the resource state change events and of update
+ * calls, dropped when the resource is deleted and dropped with the tenant when its last UI goes away.
+ */
+@ApplicationScoped
+public class ResourceDetailCache {
+    static final long TTL_SECONDS = Long.getLong("sirocco.dashboard.detailCache.ttl", 120);
+
+    static final long MAX_SIZE = Long.getLong("sirocco.dashboard.detailCache.maxSize", 100);
+
+    @Inject
+    private IMachineManager machineManager;
+
+    @Inject
+    private INetworkManager networkManager;
+
+    @Inject
+    private IMachineImageManager machineImageManager;
+
+    private LoadingCache<EntityKey, Machine> machines;
+
+    private LoadingCache<EntityKey, SecurityGroup> securityGroups;
+
+    private LoadingCache<EntityKey, MachineImage> machineImages;
+
+    @PostConstruct
+    void init() {
+        this.machines = this.newCacheBuilder().build(new CacheLoader<EntityKey, Machine>() {
+            @Override
+            public Machine load(final EntityKey key) throws CloudProviderException {
+                return ResourceDetailCache.this.machineManager.getMachineByUuid(key.uuid);
+            }
+        });
+        this.securityGroups = this.newCacheBuilder().build(new CacheLoader<EntityKey, SecurityGroup>() {
+            @Override
+            public SecurityGroup load(final EntityKey key) throws CloudProviderException {
+                return ResourceDetailCache.this.networkManager.getSecurityGroupByUuid(key.uuid);
+            }
+        });
+        this.machineImages = this.newCacheBuilder().build(new CacheLoader<EntityKey, MachineImage>() {
+            @Override
+            public MachineImage load(final EntityKey key) throws CloudProviderException {
+                return ResourceDetailCache.this.machineImageManager.getMachineImageByUuid(key.uuid);
+            }
+        });
+    }
+
+    private CacheBuilder<Object, Object> newCacheBuilder() {
+        return CacheBuilder.newBuilder().expireAfterWrite(ResourceDetailCache.TTL_SECONDS, TimeUnit.SECONDS)
+            .maximumSize(ResourceDetailCache.MAX_SIZE).recordStats();
+    }
+
+    /**
+     * Returns null if the machine no longer exists. Must be called from a request of the given tenant.
+     */
+    public Machine getMachine(final String tenantId, final String uuid) throws CloudProviderException {
+        return ResourceDetailCache.get(this.machines, new EntityKey(tenantId, uuid));
+    }
+
+    public SecurityGroup getSecurityGroup(final String tenantId, final String uuid) throws CloudProviderException {
+        return ResourceDetailCache.get(this.securityGroups, new EntityKey(tenantId, uuid));
+    }
+
+    public MachineImage getMachineImage(final String tenantId, final String uuid) throws CloudProviderException {
+        return ResourceDetailCache.get(this.machineImages, new EntityKey(tenantId, uuid));
+    }
+
+    /**
+     * Replaces the cached entity, if any, with an up-to-date one, e.g. returned by an update call. Entities which are
+     * not cached are not added: only selected rows are worth keeping.
+     */
+    public void update(final String tenantId, final Object resource) {
+        if (resource instanceof Machine) {
+            Machine machine = (Machine) resource;
+            ResourceDetailCache.replace(this.machines, new EntityKey(tenantId, machine.getUuid()), machine,
+                machine.getState() == Machine.State.DELETED);
+        } else if (resource instanceof SecurityGroup) {
+            SecurityGroup securityGroup = (SecurityGroup) resource;
+            ResourceDetailCache.replace(this.securityGroups, new EntityKey(tenantId, securityGroup.getUuid()),
+                securityGroup, securityGroup.getState() == SecurityGroup.State.DELETED);
+        } else if (resource instanceof MachineImage) {
+            MachineImage machineImage = (MachineImage) resource;
+            ResourceDetailCache.replace(this.machineImages, new EntityKey(tenantId, machineImage.getUuid()),
+                machineImage, machineImage.getState() == MachineImage.State.DELETED);
+        }
+    }
+
+    public void evictTenant(final String tenantId) {
+        ResourceDetailCache.evictTenant(this.machines, tenantId);
+        ResourceDetailCache.evictTenant(this.securityGroups, tenantId);
+        ResourceDetailCache.evictTenant(this.machineImages, tenantId);
+    }
+
+    public long getSize() {
+        return this.machines.size() + this.securityGroups.size() + this.machineImages.size();
+    }
+
+    public CacheStats getMachineStats() {
+        return this.machines.stats();
+    }
+
+    public CacheStats getSecurityGroupStats() {
+        return this.securityGroups.stats();
+    }
+
+    public CacheStats getMachineImageStats() {
+        return this.machineImages.stats();
+    }
+
+    void onResourceStateChange(final String tenantId, final ResourceStateChangeEvent event) {
+        this.update(tenantId, event.getResource());
+    }
+
+    private static <V> void replace(final LoadingCache<EntityKey, V> cache, final EntityKey key, final V value,
+        final boolean deleted) {
+        if (deleted) {
+            cache.invalidate(key);
+        } else {
+            cache.asMap().replace(key, value);
+        }
+    }
+
+    private static <V> void evictTenant(final LoadingCache<EntityKey, V> cache, final String tenantId) {
+        for (EntityKey key : cache.asMap().keySet()) {
+            if (key.tenantId.equals(tenantId)) {
+                cache.invalidate(key);
+            }
+        }
+    }
+
+    private static <V> V get(final LoadingCache<EntityKey, V> cache, final EntityKey key)
+        throws CloudProviderException {
+        try {
+            return cache.get(key);
+        } catch (CacheLoader.InvalidCacheLoadException e) {
+            // the loader returned null
+            return null;
+        } catch (ExecutionException e) {
+            // loaders only throw CloudProviderException as checked exception
+            throw (CloudProviderException) e.getCause();
+        }
+    }
+
+    private static final class EntityKey {
+        final String tenantId;
+
+        final String uuid;
+
+        EntityKey(final String tenantId, final String uuid) {
+            this.tenantId = tenantId;
+            this.uuid = uuid;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof EntityKey)) {
+                return false;
+            }
+            EntityKey other = (EntityKey) obj;
+            return this.tenantId.equals(other.tenantId) && this.uuid.equals(other.uuid);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * this.tenantId.hashCode() + this.uuid.hashCode();
+        }
+    }
+
+}
@@ -0,0 +1,125 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2013 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ */
+package org.ow2.sirocco.cloudmanager;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.ow2.sirocco.cloudmanager.core.api.ResourceStateChangeEvent;
+
+/**
+ * Collects resource state change events for one UI and hands them over in batches, keeping only the latest event
+ * per resource within a flush interval.
+ */
+public class ResourceEventBuffer {
+    public static final long FLUSH_INTERVAL_MILLIS = Long.getLong("sirocco.dashboard.event.flushInterval", 250);
+
+    public interface Sink {
+        void flush(List<ResourceStateChangeEvent> events);
+    }
+
+    private final ScheduledExecutorService scheduler;
+
+    private final long flushIntervalMillis;
+
+    private final Sink sink;
+
+    private final Map<String, ResourceStateChangeEvent> pendingEvents = new LinkedHashMap<>();
+
+    private boolean flushScheduled;
+
+    private final AtomicLong eventsReceived = new AtomicLong();
+
+    private final AtomicLong eventsCoalesced = new AtomicLong();
+
+    private final AtomicLong flushes = new AtomicLong();
+
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            ResourceEventBuffer.this.flush();
+        }
+    };
+
+    public ResourceEventBuffer(final ScheduledExecutorService scheduler, final long flushIntervalMillis, final Sink sink) {
+        this.scheduler = scheduler;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.sink = sink;
+    }
+
+    public void add(final ResourceStateChangeEvent event) {
+        this.eventsReceived.incrementAndGet();
+        String key = event.getResource().getUuid();
+        boolean flushNow = false;
+        synchronized (this.pendingEvents) {
+            // re-insert so that the batch keeps the order of the latest state changes
+            if (this.pendingEvents.remove(key) != null) {
+                this.eventsCoalesced.incrementAndGet();
+            }
+            this.pendingEvents.put(key, event);
+            if (!this.flushScheduled) {
+                this.flushScheduled = true;
+                try {
+                    this.scheduler.schedule(this.flushTask, this.flushIntervalMillis, TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException e) {
+                    flushNow = true;
+                }
+            }
+        }
+        if (flushNow) {
+            this.flush();
+        }
+    }
+
+    public void flush() {
+        List<ResourceStateChangeEvent> events;
+        synchronized (this.pendingEvents) {
+            events = new ArrayList<>(this.pendingEvents.values());
+            this.pendingEvents.clear();
+            this.flushScheduled = false;
+        }
+        if (!events.isEmpty()) {
+            this.flushes.incrementAndGet();
+            this.sink.flush(events);
+        }
+    }
+
+    public long getEventsReceived() {
+        return this.eventsReceived.get();
+    }
+
+    public long getEventsCoalesced() {
+        return this.eventsCoalesced.get();
+    }
+
+    public long getFlushes() {
+        return this.flushes.get();
+    }
+
+}
@@ -0,0 +1,295 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2013 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ */
+package org.ow2.sirocco.cloudmanager;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.enterprise.concurrent.ManagedScheduledExecutorService;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageListener;
+import javax.jms.Session;
+import javax.jms.Topic;
+
+import org.ow2.sirocco.cloudmanager.core.api.IdentityContext;
+import org.ow2.sirocco.cloudmanager.core.api.ResourceStateChangeEvent;
+import org.ow2.sirocco.cloudmanager.core.api.exception.CloudProviderException;
+
+/**
+ * Shares one JMS connection across all dashboard UIs and one topic subscription per tenant, fanning out each
+ * resource state change event to the UIs registered for that tenant. Events whose payload the
+ * {@link ResourceRefetchPolicy} deems incomplete are buffered per tenant and completed from the backend once per
+ * flush, the reloaded resources being applied to the shared state of the tenant and fanned out to its UIs.
+ */
+@ApplicationScoped
+public class ResourceEventDispatcher {
+    public interface Listener {
+        void onResourceStateChange(ResourceStateChangeEvent event);
+
+        /**
+         * Resources reloaded for incomplete events, already applied to the snapshot and search index of the tenant.
+         */
+        void onResourcesRefetched(List<Object> resources);
+
+        void onRefetchFailed(List<ResourceStateChangeEvent> events);
+
+        /**
+         * User of the listener, whose identity the refetches of the tenant may run with.
+         */
+        String getUserName();
+    }
+
+    @Resource(lookup = "jms/ResourceStateChangeTopic")
+    private Topic resourceStateChangeTopic;
+
+    @Resource
+    private ConnectionFactory connectionFactory;
+
+    @Inject
+    private CloudProviderCache providerCache;
+
+    @Inject
+    private ResourceSnapshotStore snapshotStore;
+
+    @Inject
+    private ResourceDetailCache detailCache;
+
+    @Inject
+    private ResourceSearchIndex searchIndex;
+
+    @Inject
+    private ResourceRefetchPolicy refetchPolicy;
+
+    @Inject
+    private IdentityContext identityContext;
+
+    @Resource
+    private ManagedScheduledExecutorService scheduler;
+
+    private Connection connection;
+
+    private final Map<String, TenantSubscription> subscriptions = new HashMap<>();
+
+    /**
+     * Subscribes the listener to the events of the tenant. If the connection or the subscription cannot be created the
+     * failure is thrown and nothing is left behind: a connection no subscription uses is closed, so that the caller
+     * can retry. State cached for the tenant while it had no subscription missed events and is dropped when the
+     * subscription is created.
+     */
+    public synchronized void register(final String tenantId, final Listener listener) throws JMSException {
+        TenantSubscription subscription = this.subscriptions.get(tenantId);
+        if (subscription == null) {
+            try {
+                if (this.connection == null) {
+                    this.connection = this.connectionFactory.createConnection();
+                    this.connection.start();
+                }
+                subscription = new TenantSubscription(tenantId);
+            } catch (JMSException e) {
+                if (this.subscriptions.isEmpty()) {
+                    this.closeConnection();
+                }
+                throw e;
+            }
+            this.subscriptions.put(tenantId, subscription);
+            this.evictTenant(tenantId);
+        }
+        subscription.listeners.addIfAbsent(listener);
+    }
+
+    public synchronized void unregister(final String tenantId, final Listener listener) {
+        TenantSubscription subscription = this.subscriptions.get(tenantId);
+        if (subscription == null) {
+            // the UI never subscribed, nothing keeps the state it may have loaded current
+            this.evictTenant(tenantId);
+            return;
+        }
+        subscription.listeners.remove(listener);
+        if (subscription.listeners.isEmpty()) {
+            this.subscriptions.remove(tenantId);
+            subscription.close();
+            this.evictTenant(tenantId);
+            if (this.subscriptions.isEmpty()) {
+                this.closeConnection();
+            }
+        }
+    }
+
+    public synchronized int getSubscriptionCount() {
+        return this.subscriptions.size();
+    }
+
+    public synchronized int getListenerCount() {
+        int count = 0;
+        for (TenantSubscription subscription : this.subscriptions.values()) {
+            count += subscription.listeners.size();
+        }
+        return count;
+    }
+
+    @PreDestroy
+    synchronized void destroy() {
+        for (TenantSubscription subscription : this.subscriptions.values()) {
+            subscription.close();
+        }
+        this.subscriptions.clear();
+        this.closeConnection();
+    }
+
+    private void evictTenant(final String tenantId) {
+        this.snapshotStore.evictTenant(tenantId);
+        this.searchIndex.evictTenant(tenantId);
+        this.detailCache.evictTenant(tenantId);
+    }
+
+    private void closeConnection() {
+        if (this.connection != null) {
+            try {
+                this.connection.close();
+            } catch (JMSException e) {
+                e.printStackTrace();
+            }
+            this.connection = null;
+        }
+    }
+
+    private class TenantSubscription implements MessageListener {
+        final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+        final String tenantId;
+
+        final Session session;
+
+        final MessageConsumer consumer;
+
+        final ResourceEventBuffer refetchBuffer;
+
+        TenantSubscription(final String tenantId) throws JMSException {
+            this.tenantId = tenantId;
+            this.refetchBuffer = new ResourceEventBuffer(ResourceEventDispatcher.this.scheduler,
+                ResourceEventBuffer.FLUSH_INTERVAL_MILLIS, new ResourceEventBuffer.Sink() {
+                    @Override
+                    public void flush(final List<ResourceStateChangeEvent> events) {
+                        TenantSubscription.this.refetch(events);
+                    }
+                });
+            String selector = "tenantId = " + "'" + tenantId + "'";
+            this.session = ResourceEventDispatcher.this.connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            try {
+                this.consumer = this.session.createConsumer(ResourceEventDispatcher.this.resourceStateChangeTopic,
+                    selector);
+                this.consumer.setMessageListener(this);
+            } catch (JMSException e) {
+                this.session.close();
+                throw e;
+            }
+        }
+
+        @Override
+        public void onMessage(final Message message) {
+            ResourceStateChangeEvent event;
+            try {
+                event = message.getBody(ResourceStateChangeEvent.class);
+            } catch (JMSException e) {
+                e.printStackTrace();
+                return;
+            }
+            ResourceEventDispatcher.this.providerCache.onResourceStateChange(this.tenantId, event);
+            ResourceEventDispatcher.this.detailCache.onResourceStateChange(this.tenantId, event);
+            ResourceEventDispatcher.this.searchIndex.onResourceStateChange(this.tenantId, event);
+            // before the UIs, which read the updated rows from the snapshot
+            ResourceEventDispatcher.this.snapshotStore.onResourceStateChange(this.tenantId, event);
+            for (Listener listener : this.listeners) {
+                try {
+                    listener.onResourceStateChange(event);
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+            if (ResourceEventDispatcher.this.refetchPolicy.needsRefetch(event)) {
+                this.refetchBuffer.add(event);
+            }
+        }
+
+        /**
+         * Completes a batch of incomplete events on the flush thread, with the identity of one of the listeners since
+         * the thread does not carry any, then applies and fans out the reloaded resources.
+         */
+        void refetch(final List<ResourceStateChangeEvent> events) {
+            ResourceEventDispatcher outer = ResourceEventDispatcher.this;
+            Iterator<Listener> listeners = this.listeners.iterator();
+            if (!listeners.hasNext()) {
+                // unsubscribed meanwhile
+                return;
+            }
+            List<Object> resources = null;
+            CallerIdentity previous = CallerIdentity.of(listeners.next().getUserName(), this.tenantId).swap(
+                outer.identityContext);
+            try {
+                resources = outer.refetchPolicy.refetch(events);
+            } catch (CloudProviderException e) {
+                e.printStackTrace();
+            } finally {
+                previous.apply(outer.identityContext);
+            }
+            if (resources != null) {
+                for (Object resource : resources) {
+                    outer.snapshotStore.update(this.tenantId, resource);
+                    outer.searchIndex.update(this.tenantId, resource);
+                }
+            }
+            for (Listener listener : this.listeners) {
+                try {
+                    if (resources != null) {
+                        listener.onResourcesRefetched(resources);
+                    } else {
+                        listener.onRefetchFailed(events);
+                    }
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        void close() {
+            try {
+                this.consumer.close();
+                this.session.close();
+            } catch (JMSException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,38 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2013 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ */
+package org.ow2.sirocco.cloudmanager;
+
+/**
+ * An inventory view kept current from resource state change events. The view loads its content when it is first
+ * attached; while it is not on screen {@link MyUI} logs the events for it and, when the view is shown again, either
+ * replays them or calls {@link #refresh()} if too many accumulated or they are too old.
+ */
+public interface ResourceEventView {
+    void refresh();
+
+    /**
+     * Called once a batch of updates has been applied to the view on screen, for the work which depends on the batch
+     * as a whole rather than on each update, e.g. the facet counts.
+     */
+    void updatesApplied();
+}
@@ -0,0 +1,136 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2013 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ */
+package org.ow2.sirocco.cloudmanager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.ow2.sirocco.cloudmanager.core.api.INetworkManager;
+import org.ow2.sirocco.cloudmanager.core.api.IVolumeManager;
+import org.ow2.sirocco.cloudmanager.core.api.QueryParams;
+import org.ow2.sirocco.cloudmanager.core.api.ResourceStateChangeEvent;
+import org.ow2.sirocco.cloudmanager.core.api.exception.CloudProviderException;
+import org.ow2.sirocco.cloudmanager.model.cimi.Address;
+import org.ow2.sirocco.cloudmanager.model.cimi.MachineVolume;
+import org.ow2.sirocco.cloudmanager.model.cimi.Volume;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+
+/**
+ * Decides per resource type whether the payload of a resource state change event is enough to update the views.
+ * Events which are not are completed from the backend by the {@link ResourceEventDispatcher}, once per tenant and
+ * flush for all the UIs of the tenant, with one query per resource type matching at most MAX_UUIDS_PER_QUERY uuids.
+ * By default only volume attach/detach events, which carry the volume without its new attachment list, are reloaded;
+ * the sirocco.dashboard.event.refetch property (comma separated simple class names, e.g. Volume or Address) overrides
+ * the set.
+ */
+@ApplicationScoped
+public class ResourceRefetchPolicy {
+    static final Set<String> REFETCHED_TYPES = ImmutableSet.copyOf(Splitter.on(',').trimResults().omitEmptyStrings()
+        .split(System.getProperty("sirocco.dashboard.event.refetch", "MachineVolume")));
+
+    static final int MAX_UUIDS_PER_QUERY = Integer.getInteger("sirocco.dashboard.event.refetchMaxUuids", 50);
+
+    @Inject
+    private IVolumeManager volumeManager;
+
+    @Inject
+    private INetworkManager networkManager;
+
+    private final AtomicLong refetchQueries = new AtomicLong();
+
+    private final AtomicLong refetchedResources = new AtomicLong();
+
+    public boolean needsRefetch(final ResourceStateChangeEvent event) {
+        Object resource = event.getResource();
+        if (!ResourceRefetchPolicy.REFETCHED_TYPES.contains(resource.getClass().getSimpleName())) {
+            return false;
+        }
+        // the payload of a deletion is all there is to know
+        if (resource instanceof Volume) {
+            return ((Volume) resource).getState() != Volume.State.DELETED;
+        } else if (resource instanceof Address) {
+            return ((Address) resource).getState() != Address.State.DELETED;
+        }
+        return resource instanceof MachineVolume;
+    }
+
+    /**
+     * Reloads the volumes and addresses referenced by the given events, with one query per resource type and chunk of
+     * uuids. Resources which no longer exist are omitted.
+     */
+    public List<Object> refetch(final List<ResourceStateChangeEvent> events) throws CloudProviderException {
+        Set<String> volumeIds = new LinkedHashSet<>();
+        Set<String> addressIds = new LinkedHashSet<>();
+        for (ResourceStateChangeEvent event : events) {
+            Object resource = event.getResource();
+            if (resource instanceof MachineVolume) {
+                volumeIds.add(((MachineVolume) resource).getVolume().getUuid());
+            } else if (resource instanceof Volume) {
+                volumeIds.add(((Volume) resource).getUuid());
+            } else if (resource instanceof Address) {
+                addressIds.add(((Address) resource).getUuid());
+            }
+        }
+        List<Object> resources = new ArrayList<>();
+        for (List<String> chunk : Iterables.partition(volumeIds, ResourceRefetchPolicy.MAX_UUIDS_PER_QUERY)) {
+            this.refetchQueries.incrementAndGet();
+            resources.addAll(this.volumeManager.getVolumes(ResourceRefetchPolicy.byUuid(chunk)).getItems());
+        }
+        for (List<String> chunk : Iterables.partition(addressIds, ResourceRefetchPolicy.MAX_UUIDS_PER_QUERY)) {
+            this.refetchQueries.incrementAndGet();
+            resources.addAll(this.networkManager.getAddresses(ResourceRefetchPolicy.byUuid(chunk)).getItems());
+        }
+        this.refetchedResources.addAndGet(resources.size());
+        return resources;
+    }
+
+    public long getRefetchQueries() {
+        return this.refetchQueries.get();
+    }
+
+    public long getRefetchedResources() {
+        return this.refetchedResources.get();
+    }
+
+    private static QueryParams byUuid(final Collection<String> uuids) {
+        StringBuilder filter = new StringBuilder();
+        for (String uuid : uuids) {
+            if (filter.length() > 0) {
+                filter.append(" or ");
+            }
+            filter.append("uuid='").append(uuid).append('\'');
+        }
+        return new QueryParams.Builder().filter(filter.toString()).build();
+    }
+
+}
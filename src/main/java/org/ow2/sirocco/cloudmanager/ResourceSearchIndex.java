@@ -0,0 +1,703 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2013 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ */
+package org.ow2.sirocco.cloudmanager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.ow2.sirocco.cloudmanager.AddressView.AddressBean;
+import org.ow2.sirocco.cloudmanager.MachineView.MachineBean;
+import org.ow2.sirocco.cloudmanager.NetworkView.NetworkBean;
+import org.ow2.sirocco.cloudmanager.SecurityGroupView.SecurityGroupBean;
+import org.ow2.sirocco.cloudmanager.VolumeView.VolumeBean;
+import org.ow2.sirocco.cloudmanager.core.api.ICredentialsManager;
+import org.ow2.sirocco.cloudmanager.core.api.IMachineImageManager;
+import org.ow2.sirocco.cloudmanager.core.api.ResourceStateChangeEvent;
+import org.ow2.sirocco.cloudmanager.core.api.exception.CloudProviderException;
+import org.ow2.sirocco.cloudmanager.model.cimi.Address;
+import org.ow2.sirocco.cloudmanager.model.cimi.Credentials;
+import org.ow2.sirocco.cloudmanager.model.cimi.Machine;
+import org.ow2.sirocco.cloudmanager.model.cimi.MachineImage;
+import org.ow2.sirocco.cloudmanager.model.cimi.MachineVolume;
+import org.ow2.sirocco.cloudmanager.model.cimi.Network;
+import org.ow2.sirocco.cloudmanager.model.cimi.Volume;
+import org.ow2.sirocco.cloudmanager.model.cimi.extension.CloudProviderAccount;
+import org.ow2.sirocco.cloudmanager.model.cimi.extension.CloudProviderLocation;
+import org.ow2.sirocco.cloudmanager.model.cimi.extension.ProviderMapping;
+import org.ow2.sirocco.cloudmanager.model.cimi.extension.SecurityGroup;
+
+/**
+ * Per-tenant inverted index over the name, uuid, IP addresses, provider and location of the machines, volumes,
+ * networks, addresses, security groups, images and key pairs of a tenant, for the search box of the header. Terms
+ * are kept sorted so that a query word matches every term it prefixes. A tenant is built on its first search from
+ * the rows the {@link ResourceSnapshotStore} shares with the inventory views, only images and key pairs being listed
+ * from their managers, and is dropped when its last UI goes away. It is kept current from the events whose payload
+ * is complete and from the resources the UIs refetch for the others. Key pairs have no events and are reindexed by
+ * their view.
+ */
+@ApplicationScoped
+public class ResourceSearchIndex {
+    static final int MAX_RESULTS = Integer.getInteger("sirocco.dashboard.search.maxResults", 50);
+
+    public enum Type {
+        MACHINE("Instance"), VOLUME("Volume"), NETWORK("Network"), ADDRESS("Address"), SECURITY_GROUP(
+            "Security group"), IMAGE("Image"), KEY_PAIR("Key pair");
+
+        private final String label;
+
+        private Type(final String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return this.label;
+        }
+    }
+
+    /**
+     * Indexed fields, with the weight of a match on each of them.
+     */
+    enum Field {
+        NAME(8), IP(6), ID(4), PROVIDER(1), LOCATION(1);
+
+        final int weight;
+
+        private Field(final int weight) {
+            this.weight = weight;
+        }
+    }
+
+    public static class Hit {
+        final Type type;
+
+        final String id;
+
+        final String name;
+
+        final int score;
+
+        final String match;
+
+        Hit(final Document document, final int score, final String match) {
+            this.type = document.type;
+            this.id = document.id;
+            this.name = document.name;
+            this.score = score;
+            this.match = match;
+        }
+
+        public Type getType() {
+            return this.type;
+        }
+
+        public String getId() {
+            return this.id;
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        public int getScore() {
+            return this.score;
+        }
+
+        /**
+         * The indexed value which matched best.
+         */
+        public String getMatch() {
+            return this.match;
+        }
+    }
+
+    private static final Pattern SEPARATORS = Pattern.compile("[\\s\\-_/,:;()\\[\\]]+");
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private static final Pattern IP = Pattern.compile("[0-9A-Fa-f]*[.:][0-9A-Fa-f.:]*");
+
+    private static final Comparator<Hit> RANKING = new Comparator<Hit>() {
+        @Override
+        public int compare(final Hit h1, final Hit h2) {
+            if (h1.score != h2.score) {
+                return h2.score - h1.score;
+            }
+            int c = String.valueOf(h1.name).compareToIgnoreCase(String.valueOf(h2.name));
+            return c != 0 ? c : h1.id.compareTo(h2.id);
+        }
+    };
+
+    @Inject
+    private ResourceSnapshotStore snapshotStore;
+
+    @Inject
+    private ResourceRefetchPolicy refetchPolicy;
+
+    @Inject
+    private IMachineImageManager machineImageManager;
+
+    @Inject
+    private ICredentialsManager credentialsManager;
+
+    private final ConcurrentMap<String, TenantIndex> tenants = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the best ranked resources matching every word of the query. Must be called from a request of the
+     * tenant the first time, so that the initial load runs with the tenant's identity context.
+     */
+    public List<Hit> search(final String tenantId, final String query) throws CloudProviderException {
+        return this.tenant(tenantId).search(tenantId, query);
+    }
+
+    /**
+     * Replaces the indexed resources of a type, for resources which have no state change events.
+     */
+    public void reindex(final String tenantId, final Type type, final Collection<?> resources) {
+        TenantIndex index = this.tenants.get(tenantId);
+        if (index != null) {
+            index.reindex(type, resources);
+        }
+    }
+
+    public void remove(final String tenantId, final Type type, final String id) {
+        TenantIndex index = this.tenants.get(tenantId);
+        if (index != null) {
+            index.remove(new Key(type, id));
+        }
+    }
+
+    public int getTermCount(final String tenantId) {
+        TenantIndex index = this.tenants.get(tenantId);
+        return index != null ? index.termCount() : 0;
+    }
+
+    public int getDocumentCount(final String tenantId) {
+        TenantIndex index = this.tenants.get(tenantId);
+        return index != null ? index.documentCount() : 0;
+    }
+
+    /**
+     * Applies an up-to-date resource, e.g. refetched after an event.
+     */
+    public void update(final String tenantId, final Object resource) {
+        TenantIndex index = this.tenants.get(tenantId);
+        if (index != null) {
+            index.update(resource);
+        }
+    }
+
+    void onResourceStateChange(final String tenantId, final ResourceStateChangeEvent event) {
+        // incomplete payloads are applied by the UIs once refetched
+        if (this.refetchPolicy.needsRefetch(event)) {
+            return;
+        }
+        Object resource = event.getResource();
+        if (resource instanceof MachineVolume) {
+            this.update(tenantId, ((MachineVolume) resource).getVolume());
+        } else {
+            this.update(tenantId, resource);
+        }
+    }
+
+    void evictTenant(final String tenantId) {
+        this.tenants.remove(tenantId);
+    }
+
+    private TenantIndex tenant(final String tenantId) {
+        TenantIndex index = this.tenants.get(tenantId);
+        if (index == null) {
+            TenantIndex newIndex = new TenantIndex();
+            index = this.tenants.putIfAbsent(tenantId, newIndex);
+            if (index == null) {
+                index = newIndex;
+            }
+        }
+        return index;
+    }
+
+    private static final class Key {
+        final Type type;
+
+        final String id;
+
+        Key(final Type type, final String id) {
+            this.type = type;
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return this.type == other.type && this.id.equals(other.id);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.type.hashCode() * 31 + this.id.hashCode();
+        }
+    }
+
+    /**
+     * The indexed values of a resource, and the terms they produced so that the resource can be unindexed.
+     */
+    private static class Document {
+        final Type type;
+
+        final String id;
+
+        final String name;
+
+        final Map<Field, List<String>> values = new HashMap<>();
+
+        final Map<String, Posting> terms = new HashMap<>();
+
+        Document(final Type type, final String id, final String name) {
+            this.type = type;
+            this.id = id;
+            this.name = name;
+            this.add(Field.NAME, name);
+            this.add(Field.ID, id);
+        }
+
+        Key key() {
+            return new Key(this.type, this.id);
+        }
+
+        void add(final Field field, final String value) {
+            if (value == null || value.trim().isEmpty()) {
+                return;
+            }
+            List<String> fieldValues = this.values.get(field);
+            if (fieldValues == null) {
+                fieldValues = new ArrayList<>();
+                this.values.put(field, fieldValues);
+            }
+            fieldValues.add(value);
+            String lowerCase = value.trim().toLowerCase();
+            this.addTerm(lowerCase, field, value);
+            for (String word : ResourceSearchIndex.SEPARATORS.split(lowerCase)) {
+                if (!word.isEmpty()) {
+                    this.addTerm(word, field, value);
+                }
+            }
+        }
+
+        /**
+         * Copies the provider and location of a previous version of the resource when the event payload lacks them.
+         */
+        void inherit(final Document previous, final Field field) {
+            if (previous != null && !this.values.containsKey(field) && previous.values.containsKey(field)) {
+                for (String value : previous.values.get(field)) {
+                    this.add(field, value);
+                }
+            }
+        }
+
+        private void addTerm(final String term, final Field field, final String value) {
+            Posting posting = this.terms.get(term);
+            if (posting == null || posting.field.weight < field.weight) {
+                this.terms.put(term, new Posting(this, field, value));
+            }
+        }
+    }
+
+    private static class Posting {
+        final Document document;
+
+        final Field field;
+
+        final String value;
+
+        Posting(final Document document, final Field field, final String value) {
+            this.document = document;
+            this.field = field;
+            this.value = value;
+        }
+    }
+
+    private static final class Reindex {
+        final Type type;
+
+        final Collection<?> resources;
+
+        Reindex(final Type type, final Collection<?> resources) {
+            this.type = type;
+            this.resources = resources;
+        }
+    }
+
+    /**
+     * Index of a tenant. The first search builds it into a separate index without holding the lock of this one, so
+     * that the event thread is not blocked by the backend calls of the build: the changes received meanwhile are
+     * recorded and replayed on the built index once swapped in.
+     */
+    private class TenantIndex {
+        private final Object buildLock = new Object();
+
+        private boolean loaded;
+
+        /** Changes received while building, null otherwise */
+        private List<Object> pending;
+
+        private Map<Key, Document> documents = new HashMap<>();
+
+        private NavigableMap<String, Map<Key, Posting>> terms = new TreeMap<>();
+
+        List<Hit> search(final String tenantId, final String query) throws CloudProviderException {
+            this.ensureBuilt(tenantId);
+            synchronized (this) {
+                return this.find(query);
+            }
+        }
+
+        private void ensureBuilt(final String tenantId) throws CloudProviderException {
+            synchronized (this.buildLock) {
+                synchronized (this) {
+                    if (this.loaded) {
+                        return;
+                    }
+                    this.pending = new ArrayList<>();
+                }
+                TenantIndex built = new TenantIndex();
+                try {
+                    built.load(tenantId);
+                    built.loaded = true;
+                } finally {
+                    synchronized (this) {
+                        if (built.loaded) {
+                            this.documents = built.documents;
+                            this.terms = built.terms;
+                            for (Object change : this.pending) {
+                                this.replay(change);
+                            }
+                            this.loaded = true;
+                        }
+                        this.pending = null;
+                    }
+                }
+            }
+        }
+
+        private List<Hit> find(final String query) {
+            Map<Key, Integer> scores = null;
+            Map<Key, Posting> bestPostings = new HashMap<>();
+            for (String word : ResourceSearchIndex.SEPARATORS.split(query.trim().toLowerCase())) {
+                if (word.isEmpty()) {
+                    continue;
+                }
+                Map<Key, Integer> wordScores = new HashMap<>();
+                String end = word + Character.MAX_VALUE;
+                for (Map.Entry<String, Map<Key, Posting>> term : this.terms.subMap(word, true, end, false).entrySet()) {
+                    // exact matches rank above prefix matches
+                    int factor = term.getKey().length() == word.length() ? 2 : 1;
+                    for (Map.Entry<Key, Posting> posting : term.getValue().entrySet()) {
+                        int score = posting.getValue().field.weight * factor;
+                        Integer previous = wordScores.get(posting.getKey());
+                        if (previous == null || previous < score) {
+                            wordScores.put(posting.getKey(), score);
+                            Posting best = bestPostings.get(posting.getKey());
+                            if (best == null || best.field.weight < posting.getValue().field.weight) {
+                                bestPostings.put(posting.getKey(), posting.getValue());
+                            }
+                        }
+                    }
+                }
+                if (scores == null) {
+                    scores = wordScores;
+                } else {
+                    // every word must match
+                    for (Iterator<Map.Entry<Key, Integer>> it = scores.entrySet().iterator(); it.hasNext();) {
+                        Map.Entry<Key, Integer> entry = it.next();
+                        Integer wordScore = wordScores.get(entry.getKey());
+                        if (wordScore == null) {
+                            it.remove();
+                        } else {
+                            entry.setValue(entry.getValue() + wordScore);
+                        }
+                    }
+                }
+                if (scores.isEmpty()) {
+                    break;
+                }
+            }
+            if (scores == null) {
+                return Collections.emptyList();
+            }
+            List<Hit> hits = new ArrayList<>(scores.size());
+            for (Map.Entry<Key, Integer> entry : scores.entrySet()) {
+                Posting best = bestPostings.get(entry.getKey());
+                hits.add(new Hit(this.documents.get(entry.getKey()), entry.getValue(), best.value));
+            }
+            Collections.sort(hits, ResourceSearchIndex.RANKING);
+            return hits.size() > ResourceSearchIndex.MAX_RESULTS ? new ArrayList<>(hits.subList(0,
+                ResourceSearchIndex.MAX_RESULTS)) : hits;
+        }
+
+        private void load(final String tenantId) throws CloudProviderException {
+            ResourceSearchIndex outer = ResourceSearchIndex.this;
+            for (MachineBean machine : outer.snapshotStore.getMachines(tenantId)) {
+                this.put(ResourceSearchIndex.document(machine));
+            }
+            for (VolumeBean volume : outer.snapshotStore.getVolumes(tenantId)) {
+                this.put(ResourceSearchIndex.document(volume));
+            }
+            for (NetworkBean network : outer.snapshotStore.getNetworks(tenantId)) {
+                this.put(ResourceSearchIndex.document(network));
+            }
+            for (AddressBean address : outer.snapshotStore.getAddresses(tenantId)) {
+                this.put(ResourceSearchIndex.document(address));
+            }
+            for (SecurityGroupBean securityGroup : outer.snapshotStore.getSecurityGroups(tenantId)) {
+                this.put(ResourceSearchIndex.document(securityGroup));
+            }
+            for (MachineImage machineImage : outer.machineImageManager.getMachineImages()) {
+                this.index(machineImage);
+            }
+            for (Credentials credentials : outer.credentialsManager.getCredentials()) {
+                this.index(credentials);
+            }
+        }
+
+        synchronized void update(final Object resource) {
+            // not loaded yet: the first search will load the current state
+            if (this.pending != null) {
+                this.pending.add(resource);
+            } else if (this.loaded) {
+                this.index(resource);
+            }
+        }
+
+        private void index(final Object resource) {
+            Document document;
+            if (resource instanceof Machine) {
+                Machine machine = (Machine) resource;
+                if (machine.getState() == Machine.State.DELETED) {
+                    this.unindex(new Key(Type.MACHINE, machine.getUuid()));
+                    return;
+                }
+                document = ResourceSearchIndex.document(new MachineBean(machine));
+            } else if (resource instanceof Volume) {
+                Volume volume = (Volume) resource;
+                if (volume.getState() == Volume.State.DELETED) {
+                    this.unindex(new Key(Type.VOLUME, volume.getUuid()));
+                    return;
+                }
+                document = ResourceSearchIndex.document(new VolumeBean(volume));
+            } else if (resource instanceof Network) {
+                Network network = (Network) resource;
+                if (network.getState() == Network.State.DELETED) {
+                    this.unindex(new Key(Type.NETWORK, network.getUuid()));
+                    return;
+                }
+                document = ResourceSearchIndex.document(new NetworkBean(network));
+            } else if (resource instanceof Address) {
+                Address address = (Address) resource;
+                if (address.getState() == Address.State.DELETED) {
+                    this.unindex(new Key(Type.ADDRESS, address.getUuid()));
+                    return;
+                }
+                document = ResourceSearchIndex.document(new AddressBean(address));
+            } else if (resource instanceof SecurityGroup) {
+                SecurityGroup securityGroup = (SecurityGroup) resource;
+                if (securityGroup.getState() == SecurityGroup.State.DELETED) {
+                    this.unindex(new Key(Type.SECURITY_GROUP, securityGroup.getUuid()));
+                    return;
+                }
+                document = ResourceSearchIndex.document(new SecurityGroupBean(securityGroup));
+            } else if (resource instanceof MachineImage) {
+                MachineImage machineImage = (MachineImage) resource;
+                if (machineImage.getState() == MachineImage.State.DELETED) {
+                    this.unindex(new Key(Type.IMAGE, machineImage.getUuid()));
+                    return;
+                }
+                document = new Document(Type.IMAGE, machineImage.getUuid(), machineImage.getName());
+                if (machineImage.getProviderMappings() != null && !machineImage.getProviderMappings().isEmpty()) {
+                    ProviderMapping mapping = machineImage.getProviderMappings().get(0);
+                    ResourceSearchIndex.addPlacement(document, mapping.getProviderAccount(),
+                        mapping.getProviderLocation());
+                }
+            } else if (resource instanceof Credentials) {
+                Credentials credentials = (Credentials) resource;
+                document = new Document(Type.KEY_PAIR, credentials.getUuid(), credentials.getName());
+            } else {
+                return;
+            }
+            Document previous = this.documents.get(document.key());
+            document.inherit(previous, Field.PROVIDER);
+            document.inherit(previous, Field.LOCATION);
+            this.put(document);
+        }
+
+        synchronized void reindex(final Type type, final Collection<?> resources) {
+            if (this.pending != null) {
+                this.pending.add(new Reindex(type, resources));
+            } else if (this.loaded) {
+                this.replace(type, resources);
+            }
+        }
+
+        synchronized void remove(final Key key) {
+            if (this.pending != null) {
+                this.pending.add(key);
+            } else {
+                this.unindex(key);
+            }
+        }
+
+        private void replay(final Object change) {
+            if (change instanceof Key) {
+                this.unindex((Key) change);
+            } else if (change instanceof Reindex) {
+                this.replace(((Reindex) change).type, ((Reindex) change).resources);
+            } else {
+                this.index(change);
+            }
+        }
+
+        private void replace(final Type type, final Collection<?> resources) {
+            for (Key key : new ArrayList<>(this.documents.keySet())) {
+                if (key.type == type) {
+                    this.unindex(key);
+                }
+            }
+            for (Object resource : resources) {
+                this.index(resource);
+            }
+        }
+
+        private void unindex(final Key key) {
+            Document document = this.documents.remove(key);
+            if (document == null) {
+                return;
+            }
+            for (String term : document.terms.keySet()) {
+                Map<Key, Posting> postings = this.terms.get(term);
+                if (postings != null) {
+                    postings.remove(key);
+                    if (postings.isEmpty()) {
+                        this.terms.remove(term);
+                    }
+                }
+            }
+        }
+
+        synchronized int termCount() {
+            return this.terms.size();
+        }
+
+        synchronized int documentCount() {
+            return this.documents.size();
+        }
+
+        private void put(final Document document) {
+            Key key = document.key();
+            this.unindex(key);
+            this.documents.put(key, document);
+            for (Map.Entry<String, Posting> term : document.terms.entrySet()) {
+                Map<Key, Posting> postings = this.terms.get(term.getKey());
+                if (postings == null) {
+                    postings = new HashMap<>();
+                    this.terms.put(term.getKey(), postings);
+                }
+                postings.put(key, term.getValue());
+            }
+        }
+    }
+
+    /**
+     * Documents of the resources shared with the views are built from their rows, so that the initial build and the
+     * updates index the same values.
+     */
+    private static Document document(final MachineBean machine) {
+        Document document = new Document(Type.MACHINE, machine.getId(), machine.getName());
+        if (machine.getAddresses() != null) {
+            // the addresses column lists the network name followed by its addresses, for each interface
+            for (String word : ResourceSearchIndex.WHITESPACE.split(machine.getAddresses())) {
+                if (ResourceSearchIndex.IP.matcher(word).matches()) {
+                    document.add(Field.IP, word);
+                }
+            }
+        }
+        document.add(Field.PROVIDER, machine.getProvider());
+        document.add(Field.LOCATION, machine.getLocation());
+        return document;
+    }
+
+    private static Document document(final VolumeBean volume) {
+        Document document = new Document(Type.VOLUME, volume.getId(), volume.getName());
+        document.add(Field.PROVIDER, volume.getProvider());
+        document.add(Field.LOCATION, volume.getLocation());
+        return document;
+    }
+
+    private static Document document(final NetworkBean network) {
+        Document document = new Document(Type.NETWORK, network.getId(), network.getName());
+        document.add(Field.PROVIDER, network.getProvider());
+        document.add(Field.LOCATION, network.getLocation());
+        return document;
+    }
+
+    private static Document document(final AddressBean address) {
+        Document document = new Document(Type.ADDRESS, address.getId(), address.getIp());
+        document.add(Field.IP, address.getIp());
+        document.add(Field.IP, address.getPrivateIp());
+        document.add(Field.PROVIDER, address.getProvider());
+        document.add(Field.LOCATION, address.getLocation());
+        return document;
+    }
+
+    private static Document document(final SecurityGroupBean securityGroup) {
+        Document document = new Document(Type.SECURITY_GROUP, securityGroup.getId(), securityGroup.getName());
+        document.add(Field.PROVIDER, securityGroup.getProvider());
+        document.add(Field.LOCATION, securityGroup.getLocation());
+        return document;
+    }
+
+    private static void addPlacement(final Document document, final CloudProviderAccount account,
+        final CloudProviderLocation location) {
+        if (account != null && account.getCloudProvider() != null) {
+            document.add(Field.PROVIDER, account.getCloudProvider().getDescription());
+        }
+        if (location != null) {
+            document.add(Field.LOCATION, location.description(false));
+        }
+    }
+
+}
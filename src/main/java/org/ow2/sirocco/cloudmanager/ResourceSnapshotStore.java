@@ -0,0 +1,688 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2013 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ */
+package org.ow2.sirocco.cloudmanager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.ow2.sirocco.cloudmanager.AddressView.AddressBean;
+import org.ow2.sirocco.cloudmanager.MachineView.MachineBean;
+import org.ow2.sirocco.cloudmanager.NetworkView.NetworkBean;
+import org.ow2.sirocco.cloudmanager.SecurityGroupView.SecurityGroupBean;
+import org.ow2.sirocco.cloudmanager.VolumeView.VolumeBean;
+import org.ow2.sirocco.cloudmanager.core.api.IMachineManager;
+import org.ow2.sirocco.cloudmanager.core.api.INetworkManager;
+import org.ow2.sirocco.cloudmanager.core.api.IVolumeManager;
+import org.ow2.sirocco.cloudmanager.core.api.ResourceStateChangeEvent;
+import org.ow2.sirocco.cloudmanager.core.api.exception.CloudProviderException;
+import org.ow2.sirocco.cloudmanager.model.cimi.Address;
+import org.ow2.sirocco.cloudmanager.model.cimi.Machine;
+import org.ow2.sirocco.cloudmanager.model.cimi.MachineDisk;
+import org.ow2.sirocco.cloudmanager.model.cimi.MachineVolume;
+import org.ow2.sirocco.cloudmanager.model.cimi.Network;
+import org.ow2.sirocco.cloudmanager.model.cimi.Volume;
+import org.ow2.sirocco.cloudmanager.model.cimi.extension.SecurityGroup;
+import org.ow2.sirocco.cloudmanager.util.FacetIndex;
+import org.ow2.sirocco.cloudmanager.util.FacetIndex.Facet;
+import org.ow2.sirocco.cloudmanager.util.FacetIndex.Selection;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Per-tenant snapshot of the machines, volumes, networks, addresses and security groups of a tenant, shared by all the
+ * UIs of the tenant. Each resource is held as the immutable row bean displayed by its view, so that sessions share the
+ * rows instead of each fetching and holding their own copy of the entities. A resource type is loaded with a single
+ * query the first time it is read, kept current from the resource state change events of the tenant and dropped with
+ * the tenant when its last UI goes away. Deleted resources are removed from the snapshot.
+ */
+@ApplicationScoped
+public class ResourceSnapshotStore {
+    /** Indexes of the totals of a machine {@link Aggregate}: vCPUs, memory in KiB and disk capacity in KB */
+    public static final int MACHINE_CPU = 0, MACHINE_MEMORY = 1, MACHINE_DISK_CAPACITY = 2;
+
+    /** Index of the total of a volume {@link Aggregate}: capacity in KB */
+    public static final int VOLUME_CAPACITY = 0;
+
+    /**
+     * Row count, counts per facet value and totals of the resources of one type of a tenant, copied from the running
+     * aggregates of the snapshot.
+     */
+    public static class Aggregate {
+        final int count;
+
+        final Map<Facet, Map<Object, Integer>> counts;
+
+        final long[] totals;
+
+        Aggregate(final int count, final Map<Facet, Map<Object, Integer>> counts, final long[] totals) {
+            this.count = count;
+            this.counts = counts;
+            this.totals = totals;
+        }
+
+        public int getCount() {
+            return this.count;
+        }
+
+        public Map<Object, Integer> getCounts(final Facet facet) {
+            return this.counts.get(facet);
+        }
+
+        public long getTotal(final int index) {
+            return this.totals[index];
+        }
+    }
+
+    @Inject
+    private IMachineManager machineManager;
+
+    @Inject
+    private IVolumeManager volumeManager;
+
+    @Inject
+    private INetworkManager networkManager;
+
+    @Inject
+    private ResourceRefetchPolicy refetchPolicy;
+
+    private final ConcurrentMap<String, TenantSnapshot> tenants = new ConcurrentHashMap<>();
+
+    /**
+     * The list getters must be called from a request of the tenant the first time, so that the initial load runs with
+     * the tenant's identity context.
+     */
+    public List<MachineBean> getMachines(final String tenantId) throws CloudProviderException {
+        return this.tenant(tenantId).machines.list();
+    }
+
+    public List<VolumeBean> getVolumes(final String tenantId) throws CloudProviderException {
+        return this.tenant(tenantId).volumes.list();
+    }
+
+    public List<NetworkBean> getNetworks(final String tenantId) throws CloudProviderException {
+        return this.tenant(tenantId).networks.list();
+    }
+
+    /**
+     * Machines placed on the given provider account and location, e.g. the candidates to attach a volume or associate
+     * an address to.
+     */
+    public List<MachineBean> getMachines(final String tenantId, final String accountId, final String locationId)
+        throws CloudProviderException {
+        List<MachineBean> machines = new ArrayList<>();
+        for (MachineBean machine : this.getMachines(tenantId)) {
+            if (Objects.equal(machine.accountId, accountId) && Objects.equal(machine.locationId, locationId)) {
+                machines.add(machine);
+            }
+        }
+        return machines;
+    }
+
+    /**
+     * Rows matching a facet selection, resolved from the facet bitmaps of the tenant.
+     */
+    public List<MachineBean> getMachines(final String tenantId, final Selection selection)
+        throws CloudProviderException {
+        return this.tenant(tenantId).machines.select(selection);
+    }
+
+    public List<VolumeBean> getVolumes(final String tenantId, final Selection selection) throws CloudProviderException {
+        return this.tenant(tenantId).volumes.select(selection);
+    }
+
+    public List<NetworkBean> getNetworks(final String tenantId, final Selection selection)
+        throws CloudProviderException {
+        return this.tenant(tenantId).networks.select(selection);
+    }
+
+    /**
+     * Number of machines, volumes or networks of a tenant per value of a facet, among the rows matching the selection
+     * of the other facets.
+     */
+    public Map<Object, Integer> getFacetCounts(final String tenantId, final Class<?> resourceType, final Facet facet,
+        final Selection selection) throws CloudProviderException {
+        TenantSnapshot snapshot = this.tenant(tenantId);
+        if (resourceType == Machine.class) {
+            return snapshot.machines.count(facet, selection);
+        } else if (resourceType == Volume.class) {
+            return snapshot.volumes.count(facet, selection);
+        } else if (resourceType == Network.class) {
+            return snapshot.networks.count(facet, selection);
+        }
+        return Collections.emptyMap();
+    }
+
+    /**
+     * Aggregates of the machines of a tenant, maintained from the updates of the snapshot rather than by scanning it.
+     */
+    public Aggregate getMachineAggregate(final String tenantId) throws CloudProviderException {
+        return this.tenant(tenantId).machines.aggregate();
+    }
+
+    public Aggregate getVolumeAggregate(final String tenantId) throws CloudProviderException {
+        return this.tenant(tenantId).volumes.aggregate();
+    }
+
+    public List<AddressBean> getAddresses(final String tenantId) throws CloudProviderException {
+        return this.tenant(tenantId).addresses.list();
+    }
+
+    public List<SecurityGroupBean> getSecurityGroups(final String tenantId) throws CloudProviderException {
+        return this.tenant(tenantId).securityGroups.list();
+    }
+
+    /**
+     * The row getters return the current row of a resource after an update of it: the shared row if the snapshot
+     * holds it, a row of the given resource if its type is not loaded for the tenant, or null if it is deleted.
+     */
+    public MachineBean getMachine(final String tenantId, final Machine machine) {
+        return this.tenant(tenantId).machines.row(machine);
+    }
+
+    public VolumeBean getVolume(final String tenantId, final Volume volume) {
+        return this.tenant(tenantId).volumes.row(volume);
+    }
+
+    public NetworkBean getNetwork(final String tenantId, final Network network) {
+        return this.tenant(tenantId).networks.row(network);
+    }
+
+    public AddressBean getAddress(final String tenantId, final Address address) {
+        return this.tenant(tenantId).addresses.row(address);
+    }
+
+    public SecurityGroupBean getSecurityGroup(final String tenantId, final SecurityGroup securityGroup) {
+        return this.tenant(tenantId).securityGroups.row(securityGroup);
+    }
+
+    /**
+     * Applies an up-to-date resource, e.g. refetched after an event or returned by an update call.
+     */
+    public void update(final String tenantId, final Object resource) {
+        TenantSnapshot snapshot = this.tenants.get(tenantId);
+        if (snapshot == null) {
+            return;
+        }
+        if (resource instanceof Machine) {
+            snapshot.machines.update((Machine) resource);
+        } else if (resource instanceof Volume) {
+            snapshot.volumes.update((Volume) resource);
+        } else if (resource instanceof Network) {
+            snapshot.networks.update((Network) resource);
+        } else if (resource instanceof Address) {
+            snapshot.addresses.update((Address) resource);
+        } else if (resource instanceof SecurityGroup) {
+            snapshot.securityGroups.update((SecurityGroup) resource);
+        }
+    }
+
+    /**
+     * Reloads the resources of the given type of a tenant on next read, e.g. when the user asks for a refresh.
+     */
+    public void invalidate(final String tenantId, final Class<?> resourceType) {
+        TenantSnapshot snapshot = this.tenants.get(tenantId);
+        if (snapshot == null) {
+            return;
+        }
+        if (resourceType == Machine.class) {
+            snapshot.machines.reset();
+        } else if (resourceType == Volume.class) {
+            snapshot.volumes.reset();
+        } else if (resourceType == Network.class) {
+            snapshot.networks.reset();
+        } else if (resourceType == Address.class) {
+            snapshot.addresses.reset();
+        } else if (resourceType == SecurityGroup.class) {
+            snapshot.securityGroups.reset();
+        }
+    }
+
+    public int getTenantCount() {
+        return this.tenants.size();
+    }
+
+    public int getRowCount(final String tenantId) {
+        TenantSnapshot snapshot = this.tenants.get(tenantId);
+        if (snapshot == null) {
+            return 0;
+        }
+        return snapshot.machines.size() + snapshot.volumes.size() + snapshot.networks.size()
+            + snapshot.addresses.size() + snapshot.securityGroups.size();
+    }
+
+    void onResourceStateChange(final String tenantId, final ResourceStateChangeEvent event) {
+        // incomplete payloads are applied by the UIs once refetched
+        if (this.refetchPolicy.needsRefetch(event)) {
+            return;
+        }
+        Object resource = event.getResource();
+        if (resource instanceof MachineVolume) {
+            this.update(tenantId, ((MachineVolume) resource).getVolume());
+        } else {
+            this.update(tenantId, resource);
+        }
+    }
+
+    void evictTenant(final String tenantId) {
+        this.tenants.remove(tenantId);
+    }
+
+    private static long measure(final Number value, final long[] previous, final int index) {
+        if (value != null) {
+            return value.longValue();
+        }
+        return previous != null ? previous[index] : 0;
+    }
+
+    private TenantSnapshot tenant(final String tenantId) {
+        TenantSnapshot snapshot = this.tenants.get(tenantId);
+        if (snapshot == null) {
+            TenantSnapshot newSnapshot = new TenantSnapshot();
+            snapshot = this.tenants.putIfAbsent(tenantId, newSnapshot);
+            if (snapshot == null) {
+                snapshot = newSnapshot;
+            }
+        }
+        return snapshot;
+    }
+
+    private class TenantSnapshot {
+        final Snapshot<Machine, MachineBean> machines = new Snapshot<Machine, MachineBean>(true, 3) {
+            @Override
+            List<Machine> load() throws CloudProviderException {
+                return ResourceSnapshotStore.this.machineManager.getMachines().getItems();
+            }
+
+            @Override
+            String idOf(final Machine machine) {
+                return machine.getUuid();
+            }
+
+            @Override
+            boolean isDeleted(final Machine machine) {
+                return machine.getState() == Machine.State.DELETED;
+            }
+
+            @Override
+            MachineBean project(final Machine machine, final MachineBean previous) {
+                return new MachineBean(machine, previous);
+            }
+
+            @Override
+            long[] measure(final Machine machine, final long[] previous) {
+                long diskCapacity = 0;
+                if (machine.getDisks() != null) {
+                    for (MachineDisk disk : machine.getDisks()) {
+                        if (disk.getCapacity() != null) {
+                            diskCapacity += disk.getCapacity();
+                        }
+                    }
+                } else if (previous != null) {
+                    diskCapacity = previous[ResourceSnapshotStore.MACHINE_DISK_CAPACITY];
+                }
+                long cpu = ResourceSnapshotStore.measure(machine.getCpu(), previous, ResourceSnapshotStore.MACHINE_CPU);
+                long memory = ResourceSnapshotStore.measure(machine.getMemory(), previous,
+                    ResourceSnapshotStore.MACHINE_MEMORY);
+                return new long[] {cpu, memory, diskCapacity};
+            }
+
+            @Override
+            Object facetValue(final MachineBean row, final Facet facet) {
+                switch (facet) {
+                case STATE:
+                    return row.getState();
+                case PROVIDER:
+                    return row.getProvider();
+                default:
+                    return row.getLocation();
+                }
+            }
+        };
+
+        final Snapshot<Volume, VolumeBean> volumes = new Snapshot<Volume, VolumeBean>(true, 1) {
+            @Override
+            List<Volume> load() throws CloudProviderException {
+                return ResourceSnapshotStore.this.volumeManager.getVolumes().getItems();
+            }
+
+            @Override
+            String idOf(final Volume volume) {
+                return volume.getUuid();
+            }
+
+            @Override
+            boolean isDeleted(final Volume volume) {
+                return volume.getState() == Volume.State.DELETED;
+            }
+
+            @Override
+            VolumeBean project(final Volume volume, final VolumeBean previous) {
+                return new VolumeBean(volume, previous);
+            }
+
+            @Override
+            long[] measure(final Volume volume, final long[] previous) {
+                return new long[] {ResourceSnapshotStore.measure(volume.getCapacity(), previous,
+                    ResourceSnapshotStore.VOLUME_CAPACITY)};
+            }
+
+            @Override
+            Object facetValue(final VolumeBean row, final Facet facet) {
+                switch (facet) {
+                case STATE:
+                    return row.getState();
+                case PROVIDER:
+                    return row.getProvider();
+                default:
+                    return row.getLocation();
+                }
+            }
+        };
+
+        final Snapshot<Network, NetworkBean> networks = new Snapshot<Network, NetworkBean>(true, 0) {
+            @Override
+            List<Network> load() throws CloudProviderException {
+                return ResourceSnapshotStore.this.networkManager.getNetworks().getItems();
+            }
+
+            @Override
+            String idOf(final Network network) {
+                return network.getUuid();
+            }
+
+            @Override
+            boolean isDeleted(final Network network) {
+                return network.getState() == Network.State.DELETED;
+            }
+
+            @Override
+            NetworkBean project(final Network network, final NetworkBean previous) {
+                return new NetworkBean(network, previous);
+            }
+
+            @Override
+            Object facetValue(final NetworkBean row, final Facet facet) {
+                switch (facet) {
+                case STATE:
+                    return row.getState();
+                case PROVIDER:
+                    return row.getProvider();
+                default:
+                    return row.getLocation();
+                }
+            }
+        };
+
+        final Snapshot<Address, AddressBean> addresses = new Snapshot<Address, AddressBean>(false, 0) {
+            @Override
+            List<Address> load() throws CloudProviderException {
+                return ResourceSnapshotStore.this.networkManager.getAddresses().getItems();
+            }
+
+            @Override
+            String idOf(final Address address) {
+                return address.getUuid();
+            }
+
+            @Override
+            boolean isDeleted(final Address address) {
+                return address.getState() == Address.State.DELETED;
+            }
+
+            @Override
+            AddressBean project(final Address address, final AddressBean previous) {
+                return new AddressBean(address, previous);
+            }
+        };
+
+        final Snapshot<SecurityGroup, SecurityGroupBean> securityGroups =
+            new Snapshot<SecurityGroup, SecurityGroupBean>(false, 0) {
+                @Override
+                List<SecurityGroup> load() throws CloudProviderException {
+                    return ResourceSnapshotStore.this.networkManager.getSecurityGroups().getItems();
+                }
+
+                @Override
+                String idOf(final SecurityGroup securityGroup) {
+                    return securityGroup.getUuid();
+                }
+
+                @Override
+                boolean isDeleted(final SecurityGroup securityGroup) {
+                    return securityGroup.getState() == SecurityGroup.State.DELETED;
+                }
+
+                @Override
+                SecurityGroupBean project(final SecurityGroup securityGroup, final SecurityGroupBean previous) {
+                    return new SecurityGroupBean(securityGroup, previous);
+                }
+            };
+    }
+
+    /**
+     * Rows of one resource type of a tenant in backend order, new resources being appended. The list handed out is
+     * an immutable copy rebuilt on the first read after a change. Faceted snapshots also maintain a
+     * {@link FacetIndex} of their rows, and measured snapshots the running totals of the measures of their rows,
+     * updated by difference with the previous measures of a row. The backend query of the first read runs without
+     * holding the lock of the snapshot, so that the event thread is not blocked by it: the updates received meanwhile
+     * are recorded and applied once the loaded rows are in.
+     */
+    private abstract static class Snapshot<E, B> {
+        private final Object loadLock = new Object();
+
+        private boolean loaded;
+
+        /** Updates received while loading, null otherwise */
+        private List<E> pending;
+
+        private final Map<String, B> rows = new LinkedHashMap<>();
+
+        private List<B> list;
+
+        private final FacetIndex<B> facets;
+
+        private final Map<String, long[]> measures = new HashMap<>();
+
+        private final long[] totals;
+
+        Snapshot(final boolean faceted, final int measureCount) {
+            this.totals = new long[measureCount];
+            this.facets = faceted ? new FacetIndex<B>() {
+                @Override
+                protected Object valueOf(final B row, final Facet facet) {
+                    return Snapshot.this.facetValue(row, facet);
+                }
+            } : null;
+        }
+
+        abstract List<E> load() throws CloudProviderException;
+
+        abstract String idOf(E resource);
+
+        abstract boolean isDeleted(E resource);
+
+        /**
+         * Row of the resource, merged with the previous row of the resource if any since event payloads may lack some
+         * fields, e.g. the placement.
+         */
+        abstract B project(E resource, B previous);
+
+        Object facetValue(final B row, final Facet facet) {
+            return null;
+        }
+
+        /**
+         * Measures of the resource, a missing value keeping its previous measure if any.
+         */
+        long[] measure(final E resource, final long[] previous) {
+            return null;
+        }
+
+        List<B> list() throws CloudProviderException {
+            this.ensureLoaded();
+            synchronized (this) {
+                if (this.list == null) {
+                    this.list = ImmutableList.copyOf(this.rows.values());
+                }
+                return this.list;
+            }
+        }
+
+        List<B> select(final Selection selection) throws CloudProviderException {
+            if (selection == null || selection.isEmpty()) {
+                return this.list();
+            }
+            this.ensureLoaded();
+            synchronized (this) {
+                return ImmutableList.copyOf(this.facets.select(selection));
+            }
+        }
+
+        Map<Object, Integer> count(final Facet facet, final Selection selection) throws CloudProviderException {
+            this.ensureLoaded();
+            synchronized (this) {
+                return this.facets.count(facet, selection != null ? selection : new Selection());
+            }
+        }
+
+        private void ensureLoaded() throws CloudProviderException {
+            synchronized (this.loadLock) {
+                synchronized (this) {
+                    if (this.loaded) {
+                        return;
+                    }
+                    this.pending = new ArrayList<>();
+                }
+                List<E> resources = null;
+                try {
+                    resources = this.load();
+                } finally {
+                    synchronized (this) {
+                        if (resources != null) {
+                            for (E resource : resources) {
+                                if (!this.isDeleted(resource)) {
+                                    this.put(resource);
+                                }
+                            }
+                            for (E resource : this.pending) {
+                                this.apply(resource);
+                            }
+                            this.list = null;
+                            this.loaded = true;
+                        }
+                        this.pending = null;
+                    }
+                }
+            }
+        }
+
+        synchronized B row(final E resource) {
+            if (!this.loaded) {
+                return this.isDeleted(resource) ? null : this.project(resource, null);
+            }
+            return this.rows.get(this.idOf(resource));
+        }
+
+        synchronized void update(final E resource) {
+            if (this.pending != null) {
+                this.pending.add(resource);
+            } else if (this.loaded) {
+                this.apply(resource);
+                this.list = null;
+            }
+        }
+
+        private void apply(final E resource) {
+            if (this.isDeleted(resource)) {
+                if (this.rows.remove(this.idOf(resource)) == null) {
+                    return;
+                }
+                if (this.facets != null) {
+                    this.facets.remove(this.idOf(resource));
+                }
+                this.setMeasures(this.idOf(resource), null);
+            } else {
+                this.put(resource);
+            }
+            this.list = null;
+        }
+
+        synchronized void reset() {
+            this.loaded = false;
+            this.rows.clear();
+            this.list = null;
+            if (this.facets != null) {
+                this.facets.clear();
+            }
+            this.measures.clear();
+            Arrays.fill(this.totals, 0);
+        }
+
+        Aggregate aggregate() throws CloudProviderException {
+            this.ensureLoaded();
+            synchronized (this) {
+                Map<Facet, Map<Object, Integer>> counts = new EnumMap<>(Facet.class);
+                for (Facet facet : Facet.values()) {
+                    counts.put(facet, this.facets.count(facet, new Selection()));
+                }
+                return new Aggregate(this.rows.size(), counts, this.totals.clone());
+            }
+        }
+
+        private void put(final E resource) {
+            String id = this.idOf(resource);
+            B row = this.project(resource, this.rows.get(id));
+            this.rows.put(id, row);
+            if (this.facets != null) {
+                this.facets.put(id, row);
+            }
+            if (this.totals.length > 0) {
+                this.setMeasures(id, this.measure(resource, this.measures.get(id)));
+            }
+        }
+
+        private void setMeasures(final String id, final long[] values) {
+            long[] previous = values != null ? this.measures.put(id, values) : this.measures.remove(id);
+            for (int i = 0; i < this.totals.length; i++) {
+                this.totals[i] += (values != null ? values[i] : 0) - (previous != null ? previous[i] : 0);
+            }
+        }
+
+        synchronized int size() {
+            return this.rows.size();
+        }
+    }
+
+}
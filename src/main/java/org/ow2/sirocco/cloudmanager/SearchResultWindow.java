@@ -0,0 +1,103 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2013 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ */
+package org.ow2.sirocco.cloudmanager;
+
+import java.util.List;
+
+import org.ow2.sirocco.cloudmanager.ResourceSearchIndex.Hit;
+
+import com.vaadin.data.Item;
+import com.vaadin.event.ItemClickEvent;
+import com.vaadin.event.ItemClickEvent.ItemClickListener;
+import com.vaadin.ui.Alignment;
+import com.vaadin.ui.Button;
+import com.vaadin.ui.Button.ClickEvent;
+import com.vaadin.ui.Label;
+import com.vaadin.ui.Table;
+import com.vaadin.ui.VerticalLayout;
+import com.vaadin.ui.Window;
+
+public final class SearchResultWindow extends Window implements Button.ClickListener, ItemClickListener {
+    private static final long serialVersionUID = 1L;
+
+    private final DialogCallback callback;
+
+    private final List<Hit> hits;
+
+    private final Button closeButton;
+
+    public SearchResultWindow(final String query, final List<Hit> hits, final DialogCallback callback) {
+        super("Search: " + query);
+        this.callback = callback;
+        this.hits = hits;
+        this.center();
+        this.setModal(true);
+        this.setResizable(false);
+
+        VerticalLayout content = new VerticalLayout();
+        content.setMargin(true);
+        content.setSpacing(true);
+        content.setWidth("600px");
+
+        if (hits.isEmpty()) {
+            content.addComponent(new Label("No matching resource"));
+        } else {
+            Table table = new Table();
+            table.setWidth("100%");
+            table.setPageLength(Math.min(hits.size(), 10));
+            table.setSelectable(true);
+            table.addContainerProperty("type", String.class, null);
+            table.addContainerProperty("name", String.class, null);
+            table.addContainerProperty("match", String.class, null);
+            table.setColumnHeaders("Type", "Name", "Match");
+            for (int i = 0; i < hits.size(); i++) {
+                Hit hit = hits.get(i);
+                Item item = table.addItem(i);
+                item.getItemProperty("type").setValue(hit.getType().getLabel());
+                item.getItemProperty("name").setValue(hit.getName());
+                item.getItemProperty("match").setValue(hit.getMatch());
+            }
+            table.addItemClickListener(this);
+            content.addComponent(table);
+        }
+
+        this.closeButton = new Button("Close", this);
+        content.addComponent(this.closeButton);
+        content.setComponentAlignment(this.closeButton, Alignment.BOTTOM_RIGHT);
+
+        this.setContent(content);
+    }
+
+    public void itemClick(final ItemClickEvent event) {
+        this.close();
+        this.callback.response(this.hits.get((Integer) event.getItemId()));
+    }
+
+    public void buttonClick(final ClickEvent event) {
+        this.close();
+    }
+
+    public interface DialogCallback {
+        void response(Hit hit);
+    }
+}
@@ -27,7 +27,6 @@ import java.util.HashMap;
 import javax.inject.Inject;
 
 import org.ow2.sirocco.cloudmanager.SecurityGroupView.SecurityGroupBean;
-import org.ow2.sirocco.cloudmanager.core.api.ICloudProviderManager;
 import org.ow2.sirocco.cloudmanager.core.api.INetworkManager;
 import org.ow2.sirocco.cloudmanager.core.api.exception.CloudProviderException;
 import org.ow2.sirocco.cloudmanager.model.cimi.Job;
@@ -63,7 +62,7 @@ public class SecurityGroupCreationWizard extends Window implements WizardProgres
     private Util.MetadataStep metadataStep;
 
     @Inject
-    private ICloudProviderManager providerManager;
+    private CloudProviderCache providerCache;
 
     @Inject
     private INetworkManager networkManager;
@@ -97,8 +96,8 @@ public class SecurityGroupCreationWizard extends Window implements WizardProgres
 
         this.placementStep.providerBox.removeAllItems();
         try {
-            this.placementStep.setProviderManager(this.providerManager);
-            for (CloudProviderAccount providerAccount : this.providerManager.getCloudProviderAccountsByTenant(tenantId)) {
+            this.placementStep.setProviderCache(this.providerCache);
+            for (CloudProviderAccount providerAccount : this.providerCache.getCloudProviderAccountsByTenant(tenantId)) {
                 this.placementStep.providerBox.addItem(providerAccount.getUuid());
                 this.placementStep.providerBox.setItemCaption(providerAccount.getUuid(), providerAccount.getCloudProvider()
                     .getDescription());
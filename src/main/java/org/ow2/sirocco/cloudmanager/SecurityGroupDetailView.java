@@ -89,8 +89,9 @@ public class SecurityGroupDetailView extends VerticalLayout implements MetadataV
         Map<String, Object> updatedAttributes = new HashMap<>();
         updatedAttributes.put("properties", metadata);
         try {
-            this.securityGroupBean.securityGroup = this.securityGroupView.networkManager.updateSecurityGroupAttributes(
+            SecurityGroup securityGroup = this.securityGroupView.networkManager.updateSecurityGroupAttributes(
                 this.securityGroupBean.getId(), updatedAttributes);
+            this.securityGroupBean = this.securityGroupView.replaceSecurityGroup(securityGroup);
         } catch (CloudProviderException e) {
             // TODO
             e.printStackTrace();
@@ -114,17 +115,16 @@ public class SecurityGroupDetailView extends VerticalLayout implements MetadataV
                             public void response(final String value) {
                                 Map<String, Object> updatedAttributes = new HashMap<>();
                                 updatedAttributes.put(attributeName, value);
+                                SecurityGroupView view = SecurityGroupDetailView.this.securityGroupView;
                                 try {
-                                    SecurityGroupDetailView.this.securityGroupBean.securityGroup = SecurityGroupDetailView.this.securityGroupView.networkManager
-                                        .updateSecurityGroupAttributes(SecurityGroupDetailView.this.securityGroupBean.getId(),
-                                            updatedAttributes);
+                                    SecurityGroup securityGroup = view.networkManager.updateSecurityGroupAttributes(
+                                        SecurityGroupDetailView.this.securityGroupBean.getId(), updatedAttributes);
+                                    SecurityGroupDetailView.this.securityGroupBean = view
+                                        .replaceSecurityGroup(securityGroup);
                                 } catch (CloudProviderException e) {
                                     // TODO
                                     e.printStackTrace();
                                 }
-                                SecurityGroupDetailView.this.securityGroupBean = SecurityGroupDetailView.this.securityGroupView
-                                    .updateSecurityGroupAttribute(SecurityGroupDetailView.this.securityGroupBean,
-                                        attributeName, value);
                                 SecurityGroupDetailView.this.update(SecurityGroupDetailView.this.securityGroupBean);
                             }
                         });
@@ -144,14 +144,21 @@ public class SecurityGroupDetailView extends VerticalLayout implements MetadataV
         this.setVisible(false);
     }
 
-    public SecurityGroup getSecurityGroup() {
-        return this.securityGroupBean.securityGroup;
-    }
-
     public void update(final SecurityGroupBean securityGroupBean) {
+        SecurityGroup securityGroup;
+        try {
+            securityGroup = this.securityGroupView.detailCache.getSecurityGroup(
+                ((MyUI) UI.getCurrent()).getTenantId(), securityGroupBean.getId());
+        } catch (CloudProviderException e) {
+            Util.diplayErrorMessageBox("Cannot get security group " + securityGroupBean.getName(), e);
+            return;
+        }
+        if (securityGroup == null) {
+            this.hide();
+            return;
+        }
         this.setVisible(true);
         this.securityGroupBean = securityGroupBean;
-        SecurityGroup securityGroup = securityGroupBean.securityGroup;
         this.title.setValue("Security Group " + securityGroup.getName());
         this.attributeTable.getContainerDataSource().removeAllItems();
         this.index = 1;
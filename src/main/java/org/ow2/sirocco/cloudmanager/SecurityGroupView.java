@@ -24,13 +24,17 @@ package org.ow2.sirocco.cloudmanager;
 
 import java.util.Set;
 
+import javax.enterprise.context.Dependent;
+import javax.enterprise.inject.Instance;
 import javax.inject.Inject;
 
 import org.ow2.sirocco.cloudmanager.core.api.INetworkManager;
 import org.ow2.sirocco.cloudmanager.core.api.exception.CloudProviderException;
 import org.ow2.sirocco.cloudmanager.model.cimi.extension.SecurityGroup;
+import org.ow2.sirocco.cloudmanager.util.BeanContainerReconciler;
+import org.ow2.sirocco.cloudmanager.util.ResourceState;
+import org.ow2.sirocco.cloudmanager.util.SelectionStateCounts;
 
-import com.vaadin.cdi.UIScoped;
 import com.vaadin.data.Property.ValueChangeEvent;
 import com.vaadin.data.Property.ValueChangeListener;
 import com.vaadin.data.util.BeanContainer;
@@ -46,8 +50,8 @@ import com.vaadin.ui.UI;
 import com.vaadin.ui.VerticalLayout;
 import com.vaadin.ui.VerticalSplitPanel;
 
-@UIScoped
-public class SecurityGroupView extends VerticalSplitPanel implements ValueChangeListener {
+@Dependent
+public class SecurityGroupView extends VerticalSplitPanel implements ResourceEventView, ValueChangeListener {
     private static final long serialVersionUID = 1L;
 
     private Button deleteSecurityGroupButton;
@@ -56,14 +60,27 @@ public class SecurityGroupView extends VerticalSplitPanel implements ValueChange
 
     BeanContainer<String, SecurityGroupBean> securityGroups;
 
+    private SelectionStateCounts selectionStates;
+
     @Inject
-    private SecurityGroupCreationWizard securityGroupCreationWizard;
+    private Instance<SecurityGroupCreationWizard> securityGroupCreationWizard;
 
     @Inject
     INetworkManager networkManager;
 
+    @Inject
+    private BackendCommandExecutor commandExecutor;
+
+    @Inject
+    private ResourceSnapshotStore snapshotStore;
+
+    @Inject
+    ResourceDetailCache detailCache;
+
     private SecurityGroupDetailView detailView;
 
+    private boolean loaded;
+
     public SecurityGroupView() {
         VerticalLayout verticalLayout = new VerticalLayout();
         verticalLayout.setSizeFull();
@@ -80,8 +97,9 @@ public class SecurityGroupView extends VerticalSplitPanel implements ValueChange
 
             @Override
             public void buttonClick(final ClickEvent event) {
-                if (SecurityGroupView.this.securityGroupCreationWizard.init(SecurityGroupView.this)) {
-                    UI.getCurrent().addWindow(SecurityGroupView.this.securityGroupCreationWizard);
+                SecurityGroupCreationWizard wizard = SecurityGroupView.this.securityGroupCreationWizard.get();
+                if (wizard.init(SecurityGroupView.this)) {
+                    UI.getCurrent().addWindow(wizard);
                 }
             }
         });
@@ -104,14 +122,15 @@ public class SecurityGroupView extends VerticalSplitPanel implements ValueChange
                         @Override
                         public void response(final boolean ok, final boolean ignored) {
                             if (ok) {
-                                for (Object id : selectedSecurityGroupIds) {
-                                    try {
-                                        SecurityGroupView.this.networkManager.deleteSecurityGroup(id.toString());
-                                    } catch (CloudProviderException e) {
-                                        Util.diplayErrorMessageBox("Cannot delete security group "
-                                            + SecurityGroupView.this.securityGroups.getItem(id).getBean().getName(), e);
-                                    }
-                                }
+                                BulkProgressWindow.start(new BulkOperation(SecurityGroupView.this.commandExecutor,
+                                    "Deleting security groups", BulkOperation.items(
+                                        SecurityGroupView.this.securityGroups, selectedSecurityGroupIds, "name"),
+                                    new BulkOperation.Action() {
+                                        @Override
+                                        public void execute(final String id) throws CloudProviderException {
+                                            SecurityGroupView.this.networkManager.deleteSecurityGroup(id);
+                                        }
+                                    }, BulkOperation.parallelism("securityGroup")));
                                 SecurityGroupView.this.valueChange(null);
                             }
                         }
@@ -130,6 +149,8 @@ public class SecurityGroupView extends VerticalSplitPanel implements ValueChange
 
             @Override
             public void buttonClick(final ClickEvent event) {
+                SecurityGroupView.this.snapshotStore.invalidate(((MyUI) UI.getCurrent()).getTenantId(),
+                    SecurityGroup.class);
                 SecurityGroupView.this.refresh();
             }
         });
@@ -146,27 +167,32 @@ public class SecurityGroupView extends VerticalSplitPanel implements ValueChange
 
     }
 
-    void refresh() {
-        this.securityGroupTable.setValue(null);
-        this.securityGroupTable.getContainerDataSource().removeAllItems();
+    @Override
+    public void refresh() {
         try {
-            for (SecurityGroup securityGroup : this.networkManager.getSecurityGroups().getItems()) {
-                this.securityGroups.addBean(new SecurityGroupBean(securityGroup));
-            }
+            BeanContainerReconciler.reconcile(this.securityGroupTable, this.securityGroups,
+                this.snapshotStore.getSecurityGroups(((MyUI) UI.getCurrent()).getTenantId()), "id");
         } catch (CloudProviderException e) {
             e.printStackTrace();
         }
+        // reconciled rows may have changed state
+        this.selectionStates.clear();
         this.valueChange(null);
     }
 
+    @Override
+    public void updatesApplied() {
+    }
+
     Table createSecurityGroupTable() {
         this.securityGroups = new BeanContainer<String, SecurityGroupBean>(SecurityGroupBean.class);
         this.securityGroups.setBeanIdProperty("id");
+        this.selectionStates = new SelectionStateCounts(this.securityGroups, "state");
         Table table = new Table();
         table.setContainerDataSource(this.securityGroups);
 
         table.setSizeFull();
-        table.setPageLength(0);
+        Util.setViewportRendering(table);
 
         table.setSelectable(true);
         table.setMultiSelect(true);
@@ -185,130 +211,110 @@ public class SecurityGroupView extends VerticalSplitPanel implements ValueChange
     @Override
     public void valueChange(final ValueChangeEvent event) {
         Set<?> selectedSecurityGroupIds = (Set<?>) this.securityGroupTable.getValue();
-        if (selectedSecurityGroupIds != null && selectedSecurityGroupIds.size() > 0) {
-            if (selectedSecurityGroupIds.size() == 1) {
-                Object id = selectedSecurityGroupIds.iterator().next();
-                String state = (String) this.securityGroupTable.getItem(id).getItemProperty("state").getValue();
-                this.deleteSecurityGroupButton.setEnabled(!state.endsWith("DELETING"));
-                this.detailView.update(this.securityGroups.getItem(id).getBean());
-            } else {
-                this.detailView.hide();
-                boolean allowMultiDelete = true;
-                for (Object machineId : selectedSecurityGroupIds) {
-                    String state = (String) this.securityGroupTable.getItem(machineId).getItemProperty("state").getValue();
-                    if (state.endsWith("DELETING")) {
-                        allowMultiDelete = false;
-                        break;
-                    }
-                }
-                this.deleteSecurityGroupButton.setEnabled(allowMultiDelete);
-            }
+        this.selectionStates.select(selectedSecurityGroupIds);
+        if (this.selectionStates.size() == 1) {
+            this.detailView.update(this.securityGroups.getItem(this.selectionStates.singleId()).getBean());
         } else {
             this.detailView.hide();
-            this.deleteSecurityGroupButton.setEnabled(false);
         }
+        this.deleteSecurityGroupButton.setEnabled(this.selectionStates.size() > 0
+            && this.selectionStates.count(ResourceState.DELETING) == 0);
     }
 
     @Override
     public void attach() {
         super.attach();
-        this.refresh();
+        // once loaded, MyUI resyncs the view from the events received while it was not attached
+        if (!this.loaded) {
+            this.loaded = true;
+            this.refresh();
+        }
     }
 
     public void updateSecurityGroup(final SecurityGroup securityGroup) {
-        BeanItem<SecurityGroupBean> item = this.securityGroups.getItem(securityGroup.getUuid());
-        if (item != null) {
-            SecurityGroupBean securityGroupBean = item.getBean();
-            securityGroupBean.init(securityGroup);
-            item.getItemProperty("state").setValue(securityGroupBean.getState());
-            item.getItemProperty("name").setValue(securityGroupBean.getName());
+        String tenantId = ((MyUI) UI.getCurrent()).getTenantId();
+        SecurityGroupBean securityGroupBean = this.snapshotStore.getSecurityGroup(tenantId, securityGroup);
+        if (BeanContainerReconciler.replace(this.securityGroupTable, this.securityGroups, securityGroup.getUuid(),
+            securityGroupBean)) {
+            this.selectionStates.stateChanged(securityGroup.getUuid(),
+                securityGroupBean != null ? securityGroupBean.getState() : null);
             this.valueChange(null);
         }
     }
 
-    SecurityGroupBean updateSecurityGroupAttribute(final SecurityGroupBean securityGroupBean, final String attribute,
-        final String value) {
-        this.securityGroupTable.getItem(securityGroupBean.getId()).getItemProperty(attribute).setValue(value);
-        return this.securityGroups.getItem(securityGroupBean.getId()).getBean();
+    /**
+     * Applies a security group returned by an update call and returns its row.
+     */
+    SecurityGroupBean replaceSecurityGroup(final SecurityGroup securityGroup) {
+        String tenantId = ((MyUI) UI.getCurrent()).getTenantId();
+        this.snapshotStore.update(tenantId, securityGroup);
+        this.detailCache.update(tenantId, securityGroup);
+        this.updateSecurityGroup(securityGroup);
+        this.updatesApplied();
+        BeanItem<SecurityGroupBean> item = this.securityGroups.getItem(securityGroup.getUuid());
+        return item != null ? item.getBean() : new SecurityGroupBean(securityGroup);
     }
 
+    /**
+     * Row of the security group table, holding only the displayed columns. The security group itself is loaded
+     * through the {@link ResourceDetailCache} when the row is selected.
+     */
     public static class SecurityGroupBean {
-        SecurityGroup securityGroup;
-
-        String id;
+        final String id;
 
-        String name;
+        final String name;
 
-        String description;
+        final String description;
 
-        String state;
+        final ResourceState state;
 
-        String provider;
+        final String provider;
 
-        String location;
+        final String location;
 
         SecurityGroupBean(final SecurityGroup securityGroup) {
-            this.init(securityGroup);
+            this(securityGroup, null);
         }
 
-        void init(final SecurityGroup securityGroup) {
-            this.securityGroup = securityGroup;
+        /**
+         * Row of an updated security group, keeping the placement of the previous row if the security group, e.g. the
+         * payload of an event, lacks it.
+         */
+        SecurityGroupBean(final SecurityGroup securityGroup, final SecurityGroupBean previous) {
             this.id = securityGroup.getUuid();
             this.name = securityGroup.getName();
             this.description = securityGroup.getDescription();
-            this.state = securityGroup.getState().toString();
-            this.provider = this.providerFrom(securityGroup);
-            this.location = this.locationFrom(securityGroup);
+            this.state = ResourceState.of(securityGroup.getState());
+            this.provider = previous == null || securityGroup.getCloudProviderAccount() != null ? this
+                .providerFrom(securityGroup) : previous.provider;
+            this.location = previous == null || securityGroup.getLocation() != null ? this.locationFrom(securityGroup)
+                : previous.location;
         }
 
         public String getId() {
             return this.id;
         }
 
-        public void setId(final String id) {
-            this.id = id;
-        }
-
         public String getName() {
             return this.name;
         }
 
-        public void setName(final String name) {
-            this.name = name;
-        }
-
         public String getDescription() {
             return this.description;
         }
 
-        public void setDescription(final String description) {
-            this.description = description;
-        }
-
-        public String getState() {
+        public ResourceState getState() {
             return this.state;
         }
 
-        public void setState(final String state) {
-            this.state = state;
-        }
-
         public String getProvider() {
             return this.provider;
         }
 
-        public void setProvider(final String provider) {
-            this.provider = provider;
-        }
-
         public String getLocation() {
             return this.location;
         }
 
-        public void setLocation(final String location) {
-            this.location = location;
-        }
-
         public String providerFrom(final SecurityGroup securityGroup) {
             if (securityGroup.getCloudProviderAccount() != null) {
                 return securityGroup.getCloudProviderAccount().getCloudProvider().getDescription();
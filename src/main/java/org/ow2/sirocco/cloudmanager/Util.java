@@ -24,16 +24,24 @@ package org.ow2.sirocco.cloudmanager;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
-import org.ow2.sirocco.cloudmanager.core.api.ICloudProviderManager;
 import org.ow2.sirocco.cloudmanager.core.api.exception.CloudProviderException;
 import org.ow2.sirocco.cloudmanager.core.api.exception.ResourceConflictException;
 import org.ow2.sirocco.cloudmanager.core.api.exception.ResourceNotFoundException;
 import org.ow2.sirocco.cloudmanager.model.cimi.extension.CloudProviderAccount;
 import org.ow2.sirocco.cloudmanager.model.cimi.extension.CloudProviderLocation;
+import org.ow2.sirocco.cloudmanager.util.FastFormat;
+import org.ow2.sirocco.cloudmanager.util.ResourceState;
 import org.vaadin.teemu.wizards.Wizard;
 import org.vaadin.teemu.wizards.WizardStep;
 
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 import com.vaadin.data.Property;
 import com.vaadin.data.Property.ValueChangeEvent;
 import com.vaadin.server.Sizeable;
@@ -47,6 +55,7 @@ import com.vaadin.ui.Panel;
 import com.vaadin.ui.Table;
 import com.vaadin.ui.TextArea;
 import com.vaadin.ui.TextField;
+import com.vaadin.ui.UI;
 
 import de.steinwedel.messagebox.ButtonId;
 import de.steinwedel.messagebox.Icon;
@@ -54,68 +63,110 @@ import de.steinwedel.messagebox.MessageBox;
 
 public class Util {
     public static String printKibibytesValue(final int val) {
-        String result;
-        if (val < 1024) {
-            result = val + " KB";
-        } else if (val < 1024 * 1024) {
-            result = String.format("%.0f MB", val / 1024.0f);
-        } else {
-            result = String.format("%.0f GB", ((float) val) / (1024 * 1024));
-        }
-        return result;
+        return FastFormat.kibibytes(val);
     }
 
     public static String printKilobytesValue(final int val) {
-        String result;
-        if (val < 1000) {
-            result = val + " KB";
-        } else if (val < 1000 * 1000) {
-            result = String.format("%.0f MB", val / 1000.0f);
-        } else {
-            result = String.format("%.0f GB", ((float) val) / (1000 * 1000));
-        }
-        return result;
+        return FastFormat.kilobytes(val);
     }
 
-    @SuppressWarnings("serial")
-    public static class StateColumnGenerator implements Table.ColumnGenerator {
-        @Override
-        public com.vaadin.ui.Component generateCell(final Table source, final Object itemId, final Object columnId) {
-            Property<?> prop = source.getItem(itemId).getItemProperty(columnId);
-            String state = (String) prop.getValue();
-            Label label = new Label();
+    /**
+     * Rows rendered above and below the visible rows of an inventory table, as a multiple of the visible row count.
+     */
+    static final double TABLE_CACHE_RATE = Double.parseDouble(System.getProperty("sirocco.dashboard.table.cacheRate",
+        "1"));
+
+    /**
+     * Sets up a full-size inventory table so that only the rows of its viewport, plus TABLE_CACHE_RATE times the
+     * viewport on each side, are sent to the client and run through the generated columns. The page length must be
+     * left to the table height: setPageLength(0) renders every row.
+     */
+    public static void setViewportRendering(final Table table) {
+        table.setCacheRate(Util.TABLE_CACHE_RATE);
+    }
+
+    private static final Map<ResourceState, String> STATE_HTML = new EnumMap<>(ResourceState.class);
+
+    static {
+        for (ResourceState state : ResourceState.values()) {
             String iconFile;
-            if (state.endsWith("ING")) {
+            if (state.isTransitional()) {
                 iconFile = "loading.gif";
-            } else if (state.equals("STARTED") || state.equals("AVAILABLE") || state.equals("IN_USE")) {
+            } else if (state.isOk()) {
                 iconFile = "ball_green.gif";
             } else {
                 iconFile = "ball_red.gif";
             }
-            label.setContentMode(ContentMode.HTML);
-            label.setValue("<img src=\"" + "VAADIN/themes/mytheme/img/" + iconFile + "\" /> " + state);
-            return label;
+            Util.STATE_HTML.put(state, "<img src=\"" + "VAADIN/themes/mytheme/img/" + iconFile + "\" /> " + state);
         }
     }
 
+    private static final LoadingCache<String, String> LOCATION_HTML = CacheBuilder.newBuilder().maximumSize(1024)
+        .build(new CacheLoader<String, String>() {
+            @Override
+            public String load(final String location) {
+                String countryAndRegion[] = location.split(" ", 2);
+                String country = countryAndRegion[0];
+                String region = countryAndRegion.length > 1 ? countryAndRegion[1] : "";
+                if (country.isEmpty()) {
+                    return "";
+                }
+                String iconFile = country.toLowerCase() + ".gif";
+                return "<img src=\"" + "VAADIN/themes/mytheme/img/flags/" + iconFile + "\" /> " + region;
+            }
+        });
+
+    /**
+     * Renders a cell as an HTML label whose markup only depends on the cell value. Markup is shared across rows and
+     * tables, and the label of a row is kept and reused while its value does not change, so repaints neither
+     * allocate new components nor resend unchanged cells. A generator instance must not be shared between tables.
+     */
     @SuppressWarnings("serial")
-    public static class LocationColumnGenerator implements Table.ColumnGenerator {
+    public abstract static class HtmlLabelColumnGenerator<T> implements Table.ColumnGenerator {
+        static final int MAX_CACHED_LABELS = 512;
+
+        private final Map<Object, Label> labels = new LinkedHashMap<Object, Label>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Object, Label> eldest) {
+                return this.size() > HtmlLabelColumnGenerator.MAX_CACHED_LABELS;
+            }
+        };
+
+        protected abstract String html(T value);
+
+        @Override
+        @SuppressWarnings("unchecked")
         public com.vaadin.ui.Component generateCell(final Table source, final Object itemId, final Object columnId) {
             Property<?> prop = source.getItem(itemId).getItemProperty(columnId);
-            String location = (String) prop.getValue();
-            String countryAndRegion[] = location.split(" ", 2);
-            String country = countryAndRegion[0];
-            String region = countryAndRegion.length > 1 ? countryAndRegion[1] : "";
-            Label label = new Label();
-            if (country != null && !country.isEmpty()) {
-                String iconFile = country.toLowerCase() + ".gif";
-                label.setContentMode(ContentMode.HTML);
-                label.setValue("<img src=\"" + "VAADIN/themes/mytheme/img/flags/" + iconFile + "\" /> " + region);
+            T value = (T) prop.getValue();
+            String html = value != null ? this.html(value) : "";
+            Label label = this.labels.get(itemId);
+            if (label == null) {
+                label = new Label(html, ContentMode.HTML);
+                this.labels.put(itemId, label);
+            } else if (!html.equals(label.getValue())) {
+                label.setValue(html);
             }
             return label;
         }
     }
 
+    @SuppressWarnings("serial")
+    public static class StateColumnGenerator extends HtmlLabelColumnGenerator<ResourceState> {
+        @Override
+        protected String html(final ResourceState state) {
+            return Util.STATE_HTML.get(state);
+        }
+    }
+
+    @SuppressWarnings("serial")
+    public static class LocationColumnGenerator extends HtmlLabelColumnGenerator<String> {
+        @Override
+        protected String html(final String location) {
+            return Util.LOCATION_HTML.getUnchecked(location);
+        }
+    }
+
     public static class PlacementStep implements WizardStep {
         FormLayout content;
 
@@ -123,7 +174,9 @@ public class Util {
 
         ComboBox locationBox;
 
-        private ICloudProviderManager providerManager;
+        private CloudProviderCache providerCache;
+
+        private final Map<String, CloudProviderLocation> locations = new HashMap<>();
 
         private Property.ValueChangeListener listener;
 
@@ -143,13 +196,20 @@ public class Util {
                 @Override
                 public void valueChange(final ValueChangeEvent event) {
                     PlacementStep.this.locationBox.removeAllItems();
+                    PlacementStep.this.locations.clear();
                     if (PlacementStep.this.providerBox.getValue() != null) {
                         try {
                             String accountId = (String) PlacementStep.this.providerBox.getValue();
-                            CloudProviderAccount providerAccount = PlacementStep.this.providerManager
-                                .getCloudProviderAccountByUuid(accountId);
+                            CloudProviderAccount providerAccount = PlacementStep.this.providerCache
+                                .getCloudProviderAccountByUuid(((MyUI) UI.getCurrent()).getTenantId(), accountId);
+                            if (providerAccount == null) {
+                                // removed since the provider box was filled
+                                wizard.updateButtons();
+                                return;
+                            }
                             for (CloudProviderLocation location : providerAccount.getCloudProvider()
                                 .getCloudProviderLocations()) {
+                                PlacementStep.this.locations.put(location.toShortString(), location);
                                 PlacementStep.this.locationBox.addItem(location.toShortString());
                                 PlacementStep.this.locationBox.setItemCaption(location.toShortString(),
                                     location.description(false));
@@ -193,8 +253,12 @@ public class Util {
             this.content.setExpandRatio(spacer, 1.0f);
         }
 
-        void setProviderManager(final ICloudProviderManager providerManager) {
-            this.providerManager = providerManager;
+        void setProviderCache(final CloudProviderCache providerCache) {
+            this.providerCache = providerCache;
+        }
+
+        CloudProviderLocation getSelectedLocation() {
+            return this.locations.get(this.locationBox.getValue());
         }
 
         public void setListener(final Property.ValueChangeListener listener) {
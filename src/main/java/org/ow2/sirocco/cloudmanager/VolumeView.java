@@ -24,25 +24,30 @@ package org.ow2.sirocco.cloudmanager;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+import javax.enterprise.context.Dependent;
+import javax.enterprise.inject.Instance;
 import javax.inject.Inject;
 
+import org.ow2.sirocco.cloudmanager.MachineView.MachineBean;
 import org.ow2.sirocco.cloudmanager.VolumeAttachDialog.MachineChoice;
 import org.ow2.sirocco.cloudmanager.core.api.IMachineManager;
 import org.ow2.sirocco.cloudmanager.core.api.IVolumeManager;
 import org.ow2.sirocco.cloudmanager.core.api.exception.CloudProviderException;
-import org.ow2.sirocco.cloudmanager.model.cimi.Machine;
 import org.ow2.sirocco.cloudmanager.model.cimi.MachineVolume;
 import org.ow2.sirocco.cloudmanager.model.cimi.Volume;
-import org.ow2.sirocco.cloudmanager.model.cimi.Volume.State;
+import org.ow2.sirocco.cloudmanager.util.BeanContainerReconciler;
+import org.ow2.sirocco.cloudmanager.util.FacetIndex.Facet;
+import org.ow2.sirocco.cloudmanager.util.FacetIndex.Selection;
+import org.ow2.sirocco.cloudmanager.util.ResourceState;
+import org.ow2.sirocco.cloudmanager.util.SelectionStateCounts;
 
-import com.vaadin.cdi.UIScoped;
 import com.vaadin.data.Item;
 import com.vaadin.data.Property.ValueChangeEvent;
 import com.vaadin.data.Property.ValueChangeListener;
 import com.vaadin.data.util.BeanContainer;
-import com.vaadin.data.util.BeanItem;
 import com.vaadin.server.ThemeResource;
 import com.vaadin.ui.Button;
 import com.vaadin.ui.Button.ClickEvent;
@@ -53,8 +58,8 @@ import com.vaadin.ui.Table;
 import com.vaadin.ui.UI;
 import com.vaadin.ui.VerticalLayout;
 
-@UIScoped
-public class VolumeView extends VerticalLayout implements ValueChangeListener {
+@Dependent
+public class VolumeView extends VerticalLayout implements ResourceEventView, ValueChangeListener {
     private static final long serialVersionUID = 1L;
 
     private Button attachVolumeButton;
@@ -67,8 +72,12 @@ public class VolumeView extends VerticalLayout implements ValueChangeListener {
 
     BeanContainer<String, VolumeBean> volumes;
 
+    private SelectionStateCounts selectionStates;
+
+    private FacetPanel facetPanel;
+
     @Inject
-    private VolumeCreationWizard volumeCreationWizard;
+    private Instance<VolumeCreationWizard> volumeCreationWizard;
 
     @Inject
     private IVolumeManager volumeManager;
@@ -76,6 +85,14 @@ public class VolumeView extends VerticalLayout implements ValueChangeListener {
     @Inject
     private IMachineManager machineManager;
 
+    @Inject
+    private BackendCommandExecutor commandExecutor;
+
+    @Inject
+    private ResourceSnapshotStore snapshotStore;
+
+    private boolean loaded;
+
     public VolumeView() {
         this.setSizeFull();
 
@@ -91,8 +108,9 @@ public class VolumeView extends VerticalLayout implements ValueChangeListener {
 
             @Override
             public void buttonClick(final ClickEvent event) {
-                if (VolumeView.this.volumeCreationWizard.init(VolumeView.this)) {
-                    UI.getCurrent().addWindow(VolumeView.this.volumeCreationWizard);
+                VolumeCreationWizard wizard = VolumeView.this.volumeCreationWizard.get();
+                if (wizard.init(VolumeView.this)) {
+                    UI.getCurrent().addWindow(wizard);
                 }
             }
         });
@@ -106,21 +124,16 @@ public class VolumeView extends VerticalLayout implements ValueChangeListener {
             public void buttonClick(final ClickEvent event) {
                 Set<?> selectedVolumeIds = (Set<?>) VolumeView.this.volumeTable.getValue();
                 final String volumeId = (String) selectedVolumeIds.iterator().next();
+                VolumeBean volumeBean = VolumeView.this.volumes.getItem(volumeId).getBean();
                 List<VolumeAttachDialog.MachineChoice> choices = new ArrayList<>();
-                Volume volume;
                 try {
-                    volume = VolumeView.this.volumeManager.getVolumeByUuid(volumeId);
-                    List<Machine> machines = VolumeView.this.machineManager.getMachines().getItems();
-                    for (Machine machine : machines) {
-                        if (machine.getCloudProviderAccount().getId() == volume.getCloudProviderAccount().getId()
-                            && machine.getLocation().getId() == volume.getLocation().getId()) {
-                            MachineChoice machineChoice = new MachineChoice();
-                            machineChoice.id = machine.getUuid();
-                            machineChoice.name = machine.getName();
-                            choices.add(machineChoice);
-                        }
+                    for (MachineBean machine : VolumeView.this.snapshotStore.getMachines(
+                        ((MyUI) UI.getCurrent()).getTenantId(), volumeBean.accountId, volumeBean.locationId)) {
+                        MachineChoice machineChoice = new MachineChoice();
+                        machineChoice.id = machine.getId();
+                        machineChoice.name = machine.getName();
+                        choices.add(machineChoice);
                     }
-
                 } catch (CloudProviderException e) {
                     Util.diplayErrorMessageBox("Internal error", e);
                 }
@@ -130,15 +143,17 @@ public class VolumeView extends VerticalLayout implements ValueChangeListener {
 
                         @Override
                         public void response(final String machineId, final String location) {
-                            try {
-                                Volume volume = VolumeView.this.volumeManager.getVolumeByUuid(volumeId);
-                                MachineVolume volumeAttachment = new MachineVolume();
-                                volumeAttachment.setInitialLocation(location);
-                                volumeAttachment.setVolume(volume);
-                                VolumeView.this.machineManager.addVolumeToMachine(machineId, volumeAttachment);
-                            } catch (CloudProviderException e) {
-                                Util.diplayErrorMessageBox("Volume attach failure", e);
-                            }
+                            VolumeView.this.commandExecutor.submit(new BackendCommandExecutor.Command<Void>() {
+                                @Override
+                                public Void execute() throws CloudProviderException {
+                                    Volume volume = VolumeView.this.volumeManager.getVolumeByUuid(volumeId);
+                                    MachineVolume volumeAttachment = new MachineVolume();
+                                    volumeAttachment.setInitialLocation(location);
+                                    volumeAttachment.setVolume(volume);
+                                    VolumeView.this.machineManager.addVolumeToMachine(machineId, volumeAttachment);
+                                    return null;
+                                }
+                            }, new BackendCommandExecutor.Callback<Void>("Volume attach failure"));
                         }
                     });
                 UI.getCurrent().addWindow(volumeAttachDialog);
@@ -153,15 +168,17 @@ public class VolumeView extends VerticalLayout implements ValueChangeListener {
             @Override
             public void buttonClick(final ClickEvent event) {
                 Set<?> selectedVolumeIds = (Set<?>) VolumeView.this.volumeTable.getValue();
-                String volumeId = (String) selectedVolumeIds.iterator().next();
-                try {
-                    Volume volume = VolumeView.this.volumeManager.getVolumeByUuid(volumeId);
-                    MachineVolume volumeAttachment = volume.getAttachments().get(0);
-                    VolumeView.this.machineManager.removeVolumeFromMachine(volumeAttachment.getOwner().getUuid(),
-                        volumeAttachment.getUuid());
-                } catch (CloudProviderException e) {
-                    Util.diplayErrorMessageBox("Volume detach failure", e);
-                }
+                final String volumeId = (String) selectedVolumeIds.iterator().next();
+                VolumeView.this.commandExecutor.submit(new BackendCommandExecutor.Command<Void>() {
+                    @Override
+                    public Void execute() throws CloudProviderException {
+                        Volume volume = VolumeView.this.volumeManager.getVolumeByUuid(volumeId);
+                        MachineVolume volumeAttachment = volume.getAttachments().get(0);
+                        VolumeView.this.machineManager.removeVolumeFromMachine(volumeAttachment.getOwner().getUuid(),
+                            volumeAttachment.getUuid());
+                        return null;
+                    }
+                }, new BackendCommandExecutor.Callback<Void>("Volume detach failure"));
             }
         });
         actionButtonHeader.addComponent(this.detachVolumeButton);
@@ -181,13 +198,14 @@ public class VolumeView extends VerticalLayout implements ValueChangeListener {
                         @Override
                         public void response(final boolean ok, final boolean ignored) {
                             if (ok) {
-                                for (Object id : selectedVolumeIds) {
-                                    try {
-                                        VolumeView.this.volumeManager.deleteVolume(id.toString());
-                                    } catch (CloudProviderException e) {
-                                        Util.diplayErrorMessageBox("Volume delete failure", e);
-                                    }
-                                }
+                                BulkProgressWindow.start(new BulkOperation(VolumeView.this.commandExecutor,
+                                    "Deleting volumes", BulkOperation.items(VolumeView.this.volumes, selectedVolumeIds,
+                                        "name"), new BulkOperation.Action() {
+                                        @Override
+                                        public void execute(final String id) throws CloudProviderException {
+                                            VolumeView.this.volumeManager.deleteVolume(id);
+                                        }
+                                    }, BulkOperation.parallelism("volume")));
                                 VolumeView.this.valueChange(null);
                             }
                         }
@@ -206,6 +224,7 @@ public class VolumeView extends VerticalLayout implements ValueChangeListener {
 
             @Override
             public void buttonClick(final ClickEvent event) {
+                VolumeView.this.snapshotStore.invalidate(((MyUI) UI.getCurrent()).getTenantId(), Volume.class);
                 VolumeView.this.refresh();
             }
         });
@@ -213,31 +232,57 @@ public class VolumeView extends VerticalLayout implements ValueChangeListener {
         actionButtonHeader.addComponent(button);
 
         this.addComponent(actionButtonHeader);
+        this.addComponent(this.facetPanel = this.createFacetPanel());
         this.addComponent(this.volumeTable = this.createVolumeTable());
         this.setExpandRatio(this.volumeTable, 1.0f);
     }
 
-    void refresh() {
-        this.volumeTable.setValue(null);
-        this.volumeTable.getContainerDataSource().removeAllItems();
+    @Override
+    public void refresh() {
         try {
-            for (Volume volume : this.volumeManager.getVolumes().getItems()) {
-                this.volumes.addBean(new VolumeBean(volume));
-            }
+            List<VolumeBean> beans = this.snapshotStore.getVolumes(((MyUI) UI.getCurrent()).getTenantId(),
+                this.facetPanel.getSelection());
+            BeanContainerReconciler.reconcile(this.volumeTable, this.volumes, beans, "id");
         } catch (CloudProviderException e) {
             Util.diplayErrorMessageBox("Volume list error", e);
         }
+        // reconciled rows may have changed state
+        this.selectionStates.clear();
+        this.facetPanel.updateCounts();
         this.valueChange(null);
     }
 
+    @Override
+    public void updatesApplied() {
+        this.facetPanel.updateCounts();
+    }
+
+    @SuppressWarnings("serial")
+    FacetPanel createFacetPanel() {
+        return new FacetPanel(new FacetPanel.Listener() {
+            @Override
+            public Map<Object, Integer> getFacetCounts(final Facet facet, final Selection selection)
+                throws CloudProviderException {
+                return VolumeView.this.snapshotStore.getFacetCounts(((MyUI) UI.getCurrent()).getTenantId(),
+                    Volume.class, facet, selection);
+            }
+
+            @Override
+            public void facetSelectionChange() {
+                VolumeView.this.refresh();
+            }
+        });
+    }
+
     Table createVolumeTable() {
         this.volumes = new BeanContainer<String, VolumeBean>(VolumeBean.class);
         this.volumes.setBeanIdProperty("id");
+        this.selectionStates = new SelectionStateCounts(this.volumes, "state");
         Table table = new Table();
         table.setContainerDataSource(this.volumes);
 
         table.setSizeFull();
-        table.setPageLength(0);
+        Util.setViewportRendering(table);
 
         table.setSelectable(true);
         table.setMultiSelect(true);
@@ -256,54 +301,41 @@ public class VolumeView extends VerticalLayout implements ValueChangeListener {
     @Override
     public void valueChange(final ValueChangeEvent event) {
         Set<?> selectedVolumeIds = (Set<?>) this.volumeTable.getValue();
-        if (selectedVolumeIds != null && selectedVolumeIds.size() > 0) {
-            if (selectedVolumeIds.size() == 1) {
-                Item volume = this.volumeTable.getItem(selectedVolumeIds.iterator().next());
-                String state = (String) volume.getItemProperty("state").getValue();
-                String attachment = (String) volume.getItemProperty("attachments").getValue();
-                this.attachVolumeButton.setEnabled(state.endsWith("AVAILABLE") && attachment.isEmpty());
-                this.detachVolumeButton.setEnabled(state.endsWith("USE"));
-                this.deleteVolumeButton.setEnabled(attachment.isEmpty() && !state.endsWith("DELETING"));
-            } else {
-                this.attachVolumeButton.setEnabled(false);
-                this.detachVolumeButton.setEnabled(false);
-                boolean allowMultiDelete = true;
-                for (Object volumeId : selectedVolumeIds) {
-                    String state = (String) this.volumeTable.getItem(volumeId).getItemProperty("state").getValue();
-                    if (state.endsWith("DELETING")) {
-                        allowMultiDelete = false;
-                        break;
-                    }
-                }
-                this.deleteVolumeButton.setEnabled(allowMultiDelete);
-            }
+        this.selectionStates.select(selectedVolumeIds);
+        if (this.selectionStates.size() == 1) {
+            Item volume = this.volumeTable.getItem(this.selectionStates.singleId());
+            ResourceState state = (ResourceState) volume.getItemProperty("state").getValue();
+            String attachment = (String) volume.getItemProperty("attachments").getValue();
+            this.attachVolumeButton.setEnabled(state == ResourceState.AVAILABLE && attachment.isEmpty());
+            this.detachVolumeButton.setEnabled(state == ResourceState.IN_USE);
+            this.deleteVolumeButton.setEnabled(attachment.isEmpty() && state != ResourceState.DELETING);
         } else {
             this.attachVolumeButton.setEnabled(false);
             this.detachVolumeButton.setEnabled(false);
-            this.deleteVolumeButton.setEnabled(false);
+            this.deleteVolumeButton.setEnabled(this.selectionStates.size() > 0
+                && this.selectionStates.count(ResourceState.DELETING) == 0);
         }
     }
 
     @Override
     public void attach() {
         super.attach();
-        this.refresh();
+        // once loaded, MyUI resyncs the view from the events received while it was not attached
+        if (!this.loaded) {
+            this.loaded = true;
+            this.refresh();
+        }
     }
 
-    public void updateVolume(Volume volume) {
-        BeanItem<VolumeBean> item = this.volumes.getItem(volume.getUuid());
-        if (item != null) {
-            if (volume.getState() != State.DELETED) {
-                try {
-                    volume = this.volumeManager.getVolumeByUuid(volume.getUuid());
-                } catch (CloudProviderException e) {
-                    return;
-                }
-            }
-            VolumeBean volumeBean = item.getBean();
-            volumeBean.init(volume);
-            item.getItemProperty("state").setValue(volumeBean.getState());
-            item.getItemProperty("name").setValue(volumeBean.getName());
+    public void updateVolume(final Volume volume) {
+        VolumeBean volumeBean = this.snapshotStore.getVolume(((MyUI) UI.getCurrent()).getTenantId(), volume);
+        if (volumeBean != null
+            && !this.facetPanel.matches(volumeBean.getState(), volumeBean.getProvider(), volumeBean.getLocation())) {
+            // no longer part of the filtered rows
+            volumeBean = null;
+        }
+        if (BeanContainerReconciler.replace(this.volumeTable, this.volumes, volume.getUuid(), volumeBean)) {
+            this.selectionStates.stateChanged(volume.getUuid(), volumeBean != null ? volumeBean.getState() : null);
             this.valueChange(null);
         }
     }
@@ -313,7 +345,7 @@ public class VolumeView extends VerticalLayout implements ValueChangeListener {
 
         String name;
 
-        String state;
+        ResourceState state;
 
         String capacity;
 
@@ -323,10 +355,35 @@ public class VolumeView extends VerticalLayout implements ValueChangeListener {
 
         String location;
 
+        String accountId;
+
+        String locationId;
+
         VolumeBean(final Volume volume) {
             this.init(volume);
         }
 
+        /**
+         * Row of an updated volume, keeping the capacity and placement of the previous row if the volume, e.g. the
+         * payload of an event, lacks them.
+         */
+        VolumeBean(final Volume volume, final VolumeBean previous) {
+            this.init(volume);
+            if (previous != null) {
+                if (volume.getCapacity() == null) {
+                    this.capacity = previous.capacity;
+                }
+                if (volume.getCloudProviderAccount() == null) {
+                    this.provider = previous.provider;
+                    this.accountId = previous.accountId;
+                }
+                if (volume.getLocation() == null) {
+                    this.location = previous.location;
+                    this.locationId = previous.locationId;
+                }
+            }
+        }
+
         void init(final Volume volume) {
             this.id = volume.getUuid();
             this.name = volume.getName();
@@ -335,64 +392,42 @@ public class VolumeView extends VerticalLayout implements ValueChangeListener {
             this.attachments = this.attachmentsFromVolume(volume);
             this.provider = this.providerFrom(volume);
             this.location = this.locationFrom(volume);
+            if (volume.getCloudProviderAccount() != null) {
+                this.accountId = volume.getCloudProviderAccount().getUuid();
+            }
+            if (volume.getLocation() != null) {
+                this.locationId = volume.getLocation().getUuid();
+            }
         }
 
         public String getId() {
             return this.id;
         }
 
-        public void setId(final String id) {
-            this.id = id;
-        }
-
         public String getName() {
             return this.name;
         }
 
-        public void setName(final String name) {
-            this.name = name;
-        }
-
-        public String getState() {
+        public ResourceState getState() {
             return this.state;
         }
 
-        public void setState(final String state) {
-            this.state = state;
-        }
-
         public String getCapacity() {
             return this.capacity;
         }
 
-        public void setCapacity(final String capacity) {
-            this.capacity = capacity;
-        }
-
         public String getAttachments() {
             return this.attachments;
         }
 
-        public void setAttachments(final String attachments) {
-            this.attachments = attachments;
-        }
-
         public String getProvider() {
             return this.provider;
         }
 
-        public void setProvider(final String provider) {
-            this.provider = provider;
-        }
-
         public String getLocation() {
             return this.location;
         }
 
-        public void setLocation(final String location) {
-            this.location = location;
-        }
-
         private String attachmentsFromVolume(final Volume volume) {
             if (volume.getAttachments() != null && !volume.getAttachments().isEmpty()) {
                 MachineVolume attachment = volume.getAttachments().get(0);
@@ -402,19 +437,13 @@ public class VolumeView extends VerticalLayout implements ValueChangeListener {
             }
         }
 
-        public String stateFrom(final Volume volume) {
+        public ResourceState stateFrom(final Volume volume) {
             if (volume.getState() != Volume.State.DELETING && volume.getAttachments() != null
                 && !volume.getAttachments().isEmpty()) {
-                MachineVolume attachment = volume.getAttachments().get(0);
-                if (attachment.getState().toString().endsWith("ING")) {
-                    return attachment.getState().toString();
-                }
-                if (attachment.getState().toString().equals("ATTACHED")) {
-                    return "IN_USE";
-                }
-                return attachment.getState().toString();
+                ResourceState attachmentState = ResourceState.of(volume.getAttachments().get(0).getState());
+                return attachmentState == ResourceState.ATTACHED ? ResourceState.IN_USE : attachmentState;
             }
-            return volume.getState().toString();
+            return ResourceState.of(volume.getState());
         }
 
         public String providerFrom(final Volume volume) {
@@ -0,0 +1,258 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2013 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ */
+package org.ow2.sirocco.cloudmanager.util;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.base.Objects;
+import com.vaadin.data.Property;
+import com.vaadin.data.util.BeanContainer;
+import com.vaadin.data.util.BeanItem;
+import com.vaadin.ui.Table;
+
+/**
+ * Applies a freshly fetched list of beans to a bean container by id, only adding, removing or updating the items
+ * which changed so that the table keeps its selection and only repaints the affected rows. Beans without setters are
+ * treated as shared and immutable: their items are replaced instead of updated in place.
+ */
+public final class BeanContainerReconciler {
+    public interface BeanMerger<BEANTYPE> {
+        void merge(BEANTYPE current, BEANTYPE fresh);
+    }
+
+    public static class Result {
+        int added;
+
+        int removed;
+
+        int updated;
+
+        int unchanged;
+
+        public int getAdded() {
+            return this.added;
+        }
+
+        public int getRemoved() {
+            return this.removed;
+        }
+
+        public int getUpdated() {
+            return this.updated;
+        }
+
+        public int getUnchanged() {
+            return this.unchanged;
+        }
+
+        @Override
+        public String toString() {
+            return "added=" + this.added + " removed=" + this.removed + " updated=" + this.updated + " unchanged="
+                + this.unchanged;
+        }
+    }
+
+    private BeanContainerReconciler() {
+    }
+
+    public static <BEANTYPE> Result reconcile(final Table table, final BeanContainer<String, BEANTYPE> container,
+        final Collection<BEANTYPE> freshBeans, final String idPropertyId) {
+        return BeanContainerReconciler.reconcile(table, container, freshBeans, idPropertyId, null);
+    }
+
+    public static <BEANTYPE> Result reconcile(final Table table, final BeanContainer<String, BEANTYPE> container,
+        final Collection<BEANTYPE> freshBeans, final String idPropertyId, final BeanMerger<BEANTYPE> merger) {
+        Result result = new Result();
+        if (freshBeans.isEmpty()) {
+            result.removed = container.size();
+            container.removeAllItems();
+            table.setValue(null);
+            return result;
+        }
+        Object selection = table.getValue();
+        Map<String, Method> getters = BeanContainerReconciler.gettersOf(freshBeans.iterator().next().getClass());
+        Method idGetter = getters.remove(idPropertyId);
+
+        Map<String, BEANTYPE> freshById = new LinkedHashMap<>();
+        for (BEANTYPE bean : freshBeans) {
+            freshById.put((String) BeanContainerReconciler.invoke(idGetter, bean), bean);
+        }
+
+        Set<Object> removedIds = new HashSet<>();
+        for (String itemId : new ArrayList<>(container.getItemIds())) {
+            if (!freshById.containsKey(itemId)) {
+                container.removeItem(itemId);
+                removedIds.add(itemId);
+            }
+        }
+        result.removed = removedIds.size();
+
+        // the items before index are in the fresh order, so new items are inserted at their position
+        boolean moved = false;
+        int index = 0;
+        for (Map.Entry<String, BEANTYPE> entry : freshById.entrySet()) {
+            BeanItem<BEANTYPE> item = container.getItem(entry.getKey());
+            if (item != null && !entry.getKey().equals(container.getIdByIndex(index))) {
+                // reordered, the item is further down
+                container.removeItem(entry.getKey());
+                item = container.addBeanAt(index, item.getBean());
+                moved = true;
+            }
+            if (item == null) {
+                container.addBeanAt(index, entry.getValue());
+                result.added++;
+            } else if (BeanContainerReconciler.update(container, item, entry.getKey(), entry.getValue(), getters, index)) {
+                if (merger != null) {
+                    merger.merge(container.getItem(entry.getKey()).getBean(), entry.getValue());
+                }
+                result.updated++;
+            } else {
+                if (merger != null) {
+                    merger.merge(item.getBean(), entry.getValue());
+                }
+                result.unchanged++;
+            }
+            index++;
+        }
+
+        if ((result.updated > 0 || moved) && !Objects.equal(table.getValue(), selection)) {
+            // replaced or moved items may have been dropped from the selection
+            table.setValue(selection);
+        }
+        if (!removedIds.isEmpty()) {
+            BeanContainerReconciler.pruneSelection(table, removedIds);
+        }
+        return result;
+    }
+
+    /**
+     * Replaces the bean of an existing item at the same position, for beans which are shared and never modified, or
+     * removes the item if the bean is null. Returns false if the container does not hold the item or already holds
+     * this bean.
+     */
+    public static <BEANTYPE> boolean replace(final Table table, final BeanContainer<String, BEANTYPE> container,
+        final String itemId, final BEANTYPE bean) {
+        BeanItem<BEANTYPE> item = container.getItem(itemId);
+        if (item == null || item.getBean() == bean) {
+            return false;
+        }
+        if (bean == null) {
+            container.removeItem(itemId);
+            BeanContainerReconciler.pruneSelection(table, Collections.<Object> singleton(itemId));
+            return true;
+        }
+        Object selection = table.getValue();
+        int index = container.indexOfId(itemId);
+        container.removeItem(itemId);
+        container.addBeanAt(index, bean);
+        if (!Objects.equal(table.getValue(), selection)) {
+            table.setValue(selection);
+        }
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <BEANTYPE> boolean update(final BeanContainer<String, BEANTYPE> container,
+        final BeanItem<BEANTYPE> item, final String itemId, final BEANTYPE freshBean, final Map<String, Method> getters,
+        final int index) {
+        if (item.getBean() == freshBean) {
+            return false;
+        }
+        boolean readOnly = true;
+        List<String> changedPropertyIds = new ArrayList<>();
+        for (Map.Entry<String, Method> getter : getters.entrySet()) {
+            Property<?> property = item.getItemProperty(getter.getKey());
+            if (property == null) {
+                continue;
+            }
+            readOnly &= property.isReadOnly();
+            if (!Objects.equal(property.getValue(), BeanContainerReconciler.invoke(getter.getValue(), freshBean))) {
+                if (property.isReadOnly()) {
+                    // cannot be updated in place
+                    container.removeItem(itemId);
+                    container.addBeanAt(index, freshBean);
+                    return true;
+                }
+                changedPropertyIds.add(getter.getKey());
+            }
+        }
+        if (readOnly && changedPropertyIds.isEmpty()) {
+            // shared immutable beans: hold the current instance rather than one the snapshot has replaced
+            container.removeItem(itemId);
+            container.addBeanAt(index, freshBean);
+            return true;
+        }
+        for (String propertyId : changedPropertyIds) {
+            ((Property<Object>) item.getItemProperty(propertyId)).setValue(BeanContainerReconciler.invoke(
+                getters.get(propertyId), freshBean));
+        }
+        return !changedPropertyIds.isEmpty();
+    }
+
+    private static void pruneSelection(final Table table, final Set<Object> removedIds) {
+        Object value = table.getValue();
+        if (value instanceof Collection) {
+            Set<Object> selection = new HashSet<Object>((Collection<?>) value);
+            if (selection.removeAll(removedIds)) {
+                table.setValue(selection);
+            }
+        } else if (value != null && removedIds.contains(value)) {
+            table.setValue(null);
+        }
+    }
+
+    private static Map<String, Method> gettersOf(final Class<?> beanType) {
+        Map<String, Method> getters = new LinkedHashMap<>();
+        try {
+            for (PropertyDescriptor pd : Introspector.getBeanInfo(beanType).getPropertyDescriptors()) {
+                if (pd.getReadMethod() != null && !pd.getName().equals("class")) {
+                    getters.put(pd.getName(), pd.getReadMethod());
+                }
+            }
+        } catch (IntrospectionException e) {
+            throw new IllegalArgumentException("Cannot introspect " + beanType.getName(), e);
+        }
+        return getters;
+    }
+
+    private static Object invoke(final Method getter, final Object bean) {
+        try {
+            return getter.invoke(bean);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("Cannot read " + getter.getName() + " of " + bean, e);
+        }
+    }
+
+}
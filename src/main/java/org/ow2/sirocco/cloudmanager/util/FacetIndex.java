@@ -0,0 +1,229 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2013 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ */
+package org.ow2.sirocco.cloudmanager.util;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Bitmap index of rows by state, provider and location. Each row gets a slot and each facet value the bitmap of the
+ * slots of its rows, so that a selection resolves by intersecting, per facet, the union of the bitmaps of the
+ * selected values, and a facet count is the cardinality of a value bitmap within the selection of the other facets.
+ * Slots are assigned in insertion order, which selections preserve, and are compacted once half of them are free.
+ */
+public abstract class FacetIndex<B> {
+    public enum Facet {
+        STATE, PROVIDER, LOCATION
+    }
+
+    /**
+     * Selected values per facet: a row matches if, for every facet with selected values, its value is one of them.
+     */
+    public static class Selection {
+        private final Map<Facet, Set<Object>> values = new EnumMap<>(Facet.class);
+
+        public Selection select(final Facet facet, final Set<?> facetValues) {
+            if (facetValues == null || facetValues.isEmpty()) {
+                this.values.remove(facet);
+            } else {
+                this.values.put(facet, Collections.unmodifiableSet(new HashSet<Object>(facetValues)));
+            }
+            return this;
+        }
+
+        public Set<Object> get(final Facet facet) {
+            Set<Object> facetValues = this.values.get(facet);
+            return facetValues != null ? facetValues : Collections.emptySet();
+        }
+
+        public boolean isEmpty() {
+            return this.values.isEmpty();
+        }
+
+        public boolean matches(final Facet facet, final Object value) {
+            Set<Object> facetValues = this.values.get(facet);
+            return facetValues == null || facetValues.contains(value);
+        }
+    }
+
+    private static final int MIN_COMPACTED_SLOTS = 64;
+
+    private final Map<String, Integer> slots = new HashMap<>();
+
+    /** Rows by slot, null for a free slot */
+    private final List<B> rows = new ArrayList<>();
+
+    private final BitSet used = new BitSet();
+
+    private final Map<Facet, Map<Object, BitSet>> bitmaps = new EnumMap<>(Facet.class);
+
+    public FacetIndex() {
+        for (Facet facet : Facet.values()) {
+            this.bitmaps.put(facet, new HashMap<Object, BitSet>());
+        }
+    }
+
+    /**
+     * Value of a facet for a row; null values are not indexed.
+     */
+    protected abstract Object valueOf(B row, Facet facet);
+
+    public void put(final String id, final B row) {
+        Integer slot = this.slots.get(id);
+        if (slot != null) {
+            this.unindex(slot);
+            this.rows.set(slot, row);
+        } else {
+            slot = this.rows.size();
+            this.slots.put(id, slot);
+            this.rows.add(row);
+            this.used.set(slot);
+        }
+        this.index(slot);
+    }
+
+    public void remove(final String id) {
+        Integer slot = this.slots.remove(id);
+        if (slot == null) {
+            return;
+        }
+        this.unindex(slot);
+        this.rows.set(slot, null);
+        this.used.clear(slot);
+        if (this.rows.size() >= FacetIndex.MIN_COMPACTED_SLOTS && this.slots.size() < this.rows.size() / 2) {
+            this.compact();
+        }
+    }
+
+    public void clear() {
+        this.slots.clear();
+        this.rows.clear();
+        this.used.clear();
+        for (Map<Object, BitSet> values : this.bitmaps.values()) {
+            values.clear();
+        }
+    }
+
+    public int size() {
+        return this.slots.size();
+    }
+
+    /**
+     * Rows matching a selection, in insertion order.
+     */
+    public List<B> select(final Selection selection) {
+        BitSet match = this.match(selection, null);
+        List<B> result = new ArrayList<>(match.cardinality());
+        for (int slot = match.nextSetBit(0); slot >= 0; slot = match.nextSetBit(slot + 1)) {
+            result.add(this.rows.get(slot));
+        }
+        return result;
+    }
+
+    /**
+     * Number of rows per value of a facet among the rows matching the selection of the other facets, by value.
+     */
+    public Map<Object, Integer> count(final Facet facet, final Selection selection) {
+        BitSet match = this.match(selection, facet);
+        Map<Object, Integer> counts = new TreeMap<>();
+        for (Map.Entry<Object, BitSet> value : this.bitmaps.get(facet).entrySet()) {
+            BitSet bits = (BitSet) value.getValue().clone();
+            bits.and(match);
+            counts.put(value.getKey(), bits.cardinality());
+        }
+        return counts;
+    }
+
+    private BitSet match(final Selection selection, final Facet excluded) {
+        BitSet match = (BitSet) this.used.clone();
+        for (Map.Entry<Facet, Set<Object>> facet : selection.values.entrySet()) {
+            if (facet.getKey() == excluded) {
+                continue;
+            }
+            BitSet union = new BitSet();
+            for (Object value : facet.getValue()) {
+                BitSet bits = this.bitmaps.get(facet.getKey()).get(value);
+                if (bits != null) {
+                    union.or(bits);
+                }
+            }
+            match.and(union);
+        }
+        return match;
+    }
+
+    private void index(final int slot) {
+        B row = this.rows.get(slot);
+        for (Map.Entry<Facet, Map<Object, BitSet>> facet : this.bitmaps.entrySet()) {
+            Object value = this.valueOf(row, facet.getKey());
+            if (value != null) {
+                BitSet bits = facet.getValue().get(value);
+                if (bits == null) {
+                    bits = new BitSet();
+                    facet.getValue().put(value, bits);
+                }
+                bits.set(slot);
+            }
+        }
+    }
+
+    private void unindex(final int slot) {
+        B row = this.rows.get(slot);
+        for (Map.Entry<Facet, Map<Object, BitSet>> facet : this.bitmaps.entrySet()) {
+            Object value = this.valueOf(row, facet.getKey());
+            BitSet bits = value != null ? facet.getValue().get(value) : null;
+            if (bits != null) {
+                bits.clear(slot);
+                if (bits.isEmpty()) {
+                    facet.getValue().remove(value);
+                }
+            }
+        }
+    }
+
+    private void compact() {
+        Map<Integer, String> ids = new TreeMap<>();
+        for (Map.Entry<String, Integer> slot : this.slots.entrySet()) {
+            ids.put(slot.getValue(), slot.getKey());
+        }
+        List<B> liveRows = new ArrayList<>(ids.size());
+        for (Integer slot : ids.keySet()) {
+            liveRows.add(this.rows.get(slot));
+        }
+        this.clear();
+        Iterator<B> row = liveRows.iterator();
+        for (String id : ids.values()) {
+            this.put(id, row.next());
+        }
+    }
+
+}
@@ -0,0 +1,109 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2013 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ */
+package org.ow2.sirocco.cloudmanager.util;
+
+/**
+ * Allocation-free replacements for the size formatting done with {@link String#format} on every table row. Sizes
+ * are rounded exactly like <code>String.format("%.0f", value)</code> on the float quotient and the resulting strings
+ * come from precomputed tables; row strings are assembled in a reusable per-thread buffer.
+ */
+public final class FastFormat {
+    private static final String[] KB = FastFormat.unitTable(" KB", 1024);
+
+    private static final String[] MB = FastFormat.unitTable(" MB", 1025);
+
+    private static final String[] GB = FastFormat.unitTable(" GB", 2049);
+
+    private static final ThreadLocal<StringBuilder> BUFFER = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(256);
+        }
+    };
+
+    private static final int MAX_BUFFER_CAPACITY = 16 * 1024;
+
+    private FastFormat() {
+    }
+
+    private static String[] unitTable(final String unit, final int size) {
+        String[] table = new String[size];
+        for (int i = 0; i < size; i++) {
+            table[i] = i + unit;
+        }
+        return table;
+    }
+
+    /**
+     * Formats a size in KiB as "n KB", "n MB" or "n GB" (powers of 1024).
+     */
+    public static String kibibytes(final int val) {
+        if (val < 1024) {
+            return FastFormat.lookup(FastFormat.KB, val, " KB");
+        } else if (val < 1024 * 1024) {
+            return FastFormat.lookup(FastFormat.MB, FastFormat.roundHalfUp(val / 1024.0f), " MB");
+        } else {
+            return FastFormat.lookup(FastFormat.GB, FastFormat.roundHalfUp(((float) val) / (1024 * 1024)), " GB");
+        }
+    }
+
+    /**
+     * Formats a size in KB as "n KB", "n MB" or "n GB" (powers of 1000).
+     */
+    public static String kilobytes(final int val) {
+        if (val < 1000) {
+            return FastFormat.lookup(FastFormat.KB, val, " KB");
+        } else if (val < 1000 * 1000) {
+            return FastFormat.lookup(FastFormat.MB, FastFormat.roundHalfUp(val / 1000.0f), " MB");
+        } else {
+            return FastFormat.lookup(FastFormat.GB, FastFormat.roundHalfUp(((float) val) / (1000 * 1000)), " GB");
+        }
+    }
+
+    /**
+     * Returns the calling thread's buffer, emptied. The content must be consumed before the next call on the same
+     * thread.
+     */
+    public static StringBuilder buffer() {
+        StringBuilder sb = FastFormat.BUFFER.get();
+        if (sb.capacity() > FastFormat.MAX_BUFFER_CAPACITY) {
+            sb = new StringBuilder(256);
+            FastFormat.BUFFER.set(sb);
+        }
+        sb.setLength(0);
+        return sb;
+    }
+
+    private static long roundHalfUp(final float value) {
+        // same result as %.0f: the float is widened exactly and HALF_UP rounded
+        return (long) Math.floor((double) value + 0.5);
+    }
+
+    private static String lookup(final String[] table, final long value, final String unit) {
+        if (value >= 0 && value < table.length) {
+            return table[(int) value];
+        }
+        return value + unit;
+    }
+
+}
@@ -0,0 +1,439 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2013 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ */
+package org.ow2.sirocco.cloudmanager.util;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.vaadin.data.Container;
+import com.vaadin.data.Item;
+import com.vaadin.data.Property;
+import com.vaadin.data.util.AbstractContainer;
+import com.vaadin.data.util.BeanItem;
+
+/**
+ * Read-only indexed container which fetches beans page by page through a {@link PageQuery} and only keeps a bounded
+ * number of recently used pages in memory. The ids of all the items are fetched once, so that identity queries
+ * (selection, getItem, indexOfId) answer for every item and not only for the items of the cached pages.
+ */
+@SuppressWarnings("serial")
+public class PagedBeanContainer<BEANTYPE> extends AbstractContainer implements Container.Indexed,
+    Container.ItemSetChangeNotifier {
+    public static final int DEFAULT_PAGE_SIZE = 50;
+
+    public static final int DEFAULT_MAX_CACHED_PAGES = 10;
+
+    public interface PageQuery<BEANTYPE> extends Serializable {
+        Page<BEANTYPE> fetch(int first, int count);
+
+        /**
+         * Ids of all the items, in container order.
+         */
+        List<?> fetchIds();
+    }
+
+    public static class Page<BEANTYPE> implements Serializable {
+        private final int totalCount;
+
+        private final List<BEANTYPE> beans;
+
+        public Page(final int totalCount, final List<BEANTYPE> beans) {
+            this.totalCount = totalCount;
+            this.beans = beans;
+        }
+
+        public static <BEANTYPE> Page<BEANTYPE> empty() {
+            return new Page<BEANTYPE>(0, Collections.<BEANTYPE> emptyList());
+        }
+
+        public int getTotalCount() {
+            return this.totalCount;
+        }
+
+        public List<BEANTYPE> getBeans() {
+            return this.beans;
+        }
+    }
+
+    private final PageQuery<BEANTYPE> query;
+
+    private final String idPropertyId;
+
+    private final int pageSize;
+
+    private final Map<String, Class<?>> propertyTypes;
+
+    /** Index of every item, independent of the page cache */
+    private final Map<Object, Integer> idToIndex = new HashMap<>();
+
+    private boolean idsLoaded;
+
+    private final LinkedHashMap<Integer, List<BeanItem<BEANTYPE>>> pages;
+
+    private int size = -1;
+
+    /** Items were removed since the last {@link #commitChanges()} */
+    private boolean refreshPending;
+
+    /** Beans of cached pages were replaced since the last {@link #commitChanges()} */
+    private boolean itemSetChanged;
+
+    public PagedBeanContainer(final Class<BEANTYPE> beanType, final String idPropertyId, final PageQuery<BEANTYPE> query) {
+        this(beanType, idPropertyId, query, PagedBeanContainer.DEFAULT_PAGE_SIZE, PagedBeanContainer.DEFAULT_MAX_CACHED_PAGES);
+    }
+
+    public PagedBeanContainer(final Class<BEANTYPE> beanType, final String idPropertyId, final PageQuery<BEANTYPE> query,
+        final int pageSize, final int maxCachedPages) {
+        this.query = query;
+        this.idPropertyId = idPropertyId;
+        this.pageSize = pageSize;
+        this.propertyTypes = PagedBeanContainer.propertyTypesOf(beanType);
+        this.pages = new LinkedHashMap<Integer, List<BeanItem<BEANTYPE>>>(maxCachedPages + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Integer, List<BeanItem<BEANTYPE>>> eldest) {
+                return this.size() > maxCachedPages;
+            }
+        };
+    }
+
+    private static Map<String, Class<?>> propertyTypesOf(final Class<?> beanType) {
+        Map<String, Class<?>> types = new LinkedHashMap<>();
+        try {
+            for (PropertyDescriptor pd : Introspector.getBeanInfo(beanType).getPropertyDescriptors()) {
+                if (pd.getReadMethod() != null && !pd.getName().equals("class")) {
+                    types.put(pd.getName(), pd.getPropertyType());
+                }
+            }
+        } catch (IntrospectionException e) {
+            throw new IllegalArgumentException("Cannot introspect " + beanType.getName(), e);
+        }
+        return Collections.unmodifiableMap(types);
+    }
+
+    public void refresh() {
+        this.pages.clear();
+        this.idToIndex.clear();
+        this.idsLoaded = false;
+        this.size = -1;
+        this.refreshPending = false;
+        this.itemSetChanged = false;
+        this.fireItemSetChange();
+    }
+
+    /**
+     * Replaces the bean of a loaded item, for beans which are shared and never modified. A null bean, for a removed
+     * item, makes the next {@link #commitChanges()} refresh the container since the following items move up. The
+     * listeners are not notified before {@link #commitChanges()}.
+     */
+    public void replaceBean(final Object itemId, final BEANTYPE bean) {
+        Integer index = this.ids().get(itemId);
+        if (index == null) {
+            return;
+        }
+        if (bean == null) {
+            this.refreshPending = true;
+            return;
+        }
+        if (this.refreshPending) {
+            // the pages are dropped by the refresh anyway
+            return;
+        }
+        List<BeanItem<BEANTYPE>> page = this.pages.get(index / this.pageSize);
+        if (page != null) {
+            page.set(index % this.pageSize, new BeanItem<BEANTYPE>(bean));
+            this.itemSetChanged = true;
+        }
+    }
+
+    /**
+     * Ends a batch of {@link #replaceBean} calls: refreshes the container once if items were removed, otherwise fires
+     * a single item set change if beans of the cached pages were replaced.
+     */
+    public void commitChanges() {
+        if (this.refreshPending) {
+            this.refresh();
+        } else if (this.itemSetChanged) {
+            this.itemSetChanged = false;
+            this.fireItemSetChange();
+        }
+    }
+
+    public int getPageSize() {
+        return this.pageSize;
+    }
+
+    public int getCachedPageCount() {
+        return this.pages.size();
+    }
+
+    private Map<Object, Integer> ids() {
+        if (!this.idsLoaded) {
+            this.idToIndex.clear();
+            int index = 0;
+            for (Object id : this.query.fetchIds()) {
+                this.idToIndex.put(id, index++);
+            }
+            this.idsLoaded = true;
+        }
+        return this.idToIndex;
+    }
+
+    private Object idOf(final BeanItem<BEANTYPE> item) {
+        return item.getItemProperty(this.idPropertyId).getValue();
+    }
+
+    private List<BeanItem<BEANTYPE>> loadPage(final int pageIndex) {
+        List<BeanItem<BEANTYPE>> page = this.pages.get(pageIndex);
+        if (page != null) {
+            return page;
+        }
+        int first = pageIndex * this.pageSize;
+        Page<BEANTYPE> result = this.query.fetch(first, this.pageSize);
+        if (this.size < 0) {
+            this.size = result.getTotalCount();
+        }
+        page = new ArrayList<>(result.getBeans().size());
+        int index = first;
+        for (BEANTYPE bean : result.getBeans()) {
+            BeanItem<BEANTYPE> item = new BeanItem<BEANTYPE>(bean);
+            page.add(item);
+            this.idToIndex.put(this.idOf(item), index++);
+        }
+        if (page.size() < this.pageSize && index < this.size) {
+            // the backend returned less than expected, the collection shrank since the count was taken
+            this.size = index;
+        }
+        this.pages.put(pageIndex, page);
+        return page;
+    }
+
+    private BeanItem<BEANTYPE> itemAt(final int index) {
+        if (index < 0 || index >= this.size()) {
+            return null;
+        }
+        List<BeanItem<BEANTYPE>> page = this.loadPage(index / this.pageSize);
+        int offset = index % this.pageSize;
+        return offset < page.size() ? page.get(offset) : null;
+    }
+
+    @Override
+    public int size() {
+        if (this.size < 0) {
+            this.loadPage(0);
+        }
+        return this.size;
+    }
+
+    @Override
+    public BeanItem<BEANTYPE> getItem(final Object itemId) {
+        Integer index = this.ids().get(itemId);
+        if (index == null) {
+            return null;
+        }
+        BeanItem<BEANTYPE> item = this.itemAt(index);
+        // the collection may have changed since the ids were fetched
+        return item != null && itemId.equals(this.idOf(item)) ? item : null;
+    }
+
+    @Override
+    public Collection<?> getContainerPropertyIds() {
+        return this.propertyTypes.keySet();
+    }
+
+    @Override
+    public Collection<?> getItemIds() {
+        return new AbstractList<Object>() {
+            @Override
+            public Object get(final int index) {
+                return PagedBeanContainer.this.getIdByIndex(index);
+            }
+
+            @Override
+            public int size() {
+                return PagedBeanContainer.this.size();
+            }
+        };
+    }
+
+    @SuppressWarnings("rawtypes")
+    @Override
+    public Property getContainerProperty(final Object itemId, final Object propertyId) {
+        Item item = this.getItem(itemId);
+        return item != null ? item.getItemProperty(propertyId) : null;
+    }
+
+    @Override
+    public Class<?> getType(final Object propertyId) {
+        return this.propertyTypes.get(propertyId);
+    }
+
+    @Override
+    public boolean containsId(final Object itemId) {
+        return this.ids().containsKey(itemId);
+    }
+
+    @Override
+    public int indexOfId(final Object itemId) {
+        Integer index = this.ids().get(itemId);
+        return index != null ? index : -1;
+    }
+
+    @Override
+    public Object getIdByIndex(final int index) {
+        BeanItem<BEANTYPE> item = this.itemAt(index);
+        return item != null ? this.idOf(item) : null;
+    }
+
+    @Override
+    public List<?> getItemIds(final int startIndex, final int numberOfItems) {
+        if (startIndex < 0 || numberOfItems < 0) {
+            throw new IndexOutOfBoundsException("Invalid range " + startIndex + "+" + numberOfItems);
+        }
+        List<Object> ids = new ArrayList<>(numberOfItems);
+        int end = Math.min(startIndex + numberOfItems, this.size());
+        for (int index = startIndex; index < end; index++) {
+            Object id = this.getIdByIndex(index);
+            if (id == null) {
+                break;
+            }
+            ids.add(id);
+        }
+        return Collections.unmodifiableList(ids);
+    }
+
+    @Override
+    public Object nextItemId(final Object itemId) {
+        int index = this.indexOfId(itemId);
+        return index >= 0 && index + 1 < this.size() ? this.getIdByIndex(index + 1) : null;
+    }
+
+    @Override
+    public Object prevItemId(final Object itemId) {
+        int index = this.indexOfId(itemId);
+        return index > 0 ? this.getIdByIndex(index - 1) : null;
+    }
+
+    @Override
+    public Object firstItemId() {
+        return this.size() > 0 ? this.getIdByIndex(0) : null;
+    }
+
+    @Override
+    public Object lastItemId() {
+        return this.size() > 0 ? this.getIdByIndex(this.size() - 1) : null;
+    }
+
+    @Override
+    public boolean isFirstId(final Object itemId) {
+        return itemId != null && itemId.equals(this.firstItemId());
+    }
+
+    @Override
+    public boolean isLastId(final Object itemId) {
+        return itemId != null && itemId.equals(this.lastItemId());
+    }
+
+    @Override
+    public void addItemSetChangeListener(final Container.ItemSetChangeListener listener) {
+        super.addItemSetChangeListener(listener);
+    }
+
+    @Override
+    @Deprecated
+    public void addListener(final Container.ItemSetChangeListener listener) {
+        super.addItemSetChangeListener(listener);
+    }
+
+    @Override
+    public void removeItemSetChangeListener(final Container.ItemSetChangeListener listener) {
+        super.removeItemSetChangeListener(listener);
+    }
+
+    @Override
+    @Deprecated
+    public void removeListener(final Container.ItemSetChangeListener listener) {
+        super.removeItemSetChangeListener(listener);
+    }
+
+    @Override
+    public Item addItem(final Object itemId) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Object addItem() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Object addItemAfter(final Object previousItemId) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Item addItemAfter(final Object previousItemId, final Object newItemId) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Object addItemAt(final int index) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Item addItemAt(final int index, final Object newItemId) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean removeItem(final Object itemId) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean addContainerProperty(final Object propertyId, final Class<?> type, final Object defaultValue) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean removeContainerProperty(final Object propertyId) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean removeAllItems() {
+        this.refresh();
+        return true;
+    }
+
+}
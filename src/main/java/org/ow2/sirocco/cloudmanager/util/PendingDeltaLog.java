@@ -0,0 +1,98 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2013 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ */
+package org.ow2.sirocco.cloudmanager.util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Latest pending update per key for a view which is not on screen. The log is bounded: once more than maxSize
+ * distinct keys are pending it overflows, drops its content and only records that a full resync is needed. It also
+ * remembers since when it holds updates so that a view detached for long can be resynced instead. Not thread safe,
+ * meant to be used under the UI lock.
+ */
+public class PendingDeltaLog<K, V> {
+    private final int maxSize;
+
+    private final Map<K, V> deltas = new LinkedHashMap<>();
+
+    private boolean overflowed;
+
+    private long staleSince;
+
+    public PendingDeltaLog(final int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public void add(final K key, final V delta) {
+        if (this.staleSince == 0) {
+            this.staleSince = System.currentTimeMillis();
+        }
+        if (this.overflowed) {
+            return;
+        }
+        // re-insert so that the replay keeps the order of the latest updates
+        this.deltas.remove(key);
+        this.deltas.put(key, delta);
+        if (this.deltas.size() > this.maxSize) {
+            this.overflowed = true;
+            this.deltas.clear();
+        }
+    }
+
+    /**
+     * Records that updates were missed: the log drops its content and asks for a resync.
+     */
+    public void invalidate() {
+        if (this.staleSince == 0) {
+            this.staleSince = System.currentTimeMillis();
+        }
+        this.overflowed = true;
+        this.deltas.clear();
+    }
+
+    public boolean isEmpty() {
+        return this.staleSince == 0;
+    }
+
+    /**
+     * Returns true if the pending updates overflowed or the oldest of them is older than maxStaleMillis.
+     */
+    public boolean needsResync(final long maxStaleMillis) {
+        return this.overflowed || this.staleSince != 0 && System.currentTimeMillis() - this.staleSince > maxStaleMillis;
+    }
+
+    /**
+     * Returns the pending updates in order and resets the log.
+     */
+    public List<V> drain() {
+        List<V> result = new ArrayList<>(this.deltas.values());
+        this.deltas.clear();
+        this.overflowed = false;
+        this.staleSince = 0;
+        return result;
+    }
+
+}
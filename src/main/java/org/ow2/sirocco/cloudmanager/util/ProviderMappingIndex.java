@@ -0,0 +1,99 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2013 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ */
+package org.ow2.sirocco.cloudmanager.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.ow2.sirocco.cloudmanager.model.cimi.extension.ProviderMapping;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Index of multi-cloud resources (images, machine configurations) by provider account, for manager APIs which
+ * cannot filter by provider. Resources are partitioned by account once; a lookup for an (account, location) pair
+ * only runs the location match on that account's partition and the result is memoized.
+ */
+public abstract class ProviderMappingIndex<T> {
+    private final Map<String, Set<T>> byAccount = new HashMap<>();
+
+    private final Map<String, List<T>> byAccountAndLocation = new HashMap<>();
+
+    protected abstract List<ProviderMapping> getProviderMappings(T resource);
+
+    protected abstract ProviderMapping find(T resource, String accountId, String locationConstraint);
+
+    public synchronized ProviderMappingIndex<T> index(final Iterable<T> resources) {
+        this.byAccount.clear();
+        this.byAccountAndLocation.clear();
+        for (T resource : resources) {
+            List<ProviderMapping> mappings = this.getProviderMappings(resource);
+            if (mappings == null) {
+                continue;
+            }
+            for (ProviderMapping mapping : mappings) {
+                if (mapping.getProviderAccount() == null) {
+                    continue;
+                }
+                String accountId = mapping.getProviderAccount().getUuid();
+                Set<T> partition = this.byAccount.get(accountId);
+                if (partition == null) {
+                    partition = new LinkedHashSet<>();
+                    this.byAccount.put(accountId, partition);
+                }
+                partition.add(resource);
+            }
+        }
+        return this;
+    }
+
+    public synchronized List<T> find(final String accountId, final String locationConstraint) {
+        String key = accountId + '\0' + locationConstraint;
+        List<T> result = this.byAccountAndLocation.get(key);
+        if (result == null) {
+            Set<T> partition = this.byAccount.get(accountId);
+            if (partition == null) {
+                return Collections.emptyList();
+            }
+            List<T> matches = new ArrayList<>();
+            for (T resource : partition) {
+                if (this.find(resource, accountId, locationConstraint) != null) {
+                    matches.add(resource);
+                }
+            }
+            result = ImmutableList.copyOf(matches);
+            this.byAccountAndLocation.put(key, result);
+        }
+        return result;
+    }
+
+    public synchronized int getAccountCount() {
+        return this.byAccount.size();
+    }
+
+}
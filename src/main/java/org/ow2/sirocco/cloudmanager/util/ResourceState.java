@@ -0,0 +1,111 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2013 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ */
+package org.ow2.sirocco.cloudmanager.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * State of a resource row, covering the states of the CIMI resources shown by the dashboard. Constants are declared
+ * in alphabetical order so that sorting a table on its state column is unchanged. Each state has a bit in a long
+ * mask, which lets sets of states be tested in constant time.
+ */
+public enum ResourceState {
+    ATTACHED, ATTACHING, AVAILABLE(true), CAPTURING, CREATING, DELETED, DELETING, DETACHED, DETACHING, ERROR,
+    INITIAL, IN_USE(true), PAUSED, PAUSING, RESTARTING, RESTORING, STARTED(true), STARTING, STOPPED, STOPPING,
+    SUSPENDED, SUSPENDING, UNKNOWN;
+
+    /** Mask of all the states. */
+    public static final long ALL = (1L << ResourceState.values().length) - 1;
+
+    private static final Map<String, ResourceState> BY_NAME = new HashMap<>();
+
+    static {
+        for (ResourceState state : ResourceState.values()) {
+            ResourceState.BY_NAME.put(state.name(), state);
+        }
+    }
+
+    private final boolean ok;
+
+    private final boolean transitional;
+
+    private final long bit;
+
+    private ResourceState() {
+        this(false);
+    }
+
+    private ResourceState(final boolean ok) {
+        this.ok = ok;
+        this.transitional = this.name().endsWith("ING");
+        this.bit = 1L << this.ordinal();
+    }
+
+    /**
+     * Maps a state of the CIMI model (any enum) or a state name, UNKNOWN if there is no such state.
+     */
+    public static ResourceState of(final Object state) {
+        if (state == null) {
+            return ResourceState.UNKNOWN;
+        }
+        ResourceState resourceState = ResourceState.BY_NAME.get(state instanceof Enum ? ((Enum<?>) state).name()
+            : state.toString());
+        return resourceState != null ? resourceState : ResourceState.UNKNOWN;
+    }
+
+    public static long mask(final ResourceState... states) {
+        long mask = 0;
+        for (ResourceState state : states) {
+            mask |= state.bit;
+        }
+        return mask;
+    }
+
+    /**
+     * True for the operational states (started, available or in use), shown in green.
+     */
+    public boolean isOk() {
+        return this.ok;
+    }
+
+    /**
+     * True while an operation is in progress on the resource.
+     */
+    public boolean isTransitional() {
+        return this.transitional;
+    }
+
+    public boolean isDeleted() {
+        return this == DELETING || this == DELETED;
+    }
+
+    public long bit() {
+        return this.bit;
+    }
+
+    public boolean in(final long mask) {
+        return (mask & this.bit) != 0;
+    }
+
+}
@@ -0,0 +1,153 @@
+/**
+ *
+ * SIROCCO
+ * Copyright (C) 2013 France Telecom
+ * Contact: sirocco@ow2.org
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307
+ * USA
+ *
+ */
+package org.ow2.sirocco.cloudmanager.util;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import com.vaadin.data.Container;
+import com.vaadin.data.Item;
+
+/**
+ * Running count of the selected items of a table per {@link ResourceState}, so that the actions available for a
+ * selection of any size are known in constant time. A new selection is applied by difference with the previous one:
+ * only the state of the items which entered it is read. Views report the state changes of the items they replace
+ * and clear the counts when they reload their table.
+ */
+public class SelectionStateCounts {
+    private final Container container;
+
+    private final Object statePropertyId;
+
+    private final Map<Object, ResourceState> selected = new HashMap<>();
+
+    private final int[] counts = new int[ResourceState.values().length];
+
+    /** Bits of the states with a non-zero count */
+    private long states;
+
+    public SelectionStateCounts(final Container container, final Object statePropertyId) {
+        this.container = container;
+        this.statePropertyId = statePropertyId;
+    }
+
+    /**
+     * Applies the current value of a multi-select table, null meaning no selection.
+     */
+    public void select(final Collection<?> itemIds) {
+        if (itemIds == null || itemIds.isEmpty()) {
+            this.clear();
+            return;
+        }
+        for (Iterator<Map.Entry<Object, ResourceState>> it = this.selected.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<Object, ResourceState> entry = it.next();
+            if (!itemIds.contains(entry.getKey())) {
+                it.remove();
+                this.decrement(entry.getValue());
+            }
+        }
+        if (this.selected.size() == itemIds.size()) {
+            return;
+        }
+        for (Object itemId : itemIds) {
+            if (!this.selected.containsKey(itemId)) {
+                Item item = this.container.getItem(itemId);
+                if (item != null) {
+                    ResourceState state = (ResourceState) item.getItemProperty(this.statePropertyId).getValue();
+                    this.selected.put(itemId, state);
+                    this.increment(state);
+                }
+            }
+        }
+    }
+
+    /**
+     * Updates the state of an item if it is selected; a null state removes it from the counts.
+     */
+    public void stateChanged(final Object itemId, final ResourceState state) {
+        ResourceState previous = this.selected.get(itemId);
+        if (previous == null || previous == state) {
+            return;
+        }
+        this.decrement(previous);
+        if (state != null) {
+            this.selected.put(itemId, state);
+            this.increment(state);
+        } else {
+            this.selected.remove(itemId);
+        }
+    }
+
+    public void clear() {
+        this.selected.clear();
+        for (int i = 0; i < this.counts.length; i++) {
+            this.counts[i] = 0;
+        }
+        this.states = 0;
+    }
+
+    public int size() {
+        return this.selected.size();
+    }
+
+    /**
+     * Id of the only counted item, or null if the counts hold none or several. Selected ids the container no longer
+     * holds are not counted, hence this may differ from the only id of a selection of several.
+     */
+    public Object singleId() {
+        return this.selected.size() == 1 ? this.selected.keySet().iterator().next() : null;
+    }
+
+    public int count(final ResourceState state) {
+        return this.counts[state.ordinal()];
+    }
+
+    /**
+     * True if at least one selected item is in one of the states of the mask.
+     */
+    public boolean any(final long mask) {
+        return (this.states & mask) != 0;
+    }
+
+    /**
+     * True if no selected item is in one of the states of the mask.
+     */
+    public boolean none(final long mask) {
+        return (this.states & mask) == 0;
+    }
+
+    private void increment(final ResourceState state) {
+        if (this.counts[state.ordinal()]++ == 0) {
+            this.states |= state.bit();
+        }
+    }
+
+    private void decrement(final ResourceState state) {
+        if (--this.counts[state.ordinal()] == 0) {
+            this.states &= ~state.bit();
+        }
+    }
+
+}